@@ -2371,32 +2371,12 @@ public abstract class PrimitiveArray {
      *   second item in the sorted list, ...).
      */
     public static int[] rank(List table, int keys[], boolean[] ascending) {
-        return lowRank(new RowComparator(table, keys, ascending), table);
+        return RowRanker.rank(table, keys, ascending, false);
     }
 
     /** This is like rank, but StringArrays are tested case insensitively.   */
     public static int[] rankIgnoreCase(List table, int keys[], boolean[] ascending) {
-        return lowRank(new RowComparatorIgnoreCase(table, keys, ascending), table);
-    }
-    
-    private static int[] lowRank(RowComparator comparator, List table) {
-
-        //create the rowArray with pointer to specific rows
-        int n = ((PrimitiveArray)table.get(0)).size();
-        Integer rowArray[] = new Integer[n];
-        for (int i = 0; i < n; i++)
-            rowArray[i] = new Integer(i);
-
-        //sort the rows
-        Arrays.sort(rowArray, comparator);   //this is "stable"
-        //String2.log("rank results: " + String2.toCSSVString(integerArray));
-
-        //create the int[] 
-        int newArray[] = new int[n];
-        for (int i = 0; i < n; i++)
-            newArray[i] = rowArray[i].intValue();
-
-        return newArray;
+        return RowRanker.rank(table, keys, ascending, true);
     }
 
 
@@ -0,0 +1,554 @@
+/* This file is Copyright (c) 2026 agent (agent@local).
+ * See the MIT/X-like license in LICENSE.txt.
+ */
+package com.cohort.array;
+
+import com.cohort.util.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * This is used by PrimitiveArray.rank and rankIgnoreCase to rank a table of data
+ * stored as a List of PrimitiveArrays.
+ * Unlike sorting an Integer[] with a RowComparator, this works on an int[] of
+ * row numbers (so there is no Integer object per row) and compares the
+ * key columns' underlying arrays directly.
+ * If the first key column is numeric, this uses an LSD radix sort for it,
+ * then sorts each run of rows with the same first key value by the other keys.
+ *
+ * <p>Both sorts are stable: rows with equal keys stay in their original order.
+ */
+public class RowRanker {
+
+    /** Ranges of this many or fewer rows are sorted with insertion sort. */
+    final static int INSERTION_SORT_THRESHOLD = 32;
+
+    /**
+     * Given table[], keys[], and ascending[],
+     * this creates an int[] with the ranks the rows of the table.
+     * See PrimitiveArray.rank.
+     *
+     * @param table a List of PrimitiveArrays
+     * @param keys an array of the key column numbers
+     *    (each is 0..nColumns-1, the first key is the most important)
+     *    which are used to determine the sort order
+     * @param ascending an array of booleans corresponding to the keys
+     *    indicating if the arrays are to be sorted by a given key in
+     *    ascending or descending order.
+     * @param ignoreCase if true, StringArrays are compared case insensitively
+     *    (see StringArray.compareIgnoreCase).
+     * @return an int[] with values (0 ... size-1)
+     *   which points to the row number for a row with a specific
+     *   rank (e.g., rank[0] is the row number of the first item
+     *   in the sorted list, rank[1] is the row number of the
+     *   second item in the sorted list, ...).
+     * @throws RuntimeException if trouble
+     */
+    public static int[] rank(List table, int keys[], boolean ascending[], boolean ignoreCase) {
+        String errorInMethod = String2.ERROR + " in RowRanker.rank:\n";
+        Test.ensureNotEqual(keys.length, 0, errorInMethod + "keys.length must not be 0.");
+        Test.ensureEqual(keys.length, ascending.length, errorInMethod + "keys.length must equal ascending.length.");
+        for (int k = 0; k < keys.length; k++)
+            Test.ensureBetween(keys[k], 0, table.size(), errorInMethod +
+                "keys[" + k + "] points to a column that isn't in the table.");
+
+        int n = ((PrimitiveArray)table.get(0)).size();
+        int rows[] = new int[n];
+        for (int i = 0; i < n; i++)
+            rows[i] = i;
+        if (n < 2)
+            return rows;
+
+        //comparators specialized for each key's type
+        KeyComparator comparators[] = new KeyComparator[keys.length];
+        for (int k = 0; k < keys.length; k++)
+            comparators[k] = keyComparator((PrimitiveArray)table.get(keys[k]),
+                ascending[k], ignoreCase);
+
+        //1st key is numeric? radix sort by it
+        int result[] = radixRank((PrimitiveArray)table.get(keys[0]), n, ascending[0]);
+        if (result != null) {
+            if (keys.length == 1)
+                return result;
+
+            //then merge sort each run of rows with the same 1st key value by the other keys
+            KeyComparator comparator = keys.length == 2? comparators[1] :
+                new MultiKeyComparator(Arrays.copyOfRange(comparators, 1, keys.length));
+            int tmp[] = rows; //reuse as scratch space
+            int start = 0;
+            for (int i = 1; i <= n; i++) {
+                if (i == n || comparators[0].compare(result[i - 1], result[i]) != 0) {
+                    if (i - start > 1)
+                        mergeSort(result, tmp, start, i, comparator);
+                    start = i;
+                }
+            }
+            return result;
+        }
+
+        //else stable merge sort 
+        KeyComparator comparator = keys.length == 1? comparators[0] :
+            new MultiKeyComparator(comparators);
+        mergeSort(rows, new int[n], 0, n, comparator);
+        return rows;
+    }
+
+
+    /**
+     * This compares 2 rows of a table, based on one or more key columns.
+     */
+    abstract static class KeyComparator {
+        /**
+         * @return a negative integer, zero, or a positive integer if
+         *   row1 should be ranked before, the same as, or after row2.
+         */
+        abstract int compare(int row1, int row2);
+    }
+
+    /** This compares rows by several keys, the first key is the most important. */
+    static class MultiKeyComparator extends KeyComparator {
+        private final KeyComparator comparators[];
+        MultiKeyComparator(KeyComparator tComparators[]) {
+            comparators = tComparators;
+        }
+        int compare(int row1, int row2) {
+            for (int k = 0; k < comparators.length; k++) {
+                int result = comparators[k].compare(row1, row2);
+                if (result != 0)
+                    return result;
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * This returns a KeyComparator which compares the values in pa's underlying array.
+     * Numbers sort like Integer/Long/Float/Double.compare
+     * (so NaN's are after all other values).
+     */
+    static KeyComparator keyComparator(PrimitiveArray pa, final boolean ascending,
+        boolean ignoreCase) {
+
+        if (pa instanceof StringArray) {
+            final String a[] = ((StringArray)pa).array;
+            if (ignoreCase)
+                return new KeyComparator() {
+                    int compare(int row1, int row2) {
+                        String s1 = a[row1], s2 = a[row2];
+                        int c = s1.compareToIgnoreCase(s2);
+                        if (c == 0)
+                            c = s1.compareTo(s2);
+                        return ascending? c : -c;
+                    }};
+            return new KeyComparator() {
+                int compare(int row1, int row2) {
+                    int c = a[row1].compareTo(a[row2]);
+                    return ascending? c : -c;
+                }};
+        }
+        if (pa instanceof DoubleArray) {
+            final double a[] = ((DoubleArray)pa).array;
+            return new KeyComparator() {
+                int compare(int row1, int row2) {
+                    int c = Double.compare(a[row1], a[row2]);
+                    return ascending? c : -c;
+                }};
+        }
+        if (pa instanceof FloatArray) {
+            final float a[] = ((FloatArray)pa).array;
+            return new KeyComparator() {
+                int compare(int row1, int row2) {
+                    int c = Float.compare(a[row1], a[row2]);
+                    return ascending? c : -c;
+                }};
+        }
+        if (pa instanceof LongArray) {
+            final long a[] = ((LongArray)pa).array;
+            return new KeyComparator() {
+                int compare(int row1, int row2) {
+                    int c = Long.compare(a[row1], a[row2]);
+                    return ascending? c : -c;
+                }};
+        }
+        if (pa instanceof IntArray) {
+            final int a[] = ((IntArray)pa).array;
+            return new KeyComparator() {
+                int compare(int row1, int row2) {
+                    int c = Integer.compare(a[row1], a[row2]);
+                    return ascending? c : -c;
+                }};
+        }
+        if (pa instanceof ShortArray) {
+            final short a[] = ((ShortArray)pa).array;
+            return new KeyComparator() {
+                int compare(int row1, int row2) {
+                    int c = a[row1] - a[row2];
+                    return ascending? c : -c;
+                }};
+        }
+        if (pa instanceof CharArray) {
+            final char a[] = ((CharArray)pa).array;
+            return new KeyComparator() {
+                int compare(int row1, int row2) {
+                    int c = a[row1] - a[row2];
+                    return ascending? c : -c;
+                }};
+        }
+        if (pa instanceof ByteArray) {
+            final byte a[] = ((ByteArray)pa).array;
+            return new KeyComparator() {
+                int compare(int row1, int row2) {
+                    int c = a[row1] - a[row2];
+                    return ascending? c : -c;
+                }};
+        }
+
+        //some other type of PrimitiveArray
+        final PrimitiveArray fpa = pa;
+        if (ignoreCase)
+            return new KeyComparator() {
+                int compare(int row1, int row2) {
+                    int c = fpa.compareIgnoreCase(row1, row2);
+                    return ascending? c : -c;
+                }};
+        return new KeyComparator() {
+            int compare(int row1, int row2) {
+                int c = fpa.compare(row1, row2);
+                return ascending? c : -c;
+            }};
+    }
+
+    /**
+     * This sorts rows[lo ... hi-1] with a stable merge sort.
+     * Already sorted (sub)ranges are detected, so this is fast for sorted data.
+     *
+     * @param rows the row numbers to be sorted
+     * @param tmp scratch space, the same size as rows
+     * @param lo the first index (inclusive)
+     * @param hi the last index (exclusive)
+     * @param comparator
+     */
+    static void mergeSort(int rows[], int tmp[], int lo, int hi, KeyComparator comparator) {
+        if (hi - lo <= INSERTION_SORT_THRESHOLD) {
+            //insertion sort
+            for (int i = lo + 1; i < hi; i++) {
+                int row = rows[i];
+                int j = i;
+                while (j > lo && comparator.compare(rows[j - 1], row) > 0) {
+                    rows[j] = rows[j - 1];
+                    j--;
+                }
+                rows[j] = row;
+            }
+            return;
+        }
+
+        int mid = (lo + hi) >>> 1;
+        mergeSort(rows, tmp, lo, mid, comparator);
+        mergeSort(rows, tmp, mid, hi, comparator);
+        if (comparator.compare(rows[mid - 1], rows[mid]) <= 0)
+            return; //already in order
+
+        //merge. Copy the left half to tmp.
+        //Ties take the left row, so the sort is stable.
+        System.arraycopy(rows, lo, tmp, lo, mid - lo);
+        int i = lo, j = mid, k = lo;
+        while (i < mid && j < hi)
+            rows[k++] = comparator.compare(rows[j], tmp[i]) < 0? rows[j++] : tmp[i++];
+        while (i < mid)
+            rows[k++] = tmp[i++];
+    }
+
+    /**
+     * This ranks the rows by one numeric key with a stable LSD radix sort.
+     *
+     * @param pa the key column
+     * @param n the number of rows
+     * @param ascending
+     * @return the ranks, or null if pa isn't a supported numeric type
+     */
+    static int[] radixRank(PrimitiveArray pa, int n, boolean ascending) {
+        //make keys which sort (as unsigned numbers) like Xxx.compare sorts the values
+        int flip = ascending? 0 : -1; //for descending, flip all the bits
+        if (pa instanceof ByteArray || pa instanceof ShortArray ||
+            pa instanceof CharArray || pa instanceof IntArray || pa instanceof FloatArray) {
+            int keys[] = new int[n];
+            int nBytes = 4;
+            if (pa instanceof ByteArray) {
+                byte a[] = ((ByteArray)pa).array;
+                for (int i = 0; i < n; i++)
+                    keys[i] = (a[i] + 128) ^ flip;
+                nBytes = 1;
+            } else if (pa instanceof ShortArray) {
+                short a[] = ((ShortArray)pa).array;
+                for (int i = 0; i < n; i++)
+                    keys[i] = (a[i] + 32768) ^ flip;
+                nBytes = 2;
+            } else if (pa instanceof CharArray) {
+                char a[] = ((CharArray)pa).array;
+                for (int i = 0; i < n; i++)
+                    keys[i] = a[i] ^ flip;
+                nBytes = 2;
+            } else if (pa instanceof IntArray) {
+                int a[] = ((IntArray)pa).array;
+                for (int i = 0; i < n; i++)
+                    keys[i] = a[i] ^ Integer.MIN_VALUE ^ flip;
+            } else {
+                float a[] = ((FloatArray)pa).array;
+                for (int i = 0; i < n; i++) {
+                    int bits = Float.floatToIntBits(a[i]); //all NaN's -> 1 NaN
+                    keys[i] = bits ^ ((bits >> 31) | Integer.MIN_VALUE) ^ flip;
+                }
+            }
+            return radixSort(keys, n, nBytes);
+        }
+
+        if (pa instanceof LongArray || pa instanceof DoubleArray) {
+            long keys[] = new long[n];
+            long lFlip = flip;
+            if (pa instanceof LongArray) {
+                long a[] = ((LongArray)pa).array;
+                for (int i = 0; i < n; i++)
+                    keys[i] = a[i] ^ Long.MIN_VALUE ^ lFlip;
+            } else {
+                double a[] = ((DoubleArray)pa).array;
+                for (int i = 0; i < n; i++) {
+                    long bits = Double.doubleToLongBits(a[i]); //all NaN's -> 1 NaN
+                    keys[i] = bits ^ ((bits >> 63) | Long.MIN_VALUE) ^ lFlip;
+                }
+            }
+            return radixSort(keys, n);
+        }
+
+        return null;
+    }
+
+    /**
+     * This does a stable LSD radix sort of the unsigned int keys
+     * (1 byte per pass; passes where all keys have the same byte are skipped).
+     *
+     * @param keys the keys (they will be reordered)
+     * @param n the number of keys
+     * @param nBytes the number of low bytes of the keys that vary (1 - 4)
+     * @return the rank (row numbers) in sorted order
+     */
+    private static int[] radixSort(int keys[], int n, int nBytes) {
+        //one pass to count all of the bytes
+        int counts[][] = new int[nBytes][257];
+        for (int i = 0; i < n; i++) {
+            int key = keys[i];
+            for (int b = 0; b < nBytes; b++)
+                counts[b][((key >>> (8 * b)) & 0xFF) + 1]++;
+        }
+
+        int rows[] = new int[n];
+        for (int i = 0; i < n; i++)
+            rows[i] = i;
+        int tRows[] = null;
+        int tKeys[] = null;
+        for (int b = 0; b < nBytes; b++) {
+            int count[] = counts[b];
+            if (isTrivialPass(count, n))
+                continue;
+            for (int c = 0; c < 256; c++)
+                count[c + 1] += count[c]; //now count[c] is the start po for byte value c
+            if (tRows == null) {
+                tRows = new int[n];
+                tKeys = new int[n];
+            }
+            int shift = 8 * b;
+            for (int i = 0; i < n; i++) {
+                int key = keys[i];
+                int po = count[(key >>> shift) & 0xFF]++;
+                tRows[po] = rows[i];
+                tKeys[po] = key;
+            }
+            int ti[] = rows; rows = tRows; tRows = ti;
+                ti   = keys; keys = tKeys; tKeys = ti;
+        }
+        return rows;
+    }
+
+    /** This is like the other radixSort, but for unsigned long keys (8 bytes). */
+    private static int[] radixSort(long keys[], int n) {
+        int counts[][] = new int[8][257];
+        for (int i = 0; i < n; i++) {
+            long key = keys[i];
+            for (int b = 0; b < 8; b++)
+                counts[b][((int)(key >>> (8 * b)) & 0xFF) + 1]++;
+        }
+
+        int rows[] = new int[n];
+        for (int i = 0; i < n; i++)
+            rows[i] = i;
+        int tRows[] = null;
+        long tKeys[] = null;
+        for (int b = 0; b < 8; b++) {
+            int count[] = counts[b];
+            if (isTrivialPass(count, n))
+                continue;
+            for (int c = 0; c < 256; c++)
+                count[c + 1] += count[c];
+            if (tRows == null) {
+                tRows = new int[n];
+                tKeys = new long[n];
+            }
+            int shift = 8 * b;
+            for (int i = 0; i < n; i++) {
+                long key = keys[i];
+                int po = count[(int)(key >>> shift) & 0xFF]++;
+                tRows[po] = rows[i];
+                tKeys[po] = key;
+            }
+            int  ti[] = rows; rows = tRows; tRows = ti;
+            long tl[] = keys; keys = tKeys; tKeys = tl;
+        }
+        return rows;
+    }
+
+    /** This returns true if all n keys have the same value for this byte. */
+    private static boolean isTrivialPass(int count[], int n) {
+        for (int c = 1; c <= 256; c++) {
+            if (count[c] == n)
+                return true;
+            if (count[c] != 0)
+                return false;
+        }
+        return false;
+    }
+
+
+    /**
+     * This ranks the rows the old way (sorting an Integer[] with a RowComparator),
+     * as a reference for the tests.
+     */
+    static int[] comparatorRank(List table, int keys[], boolean ascending[], boolean ignoreCase) {
+        RowComparator comparator = ignoreCase?
+            new RowComparatorIgnoreCase(table, keys, ascending) :
+            new RowComparator(table, keys, ascending);
+        int n = ((PrimitiveArray)table.get(0)).size();
+        Integer rowArray[] = new Integer[n];
+        for (int i = 0; i < n; i++)
+            rowArray[i] = new Integer(i);
+        Arrays.sort(rowArray, comparator);   //this is "stable"
+        int newArray[] = new int[n];
+        for (int i = 0; i < n; i++)
+            newArray[i] = rowArray[i].intValue();
+        return newArray;
+    }
+
+    /** This makes a table with random values (with lots of ties) of each type. */
+    private static ArrayList makeRandomTable(Random random, int n) {
+        byte   ab[] = new byte[n];
+        short  as[] = new short[n];
+        char   ac[] = new char[n];
+        int    ai[] = new int[n];
+        long   al[] = new long[n];
+        float  af[] = new float[n];
+        double ad[] = new double[n];
+        String aS[] = new String[n];
+        String cases[] = {"a", "A", "b", "B", "ab", "Ab", "aB", ""};
+        for (int i = 0; i < n; i++) {
+            ab[i] = (byte)(random.nextInt(256) - 128);
+            as[i] = (short)(random.nextInt(2000) - 1000);
+            ac[i] = (char)random.nextInt(70000);
+            ai[i] = random.nextInt(100) - 50;   //small, since IntArray.compare isn't safe from overflow
+            al[i] = random.nextInt(100) - 50;
+            int r = random.nextInt(100);
+            af[i] = r == 0? Float.NaN  : r == 1? -0.0f : r == 2? Float.NEGATIVE_INFINITY :
+                    (random.nextInt(50) - 25) / 4.0f;
+            r = random.nextInt(100);
+            ad[i] = r == 0? Double.NaN : r == 1? -0.0  : r == 2? Double.POSITIVE_INFINITY :
+                    (random.nextInt(50) - 25) * 1e100;
+            aS[i] = cases[random.nextInt(cases.length)];
+        }
+        ArrayList table = new ArrayList();
+        table.add(new ByteArray(ab));
+        table.add(new ShortArray(as));
+        table.add(new CharArray(ac));
+        table.add(new IntArray(ai));
+        table.add(new LongArray(al));
+        table.add(new FloatArray(af));
+        table.add(new DoubleArray(ad));
+        table.add(new StringArray(aS));
+        return table;
+    }
+
+    /**
+     * This tests the methods in this class.
+     *
+     * @throws RuntimeException if trouble
+     */
+    public static void test() {
+        String2.log("\n*** RowRanker.test()");
+
+        //compare to the old RowComparator ranks
+        Random random = new Random(17);
+        for (int n = 0; n < 300; n += 1 + n / 3) {
+            ArrayList table = makeRandomTable(random, n);
+            int nCols = table.size();
+            for (int col = 0; col < nCols; col++) {
+                for (int asc = 0; asc < 2; asc++) {
+                    int keys[] = {col};
+                    boolean ascending[] = {asc == 0};
+                    for (int ic = 0; ic < 2; ic++)
+                        Test.ensureEqual(rank(table, keys, ascending, ic == 1),
+                            comparatorRank(table, keys, ascending, ic == 1),
+                            "n=" + n + " col=" + col + " asc=" + asc + " ic=" + ic);
+
+                    //2 and 3 keys
+                    keys = new int[]{col, (col + 3) % nCols, (col + 5) % nCols};
+                    ascending = new boolean[]{asc == 0, random.nextBoolean(), random.nextBoolean()};
+                    for (int ic = 0; ic < 2; ic++)
+                        Test.ensureEqual(rank(table, keys, ascending, ic == 1),
+                            comparatorRank(table, keys, ascending, ic == 1),
+                            "n=" + n + " keys=" + String2.toCSSVString(keys) + " ic=" + ic);
+                }
+            }
+        }
+
+        //IntArray and LongArray values which overflow in IntArray.compare and LongArray.compare
+        ArrayList table = new ArrayList();
+        table.add(new IntArray( new int[] {Integer.MAX_VALUE, -5, Integer.MIN_VALUE, 0, -5}));
+        table.add(new LongArray(new long[]{Long.MAX_VALUE,    -5, Long.MIN_VALUE,    0, -5}));
+        for (int col = 0; col < 2; col++) {
+            Test.ensureEqual(rank(table, new int[]{col}, new boolean[]{true}, false),
+                new int[]{2, 1, 4, 3, 0}, "col=" + col);
+            Test.ensureEqual(rank(table, new int[]{col}, new boolean[]{false}, false),
+                new int[]{0, 3, 1, 4, 2}, "col=" + col);
+            Test.ensureEqual(rank(table, new int[]{col, 1 - col}, new boolean[]{true, true}, false),
+                new int[]{2, 1, 4, 3, 0}, "col=" + col);
+        }
+
+        //speed (instead of a JMH benchmark): compare to the old RowComparator ranks
+        int n = 1000000;
+        table = makeRandomTable(random, n);
+        int nCols = table.size();
+        DoubleArray da = (DoubleArray)table.get(6);
+        for (int i = 0; i < n; i++)  //wider range of values, so radix sort needs more passes
+            da.array[i] = random.nextDouble() * 1000;
+        int tests[][] = {{6}, {3}, {3, 7}, {7, 6}};
+        for (int test = 0; test < tests.length; test++) {
+            int keys[] = tests[test];
+            boolean ascending[] = new boolean[keys.length];
+            Arrays.fill(ascending, true);
+            int oldRank[] = null, newRank[] = null;
+            long oldTime = Long.MAX_VALUE, newTime = Long.MAX_VALUE;
+            for (int rep = 0; rep < 3; rep++) { //best of 3
+                long time = System.currentTimeMillis();
+                oldRank = comparatorRank(table, keys, ascending, false);
+                oldTime = Math.min(oldTime, System.currentTimeMillis() - time);
+                time = System.currentTimeMillis();
+                newRank = rank(table, keys, ascending, false);
+                newTime = Math.min(newTime, System.currentTimeMillis() - time);
+            }
+            Test.ensureEqual(newRank, oldRank, "keys=" + String2.toCSSVString(keys));
+            String2.log("rank n=" + n + " keys=" + String2.toCSSVString(keys) +
+                " (" + ((PrimitiveArray)table.get(keys[0])).elementClassString() +
+                "): RowComparator time=" + oldTime + "ms  RowRanker time=" + newTime + "ms");
+        }
+    }
+
+}
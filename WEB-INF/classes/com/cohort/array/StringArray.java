@@ -36,7 +36,8 @@ import java.util.Set;
  * methods; it extends PrimitiveArray.
  * All of the methods which add strings to StringArray (e.g., add()),
  * use String2.canonical(), to ensure that canonical Strings are stored (to save memory
- * if there are duplicates).
+ * if there are duplicates) -- unless setUseCanonical(false) has been called
+ * (e.g., for temporary arrays).
  *
  * <p>This class uses "" to represent a missing value (NaN).
  */
@@ -51,6 +52,9 @@ public class StringArray extends PrimitiveArray {
      */
     public String[] array;
 
+    /** If false, Strings added to this StringArray aren't made canonical. */
+    protected boolean useCanonical = true;
+
     /**
      * A constructor for a capacity of 8 elements. The initial 'size' will be 0.
      */
@@ -96,7 +100,7 @@ public class StringArray extends PrimitiveArray {
         array = anArray;
         size = anArray.length;
         for (int i = 0; i < size; i++)
-            array[i] = String2.canonical(array[i]);
+            array[i] = canonical(array[i]);
     }
 
     /**
@@ -108,7 +112,7 @@ public class StringArray extends PrimitiveArray {
         size = anArray.length;
         array = new String[size];
         for (int i = 0; i < size; i++)
-            array[i] = String2.canonical(anArray[i] == null? "" : anArray[i].toString());
+            array[i] = canonical(anArray[i] == null? "" : anArray[i].toString());
     }
 
     /**
@@ -144,7 +148,7 @@ public class StringArray extends PrimitiveArray {
      */
     public StringArray toIso88591() {
         for (int i = 0; i < size; i++)
-            array[i] = String2.canonical(String2.toIso88591String(array[i]));
+            array[i] = canonical(String2.toIso88591String(array[i]));
         return this;
     }
 
@@ -157,7 +161,7 @@ public class StringArray extends PrimitiveArray {
      */
     public StringArray fromUTF8() {
         for (int i = 0; i < size; i++)
-            array[i] = String2.canonical(String2.fromUTF8String(array[i]));
+            array[i] = canonical(String2.fromUTF8String(array[i]));
         //String2.log(">>after fromUTF8: " + toNccsvAttString());
         return this;
     }
@@ -170,7 +174,7 @@ public class StringArray extends PrimitiveArray {
      */
     public StringArray toUTF8() {
         for (int i = 0; i < size; i++)
-            array[i] = String2.canonical(String2.toUTF8String(array[i]));
+            array[i] = canonical(String2.toUTF8String(array[i]));
         //String2.log(">>after toUTF8: " + toNccsvAttString());
         return this;
     }
@@ -182,7 +186,7 @@ public class StringArray extends PrimitiveArray {
      */
     public StringArray toJson() {
         for (int i = 0; i < size; i++)
-            array[i] = String2.canonical(String2.toJson(array[i], 127));
+            array[i] = canonical(String2.toJson(array[i], 127));
         return this;
     }
 
@@ -193,7 +197,7 @@ public class StringArray extends PrimitiveArray {
      */
     public void fromJson() {
         for (int i = 0; i < size; i++) 
-            array[i] = String2.canonical(String2.fromJsonNotNull(array[i])); //doesn't require enclosing "'s
+            array[i] = canonical(String2.fromJsonNotNull(array[i])); //doesn't require enclosing "'s
     }
 
     /** 
@@ -203,7 +207,7 @@ public class StringArray extends PrimitiveArray {
      */
     public void fromNccsv() {
         for (int i = 0; i < size; i++) 
-            array[i] = String2.canonical(String2.fromNccsvString(array[i])); //doesn't require enclosing "'s
+            array[i] = canonical(String2.fromNccsvString(array[i])); //doesn't require enclosing "'s
     }
 
     /* *  probably works, but not tested
@@ -415,7 +419,7 @@ public class StringArray extends PrimitiveArray {
     public void add(String value) {
         if (size == array.length) //if we're at capacity
             ensureCapacity(size + 1L);
-        array[size++] = String2.canonical(value);
+        array[size++] = canonical(value);
     }
 
     /**
@@ -427,7 +431,7 @@ public class StringArray extends PrimitiveArray {
             String s = array[i];
             String st = s.trim();
             if (st.length() < s.length())
-                array[i] = String2.canonical(st);
+                array[i] = canonical(st);
         }
     }
 
@@ -440,7 +444,7 @@ public class StringArray extends PrimitiveArray {
             String s = array[i];
             String st = String2.trimEnd(s);
             if (st.length() < s.length())
-                array[i] = String2.canonical(st);
+                array[i] = canonical(st);
         }
     }
 
@@ -465,6 +469,37 @@ public class StringArray extends PrimitiveArray {
             array[i] = String2.canonical(array[i]);
     }
 
+    /**
+     * Use this with false for temporary StringArrays (e.g., for the data for 
+     * one request) so that Strings added to this StringArray aren't made canonical.
+     * This is faster (and avoids contention in String2.canonical when 
+     * many threads are busy), but uses more memory if there are many duplicate Strings.
+     * Call makeCanonical() if the Strings later need to be canonical.
+     *
+     * @param tUseCanonical the new setting (the default is true)
+     */
+    public void setUseCanonical(boolean tUseCanonical) {
+        useCanonical = tUseCanonical;
+    }
+
+    /**
+     * This indicates if Strings added to this StringArray are made canonical.
+     *
+     * @return true if Strings added to this StringArray are made canonical (the default).
+     */
+    public boolean useCanonical() {
+        return useCanonical;
+    }
+
+    /** 
+     * This returns String2.canonical(s) (or s if !useCanonical).
+     *
+     * @param s a String (may be null)
+     */
+    private String canonical(String s) {
+        return useCanonical? String2.canonical(s) : s;
+    }
+
     /**
      * This adds all the strings from sar.
      *
@@ -474,7 +509,7 @@ public class StringArray extends PrimitiveArray {
         int otherSize = sar.length; 
         ensureCapacity(size + (long)otherSize);
         for (int i = 0; i < otherSize; i++)
-            array[size + i] = String2.canonical(sar[i]);
+            array[size + i] = canonical(sar[i]);
         size += otherSize;
     }    
 
@@ -489,7 +524,7 @@ public class StringArray extends PrimitiveArray {
         if (n < 0)
             throw new IllegalArgumentException(MessageFormat.format(
                 ArrayAddN, getClass().getSimpleName(), "" + n));
-        value = String2.canonical(value);
+        value = canonical(value);
         ensureCapacity(size + (long)n);
         Arrays.fill(array, size, size + n, value);
         size += n;
@@ -510,7 +545,7 @@ public class StringArray extends PrimitiveArray {
             ensureCapacity(size + 1L);
         System.arraycopy(array, index, array, index + 1, size - index);
         size++;
-        array[index] = String2.canonical(value);
+        array[index] = canonical(value);
     }
 
     /**
@@ -852,7 +887,7 @@ public class StringArray extends PrimitiveArray {
         if (index >= size)
             throw new IllegalArgumentException(String2.ERROR + " in StringArray.set: index (" + 
                 index + ") >= size (" + size + ").");
-        array[index] = String2.canonical(value);
+        array[index] = canonical(value);
     }
 
 
@@ -1316,7 +1351,7 @@ public class StringArray extends PrimitiveArray {
     public void readDis(DataInputStream dis, int n) throws Exception {
         ensureCapacity(size + (long)n);
         for (int i = 0; i < n; i++)
-            array[size++] = String2.canonical(dis.readUTF());
+            array[size++] = canonical(dis.readUTF());
     }
 
     /**
@@ -1439,7 +1474,7 @@ public class StringArray extends PrimitiveArray {
         //    }
         } else {
             for (int i = 0; i < otherSize; i++)
-                array[size + i] = String2.canonical(pa.getString(i)); //this converts mv's
+                array[size + i] = canonical(pa.getString(i)); //this converts mv's
         }
         size += otherSize; //do last to minimize concurrency problems
     }    
@@ -1458,7 +1493,7 @@ public class StringArray extends PrimitiveArray {
             System.arraycopy(((StringArray)pa).array, 0, array, size, otherSize);
         } else {
             for (int i = 0; i < otherSize; i++)
-                array[size + i] = String2.canonical(pa.getRawString(i)); //this DOESN'T convert mv's
+                array[size + i] = canonical(pa.getRawString(i)); //this DOESN'T convert mv's
         }
         size += otherSize; //do last to minimize concurrency problems
     }    
@@ -1575,7 +1610,7 @@ public class StringArray extends PrimitiveArray {
     public int switchFromTo(String from, String to) {
         if (from.equals(to))
             return 0;
-        to = String2.canonical(to);
+        to = canonical(to);
         int count = 0;
         for (int i = 0; i < size; i++) {
             if (array[i].equals(from)) {
@@ -2006,7 +2041,7 @@ public class StringArray extends PrimitiveArray {
     public void intraReplaceAll(String from, String to) {
         for (int i = 0; i < size; i++)
             if (array[i] != null) 
-                array[i] = String2.canonical(String2.replaceAll(array[i], from, to));
+                array[i] = canonical(String2.replaceAll(array[i], from, to));
     }
 
     /** Thie replaces any instances of 'from' with 'to' within each string, 
@@ -2014,7 +2049,7 @@ public class StringArray extends PrimitiveArray {
     public void intraReplaceAllIgnoreCase(String from, String to) {
         for (int i = 0; i < size; i++)
             if (array[i] != null) 
-                array[i] = String2.canonical(String2.replaceAllIgnoreCase(array[i], from, to));
+                array[i] = canonical(String2.replaceAllIgnoreCase(array[i], from, to));
     }
 
     /** This returns the minimum value that can be held by this class. */
@@ -2726,6 +2761,26 @@ public class StringArray extends PrimitiveArray {
         anArray.removeEmptyAtEnd();
         Test.ensureEqual(anArray.size(), 0, "");
 
+        //setUseCanonical
+        String s1 = "abc" + anArray.size(); //2 equal, but != Strings
+        String s2 = "abc" + anArray.size();
+        Test.ensureTrue(s1 != s2, "");
+        anArray = new StringArray();
+        Test.ensureEqual(anArray.useCanonical(), true, "");
+        anArray.add(s1);
+        anArray.add(s2);
+        Test.ensureTrue(anArray.get(0) == anArray.get(1), "");  //canonical
+        anArray = new StringArray();
+        anArray.setUseCanonical(false);
+        Test.ensureEqual(anArray.useCanonical(), false, "");
+        anArray.add(s1);
+        anArray.add(s2);
+        anArray.set(1, s2);
+        Test.ensureTrue(anArray.get(0) == s1, "");  //not canonical
+        Test.ensureTrue(anArray.get(1) == s2, "");
+        anArray.makeCanonical();
+        Test.ensureTrue(anArray.get(0) == anArray.get(1), "");  //canonical
+
     }
 
 }
@@ -0,0 +1,270 @@
+/* This file is Copyright (c) 2026 agent (agent@local).
+ * See the MIT/X-like license in LICENSE.txt.
+ */
+package com.cohort.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This lets String2.log (see String2.setupAsyncLog) hand log messages
+ * to a single writer thread, so the threads that log don't wait for
+ * each other (on String2.logFileLock) or for the disk.
+ *
+ * <p>The messages are stored in a bounded, lock-free ring buffer
+ * (the threads that log only use compareAndSet, never a lock).
+ * The writer thread takes up to BATCH_SIZE messages at a time from the buffer
+ * and gives them to the Sink all at once (so String2 only has to get
+ * logFileLock once per batch).
+ *
+ * <p>If the buffer is full, offer() either drops the message
+ * (dropIfFull=true: the writer thread later writes a message saying how many
+ * messages were dropped) or waits until there is room (dropIfFull=false).
+ *
+ * <p>This is thread-safe.
+ */
+public class AsyncLog {
+
+    /** This receives the messages from the writer thread. */
+    public interface Sink {
+        /**
+         * This writes a batch of messages.
+         *
+         * @param messages the messages. Only the first n are valid.
+         * @param addNewlines indicates if a newline should be added after each message.
+         * @param n the number of messages
+         * @throws Exception if trouble
+         */
+        void write(String messages[], boolean addNewlines[], int n) throws Exception;
+    }
+
+    /** The maximum number of messages given to the Sink at once. */
+    public final static int BATCH_SIZE = 256;
+
+    private final int capacity, mask;
+    private final boolean dropIfFull;
+    private final Sink sink;
+    private final Thread writerThread;
+
+    //The ring buffer. sequences[i] is (position) if slot i is free for the producer
+    //at position, (position + 1) if it holds the message at position,
+    //so producers and the writer thread don't need a lock.
+    private final String messages[];
+    private final boolean addNewlines[];
+    private final AtomicLongArray sequences;
+    /** the next position to be claimed by a producer */
+    private final AtomicLong tail = new AtomicLong();
+    /** the next position to be taken by the writer thread (only it changes this) */
+    private volatile long taken = 0;
+    /** the next position to be written by the writer thread (only it changes this) */
+    private volatile long head = 0;
+    private volatile boolean writerWaiting = false;
+    private volatile boolean stopped = false;
+
+    /** Statistics (for diagnostics). */
+    private final AtomicLong nDroppedNotReported = new AtomicLong(),
+        nDropped = new AtomicLong(), nWaited = new AtomicLong();
+    private volatile long nWritten = 0, nBatches = 0, highWater = 0;
+
+    /**
+     * The constructor. This starts the writer thread.
+     *
+     * @param tCapacity the maximum number of messages waiting to be written.
+     *    This is rounded up to a power of 2 (min 2).
+     * @param tDropIfFull if true, offer() drops the message if the buffer is full.
+     *    If false, offer() waits until there is room.
+     * @param tSink receives the messages (on the writer thread)
+     */
+    public AsyncLog(int tCapacity, boolean tDropIfFull, Sink tSink) {
+        int tc = 2;
+        while (tc < tCapacity && tc < (1 << 30))
+            tc <<= 1;
+        capacity = tc;
+        mask = tc - 1;
+        dropIfFull = tDropIfFull;
+        sink = tSink;
+        messages = new String[capacity];
+        addNewlines = new boolean[capacity];
+        sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++)
+            sequences.set(i, i);
+
+        writerThread = new Thread(() -> run(), "String2.AsyncLog");
+        writerThread.setDaemon(true); //so it never prevents the JVM from exiting
+        writerThread.start();
+    }
+
+    /** The capacity of the buffer. */
+    public int capacity() {
+        return capacity;
+    }
+
+    /** The number of messages waiting to be written. */
+    public int size() {
+        return (int)Math.max(0, tail.get() - taken);
+    }
+
+    /** The number of messages dropped because the buffer was full. */
+    public long nDropped() {
+        return nDropped.get();
+    }
+
+    /**
+     * This adds a message to the buffer.
+     *
+     * @param message the message
+     * @param addNewline if true, a newline will be added after the message
+     * @return true if the message was added (or dropped because the buffer was full).
+     *    false if the caller should write the message itself, because
+     *    this AsyncLog is stopped or the caller is the writer thread
+     *    (e.g., the Sink logged something while it was rolling over the log file).
+     */
+    public boolean offer(String message, boolean addNewline) {
+        if (stopped || Thread.currentThread() == writerThread)
+            return false;
+        boolean waited = false;
+        while (true) {
+            long pos = tail.get();
+            int index = (int)(pos & mask);
+            long dif = sequences.get(index) - pos;
+            if (dif == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    messages[index] = message;
+                    addNewlines[index] = addNewline;
+                    sequences.set(index, pos + 1); //publish it
+                    if (writerWaiting)
+                        LockSupport.unpark(writerThread);
+                    long tSize = pos + 1 - taken;
+                    if (tSize > highWater) //not perfect, but close enough
+                        highWater = tSize;
+                    return true;
+                }
+                //else another producer just claimed pos; try again
+            } else if (dif < 0) {
+                //the buffer is full
+                if (dropIfFull) {
+                    nDropped.incrementAndGet();
+                    nDroppedNotReported.incrementAndGet();
+                    return true;
+                }
+                if (!waited) {
+                    waited = true;
+                    nWaited.incrementAndGet();
+                }
+                LockSupport.unpark(writerThread);
+                LockSupport.parkNanos(100000); //0.1 ms
+                if (stopped)
+                    return false;
+            } //else another producer just claimed pos; try again
+        }
+    }
+
+    /** The writer thread's loop. */
+    private void run() {
+        String batch[] = new String[BATCH_SIZE + 1];
+        boolean batchNewlines[] = new boolean[BATCH_SIZE + 1];
+        while (true) {
+            //take up to BATCH_SIZE messages
+            long pos = head;
+            int n = 0;
+            while (n < BATCH_SIZE) {
+                int index = (int)(pos & mask);
+                if (sequences.get(index) != pos + 1)
+                    break; //no more published messages
+                batch[n] = messages[index];
+                batchNewlines[n] = addNewlines[index];
+                messages[index] = null;
+                taken = pos + 1;
+                sequences.set(index, pos + capacity); //the slot is free again
+                pos++;
+                n++;
+            }
+            long tDropped = nDroppedNotReported.getAndSet(0);
+            if (tDropped > 0) {
+                batch[n] = "AsyncLog dropped " + tDropped +
+                    " log messages because its buffer was full.";
+                batchNewlines[n++] = true;
+            }
+
+            if (n > 0) {
+                try {
+                    sink.write(batch, batchNewlines, n);
+                } catch (Throwable t) {
+                    //eek! what should I do?
+                }
+                for (int i = 0; i < n; i++)
+                    batch[i] = null;
+                nWritten += n;
+                nBatches++;
+                head = pos; //after write(), so drain() knows they have been written
+                continue;
+            }
+
+            //nothing to write
+            if (stopped && tail.get() == head)
+                return;
+            writerWaiting = true;
+            //check again, since a producer may have published a message
+            //before it saw writerWaiting=true
+            if (sequences.get((int)(head & mask)) != head + 1)
+                LockSupport.parkNanos(100000000); //100 ms
+            writerWaiting = false;
+        }
+    }
+
+    /**
+     * This waits (up to maxMillis) until all of the messages that were
+     * in the buffer when this was called have been given to the Sink.
+     * If this is called by the writer thread, it returns right away.
+     *
+     * @param maxMillis the maximum time to wait (in milliseconds)
+     * @return true if they have all been given to the Sink
+     */
+    public boolean drain(long maxMillis) {
+        long target = tail.get();
+        if (Thread.currentThread() == writerThread)
+            return head >= target;
+        long stopTime = System.currentTimeMillis() + maxMillis;
+        while (head < target && writerThread.isAlive() &&
+               System.currentTimeMillis() < stopTime) {
+            LockSupport.unpark(writerThread);
+            LockSupport.parkNanos(100000); //0.1 ms
+        }
+        return head >= target;
+    }
+
+    /**
+     * This stops the writer thread after it has written the messages in the buffer
+     * (waiting up to maxMillis). After this, offer() returns false, so callers
+     * write their messages themselves.
+     * This is for shutting down: a message offered at the same moment
+     * that close() is called may not be written.
+     *
+     * @param maxMillis the maximum time to wait (in milliseconds)
+     * @return true if all of the messages were written and the writer thread has stopped
+     */
+    public boolean close(long maxMillis) {
+        stopped = true;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join(Math.max(1, maxMillis));
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+        return !writerThread.isAlive();
+    }
+
+    /**
+     * This returns a line with the statistics (for status.html).
+     *
+     * @return the statistics (with a newline at the end).
+     */
+    public String statistics() {
+        return "AsyncLog: capacity=" + capacity + " dropIfFull=" + dropIfFull +
+            " size=" + size() + " (highWater=" + highWater +
+            ") nWritten=" + nWritten + " nBatches=" + nBatches +
+            " nWaited=" + nWaited.get() + " nDropped=" + nDropped.get() + "\n";
+    }
+
+}
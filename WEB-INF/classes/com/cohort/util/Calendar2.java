@@ -2434,11 +2434,171 @@ public class Calendar2 {
      * @throws RuntimeException if trouble (e.g., s is null or not at least #)
      */
     public static long isoStringToMillis(String s, TimeZone timeZone) {
+        //common layouts in Zulu time zone are parsed directly (much faster)
+        if (timeZone == null || timeZone == zuluTimeZone) {
+            long millis = fastIsoZuluStringToMillis(s);
+            if (millis != Long.MAX_VALUE)
+                return millis;
+        }
         GregorianCalendar gc = parseISODateTime(
             new GregorianCalendar(timeZone == null? zuluTimeZone : timeZone), s);
         return gc.getTimeInMillis();
     }
 
+    /**
+     * This quickly converts the common layouts of ISO Zulu DateTime strings 
+     * to millis since 1970-01-01T00:00:00Z, directly from the chars, without
+     * a GregorianCalendar.
+     * The layouts are YYYY-MM-DD, optionally followed by 'T' or ' ' and
+     * HH:MM, HH:MM:SS, or HH:MM:SS.S (1 to 3 digits, '.' or ','),
+     * optionally followed by Z or a +HH:MM or -HH:MM time zone offset.
+     * The year must be 1583 - 9999 (i.e., after the change to the Gregorian calendar).
+     * The results are the same as for parseISODateTime (including its leniency,
+     * e.g., Feb 30 is converted to Mar 1 or 2).
+     *
+     * @param s the ISO Zulu DateTime string (without leading or trailing spaces) 
+     * @return the millis since 1970-01-01T00:00:00Z, or Long.MAX_VALUE if s 
+     *   doesn't have one of the common layouts (so use parseISODateTime instead).
+     */
+    private static long fastIsoZuluStringToMillis(String s) {
+        if (s == null)
+            return Long.MAX_VALUE;
+        int sLength = s.length();
+        if (sLength < 10 || sLength > 29 ||
+            s.charAt(4) != '-' || s.charAt(7) != '-')
+            return Long.MAX_VALUE;
+        int year  = parseDigits(s, 0, 4);
+        int month = parseDigits(s, 5, 2);
+        int day   = parseDigits(s, 8, 2);
+        if (year < 1583 || month < 1 || month > 12 || day < 0)
+            return Long.MAX_VALUE;
+
+        //time
+        int po = 10;
+        int hour = 0, minute = 0, second = 0, millis = 0;
+        char ch = po < sLength? s.charAt(po) : 'Z';
+        if (ch == 'T' || ch == ' ') {
+            if (sLength < 16 || s.charAt(13) != ':')
+                return Long.MAX_VALUE;
+            hour   = parseDigits(s, 11, 2);
+            minute = parseDigits(s, 14, 2);
+            if (hour < 0 || minute < 0)
+                return Long.MAX_VALUE;
+            po = 16;
+            if (po < sLength && s.charAt(po) == ':') {
+                second = parseDigits(s, po + 1, 2);
+                if (second < 0)
+                    return Long.MAX_VALUE;
+                po += 3;
+                if (po < sLength && (s.charAt(po) == '.' || s.charAt(po) == ',')) {
+                    po++;
+                    int nDigits = 0;
+                    while (po < sLength && nDigits < 4 && String2.isDigit(s.charAt(po))) {
+                        millis = millis * 10 + (s.charAt(po++) - '0');
+                        nDigits++;
+                    }
+                    if (nDigits == 0 || nDigits > 3)
+                        return Long.MAX_VALUE;
+                    for (; nDigits < 3; nDigits++)
+                        millis *= 10;
+                }
+            }
+        }
+
+        //time zone 
+        int tzHour = 0, tzMinute = 0;
+        if (po < sLength) {
+            ch = s.charAt(po);
+            if ((ch == 'Z' || ch == 'z') && po == sLength - 1) {
+                //Zulu
+            } else if ((ch == '+' || ch == '-') && po > 10 && po + 6 == sLength && 
+                s.charAt(po + 3) == ':') {
+                //(after just a date, parseISODateTime treats +HH:MM as the time)
+                tzHour   = parseDigits(s, po + 1, 2);
+                tzMinute = parseDigits(s, po + 4, 2);
+                if (tzHour < 0 || tzMinute < 0)
+                    return Long.MAX_VALUE;
+                if (ch == '-')
+                    tzHour = -tzHour;
+            } else {
+                return Long.MAX_VALUE;
+            }
+        }
+        //same adjustment as parseISODateTime
+        hour -= tzHour;
+        minute -= tzHour < 0? -tzMinute : tzMinute;
+
+        //days since 1970-01-01 (proleptic Gregorian)
+        //(see http://howardhinnant.github.io/date_algorithms.html#days_from_civil)
+        int y = month <= 2? year - 1 : year; 
+        int era = y / 400;  //y is >= 0
+        int yoe = y - era * 400;
+        int doy = (153 * (month + (month > 2? -3 : 9)) + 2) / 5 + day - 1;
+        int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        long days = era * 146097L + doe - 719468;
+
+        return ((days * 24 + hour) * 60 + minute) * 60000L + second * 1000L + millis;
+    }
+
+    /**
+     * This parses nDigits digits in s starting at po.
+     *
+     * @return the value, or -1 if s is too short or a char isn't a digit.
+     */
+    private static int parseDigits(String s, int po, int nDigits) {
+        if (po + nDigits > s.length())
+            return -1;
+        int value = 0;
+        for (int i = po; i < po + nDigits; i++) {
+            char ch = s.charAt(i);
+            if (ch < '0' || ch > '9')
+                return -1;
+            value = value * 10 + (ch - '0');
+        }
+        return value;
+    }
+
+    /**
+     * This converts a column of ISO DateTime strings to epochSeconds 
+     * (like safeIsoStringToEpochSeconds, so invalid values become NaN).
+     * The common layouts (see fastIsoZuluStringToMillis) in the Zulu time zone
+     * are parsed directly from the chars, so this is much faster than
+     * parsing each value with parseISODateTime.
+     * The result for a value which is the same as the previous value is reused.
+     *
+     * @param pa a column of ISO DateTime strings (e.g., a StringArray)
+     * @param timeZone null is interpreted as Zulu
+     * @return a new DoubleArray with the epochSeconds values
+     */
+    public static DoubleArray safeIsoStringsToEpochSeconds(PrimitiveArray pa, 
+        TimeZone timeZone) {
+
+        int n = pa.size();
+        DoubleArray da = new DoubleArray(n, false);
+        String lastS = null;
+        double lastD = Double.NaN;
+        for (int i = 0; i < n; i++) {
+            String s = pa.getString(i);
+            if (s != null && !s.equals(lastS)) {
+                lastS = s;
+                if (s.length() < 4) {
+                    lastD = Double.NaN;
+                } else {
+                    try {
+                        lastD = isoStringToMillis(s, timeZone) / 1000.0;
+                    } catch (Exception e) {
+                        lastD = Double.NaN;
+                    }
+                }
+            } else if (s == null) {
+                lastS = null;
+                lastD = Double.NaN;
+            }
+            da.add(lastD);
+        }
+        return da;
+    }
+
     /**
      * This converts millis since 1970-01-01T00:00:00Z to an ISO Zulu DateTime string.
      *
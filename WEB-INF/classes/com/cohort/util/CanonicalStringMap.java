@@ -0,0 +1,137 @@
+/* This file is Copyright (c) 2026 agent (agent@local).
+ * See the MIT/X-like license in LICENSE.txt.
+ */
+package com.cohort.util;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This holds canonical Strings (see String2.canonical) without locks:
+ * it is like a synchronized WeakHashMap&lt;String, WeakReference&lt;String&gt;&gt;,
+ * but it is based on a ConcurrentHashMap, so lookups (the common case)
+ * don't block, and adds only block other adds to the same part of the map.
+ *
+ * <p>The map's keys and values are the same WeakReference to the canonical String,
+ * so (as with the WeakHashMap) a canonical String can be garbage collected
+ * as soon as no one else is using it. The entries for collected Strings
+ * are removed the next time a String is added (or size() is called).
+ *
+ * <p>This is thread-safe.
+ */
+public class CanonicalStringMap {
+
+    /** A weak reference to a canonical String, used as the key and value in the map. */
+    private static final class Ref extends WeakReference<String> {
+        private final int hash;
+
+        Ref(String s, ReferenceQueue<String> queue) {
+            super(s, queue);
+            hash = s.hashCode();
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+
+        /** A Ref whose String has been garbage collected only equals itself. */
+        public boolean equals(Object o) {
+            if (o == this)
+                return true;
+            String s = get();
+            if (s == null)
+                return false;
+            if (o instanceof Ref)
+                return s.equals(((Ref)o).get());
+            if (o instanceof Lookup)
+                return s.equals(((Lookup)o).s);
+            return false;
+        }
+    }
+
+    /** A temporary key for looking up a String in the map. */
+    private static final class Lookup {
+        private final String s;
+
+        Lookup(String ts) {
+            s = ts;
+        }
+
+        public int hashCode() {
+            return s.hashCode();
+        }
+
+        public boolean equals(Object o) {
+            if (o instanceof Ref)
+                return s.equals(((Ref)o).get());
+            return o instanceof Lookup && s.equals(((Lookup)o).s);
+        }
+    }
+
+    private final ConcurrentHashMap<Object, Ref> map;
+    private final ReferenceQueue<String> queue = new ReferenceQueue();
+
+    /**
+     * The constructor.
+     *
+     * @param initialCapacity e.g., 10000
+     * @param concurrencyLevel the estimated number of threads that will
+     *    add Strings at the same time, e.g., 64
+     */
+    public CanonicalStringMap(int initialCapacity, int concurrencyLevel) {
+        map = new ConcurrentHashMap(initialCapacity, 0.75f, concurrencyLevel);
+    }
+
+    /**
+     * This returns the canonical String with the same characters as s,
+     * adding a copy of s to the map if needed.
+     *
+     * @param s a String (not null)
+     * @return the canonical String with the same characters as s.
+     */
+    public String canonical(String s) {
+        Ref ref = map.get(new Lookup(s));
+        if (ref != null) {
+            String canonical = ref.get();
+            if (canonical != null)
+                return canonical;
+        }
+
+        //add it
+        removeCollected();
+        //For proof that new String(s.substring(,)) is just storing relevant chars,
+        //not a reference to the parent string, see TestUtil.testString2canonical2()
+        String canonical = new String(s); //in case s is from s2.substring, copy to be just the characters
+        Ref newRef = new Ref(canonical, queue);
+        while (true) {
+            ref = map.putIfAbsent(newRef, newRef);
+            if (ref == null)
+                return canonical;
+            //another thread just added it
+            String other = ref.get();
+            if (other != null)
+                return other;
+            //but it has been garbage collected already, so ref no longer matches; try again
+        }
+    }
+
+    /** This removes the entries whose Strings have been garbage collected. */
+    private void removeCollected() {
+        Object ref;
+        while ((ref = queue.poll()) != null)
+            map.remove(ref, ref); //Ref.equals(itself) is true even after its String is collected
+    }
+
+    /**
+     * This returns the number of canonical Strings (after removing the
+     * entries for Strings which have been garbage collected).
+     *
+     * @return the number of canonical Strings
+     */
+    public int size() {
+        removeCollected();
+        return map.size();
+    }
+
+}
@@ -23,7 +23,6 @@ import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.PushbackInputStream;
 import java.io.Writer;
-import java.lang.ref.WeakReference;
 import java.lang.reflect.Method;
 import java.net.URLDecoder;
 import java.nio.charset.Charset;
@@ -44,7 +43,6 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.Set;
 import java.util.Vector;
-import java.util.WeakHashMap;
 
 import org.apache.commons.codec.binary.Base64;
 
@@ -75,6 +73,8 @@ public class String2 {
     private static int logFileSize = 0;
     public  final static int logFileDefaultMaxSize = 20000000; //20MB
     public  static int logFileMaxSize = logFileDefaultMaxSize;
+    /** If not null, lowLog gives the messages to this, to be written by its writer thread. */
+    private static volatile AsyncLog asyncLog;
 
     /**
      * This returns the line separator from
@@ -172,13 +172,8 @@ public class String2 {
 
     private static String classPath; //lazy creation by getClassPath
 
-    //splitting canonicalMap into 4 maps allows each to be bigger
-    //and makes synchronized contention less common.
-    private static Map canonicalMap[] = new Map[6];
-    static {
-        for (int i = 0; i < canonicalMap.length; i++)
-            canonicalMap[i] = new WeakHashMap();
-    }
+    //canonicalMap doesn't lock for lookups, so many threads can use canonical() at once
+    private static CanonicalStringMap canonicalMap = new CanonicalStringMap(10000, 64);
 
     //EDStatic may change this
     public static String unitTestDataDir    = "/erddapTest/";
@@ -3565,7 +3560,7 @@ public class String2 {
         logFileMaxSize = Math2.minMax(Math2.BytesPerMB, 2000000000, tLogFileMaxSize);
 
         //close the old file
-        closeLogFile(); //it synchronizes on logFileBuilder
+        closeLogFile(); //it synchronizes on logFileBuilder (and writes the asyncLog's messages)
 
         //if no file name, return
         if (fullFileName.length() == 0) {
@@ -3597,6 +3592,9 @@ public class String2 {
      * It is best if a crashing program calls this to ensure logFile is closed.
      */
     public static void closeLogFile() {
+        AsyncLog tAsyncLog = asyncLog;
+        if (tAsyncLog != null) 
+            tAsyncLog.drain(5000); //so waiting messages go to this logFile
         try {
             if (logFile == null) {
                 logFileName = null;
@@ -3615,6 +3613,45 @@ public class String2 {
         }
     }
 
+    /**
+     * This turns on (or off) asynchronous logging:
+     * after this, lowLog just puts each message in a bounded buffer
+     * and returns right away. A writer thread writes the messages
+     * (in batches) to System.out, System.err, and/or the logFile 
+     * (as specified by setupLog, with the same logFile roll over).
+     * So threads that log don't wait for each other or for the disk.
+     * The default is synchronous logging.
+     *
+     * @param bufferSize the maximum number of messages waiting to be written
+     *   (e.g., 10000), or 0 to return to synchronous logging.
+     *   If there was an asyncLog, its messages are written before this returns.
+     * @param dropIfFull determines what happens if the buffer is full:
+     *   if true, the message is dropped (and the writer thread later logs
+     *   how many messages were dropped). If false, the thread that is logging
+     *   waits until there is room.
+     */
+    public static synchronized void setupAsyncLog(int bufferSize, boolean dropIfFull) {
+        AsyncLog oAsyncLog = asyncLog;
+        if (oAsyncLog != null) {
+            oAsyncLog.close(10000); //after this, its offer() returns false, so lowLog writes synchronously
+            asyncLog = null;
+        }
+        if (bufferSize > 0) 
+            asyncLog = new AsyncLog(bufferSize, dropIfFull, 
+                (messages, addNewlines, n) -> writeLogBatch(messages, addNewlines, n));
+    }
+
+    /**
+     * This returns the asyncLog's statistics (for status.html).
+     *
+     * @return the asyncLog's statistics (with a newline at the end),
+     *   or "" if logging is synchronous.
+     */
+    public static String asyncLogStatistics() {
+        AsyncLog tAsyncLog = asyncLog;
+        return tAsyncLog == null? "" : tAsyncLog.statistics();
+    }
+
     /**
      * This returns logging to just System.out.
      */
@@ -3667,60 +3704,96 @@ http://localhost/cwexperimental/tabledap/pmelTaoDySst.htmlTable?&T_25=25
 and zoom and pan with controls in 
   http://localhost/cwexperimental/wms/erdBAssta5day/index.html
 */
+        AsyncLog tAsyncLog = asyncLog;
+        if (tAsyncLog != null && tAsyncLog.offer(message, addNewline))
+            return;
         try {
-            //write to system.out and/or logFile 
-            if (!lineSeparator.equals("\n"))
-                message = replaceAll(message, "\n", lineSeparator);
+            writeLog(message, addNewline);
+        } catch (Exception e) {
+            //eek! what should I do?
+        }
+    }
 
-            if (logToSystemOut) {
-                if (addNewline) 
-                     System.out.println(message); //it's synchronized
-                else System.out.print(  message); //it's synchronized
+    /**
+     * This writes a batch of messages (from the asyncLog's writer thread)
+     * while holding logFileLock.
+     * This will not throw an exception.
+     *
+     * @param messages the messages. Only the first n are valid.
+     * @param addNewlines indicates if a newline should be added after each message.
+     * @param n the number of messages
+     */
+    private static void writeLogBatch(String messages[], boolean addNewlines[], int n) {
+        synchronized(logFileLock) {
+            for (int i = 0; i < n; i++) {
+                try {
+                    writeLog(messages[i], addNewlines[i]);
+                } catch (Exception e) {
+                    //eek! what should I do?
+                }
             }
+        }
+    }
 
-            if (logToSystemErr) {
-                if (addNewline)
-                     System.err.println(message); //it's synchronized
-                else System.err.print(  message); //it's synchronized
-            }
+    /**
+     * This writes the message to System.out, System.err, and/or the logFile,
+     * and rolls over the logFile if it is too big.
+     *
+     * @param message the message
+     * @param addNewline if true, a newline is added after the message
+     * @throws Exception if trouble
+     */
+    private static void writeLog(String message, boolean addNewline) throws Exception {
+        //write to system.out and/or logFile 
+        if (!lineSeparator.equals("\n"))
+            message = replaceAll(message, "\n", lineSeparator);
 
-            if (logFile != null) {
-                long ctm = System.currentTimeMillis();
-                //always synchronize on logFileLock
-                synchronized(logFileLock) {
-                    //write the message to the logFile (common, fast)
-                    logFile.write(message); //non-blocking
-                    if (addNewline) 
-                        logFile.write(lineSeparator); //non-blocking
-                    logFileSize += message.length() + (addNewline? 1 : 0); //not crucial: true for Linux; underestimate if Windows
-
-                    if (logFileSize >= logFileMaxSize) {
-                        //is the file too big?
-                        //time to roll over log file to .previous
-                        //rare, slow
-                        logFile.close();
-                        logFile = null; //was: otherwise, infinite loop if File2.rename calls String2.log
-                        logFileSize = 0;
-                        File2.safeRename(logFileName, logFileName + ".previous"); //won't throw exception
+        if (logToSystemOut) {
+            if (addNewline) 
+                 System.out.println(message); //it's synchronized
+            else System.out.print(  message); //it's synchronized
+        }
+
+        if (logToSystemErr) {
+            if (addNewline)
+                 System.err.println(message); //it's synchronized
+            else System.err.print(  message); //it's synchronized
+        }
+
+        if (logFile != null) {
+            long ctm = System.currentTimeMillis();
+            //always synchronize on logFileLock
+            synchronized(logFileLock) {
+                //write the message to the logFile (common, fast)
+                logFile.write(message); //non-blocking
+                if (addNewline) 
+                    logFile.write(lineSeparator); //non-blocking
+                logFileSize += message.length() + (addNewline? 1 : 0); //not crucial: true for Linux; underestimate if Windows
+
+                if (logFileSize >= logFileMaxSize) {
+                    //is the file too big?
+                    //time to roll over log file to .previous
+                    //rare, slow
+                    logFile.close();
+                    logFile = null; //was: otherwise, infinite loop if File2.rename calls String2.log
+                    logFileSize = 0;
+                    File2.safeRename(logFileName, logFileName + ".previous"); //won't throw exception
+                    try {
+                        logFile = new BufferedWriter(new FileWriter(logFileName));
+                    } catch (Throwable t) {
+                        //try again: really bad if unable to create a new logFile
+                        Math2.gc(1000);
                         try {
                             logFile = new BufferedWriter(new FileWriter(logFileName));
-                        } catch (Throwable t) {
-                            //try again: really bad if unable to create a new logFile
-                            Math2.gc(1000);
-                            try {
-                                logFile = new BufferedWriter(new FileWriter(logFileName));
-                            } catch (Throwable t2) {
-                                System.out.println(Calendar2.getCurrentISODateTimeStringZulu() +
-                                    " ERROR: while creating new logFile=" + logFileName + "\n" +
-                                    MustBe.throwableToString(t));
-                                logFileName = null; //logFile disabled
-                            }
+                        } catch (Throwable t2) {
+                            System.out.println(Calendar2.getCurrentISODateTimeStringZulu() +
+                                " ERROR: while creating new logFile=" + logFileName + "\n" +
+                                MustBe.throwableToString(t));
+                            logFileName = null; //logFile disabled
                         }
                     }
                 }
             }
-        } catch (Exception e) {
-            //eek! what should I do?
         }
     }
 
@@ -3731,6 +3804,9 @@ and zoom and pan with controls in
      * This will not throw an exception.
      */
     public static void flushLog() {
+        AsyncLog tAsyncLog = asyncLog;
+        if (tAsyncLog != null) 
+            tAsyncLog.drain(5000);
         if (logFile != null) {
             try {
                 //always synchronize on logFileLock
@@ -5899,11 +5975,11 @@ and zoom and pan with controls in
 
 
     /** 
-     * This is like String.intern(), but uses a WeakHashMap so the canonical strings 
-     * can be garbage collected.
-     * <br>This is thread safe.
+     * This is like String.intern(), but uses a CanonicalStringMap (weak references)
+     * so the canonical strings can be garbage collected.
+     * <br>This is thread safe and lookups don't lock, so many threads can call it at once.
      * <br>It is fast: ~0.002ms per call.
-     * <br>See TestUtil.testString2canonical().
+     * <br>See TestUtil.testString2canonical() and testString2canonicalThreads().
      *
      * <p>Using this increases memory use by ~6 bytes per canonical string
      * (4 for pointer * ~.5 hashMap load factor).
@@ -5919,36 +5995,12 @@ and zoom and pan with controls in
         if (s.length() == 0)
             return "";
         //generally, it slows things down to see if same as last canonical String.
-        char ch0 = s.charAt(0);
-        Map tCanonicalMap = canonicalMap[
-            ch0 < 'A'? 0 : ch0 < 'N'? 1 : //divide uppercase into 2 parts
-            ch0 < 'a'? 2 : ch0 < 'j'? 3 : //divide lowercase into 3 parts
-            ch0 < 'r'? 4 : 5];
-       
-        //faster and logically better to synchronized(canonicalMap) once 
-        //  (and use a few times in consistent state)
-        //than to synchronize canonicalMap and lock/unlock twice
-        synchronized (tCanonicalMap) {
-            WeakReference wr = (WeakReference)tCanonicalMap.get(s);
-            //wr won't be garbage collected, but reference might (making wr.get() return null)
-            String canonical = wr == null? null : (String)(wr.get());
-            if (canonical == null) {
-                //For proof that new String(s.substring(,)) is just storing relevant chars,
-                //not a reference to the parent string, see TestUtil.testString2canonical2()
-                canonical = new String(s); //in case s is from s2.substring, copy to be just the characters
-                tCanonicalMap.put(canonical, new WeakReference(canonical));
-                //log("new canonical string: " + canonical);
-            }
-            return canonical;
-        }
+        return canonicalMap.canonical(s);
     }
 
     /** This is only used to test canonical. */
     public static int canonicalSize() {
-        int sum = 0;
-        for (int i = 0; i < canonicalMap.length; i++)
-            sum += canonicalMap[i].size();
-        return sum;
+        return canonicalMap.size();
     }
 
     /** 
@@ -4,6 +4,7 @@
  */
 package com.cohort.util;
 
+import com.cohort.array.DoubleArray;
 import com.cohort.array.StringArray;
 
 import java.awt.Color;
@@ -15,14 +16,17 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.Writer;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
+import java.util.Map;
 import java.util.Hashtable;
 import java.util.Random;
 import java.util.TimeZone;
 import java.util.Vector;
+import java.util.WeakHashMap;
 import javax.imageio.ImageIO;
 
 import java.time.format.DateTimeFormatter;
@@ -1128,6 +1132,38 @@ public class TestUtil {
             "Because file write times are very fast (see testWriteToFileSpeed()).");
     }
 
+    /** 
+     * This compares the speed of converting a column of ISO DateTime strings to 
+     * epochSeconds with Calendar2.safeIsoStringsToEpochSeconds
+     * vs. parseISODateTime for each value.
+     */
+    public static void timeIsoStringsToEpochSeconds() {
+        int n = 1000000;
+        StringArray sa = new StringArray(n, false);
+        for (int i = 0; i < n; i++) //different values, since identical values are reused
+            sa.add(Calendar2.epochSecondsToIsoStringT(1e9 + i * 61.5) + (i % 2 == 0? "Z" : ".500Z"));
+
+        for (int attempt = 0; attempt < 3; attempt++) {
+            Math2.gcAndWait(); //in a test
+            long time1 = System.currentTimeMillis();
+            GregorianCalendar gc = Calendar2.newGCalendarZulu();
+            DoubleArray da1 = new DoubleArray(n, false);
+            for (int i = 0; i < n; i++) 
+                da1.add(Calendar2.parseISODateTime(gc, sa.get(i)).getTimeInMillis() / 1000.0);
+            time1 = System.currentTimeMillis() - time1;
+
+            Math2.gcAndWait(); //in a test
+            long time2 = System.currentTimeMillis();
+            DoubleArray da2 = Calendar2.safeIsoStringsToEpochSeconds(sa, null);
+            time2 = System.currentTimeMillis() - time2;
+
+            Test.ensureTrue(da1.equals(da2), "");
+            String2.log("TestUtil.timeIsoStringsToEpochSeconds n=" + n + 
+                " parseISODateTime time=" + time1 + "ms (typical=650ms)" + 
+                " safeIsoStringsToEpochSeconds time=" + time2 + "ms (typical=70ms)");
+        }
+    }
+
 
     /**
      * Test String2LogOutputStream.
@@ -4066,6 +4102,24 @@ expected =
             String2.log("Shouldn't get here.63"); Math2.sleep(60000);
         } catch (Exception e) {
         }
+
+        //the common layouts (parsed directly) must match parseISODateTime 
+        String isoSar[] = {"2005-08-31", "2005-08-31T16:01", "2005-08-31T16:01:02", 
+            "2005-08-31 16:01:02", "2005-08-31T16:01:02Z", "2005-08-31T16:01:02z",
+            "2005-08-31T16:01:02.5", "2005-08-31T16:01:02,05Z", "2005-08-31T16:01:02.123Z",
+            "2005-08-31T16:01:02.1234Z", "2005-08-31T16:01:02-07:00", "2005-08-31T16:01+05:30", 
+            "2005-08-31T16:01:02.123-00:30", "2005-08-31+05:00", "2005-02-30T25:61:61", 
+            "2004-02-29", "2000-03-01", "1900-03-01", "1583-01-01", "1582-12-31", 
+            "9999-12-31T23:59:59.999Z", "2005-8-31", "2005-08-31T16:01:02 UTC"};
+        for (int i = 0; i < isoSar.length; i++) 
+            Test.ensureEqual(Calendar2.isoZuluStringToMillis(isoSar[i]), 
+                Calendar2.parseISODateTime(Calendar2.newGCalendarZulu(), isoSar[i]).getTimeInMillis(), 
+                "isoSar[" + i + "]=" + isoSar[i]);
+        Test.ensureEqual(
+            Calendar2.safeIsoStringsToEpochSeconds(new StringArray(new String[]{
+                "2005-08-31T16:01:02Z", "2005-08-31T16:01:02Z", "", "bob", "2005-08-31T16:01:02.5-01:00"}), 
+                null).toString(),
+            "1.125504062E9, 1.125504062E9, NaN, NaN, 1.1255076625E9", "");
         Test.ensureEqual(Calendar2.epochSecondsToIsoStringT(1125504062.0), "2005-08-31T16:01:02", "x2");
         try {
             Calendar2.epochSecondsToIsoStringT(Double.NaN);
@@ -5152,6 +5206,187 @@ expected =
         }
     }
 
+    /**
+     * This tests String2.canonical() (and CanonicalStringMap) with many threads at once:
+     * all threads must get the same canonical Strings. 
+     * This also compares the speed with a synchronized WeakHashMap (the old approach).
+     */
+    public static void testString2canonicalThreads() throws Exception {
+        String2.log("\n*** TestUtil.testString2canonicalThreads()");
+
+        //CanonicalStringMap basics
+        CanonicalStringMap csm = new CanonicalStringMap(16, 4);
+        int i1 = 1;
+        String a = csm.canonical("test" + i1);
+        Test.ensureEqual(a, "test1", "");
+        Test.ensureTrue(csm.canonical("test" + i1) == a, "");
+        String sub = ("0123456789" + i1).substring(2, 5);
+        String c = csm.canonical(sub);
+        Test.ensureEqual(c, "234", "");
+        Test.ensureTrue(c != sub, ""); //a copy
+        Test.ensureTrue(csm.canonical(sub) == c, "");
+        Test.ensureEqual(csm.size(), 2, "");
+        a = null;
+        c = null;
+        Math2.gcAndWait(); Math2.gcAndWait(); //aggressive //in a test
+        Test.ensureEqual(csm.size(), 0, "canonical Strings weren't garbage collected");
+
+        //many threads at once
+        final int nThreads = 64;
+        final int nStrings = 1000;  //different Strings
+        final int nCalls = 100000;  //per thread
+        final String pool[] = new String[nStrings];
+        for (int i = 0; i < nStrings; i++) 
+            pool[i] = "station_" + i + "_testString2canonicalThreads";
+        final String results[][] = new String[nThreads][nStrings];
+        final Map oldMap = new WeakHashMap();
+        for (int method = 0; method < 2; method++) { //0=String2.canonical, 1=old synchronized WeakHashMap
+            final int fMethod = method;
+            Thread threads[] = new Thread[nThreads];
+            for (int t = 0; t < nThreads; t++) {
+                final int ft = t;
+                threads[t] = new Thread(() -> {
+                    for (int i = 0; i < nCalls; i++) {
+                        int j = (i * 7 + ft) % nStrings;
+                        String s = new String(pool[j]); //a different String object each time
+                        if (fMethod == 0) {
+                            results[ft][j] = String2.canonical(s);
+                        } else {
+                            synchronized (oldMap) {
+                                WeakReference wr = (WeakReference)oldMap.get(s);
+                                String cs = wr == null? null : (String)(wr.get());
+                                if (cs == null) {
+                                    cs = new String(s); 
+                                    oldMap.put(cs, new WeakReference(cs));
+                                }
+                                results[ft][j] = cs;
+                            }
+                        }
+                    }
+                });
+            }
+            long time = System.currentTimeMillis();
+            for (int t = 0; t < nThreads; t++) 
+                threads[t].start();
+            for (int t = 0; t < nThreads; t++) 
+                threads[t].join();
+            time = System.currentTimeMillis() - time;
+            String2.log((method == 0? "String2.canonical" : "synchronized WeakHashMap") + 
+                ": nThreads=" + nThreads + " nCalls=" + (nThreads * (long)nCalls) + 
+                " time=" + time + "ms");
+
+            //all threads got the same canonical Strings
+            for (int j = 0; j < nStrings; j++) {
+                Test.ensureEqual(results[0][j], pool[j], "j=" + j);
+                for (int t = 1; t < nThreads; t++) 
+                    Test.ensureTrue(results[t][j] == results[0][j], "t=" + t + " j=" + j);
+            }
+        }
+    }
+
+    /**
+     * Test AsyncLog and String2.setupAsyncLog.
+     */
+    public static void testAsyncLog() throws Exception {
+        String2.log("\n*** TestUtil.testAsyncLog()");
+
+        //many threads at once: all messages written, in order (per thread), in batches
+        final int nThreads = 8;
+        final int nMessages = 20000; //per thread
+        final StringBuilder sb = new StringBuilder();
+        final int maxBatch[] = new int[1];
+        AsyncLog asyncLog = new AsyncLog(1000, false, (messages, addNewlines, n) -> {
+            for (int i = 0; i < n; i++) {
+                sb.append(messages[i]);
+                if (addNewlines[i])
+                    sb.append('\n');
+            }
+            maxBatch[0] = Math.max(maxBatch[0], n);
+        });
+        Test.ensureEqual(asyncLog.capacity(), 1024, "");
+        Thread threads[] = new Thread[nThreads];
+        for (int t = 0; t < nThreads; t++) {
+            final int ft = t;
+            final AsyncLog fAsyncLog = asyncLog;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < nMessages; i++) 
+                    Test.ensureTrue(fAsyncLog.offer(ft + "_" + i, true), "");
+            });
+        }
+        long time = System.currentTimeMillis();
+        for (int t = 0; t < nThreads; t++) 
+            threads[t].start();
+        for (int t = 0; t < nThreads; t++) 
+            threads[t].join();
+        Test.ensureTrue(asyncLog.drain(10000), "");
+        time = System.currentTimeMillis() - time;
+        String2.log("AsyncLog: nThreads=" + nThreads + " nMessages=" + (nThreads * nMessages) + 
+            " time=" + time + "ms maxBatch=" + maxBatch[0] + "\n" + asyncLog.statistics());
+        Test.ensureTrue(asyncLog.close(10000), "");
+        Test.ensureTrue(!asyncLog.offer("after close", true), "");
+        String lines[] = String2.split(sb.toString(), '\n');
+        Test.ensureEqual(lines.length, nThreads * nMessages + 1, ""); //+1 for "" after last \n
+        int next[] = new int[nThreads];
+        for (int i = 0; i < lines.length - 1; i++) {
+            int po = lines[i].indexOf('_');
+            int t = String2.parseInt(lines[i].substring(0, po));
+            Test.ensureEqual(String2.parseInt(lines[i].substring(po + 1)), next[t]++, "line=" + lines[i]);
+        }
+        Test.ensureTrue(maxBatch[0] > 1, "");
+
+        //dropIfFull: a slow sink, so messages are dropped (and that is reported)
+        sb.setLength(0);
+        asyncLog = new AsyncLog(4, true, (messages, addNewlines, n) -> {
+            Math2.sleep(50);
+            for (int i = 0; i < n; i++) 
+                sb.append(messages[i] + "\n");
+        });
+        for (int i = 0; i < 100; i++) 
+            Test.ensureTrue(asyncLog.offer("m" + i, true), "");
+        long nDropped = asyncLog.nDropped();
+        Test.ensureTrue(nDropped > 0, "");
+        Test.ensureTrue(asyncLog.drain(10000), "");
+        Test.ensureTrue(asyncLog.close(10000), "");
+        String results = sb.toString();
+        Test.ensureTrue(results.indexOf("AsyncLog dropped ") >= 0, "results=" + results);
+        Test.ensureEqual(String2.countAll(results, "\nm") + (results.startsWith("m")? 1 : 0), 
+            100 - nDropped, "results=" + results);
+
+        //String2.setupAsyncLog, including roll over of the logFile
+        String oLogFileName = String2.logFileName();
+        String fileName = File2.getSystemTempDirectory() + "TestUtilTestAsyncLog.txt";
+        File2.delete(fileName);
+        File2.delete(fileName + ".previous");
+        String2.setupLog(false, false, fileName, false, Math2.BytesPerMB);
+        String2.setupAsyncLog(1000, false);
+        for (int t = 0; t < nThreads; t++) {
+            final int ft = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 2000; i++) 
+                    String2.log("This is message #" + i + " from thread #" + ft + 
+                        ", which makes the log file big enough to be rolled over.");
+            });
+        }
+        for (int t = 0; t < nThreads; t++) 
+            threads[t].start();
+        for (int t = 0; t < nThreads; t++) 
+            threads[t].join();
+        String2.flushLog();
+        String stats = String2.asyncLogStatistics();
+        Test.ensureTrue(stats.startsWith("AsyncLog: capacity=1024 dropIfFull=false"), "stats=" + stats);
+        String2.setupAsyncLog(0, false);
+        Test.ensureEqual(String2.asyncLogStatistics(), "", "");
+        String2.setupLog(true, false, oLogFileName == null? "" : oLogFileName, true, 
+            String2.logFileDefaultMaxSize);
+        Test.ensureTrue(File2.isFile(fileName + ".previous"), "");
+        results = String2.readFromFile(fileName + ".previous")[1] + 
+                  String2.readFromFile(fileName)[1];
+        Test.ensureEqual(String2.countAll(results, "which makes the log file big enough"), 
+            nThreads * 2000, "");
+        File2.delete(fileName);
+        File2.delete(fileName + ".previous");
+    }
+
     /** Test the speed of writing to hard drive. Does it block? No */
     public static void testFileWriteSpeed() throws Exception {
         String fileName = "c:/temp/TestUtilTestFileSpeed.txt";  
@@ -5209,6 +5444,8 @@ expected =
         testString2();
         testString2canonical();
         testString2canonical2();
+        testString2canonicalThreads();
+        testAsyncLog();
         testString2LogOutputStream();
         testByteIndexOf();
         testFile2();
@@ -5219,6 +5456,7 @@ expected =
         LRUCache.test();
         timeCurrentTimeMillis();
         timeString2Log();
+        timeIsoStringsToEpochSeconds();
         String2.log("\nAll TestUtil tests successfully completed in " +
             (System.currentTimeMillis() - time) + " ms.");
 
@@ -148,18 +148,20 @@ public class BytePrimitiveVector extends PrimitiveVector implements Cloneable {
     // number of bytes to pad
     int pad = (modFour != 0) ? (4-modFour) : 0;
 
-    for(int i=0; i<vals.length; i++) {
-      vals[i] = source.readByte();
+    // the bytes need no conversion, so read them straight into vals
+    for(int i=0; i<vals.length; ) {
+      int n = Math.min(CHUNK_BYTES, vals.length - i);
+      source.readFully(vals, i, n);
+      i += n;
       if (statusUI != null) {
-        statusUI.incrementByteCount(1);
+        statusUI.incrementByteCount(n);
         if (statusUI.userCancelled())
           throw new DataReadException("User cancelled");
       }
     }
     // pad out to a multiple of four bytes
-    byte unused;
-    for(int i=0; i<pad; i++)
-      unused = source.readByte();
+    if (pad > 0)
+      source.readFully(new byte[pad]);
     if (statusUI != null)
       statusUI.incrementByteCount(pad);
   }
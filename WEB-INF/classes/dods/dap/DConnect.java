@@ -15,6 +15,10 @@ import com.cohort.util.String2;
 import java.net.*;
 import java.io.*;
 import dods.dap.parser.ParseException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.zip.InflaterInputStream;
 import gov.noaa.pfel.coastwatch.util.SSR;
 
@@ -26,6 +30,19 @@ import gov.noaa.pfel.coastwatch.util.SSR;
  * Unlike its C++ counterpart, this class does not store instances of the DAS,
  * DDS, etc. objects. Rather, the methods <code>getDAS</code>, etc. return
  * instances of those objects.
+ * <p>
+ * Connections to HTTP servers are reused: after a response has been read,
+ * the stream is closed but the connection isn't disconnected, so Java's
+ * HttpURLConnection keeps the socket alive (see the http.keepAlive and
+ * http.maxConnections system properties) and the next request to the same
+ * host (from any DConnect) doesn't pay for a new TCP (and TLS) handshake.
+ * The number of simultaneous connections to each host (from all DConnects
+ * in this JVM) is limited by setMaxConnectionsPerHost, except for the local
+ * host (see addLocalHost), since a request to this ERDDAP (e.g., from an
+ * EDDGridFromErddap which uses another dataset in this ERDDAP) may be
+ * waiting for a request which can't get a connection.
+ * A request waits at most setMaxConnectionWaitMillis for a connection,
+ * then connects anyway.
  *
  * @version $Revision: 1.9 $
  * @author jehamby
@@ -37,6 +54,29 @@ public class DConnect {
  
   private boolean dumpStream = false, dumpDAS = false;
 
+  //the per-host connection limit
+  /** The maximum number of simultaneous connections to one host. */
+  private static volatile int maxConnectionsPerHost = 4;
+
+  /** The maximum time (in ms) to wait for a free connection to a host. */
+  private static volatile long maxConnectionWaitMillis = 30000;
+
+  /** protocol://host:port -&gt; the Semaphore which limits the connections to it. */
+  private static final ConcurrentHashMap<String, Semaphore> hostPermits = 
+      new ConcurrentHashMap();
+
+  /** The default names of the local host (see setLocalHosts). */
+  public static final String DEFAULT_LOCAL_HOSTS[] = {"localhost", "127.0.0.1", "[::1]"};
+
+  /** The (lowercase) names of the local host, whose connections aren't limited. */
+  private static final Set<String> localHosts = ConcurrentHashMap.newKeySet();
+  static {
+      setLocalHosts(DEFAULT_LOCAL_HOSTS);
+  }
+
+  /** The host permit held by the current connection (or null if none). */
+  private Semaphore permit;
+
   /** InputStream to use for connection to a file instead of a remote host. */
   private InputStream fileStream;
 
@@ -202,6 +242,163 @@ public class DConnect {
       getDataMaxRetry = Math.max(1, maxRetry);
   }
 
+  /**
+   * This sets the maximum number of simultaneous connections 
+   * (from all DConnects in this JVM) to one host (default=4).
+   * Requests beyond that wait for a connection to be freed.
+   * This only affects hosts which haven't been connected to yet.
+   *
+   * @param max the maximum (values &lt;1 are treated as 1)
+   */
+  public static void setMaxConnectionsPerHost(int max) {
+      maxConnectionsPerHost = Math.max(1, max);
+      hostPermits.clear(); //connections in progress release their old permits
+  }
+
+  /**
+   * This returns the maximum number of simultaneous connections to one host.
+   *
+   * @return the maximum number of simultaneous connections to one host.
+   */
+  public static int getMaxConnectionsPerHost() {
+      return maxConnectionsPerHost;
+  }
+
+  /**
+   * This sets the maximum time to wait for a free connection to a host
+   * (default=30000 ms). After that, the request connects anyway.
+   *
+   * @param millis the maximum time (in ms)
+   */
+  public static void setMaxConnectionWaitMillis(long millis) {
+      maxConnectionWaitMillis = Math.max(0, millis);
+  }
+
+  /**
+   * This adds the host of a URL (e.g., EDStatic.baseUrl) to the names
+   * of the local host, whose connections aren't limited by setMaxConnectionsPerHost.
+   * By default, localhost, 127.0.0.1, and [::1] are local (see setLocalHosts).
+   *
+   * @param urlString a URL, e.g., http://coastwatch.pfeg.noaa.gov:8080 .
+   *    Invalid URLs are ignored.
+   */
+  public static void addLocalHost(String urlString) {
+      try {
+          String host = new URL(urlString).getHost();
+          if (host != null && host.length() > 0)
+              localHosts.add(host.toLowerCase());
+      } catch (Throwable t) {
+          //e.g., baseHttpsUrl is "(not specified)"
+      }
+  }
+
+  /**
+   * This replaces the names of the local host, whose connections aren't limited 
+   * by setMaxConnectionsPerHost (e.g., so a test can limit the connections 
+   * to a server on 127.0.0.1).
+   *
+   * @param hosts the host names (e.g., DEFAULT_LOCAL_HOSTS). 
+   *    An empty array means that no host is exempt.
+   */
+  public static synchronized void setLocalHosts(String hosts[]) {
+      localHosts.clear();
+      for (int i = 0; i < hosts.length; i++)
+          localHosts.add(hosts[i].toLowerCase());
+  }
+
+  /**
+   * This returns the names of the local host (see setLocalHosts and addLocalHost).
+   *
+   * @return the (lowercase) host names
+   */
+  public static String[] getLocalHosts() {
+      return localHosts.toArray(new String[0]);
+  }
+
+  /**
+   * This returns the number of connections to a URL's host which are
+   * available now (without waiting).
+   *
+   * @param urlString a URL
+   * @return the number of connections to the URL's host which are available now 
+   *   (Integer.MAX_VALUE if the host is local, or getMaxConnectionsPerHost()
+   *   if the URL is invalid).
+   */
+  public static int availableConnections(String urlString) {
+      try {
+          URL url = new URL(urlString);
+          if (localHosts.contains(url.getHost().toLowerCase()))
+              return Integer.MAX_VALUE;
+          Semaphore sem = hostPermits.get(hostKey(url));
+          return sem == null? maxConnectionsPerHost : sem.availablePermits();
+      } catch (Throwable t) {
+          return maxConnectionsPerHost;
+      }
+  }
+
+  /** This returns the hostPermits key for a URL: protocol://host:port . */
+  private static String hostKey(URL url) {
+      return url.getProtocol() + "://" + url.getHost() + ":" + url.getPort();
+  }
+
+  /**
+   * This waits (up to maxConnectionWaitMillis) for a free connection to the url's host
+   * (unless the host is local).
+   * The caller must call closeConnection when done.
+   *
+   * @param url the URL to be opened.
+   * @exception DODSException if this thread is interrupted while waiting.
+   */
+  private void acquirePermit(URL url) throws DODSException {
+    String host = url.getHost();
+    if (host == null || localHosts.contains(host.toLowerCase()))
+      return;
+    String key = hostKey(url);
+    Semaphore sem = hostPermits.get(key);
+    if (sem == null) {
+      Semaphore newSem = new Semaphore(maxConnectionsPerHost, true); //fair
+      sem = hostPermits.putIfAbsent(key, newSem);
+      if (sem == null)
+        sem = newSem;
+    }
+    try {
+      if (!sem.tryAcquire(maxConnectionWaitMillis, TimeUnit.MILLISECONDS)) {
+        //don't wait forever (e.g., if the other connections are stuck)
+        String2.log("DConnect waited " + maxConnectionWaitMillis + 
+          "ms for a connection to " + key + ". Connecting anyway.");
+        return;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new DODSException("Interrupted while waiting for a connection to " + key);
+    }
+    permit = sem;
+  }
+
+  /**
+   * This closes the stream from the current connection and releases its host permit.
+   *
+   * @param is the stream (may be null)
+   * @param reuse true if the response was read successfully, so the 
+   *    connection can be kept alive and reused. 
+   *    If false, an HTTP connection is disconnected.
+   */
+  private void closeConnection(InputStream is, boolean reuse) {
+    try {
+      if (is != null)
+        is.close();
+      if (!reuse && connection instanceof HttpURLConnection)
+        ((HttpURLConnection)connection).disconnect();
+    } catch (Throwable t) {
+      String2.log("caught: " + MustBe.throwableToString(t));
+    } finally {
+      if (permit != null) {
+        permit.release();
+        permit = null;
+      }
+    }
+  }
+
   /**
    * Open a connection to the DODS server.
    * @param url the URL to open.
@@ -216,6 +413,7 @@ public class DConnect {
 //bob simons made variant which may call setReadTimeout:
   /**
    * Open a connection to the DODS server.
+   * If this succeeds, the caller must call closeConnection when done.
    * @param url the URL to open.
    * @param readTimeOutMillis if greater than 0, this calls connection.setReadTimeout(readTimeOutMillis).
    *    If &lt;=0, it uses the default (currently 10 minutes). (in ms)
@@ -225,6 +423,7 @@ public class DConnect {
    */
   private InputStream openConnection(URL url, int readTimeOutMillis) throws IOException, DODSException {
 
+    acquirePermit(url);
     InputStream is = null;
     try {
         //this always asks for and accepts compression
@@ -233,14 +432,23 @@ public class DConnect {
         connection = (URLConnection)object[0];
         is = (InputStream)object[1];
     } catch (Exception e) {
+        closeConnection(null, false);
         String2.log(MustBe.throwableToString(e));
         throw new DODSException("Connection cannot be opened");
     }
 
     // check headers
-    String type = connection.getHeaderField("content-description");
-    // System.err.println("Content Description: " + type);
-    handleContentDesc(is, type);
+    try {
+      String type = connection.getHeaderField("content-description");
+      // System.err.println("Content Description: " + type);
+      handleContentDesc(is, type);
+    } catch (IOException e) {
+      closeConnection(is, false);
+      throw e;
+    } catch (DODSException e) {
+      closeConnection(is, false);
+      throw e;
+    }
 
     ver = new ServerVersion(connection.getHeaderField("xdods-server"));
     //System.err.println("Server: " + ver + ": " + ver.getMajor() + "," +
@@ -365,16 +573,14 @@ public class DConnect {
       is = openConnection(url, timeOutMillis); //the changed part
     }
     DAS das = new DAS();
+    boolean ok = false;
     try {
       das.parse(is);
+      ok = true;
     } finally {
-      try { //bob added 2016-10-03 
-        is.close();  // stream is always closed even if parse() throws exception
-        if (connection instanceof HttpURLConnection)
-          ((HttpURLConnection)connection).disconnect();
-      } catch (Throwable t) {
-          String2.log("caught: " + MustBe.throwableToString(t));
-      }
+      //bob added 2016-10-03: stream is always closed even if parse() throws exception
+      //If success, the connection is kept alive for reuse.
+      closeConnection(is, ok);
     }
     return das;
   }
@@ -422,16 +628,14 @@ public class DConnect {
       is = openConnection(url, timeOutMillis); //bob simons added 
     }
     DDS dds = new DDS();
+    boolean ok = false;
     try {
       dds.parse(is);
+      ok = true;
     } finally {
-      try { //bob added 2016-10-03 
-        is.close();  // stream is always closed even if parse() throws exception
-        if (connection instanceof HttpURLConnection)
-          ((HttpURLConnection)connection).disconnect();
-      } catch (Throwable t) {
-          String2.log("caught: " + MustBe.throwableToString(t));
-      }
+      //bob added 2016-10-03: stream is always closed even if parse() throws exception
+      //If success, the connection is kept alive for reuse.
+      closeConnection(is, ok);
     }
     return dds;
   }
@@ -533,6 +737,7 @@ public class DConnect {
 
     InputStream is = openConnection(url);
     DataDDS dds = new DataDDS(ver, btf);
+    boolean ok = false;
 
     // DEBUG
     ByteArrayInputStream bis = null;
@@ -564,6 +769,7 @@ public class DConnect {
       }
 
       dds.readData(is, statusUI); // read the data!
+      ok = true;
 
     } catch (Exception e) {
       String2.log("DConnect dds.parse: "+url+"\n "+e);
@@ -591,9 +797,9 @@ public class DConnect {
       throw new DODSException("Connection cannot be read "+url);
 
     } finally {
-      is.close();  // stream is always closed even if parse() throws exception
-      if (connection instanceof HttpURLConnection)
-        ((HttpURLConnection)connection).disconnect();
+      // stream is always closed even if parse() throws exception
+      // If success, the connection is kept alive for reuse.
+      closeConnection(is, ok);
     }
 
     return dds;
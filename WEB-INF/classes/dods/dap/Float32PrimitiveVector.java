@@ -158,13 +158,11 @@ public class Float32PrimitiveVector extends PrimitiveVector implements Cloneable
                                        ServerVersion sv,
                                        StatusUI statusUI)
        throws IOException, EOFException, DataReadException {
-    for(int i=0; i<vals.length; i++) {
-      vals[i] = source.readFloat();
-      if (statusUI != null) {
-        statusUI.incrementByteCount(8);
-        if (statusUI.userCancelled())
-          throw new DataReadException("User cancelled");
-      }
+    int perChunk = CHUNK_BYTES / 4;
+    for(int i=0; i<vals.length; ) {
+      int n = Math.min(perChunk, vals.length - i);
+      readChunk(source, n * 4, statusUI).asFloatBuffer().get(vals, i, n);
+      i += n;
     }
   }
 
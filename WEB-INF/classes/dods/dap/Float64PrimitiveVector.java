@@ -140,13 +140,11 @@ public class Float64PrimitiveVector extends PrimitiveVector implements Cloneable
                                        ServerVersion sv,
                                        StatusUI statusUI)
        throws IOException, EOFException, DataReadException {
-    for(int i=0; i<vals.length; i++) {
-      vals[i] = source.readDouble();
-      if (statusUI != null) {
-        statusUI.incrementByteCount(8);
-        if (statusUI.userCancelled())
-          throw new DataReadException("User cancelled");
-      }
+    int perChunk = CHUNK_BYTES / 8;
+    for(int i=0; i<vals.length; ) {
+      int n = Math.min(perChunk, vals.length - i);
+      readChunk(source, n * 8, statusUI).asDoubleBuffer().get(vals, i, n);
+      i += n;
     }
   }
 
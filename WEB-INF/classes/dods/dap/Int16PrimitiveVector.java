@@ -31,6 +31,7 @@
 
 package dods.dap;
 import java.io.*;
+import java.nio.IntBuffer;
 
 /**
  * A vector of shorts. (as in 16bit ints :)
@@ -160,13 +161,14 @@ public class Int16PrimitiveVector extends PrimitiveVector implements Cloneable {
                                        ServerVersion sv,
                                        StatusUI statusUI)
        throws IOException, EOFException, DataReadException {
-    for(int i=0; i<vals.length; i++) {
-      vals[i] = (short)source.readInt();
-      if (statusUI != null) {
-        statusUI.incrementByteCount(4);
-        if (statusUI.userCancelled())
-          throw new DataReadException("User cancelled");
-      }
+    int perChunk = CHUNK_BYTES / 4;
+    for(int i=0; i<vals.length; ) {
+      int n = Math.min(perChunk, vals.length - i);
+      //each value is sent as a 4-byte int
+      IntBuffer ib = readChunk(source, n * 4, statusUI).asIntBuffer();
+      for(int j=0; j<n; j++)
+        vals[i + j] = (short)ib.get(j);
+      i += n;
     }
   }
 
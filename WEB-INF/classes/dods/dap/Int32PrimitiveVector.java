@@ -140,13 +140,11 @@ public class Int32PrimitiveVector extends PrimitiveVector implements Cloneable {
                                        ServerVersion sv,
                                        StatusUI statusUI)
        throws IOException, EOFException, DataReadException {
-    for(int i=0; i<vals.length; i++) {
-      vals[i] = source.readInt();
-      if (statusUI != null) {
-        statusUI.incrementByteCount(4);
-        if (statusUI.userCancelled())
-          throw new DataReadException("User cancelled");
-      }
+    int perChunk = CHUNK_BYTES / 4;
+    for(int i=0; i<vals.length; ) {
+      int n = Math.min(perChunk, vals.length - i);
+      readChunk(source, n * 4, statusUI).asIntBuffer().get(vals, i, n);
+      i += n;
     }
   }
 
@@ -11,6 +11,8 @@
 
 package dods.dap;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 import dods.dap.Server.*;
 
@@ -35,6 +37,15 @@ abstract public class PrimitiveVector implements ClientIO, Cloneable {
    */
   private BaseType var;
 
+  /**
+   * The maximum number of bytes that <code>readChunk</code> reads at once.
+   * <code>StatusUI</code> is updated and checked once per chunk.
+   */
+  protected static final int CHUNK_BYTES = 65536;
+
+  /** The reusable buffer for <code>readChunk</code> (lazily allocated). */
+  private byte[] chunk;
+
   /**
    * Constructs a new <code>PrimitiveVector</code>.
    * @param var the template <code>BaseType</code> to use.
@@ -53,6 +64,7 @@ abstract public class PrimitiveVector implements ClientIO, Cloneable {
     try {
       PrimitiveVector v = (PrimitiveVector)super.clone();
       v.var = (BaseType)var.clone();
+      v.chunk = null; //don't share the reusable buffer
       return v;
     }
     catch (CloneNotSupportedException e) {
@@ -70,6 +82,37 @@ abstract public class PrimitiveVector implements ClientIO, Cloneable {
     return var;
   }
 
+  /**
+   * Reads the next <code>nBytes</code> (at most <code>CHUNK_BYTES</code>)
+   * from the source into a reusable buffer and returns a big-endian
+   * <code>ByteBuffer</code> view of them, so that the subclasses'
+   * <code>deserialize</code> methods can decode a whole chunk of values at once
+   * (e.g., via <code>asFloatBuffer().get(vals, offset, n)</code>)
+   * instead of reading one value at a time.
+   *
+   * @param source a <code>DataInputStream</code> to read from.
+   * @param nBytes the number of bytes to read.
+   * @param statusUI The <code>StatusUI</code> object to use for GUI updates
+   *    and user cancellation notification (may be null).
+   * @return a big-endian view of the bytes that were read.
+   * @exception DataReadException if the user cancels the download.
+   * @exception EOFException if EOF is found before nBytes are read.
+   * @exception IOException thrown on any other InputStream exception.
+   */
+  protected final ByteBuffer readChunk(DataInputStream source, int nBytes,
+                                       StatusUI statusUI)
+       throws IOException, EOFException, DataReadException {
+    if (chunk == null)
+      chunk = new byte[CHUNK_BYTES];
+    source.readFully(chunk, 0, nBytes);
+    if (statusUI != null) {
+      statusUI.incrementByteCount(nBytes);
+      if (statusUI.userCancelled())
+        throw new DataReadException("User cancelled");
+    }
+    return ByteBuffer.wrap(chunk, 0, nBytes).order(ByteOrder.BIG_ENDIAN);
+  }
+
   /**
    * Returns the number of elements in the array.
    * @return the number of elements in the array.
@@ -0,0 +1,184 @@
+/////////////////////////////////////////////////////////////////////////////
+// Please read the full copyright notice in the file COPYRIGHT
+// in this directory.
+/////////////////////////////////////////////////////////////////////////////
+
+package dods.dap.test;
+import java.io.*;
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import dods.dap.*;
+
+/**
+ * Round-trip tests for the PrimitiveVector decoders: each vector is
+ * externalized and then deserialized into a new vector, which must hold
+ * the same values and must consume exactly the bytes that were written.
+ * The decoders read the data in 65536 byte chunks
+ * (see PrimitiveVector.CHUNK_BYTES), so the lengths include payloads
+ * smaller than one chunk, exactly one chunk, and several chunks
+ * with a partial final chunk.
+ */
+public class vector_test {
+
+    /** PrimitiveVector.CHUNK_BYTES (which is protected). */
+    private static final int CHUNK_BYTES = 65536;
+
+    /** The end-of-data marker written after each vector. */
+    private static final int SENTINEL = 0x5EED1234;
+
+    public static void main(String args[]) throws Exception {
+        ServerVersion sv = new ServerVersion(3, 2);
+        int nTests = 0;
+        for (int type = 0; type < 7; type++) {
+            int wireSize = type == 0? 1 : type == 6? 8 : 4;
+            int perChunk = CHUNK_BYTES / wireSize;
+            int lengths[] = {0, 1, 5, perChunk - 1, perChunk, perChunk + 1,
+                2 * perChunk + 123};
+            for (int li = 0; li < lengths.length; li++) {
+                roundTrip(type, lengths[li], sv);
+                nTests++;
+            }
+        }
+        testCancel(sv);
+        System.out.println("vector_test: " + nTests + " round trips PASS");
+    }
+
+    /** Makes an empty vector of the specified type (0=Byte ... 6=Float64). */
+    private static PrimitiveVector makeVector(int type) {
+        switch (type) {
+            case 0: return new BytePrimitiveVector(new DByte());
+            case 1: return new Int16PrimitiveVector(new DInt16());
+            case 2: return new UInt16PrimitiveVector(new DUInt16());
+            case 3: return new Int32PrimitiveVector(new DInt32());
+            case 4: return new UInt32PrimitiveVector(new DUInt32());
+            case 5: return new Float32PrimitiveVector(new DFloat32());
+            default: return new Float64PrimitiveVector(new DFloat64());
+        }
+    }
+
+    /**
+     * Makes a vector of the specified type and length with distinctive values
+     * (including negative values, the extremes of the type, and NaN).
+     */
+    private static PrimitiveVector makeFilledVector(int type, int n) {
+        PrimitiveVector pv = makeVector(type);
+        pv.setLength(n);
+        Object vals = pv.getInternalStorage();
+        for (int i = 0; i < n; i++) {
+            int k = i * 7919 - 12345;
+            switch (type) {
+                case 0: ((byte[])vals)[i] = (byte)k; break;
+                case 1: case 2: ((short[])vals)[i] = (short)(i == 1? Short.MIN_VALUE : k); break;
+                case 3: case 4: ((int[])vals)[i] = i == 1? Integer.MIN_VALUE : k * 65537; break;
+                case 5: ((float[])vals)[i] = i == 1? Float.NaN : k / 3.0f; break;
+                default: ((double[])vals)[i] = i == 1? Double.NaN : k / 3.0; break;
+            }
+        }
+        return pv;
+    }
+
+    /** Returns the bytes written by externalize (followed by SENTINEL). */
+    private static byte[] externalize(PrimitiveVector pv) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(baos);
+        pv.externalize(dos);
+        dos.writeInt(SENTINEL);
+        dos.flush();
+        return baos.toByteArray();
+    }
+
+    /** Externalizes then deserializes a vector and compares the results. */
+    private static void roundTrip(int type, int n, ServerVersion sv) throws Exception {
+        PrimitiveVector pv = makeFilledVector(type, n);
+        String name = pv.getClass().getName() + " n=" + n;
+        byte bytes[] = externalize(pv);
+        int nDataBytes = bytes.length - 4;
+        if (nDataBytes % 4 != 0)
+            throw new RuntimeException(name + ": nDataBytes=" + nDataBytes +
+                " isn't a multiple of 4.");
+
+        //deserialize twice into the same vector (so the reused chunk buffer is tested)
+        PrimitiveVector pv2 = makeVector(type);
+        for (int rep = 0; rep < 2; rep++) {
+            DataInputStream dis = new DataInputStream(new ByteArrayInputStream(bytes));
+            CountingStatusUI status = new CountingStatusUI(Integer.MAX_VALUE);
+            pv2.setLength(n);
+            pv2.deserialize(dis, sv, status);
+
+            if (status.nBytes != nDataBytes)
+                throw new RuntimeException(name + ": statusUI count=" + status.nBytes +
+                    " != nDataBytes=" + nDataBytes);
+            int sentinel = dis.readInt();
+            if (sentinel != SENTINEL || dis.available() != 0)
+                throw new RuntimeException(name + ": the stream wasn't consumed exactly.");
+            ensureEqualArrays(name, pv.getInternalStorage(), pv2.getInternalStorage());
+        }
+
+        //a null statusUI is allowed
+        PrimitiveVector pv3 = makeVector(type);
+        pv3.setLength(n);
+        pv3.deserialize(new DataInputStream(new ByteArrayInputStream(bytes)), sv, null);
+        ensureEqualArrays(name + " (null statusUI)", pv.getInternalStorage(),
+            pv3.getInternalStorage());
+    }
+
+    /** Deserialize stops with a DataReadException soon after the user cancels. */
+    private static void testCancel(ServerVersion sv) throws Exception {
+        for (int type = 0; type < 7; type++) {
+            PrimitiveVector pv = makeFilledVector(type, 3 * CHUNK_BYTES);
+            byte bytes[] = externalize(pv);
+            PrimitiveVector pv2 = makeVector(type);
+            pv2.setLength(3 * CHUNK_BYTES);
+            CountingStatusUI status = new CountingStatusUI(CHUNK_BYTES);
+            try {
+                pv2.deserialize(new DataInputStream(new ByteArrayInputStream(bytes)), sv, status);
+                throw new RuntimeException(pv.getClass().getName() +
+                    ": deserialize should have been cancelled.");
+            } catch (DataReadException e) {
+                if (status.nBytes > 2 * CHUNK_BYTES)
+                    throw new RuntimeException(pv.getClass().getName() +
+                        ": cancel was noticed late (nBytes=" + status.nBytes + ").");
+            }
+        }
+    }
+
+    /** Compares two primitive arrays (NaNs are equal). */
+    private static void ensureEqualArrays(String name, Object expected, Object observed) {
+        boolean same;
+        if (expected instanceof byte[])       same = Arrays.equals((byte[])expected,   (byte[])observed);
+        else if (expected instanceof short[]) same = Arrays.equals((short[])expected,  (short[])observed);
+        else if (expected instanceof int[])   same = Arrays.equals((int[])expected,    (int[])observed);
+        else if (expected instanceof float[]) same = Arrays.equals((float[])expected,  (float[])observed);
+        else                                  same = Arrays.equals((double[])expected, (double[])observed);
+        if (!same) {
+            int n = Array.getLength(expected);
+            for (int i = 0; i < n; i++) {
+                if (!Array.get(expected, i).equals(Array.get(observed, i)))
+                    throw new RuntimeException(name + ": values differ at [" + i + "]: expected=" +
+                        Array.get(expected, i) + " observed=" + Array.get(observed, i));
+            }
+            throw new RuntimeException(name + ": the arrays differ.");
+        }
+    }
+
+    /** A StatusUI which counts the bytes and cancels after cancelAfter bytes. */
+    private static class CountingStatusUI implements StatusUI {
+        long nBytes = 0;
+        private final long cancelAfter;
+
+        CountingStatusUI(long cancelAfter) {
+            this.cancelAfter = cancelAfter;
+        }
+
+        public void incrementByteCount(int bytes) {
+            nBytes += bytes;
+        }
+
+        public boolean userCancelled() {
+            return nBytes >= cancelAfter;
+        }
+
+        public void finished() {
+        }
+    }
+}
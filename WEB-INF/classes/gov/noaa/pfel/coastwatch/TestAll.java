@@ -1495,6 +1495,7 @@ Boundaries boun;
 Browser browser;
 ByteArray ba;
 Calendar2 calendar2; 
+CellEncoder cellEncoder;
 CharArray chara;
 CompoundColorMap ccm;
 CompoundColorMapLayerChild ccmlc;
@@ -1536,6 +1537,7 @@ GridDataSetAnomaly gdsa;
 GridDataSetOpendap gdso;
 GridDataSetThredds gdst;
 GridScreen gs;
+GeometryStore geos;
 GSHHS gshhs;
 Image2 i2;
 IntArray inta;
@@ -1547,6 +1549,7 @@ MapScreen mapScreen;
 Math2 m2;
 Matlab matlab;     
 MustBe mb;
+Nc3StreamWriter n3sw;
 NcHelper ncHelper;
 NetCheck netCheck;
 OneOf oneOf;
@@ -1560,8 +1563,10 @@ PrimitiveArray primitiveArray;
 Projects projects;
 RegexFilenameFilter rff;
 ResourceBundle2 rb2;
+ResponseCache rcache;
 RowComparator rc;
 RowComparatorIgnoreCase rcic;
+RowRanker rr;
 SdsReader sr;
 SgtGraph sgtGraph; 
 SgtMap sgtMap;     
@@ -1660,6 +1665,7 @@ EDDTableFromEDDGrid eddtfeg;
 EDDTableFromErddap eddtfed;
 EDDTableFromFileNames eddtffn; 
 EDDTableFromFiles eddtff; 
+FileTableIndex fti;
 EDDTableFromAsciiFiles eddtfaf;
 EDDTableFromColumnarAsciiFiles eddtffaf;
 //EDDTableFromHttpGet eddtfhg; 
@@ -1695,6 +1701,7 @@ GenerateDatasetsXml gdx;
 GridDataAccessor gda;
 GridDataAllAccessor gdaacc;
 GridDataRandomAccessor gdracc;
+GridChunkCache gcc;
 HtmlWidgets hw;
 LoadDatasets ld;
 OpendapHelper oh;
@@ -1724,10 +1731,14 @@ TableWriterOrderByLimit twobl;
 TableWriterOrderByMax twobm;
 TableWriterOrderByMin twobmin;
 TableWriterOrderByMinMax twobmm;
+TableWriterReduce twr;
 TableWriterSeparatedValue twsv;
 TableWriterUnits twu;
 TaskThread tt;
+ThreadedWorkManager twm;
 WaitThenTryAgainException wttae;
+WmsRenderPool wrp;
+WmsTileCache wtc;
 
 /* */
         //*** All of the unit tests for CWBrowsers and ERDDAP.
@@ -1746,6 +1757,7 @@ WaitThenTryAgainException wttae;
         DoubleArray.test();
         StringArray.test();
         PrimitiveArray.test();
+        RowRanker.test();
         Attributes.test();
         ResourceBundle2.test();
 
@@ -1754,6 +1766,13 @@ WaitThenTryAgainException wttae;
         RegexFilenameFilter.test();  
         Tally.test();
         PersistentTable.test();
+        ThreadedWorkManager.test();
+        TaskThread.test();
+        WmsTileCache.test();
+        WmsRenderPool.test();
+        ResponseCache.test();
+        CellEncoder.test();
+        LoadDatasets.test();
 
         //test that THREDDS is up  (use ip name here, not numeric ip)
         try {
@@ -1826,6 +1845,7 @@ WaitThenTryAgainException wttae;
         //hdf.SdsWriter.main(null); //needs work
         DataHelper.test();  
         NcHelper.test();  
+        Nc3StreamWriter.test();  
         OpendapHelper.test();  //few tests. relies on testing in classes that use it.
         Grid.main(null); 
         //GridDataSetCWOpendap.test();  //the files are no longer available since we are moving to thredds
@@ -1864,11 +1884,13 @@ WaitThenTryAgainException wttae;
 
         //other
         GSHHS.test();
+        GeometryStore.test();
         Boundaries.test();
         Browser.test();
         DecimalDegreeFormatter.main(null);  
         DegreeMinuteFormatter.main(null);  
         CompoundColorMap.test();
+        gov.noaa.pmel.sgt.GridCartesianRenderer.testDrawRasterImage();
         SgtMap.testCreateTopographyGrid();
         SgtMap.testBathymetry(0, 12);   //0, 12   9 is imperfect but unreasonable request
         SgtMap.testTopography(0, 12);   //0, 12   9 is imperfect but unreasonable request
@@ -1897,6 +1919,7 @@ WaitThenTryAgainException wttae;
         boolean doLongTest = false;
 
         EDD.test();
+        GridChunkCache.test();
         EDDGridFromDap.test(false); //doGraphicsTests);
         // EDDGridFromDap.testGraphics(); //do just before releases    
         //EDDGridFromBinaryFile.test(); not finished
@@ -1913,6 +1936,7 @@ WaitThenTryAgainException wttae;
         EDDGridSideBySide.test(true); //doGraphicsTests);  //the best grid graphics tests are here
         EDDGridLonPM180.test(); 
 
+        FileTableIndex.test();
         EDDTableFromFiles.test(); 
         EDDTableFromNcFiles.test(true); //doGraphicsTests); //the best table graphics tests are always done
         EDDTableFromNcCFFiles.test();  
@@ -1945,10 +1969,12 @@ WaitThenTryAgainException wttae;
         //EDDTableFromBMDE.test(); //INACTIVE
         EDDTableFromSOS.test(true); //useCachedInfo
         //EDDTableFromHttpGet.test(); 
+        TableWriterAll.test();
         EDDTableAggregateRows.test(); 
         EDDTableCopy.test();
         //EDDTableCopyPost.test(); INACTIVE
-        EDDTable.test(); //mostly SOS server tests
+        EDDGrid.test();
+        EDDTable.test(); //normalizeDapQuery (the SOS server tests are inactive)
 
         ArchiveADataset.test();
         Erddap.test(); 
@@ -0,0 +1,549 @@
+/*
+ * Nc3StreamWriter Copyright 2026, agent (agent@local).
+ * See the LICENSE.txt file in this file's directory.
+ */
+package gov.noaa.pfel.coastwatch.griddata;
+
+import com.cohort.array.*;
+import com.cohort.util.File2;
+import com.cohort.util.Math2;
+import com.cohort.util.SimpleException;
+import com.cohort.util.String2;
+import com.cohort.util.Test;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.nc2.Dimension;
+import ucar.nc2.Group;
+import ucar.nc2.NetcdfFileWriter;
+import ucar.nc2.Variable;
+
+/**
+ * This writes a NetCDF-3 file (classic or, if needed, 64-bit offset format)
+ * to an OutputStream, without making a temporary file,
+ * so that a response can be streamed to the user as the data is gotten.
+ * Unlike NetcdfFileWriter, this only keeps the header information in memory.
+ *
+ * <p>Since all of the dimension sizes must be known before the header is written,
+ * this doesn't support an unlimited (record) dimension,
+ * so all of the variables are written one after another, in the order they were added.
+ * For the same reason, it doesn't support String variables
+ * (since the size of the strlen dimension isn't known until all of the data
+ * has been seen).
+ *
+ * <p>Use it like this:
+ * <ol>
+ * <li>Call addDimension, setGlobalAttributes, and addVariable.
+ * <li>Call writeHeader.
+ * <li>Call writeData one or more times for each variable (in order)
+ *   with that variable's data (in row-major order).
+ * <li>Call finish.
+ * </ol>
+ * See the NetCDF-3 format specification:
+ * https://www.unidata.ucar.edu/software/netcdf/docs/file_format_specifications.html
+ *
+ * <p>This is not thread-safe.
+ *
+ * @author agent (agent@local) 2026-10-18
+ */
+public class Nc3StreamWriter {
+
+    /**
+     * Set this to true (by calling verbose=true in your program,
+     * not by changing the code here)
+     * if you want lots of diagnostic messages sent to String2.log.
+     */
+    public static boolean verbose = false;
+
+    /** The maximum number of bytes for one variable (a limit of the format). */
+    public final static long MAX_VARIABLE_BYTES = 4294967292L; //2^32 - 4
+
+    //the tags and nc_types in the format specification
+    private final static int NC_DIMENSION = 10, NC_VARIABLE = 11, NC_ATTRIBUTE = 12;
+    private final static int NC_BYTE = 1, NC_CHAR = 2, NC_SHORT = 3, NC_INT = 4,
+        NC_FLOAT = 5, NC_DOUBLE = 6;
+
+    private ArrayList<String> dimNames = new ArrayList();
+    private IntArray dimSizes = new IntArray();
+    private Attributes globalAttributes = new Attributes();
+    private ArrayList<String> varNames = new ArrayList();
+    private ArrayList<Class> varClasses = new ArrayList(); //long is stored as double
+    private ArrayList<int[]> varDimIDs = new ArrayList();
+    private ArrayList<Attributes> varAttributes = new ArrayList();
+
+    //things used while writing
+    private DataOutputStream dos;
+    private int currentVar = -1;
+    private long nWritten; //the number of values of currentVar written so far
+
+    /**
+     * This adds a dimension.
+     *
+     * @param name
+     * @param size  must be &gt; 0
+     * @return the dimension's ID (0..)
+     */
+    public int addDimension(String name, int size) {
+        if (dos != null)
+            throw new IllegalStateException("Nc3StreamWriter: the header was already written.");
+        if (size <= 0)
+            throw new IllegalArgumentException("Nc3StreamWriter: dimension=" + name + " size=" + size + " must be >0.");
+        dimNames.add(name);
+        dimSizes.add(size);
+        return dimNames.size() - 1;
+    }
+
+    /**
+     * This sets the global attributes.
+     * Like NcHelper.setAttributes, this doesn't write _NCProperties.
+     *
+     * @param atts the attributes (not copied, so don't change them before writeHeader)
+     */
+    public void setGlobalAttributes(Attributes atts) {
+        if (atts.get("_NCProperties") != null) {
+            atts = new Attributes(atts);
+            atts.remove("_NCProperties");
+        }
+        globalAttributes = atts;
+    }
+
+    /**
+     * This adds a variable.
+     *
+     * @param name
+     * @param elementClass byte, char, short, int, long (which is stored as double),
+     *    float, or double
+     * @param dimIDs the IDs of the variable's dimensions (from addDimension)
+     * @param atts the variable's attributes (not copied, so don't change them before writeHeader)
+     * @return the variable's ID (0..)
+     * @throws IllegalArgumentException if the elementClass isn't supported
+     * @throws SimpleException if the variable would be too big for the format
+     */
+    public int addVariable(String name, Class elementClass, int dimIDs[], Attributes atts) {
+        if (dos != null)
+            throw new IllegalStateException("Nc3StreamWriter: the header was already written.");
+        if (elementClass == long.class)
+            elementClass = double.class;
+        ncType(elementClass); //throws exception if not supported
+        varNames.add(name);
+        varClasses.add(elementClass);
+        varDimIDs.add(dimIDs);
+        varAttributes.add(atts == null? new Attributes() : atts);
+        int var = varNames.size() - 1;
+        if (varBytes(var) > MAX_VARIABLE_BYTES)
+            throw new SimpleException(Math2.memoryTooMuchData + "  " +
+                "A variable in a NetCDF-3 file can't be more than 4 GB (" + name + " would be " +
+                (varBytes(var) / Math2.BytesPerMB) + " MB).");
+        return var;
+    }
+
+    /** The nc_type for an elementClass. */
+    private static int ncType(Class elementClass) {
+        if (elementClass == byte.class)   return NC_BYTE;
+        if (elementClass == char.class)   return NC_CHAR;
+        if (elementClass == short.class)  return NC_SHORT;
+        if (elementClass == int.class)    return NC_INT;
+        if (elementClass == float.class)  return NC_FLOAT;
+        if (elementClass == double.class) return NC_DOUBLE;
+        throw new IllegalArgumentException("Nc3StreamWriter doesn't support elementClass=" +
+            PrimitiveArray.elementClassToString(elementClass));
+    }
+
+    /** The number of bytes per value in the file for an elementClass. */
+    private static int fileElementSize(Class elementClass) {
+        return elementClass == char.class? 1 : PrimitiveArray.elementSize(elementClass);
+    }
+
+    /** The number of values of a variable. */
+    public long nValues(int var) {
+        int dimIDs[] = varDimIDs.get(var);
+        long n = 1;
+        for (int d = 0; d < dimIDs.length; d++)
+            n *= dimSizes.get(dimIDs[d]);
+        return n;
+    }
+
+    /** The number of bytes of a variable's data in the file (without padding). */
+    private long varBytes(int var) {
+        return nValues(var) * fileElementSize(varClasses.get(var));
+    }
+
+    /** The number of padding bytes needed after n bytes. */
+    private static int padding(long n) {
+        return (int)((4 - n % 4) % 4);
+    }
+
+    /**
+     * This writes the header to outputStream.
+     * This leaves outputStream open.
+     *
+     * @param outputStream  This is buffered, so it needn't be.
+     * @throws Exception if trouble
+     */
+    public void writeHeader(OutputStream outputStream) throws Exception {
+        if (dos != null)
+            throw new IllegalStateException("Nc3StreamWriter: the header was already written.");
+
+        //the header's size doesn't depend on the begin values, so find it first
+        int nVars = varNames.size();
+        long begins[] = new long[nVars];
+        int headerSize = makeHeader(1, begins).length;
+        long dataSize = 0;
+        for (int var = 0; var < nVars; var++)
+            dataSize += varBytes(var) + padding(varBytes(var));
+
+        //use the 64-bit offset format if the classic offsets would overflow
+        int version = headerSize + dataSize > Integer.MAX_VALUE? 2 : 1;
+        if (version == 2)
+            headerSize = makeHeader(2, begins).length;
+        long begin = headerSize;
+        for (int var = 0; var < nVars; var++) {
+            begins[var] = begin;
+            begin += varBytes(var) + padding(varBytes(var));
+        }
+        if (verbose) String2.log("Nc3StreamWriter.writeHeader version=" + version +
+            " nVars=" + nVars + " fileSize=" + begin);
+
+        dos = new DataOutputStream(new BufferedOutputStream(outputStream));
+        dos.write(makeHeader(version, begins));
+        currentVar = 0;
+        nWritten = 0;
+        skipFinishedVars();
+    }
+
+    /** This makes the header. */
+    private byte[] makeHeader(int version, long begins[]) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream hos = new DataOutputStream(baos);
+        hos.write(new byte[]{'C', 'D', 'F', (byte)version});
+        hos.writeInt(0); //numrecs
+
+        //dim_list
+        int nDims = dimNames.size();
+        if (nDims == 0) {
+            hos.writeInt(0); //ABSENT
+            hos.writeInt(0);
+        } else {
+            hos.writeInt(NC_DIMENSION);
+            hos.writeInt(nDims);
+            for (int d = 0; d < nDims; d++) {
+                writeName(hos, dimNames.get(d));
+                hos.writeInt(dimSizes.get(d));
+            }
+        }
+
+        //gatt_list
+        writeAttributes(hos, globalAttributes);
+
+        //var_list
+        int nVars = varNames.size();
+        if (nVars == 0) {
+            hos.writeInt(0); //ABSENT
+            hos.writeInt(0);
+        } else {
+            hos.writeInt(NC_VARIABLE);
+            hos.writeInt(nVars);
+            for (int var = 0; var < nVars; var++) {
+                writeName(hos, varNames.get(var));
+                int dimIDs[] = varDimIDs.get(var);
+                hos.writeInt(dimIDs.length);
+                for (int d = 0; d < dimIDs.length; d++)
+                    hos.writeInt(dimIDs[d]);
+                writeAttributes(hos, varAttributes.get(var));
+                hos.writeInt(ncType(varClasses.get(var)));
+                hos.writeInt((int)(varBytes(var) + padding(varBytes(var)))); //vsize; unsigned, so up to 4GB is okay
+                if (version == 1)
+                    hos.writeInt((int)begins[var]);
+                else hos.writeLong(begins[var]);
+            }
+        }
+        hos.flush();
+        return baos.toByteArray();
+    }
+
+    /** This writes a name (as UTF-8, like NetcdfFileWriter) and its padding. */
+    private static void writeName(DataOutputStream hos, String name) throws Exception {
+        byte bar[] = name.getBytes(String2.UTF_8);
+        hos.writeInt(bar.length);
+        hos.write(bar);
+        hos.write(new byte[padding(bar.length)]);
+    }
+
+    /**
+     * This writes an att_list. Like NcHelper.setAttributes, this skips attributes
+     * with no value, writes StringArrays as one NC_CHAR value (UTF-8, like
+     * NetcdfFileWriter) with the strings separated by newlines,
+     * and writes LongArrays as doubles.
+     */
+    private static void writeAttributes(DataOutputStream hos, Attributes atts) throws Exception {
+        String names[] = atts.getNames();
+        ArrayList<String> tNames = new ArrayList();
+        ArrayList<PrimitiveArray> tValues = new ArrayList();
+        for (int ni = 0; ni < names.length; ni++) {
+            PrimitiveArray pa = atts.get(names[ni]);
+            if (!String2.isSomething(names[ni]) ||
+                pa == null || pa.size() == 0 || pa.toString().length() == 0)
+                continue;
+            tNames.add(names[ni]);
+            tValues.add(pa);
+        }
+        int nAtts = tNames.size();
+        if (nAtts == 0) {
+            hos.writeInt(0); //ABSENT
+            hos.writeInt(0);
+            return;
+        }
+        hos.writeInt(NC_ATTRIBUTE);
+        hos.writeInt(nAtts);
+        for (int ai = 0; ai < nAtts; ai++) {
+            writeName(hos, tNames.get(ai));
+            PrimitiveArray pa = tValues.get(ai);
+            if (pa instanceof StringArray || pa instanceof CharArray) {
+                byte bar[];
+                if (pa instanceof StringArray) {
+                    bar = Attributes.valueToNcString(pa).getBytes(String2.UTF_8);
+                } else {
+                    int n = pa.size();
+                    bar = new byte[n];
+                    for (int i = 0; i < n; i++)
+                        bar[i] = (byte)String2.toIso88591Char(((CharArray)pa).get(i));
+                }
+                hos.writeInt(NC_CHAR);
+                hos.writeInt(bar.length);
+                hos.write(bar);
+                hos.write(new byte[padding(bar.length)]);
+            } else {
+                if (pa instanceof LongArray)
+                    pa = new DoubleArray(pa);
+                hos.writeInt(ncType(pa.elementClass()));
+                hos.writeInt(pa.size());
+                pa.writeDos(hos);
+                hos.write(new byte[padding(pa.size() * (long)pa.elementSize())]);
+            }
+        }
+    }
+
+    /** This moves currentVar past variables whose data has all been written. */
+    private void skipFinishedVars() throws Exception {
+        while (currentVar < varNames.size() && nWritten == nValues(currentVar)) {
+            dos.write(new byte[padding(varBytes(currentVar))]);
+            currentVar++;
+            nWritten = 0;
+        }
+    }
+
+    /**
+     * The ID of the variable whose data is expected next
+     * (or nVariables if all of the data has been written).
+     */
+    public int currentVariable() {
+        return currentVar;
+    }
+
+    /**
+     * This writes the next values for the current variable.
+     * If pa has more values than the current variable needs,
+     * the rest are written to the next variable(s).
+     *
+     * @param pa the values, which must be of the variable's elementClass
+     *   (or LongArray if the variable was added as long).
+     *   They are written in order (the variable's data must be written in row-major order).
+     * @throws Exception if trouble (e.g., if there are more values than the variables need)
+     */
+    public void writeData(PrimitiveArray pa) throws Exception {
+        if (dos == null)
+            throw new IllegalStateException("Nc3StreamWriter: writeHeader hasn't been called.");
+        int size = pa.size();
+        int po = 0;
+        while (po < size) {
+            if (currentVar >= varNames.size())
+                throw new RuntimeException("Nc3StreamWriter: there is more data than the variables need.");
+            Class tClass = varClasses.get(currentVar);
+            if (tClass != (pa instanceof LongArray? double.class : pa.elementClass()))
+                throw new RuntimeException("Nc3StreamWriter: variable=" + varNames.get(currentVar) +
+                    " needs " + PrimitiveArray.elementClassToString(tClass) + " data, not " +
+                    PrimitiveArray.elementClassToString(pa.elementClass()) + ".");
+            int n = (int)Math.min(size - po, nValues(currentVar) - nWritten);
+            if (pa instanceof CharArray) {
+                CharArray ca = (CharArray)pa;
+                for (int i = 0; i < n; i++)
+                    dos.write(String2.toIso88591Char(ca.get(po + i)));
+            } else if (pa instanceof LongArray) {
+                for (int i = 0; i < n; i++)
+                    dos.writeDouble(pa.getDouble(po + i));
+            } else if (po == 0 && n == size) {
+                pa.writeDos(dos); //the usual case
+            } else {
+                for (int i = 0; i < n; i++)
+                    pa.writeDos(dos, po + i);
+            }
+            po += n;
+            nWritten += n;
+            skipFinishedVars();
+        }
+    }
+
+    /**
+     * Call this after all of the data has been written.
+     * This flushes the outputStream, but doesn't close it.
+     *
+     * @throws Exception if trouble (e.g., if some data wasn't written)
+     */
+    public void finish() throws Exception {
+        if (dos == null)
+            throw new IllegalStateException("Nc3StreamWriter: writeHeader hasn't been called.");
+        if (currentVar < varNames.size())
+            throw new RuntimeException("Nc3StreamWriter: variable=" + varNames.get(currentVar) +
+                " has only " + nWritten + " of its " + nValues(currentVar) + " values.");
+        dos.flush();
+    }
+
+
+    /**
+     * This tests this class.
+     *
+     * @throws Throwable if trouble
+     */
+    public static void test() throws Throwable {
+        String2.log("\n*** Nc3StreamWriter.test()");
+        verbose = true;
+        String fileName = File2.getSystemTempDirectory() + "Nc3StreamWriter.nc";
+
+        Nc3StreamWriter writer = new Nc3StreamWriter();
+        int timeDim = writer.addDimension("time", 2);
+        int latDim  = writer.addDimension("latitude", 3);
+        Attributes gAtts = new Attributes();
+        gAtts.add("title", "Test of Nc3StreamWriter");
+        gAtts.add("lines", new StringArray(new String[]{"a", "b\u00fc"}));
+        gAtts.add("ints", new IntArray(new int[]{1, 2, 3}));
+        gAtts.add("_NCProperties", "version=1"); //not written
+        writer.setGlobalAttributes(gAtts);
+        Attributes timeAtts = new Attributes();
+        timeAtts.add("units", "seconds since 1970-01-01T00:00:00Z");
+        writer.addVariable("time", double.class, new int[]{timeDim}, timeAtts);
+        writer.addVariable("latitude", float.class, new int[]{latDim}, null);
+        Attributes sstAtts = new Attributes();
+        sstAtts.add("_FillValue", (short)-999);
+        writer.addVariable("sst", short.class, new int[]{timeDim, latDim}, sstAtts);
+        writer.addVariable("flag", byte.class, new int[]{timeDim, latDim}, null);
+        writer.addVariable("count", long.class, new int[]{latDim}, null);
+
+        FileOutputStream fos = new FileOutputStream(fileName);
+        try {
+            writer.writeHeader(fos);
+            writer.writeData(new DoubleArray(new double[]{0, 86400}));
+            writer.writeData(new FloatArray(new float[]{10, 20.5f, 30}));
+            writer.writeData(new ShortArray(new short[]{1, 2, 3, 4})); //sst in 2 parts
+            writer.writeData(new ShortArray(new short[]{5, -999}));
+            writer.writeData(new ByteArray(new byte[]{1, 2, 3, 4, 5, 6})); //3 bytes padding follow
+            writer.writeData(new LongArray(new long[]{7, 8, 9}));
+            writer.finish();
+        } finally {
+            fos.close();
+        }
+        String2.log(NcHelper.dumpString(fileName, true));
+        ucar.nc2.NetcdfFile nc = NcHelper.openFile(fileName);
+        try {
+            Test.ensureEqual(NcHelper.getPrimitiveArray(nc.findVariable("time")).toString(),
+                "0.0, 86400.0", "");
+            Test.ensureEqual(NcHelper.getPrimitiveArray(nc.findVariable("latitude")).toString(),
+                "10.0, 20.5, 30.0", "");
+            Test.ensureEqual(NcHelper.getPrimitiveArray(nc.findVariable("sst")).toString(),
+                "1, 2, 3, 4, 5, -999", "");
+            Test.ensureEqual(NcHelper.getPrimitiveArray(nc.findVariable("flag")).toString(),
+                "1, 2, 3, 4, 5, 6", "");
+            Test.ensureEqual(NcHelper.getPrimitiveArray(nc.findVariable("count")).toString(),
+                "7.0, 8.0, 9.0", "");
+            Attributes tAtts = new Attributes();
+            NcHelper.getGlobalAttributes(nc, tAtts);
+            Test.ensureEqual(tAtts.getString("title"), "Test of Nc3StreamWriter", "");
+            Test.ensureEqual(tAtts.get("ints").toString(), "1, 2, 3", "");
+            Test.ensureEqual(tAtts.getString("lines"), "a\nb\u00fc", "");
+            Test.ensureEqual(tAtts.get("_NCProperties"), null, "");
+        } finally {
+            nc.close();
+        }
+        //the classic format is used for small files
+        byte bytes[] = Files.readAllBytes(Paths.get(fileName));
+        Test.ensureEqual(new String(bytes, 0, 4, "ISO-8859-1"), "CDF\u0001", "");
+
+        //the file must be the same as the file made by NetcdfFileWriter (the way EDDGrid.saveAsNc does it)
+        String ncwName = File2.getSystemTempDirectory() + "Nc3StreamWriterNcw.nc";
+        NetcdfFileWriter ncw = NetcdfFileWriter.createNew(
+            NetcdfFileWriter.Version.netcdf3, ncwName);
+        try {
+            Group rootGroup = ncw.addGroup(null, "");
+            ncw.setFill(false);
+            Dimension timeDimension = ncw.addDimension(rootGroup, "time", 2);
+            Dimension latDimension  = ncw.addDimension(rootGroup, "latitude", 3);
+            Variable timeVar  = ncw.addVariable(rootGroup, "time",     DataType.DOUBLE, Arrays.asList(timeDimension));
+            Variable latVar   = ncw.addVariable(rootGroup, "latitude", DataType.FLOAT,  Arrays.asList(latDimension));
+            Variable sstVar   = ncw.addVariable(rootGroup, "sst",      DataType.SHORT,  Arrays.asList(timeDimension, latDimension));
+            Variable flagVar  = ncw.addVariable(rootGroup, "flag",     DataType.BYTE,   Arrays.asList(timeDimension, latDimension));
+            Variable countVar = ncw.addVariable(rootGroup, "count",    DataType.DOUBLE, Arrays.asList(latDimension)); //nc3: long -> double
+            NcHelper.setAttributes(true, rootGroup, gAtts);
+            NcHelper.setAttributes(true, timeVar, timeAtts);
+            NcHelper.setAttributes(true, sstVar, sstAtts);
+            ncw.create();
+            ncw.write(timeVar,  Array.factory(double.class, new int[]{2}, new double[]{0, 86400}));
+            ncw.write(latVar,   Array.factory(float.class,  new int[]{3}, new float[]{10, 20.5f, 30}));
+            ncw.write(sstVar,   Array.factory(short.class,  new int[]{2, 3}, new short[]{1, 2, 3, 4, 5, -999}));
+            ncw.write(flagVar,  Array.factory(byte.class,   new int[]{2, 3}, new byte[]{1, 2, 3, 4, 5, 6}));
+            ncw.write(countVar, Array.factory(double.class, new int[]{3}, new double[]{7, 8, 9}));
+            ncw.close(); //it calls flush() and doesn't like flush called separately
+            ncw = null;
+        } finally {
+            if (ncw != null)
+                ncw.close();
+        }
+        //the header and the data (but not the file name on the first line) must be the same
+        String streamDump = NcHelper.dumpString(fileName, true);
+        String ncwDump    = NcHelper.dumpString(ncwName, true);
+        Test.ensureEqual(streamDump.substring(streamDump.indexOf('\n')),
+            ncwDump.substring(ncwDump.indexOf('\n')), "");
+        File2.delete(ncwName);
+
+        //the 64-bit offset format is used if the classic offsets would overflow
+        //(Just the header is written. Each begin value is then 8 bytes.)
+        writer = new Nc3StreamWriter();
+        int rowDim = writer.addDimension("row", 300000000);
+        writer.addVariable("a", double.class, new int[]{rowDim}, null); //2.4 GB
+        writer.addVariable("b", byte.class,   new int[]{rowDim}, null);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        writer.writeHeader(baos);
+        writer.dos.flush();
+        bytes = baos.toByteArray();
+        Test.ensureEqual(new String(bytes, 0, 4, "ISO-8859-1"), "CDF\u0002", "");
+        Test.ensureEqual(bytes.length, writer.makeHeader(1, new long[2]).length + 2 * 4, "");
+        Test.ensureEqual(writer.nValues(0), 300000000L, "");
+
+        //too much data
+        writer = new Nc3StreamWriter();
+        writer.addDimension("row", 2);
+        writer.addVariable("a", int.class, new int[]{0}, null);
+        fos = new FileOutputStream(fileName);
+        String msg = "shouldn't get here";
+        try {
+            writer.writeHeader(fos);
+            writer.writeData(new IntArray(new int[]{1, 2, 3}));
+        } catch (Exception e) {
+            msg = e.getMessage();
+        } finally {
+            fos.close();
+        }
+        Test.ensureEqual(msg, "Nc3StreamWriter: there is more data than the variables need.", "");
+        File2.delete(fileName);
+        String2.log("\n*** Nc3StreamWriter.test() finished successfully.");
+    }
+
+}
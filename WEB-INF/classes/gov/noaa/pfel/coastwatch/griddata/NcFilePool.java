@@ -0,0 +1,287 @@
+/*
+ * NcFilePool Copyright 2026, agent (agent@local).
+ * See the LICENSE.txt file in this file's directory.
+ */
+package gov.noaa.pfel.coastwatch.griddata;
+
+import com.cohort.util.File2;
+import com.cohort.util.MustBe;
+import com.cohort.util.String2;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+
+/**
+ * Get netcdfAll-......jar from ftp://ftp.unidata.ucar.edu/pub
+ * and copy it to <context>/WEB-INF/lib renamed as netcdf-latest.jar.
+ * Put it in the classpath for the compiler and for Java.
+ */
+import ucar.nc2.NetcdfFile;
+
+/**
+ * This keeps a size-bounded pool of open, idle NetcdfFiles for local files,
+ * so that repeated requests for the same file (e.g., the most recent time point
+ * of a popular dataset) don't have to reopen the file and reparse its header.
+ *
+ * <p>NetcdfFiles aren't thread-safe, so a NetcdfFile is lent to one user at a time:
+ * get one with acquire(), and ALWAYS give it back with release()
+ * (preferably in a "finally" clause).
+ * Only the idle NetcdfFiles are kept in the pool.
+ *
+ * <p>Pooled NetcdfFiles are identified by fullName + lastModified time,
+ * so a changed file is reopened.
+ * Callers should call invalidate(fullName) when they learn that a file
+ * was deleted, changed, or is bad.
+ * Remote files (URLs) and .ncml files are never pooled.
+ *
+ * @author agent (agent@local) 2026-10-18
+ */
+public class NcFilePool {
+
+    /**
+     * Set this to true (by calling verbose=true in your program, not by changing the code here)
+     * if you want lots of diagnostic messages sent to String2.log.
+     */
+    public static boolean verbose = false;
+
+    /** An idle or lent NetcdfFile. */
+    private static class Entry {
+        String fullName;
+        long lastMod;
+        long releaseMillis;
+        boolean invalid = false; //if true, close it when it is released
+        NetcdfFile ncFile;
+    }
+
+    private int maxOpen;       //max number of idle NetcdfFiles. 0 = pool isn't active
+    private long maxIdleMillis;
+
+    /** The idle NetcdfFiles, least recently released first. */
+    private final ArrayList<Entry> idle = new ArrayList();
+
+    /** The lent NetcdfFiles which are poolable when released. */
+    private final IdentityHashMap<NetcdfFile, Entry> lent = new IdentityHashMap();
+
+    private long nHits = 0, nMisses = 0, nEvictions = 0;
+
+    /**
+     * The constructor.
+     *
+     * @param tMaxOpen the maximum number of idle NetcdfFiles to keep open.
+     *    0 turns off pooling.
+     * @param tMaxIdleSeconds NetcdfFiles which have been idle for longer than this are closed.
+     */
+    public NcFilePool(int tMaxOpen, int tMaxIdleSeconds) {
+        setLimits(tMaxOpen, tMaxIdleSeconds);
+    }
+
+    /**
+     * This changes the limits (e.g., based on setup.xml)
+     * and closes any idle NetcdfFiles which exceed the new limits.
+     *
+     * @param tMaxOpen the maximum number of idle NetcdfFiles to keep open.
+     *    0 turns off pooling.
+     * @param tMaxIdleSeconds NetcdfFiles which have been idle for longer than this are closed.
+     */
+    public void setLimits(int tMaxOpen, int tMaxIdleSeconds) {
+        ArrayList<Entry> toClose = new ArrayList();
+        synchronized(this) {
+            maxOpen = Math.max(0, tMaxOpen);
+            maxIdleMillis = Math.max(0, tMaxIdleSeconds) * 1000L;
+            removeExcess(toClose);
+        }
+        close(toClose);
+    }
+
+    /**
+     * This returns a NetcdfFile for the file, from the pool if possible,
+     * else by opening it.
+     * ALWAYS call release() when you are finished with it,
+     * preferably in a "finally" clause.
+     *
+     * @param fullName This may be a local file name, an "http:" address of a
+     *    .nc file, or an .ncml file. See NcHelper.openFile.
+     * @return a NetcdfFile
+     * @throws Exception if trouble
+     */
+    public NetcdfFile acquire(String fullName) throws Exception {
+        //is this file poolable?
+        long lastMod = 0;
+        if (maxOpen > 0 && !fullName.endsWith(".ncml") && !String2.isUrl(fullName))
+            lastMod = File2.getLastModified(fullName); //0 if trouble
+        if (lastMod == 0)
+            return NcHelper.openFile(fullName);
+
+        ArrayList<Entry> toClose = new ArrayList();
+        Entry entry = null;
+        synchronized(this) {
+            removeExcess(toClose);
+            //look for it, most recently released first
+            for (int i = idle.size() - 1; i >= 0; i--) {
+                Entry e = idle.get(i);
+                if (!e.fullName.equals(fullName))
+                    continue;
+                if (e.lastMod != lastMod) {
+                    //the file has changed
+                    idle.remove(i);
+                    toClose.add(e);
+                    nEvictions++;
+                } else if (entry == null) {
+                    idle.remove(i);
+                    entry = e;
+                }
+            }
+            if (entry == null) nMisses++;
+            else               nHits++;
+        }
+        close(toClose);
+
+        if (entry == null) {
+            entry = new Entry();
+            entry.fullName = fullName;
+            entry.lastMod = lastMod;
+            entry.ncFile = NcHelper.openFile(fullName); //may throw exception
+        }
+        synchronized(this) {
+            lent.put(entry.ncFile, entry);
+        }
+        return entry.ncFile;
+    }
+
+    /**
+     * This returns a NetcdfFile from acquire() to the pool
+     * (or closes it if it isn't poolable or the pool is full).
+     *
+     * @param ncFile a NetcdfFile from acquire(). If null, nothing is done.
+     * @param reusable Use true if all went well. Use false if there was
+     *    trouble (e.g., an exception) while using ncFile, so it will be closed.
+     * @throws IOException if trouble while closing ncFile
+     */
+    public void release(NetcdfFile ncFile, boolean reusable) throws IOException {
+        if (ncFile == null)
+            return;
+        ArrayList<Entry> toClose = new ArrayList();
+        synchronized(this) {
+            Entry entry = lent.remove(ncFile);
+            if (entry != null && reusable && !entry.invalid && maxOpen > 0) {
+                entry.releaseMillis = System.currentTimeMillis();
+                idle.add(entry);
+                removeExcess(toClose);
+                ncFile = null; //it is in the pool
+            }
+        }
+        close(toClose);
+        if (ncFile != null)
+            ncFile.close();
+    }
+
+    /**
+     * This closes the idle NetcdfFiles for this file
+     * and ensures that lent NetcdfFiles for this file won't be pooled when released.
+     * Use this when a file has been deleted, changed, or marked as bad.
+     *
+     * @param fullName the file's full name
+     */
+    public void invalidate(String fullName) {
+        ArrayList<Entry> toClose = new ArrayList();
+        synchronized(this) {
+            for (int i = idle.size() - 1; i >= 0; i--) {
+                Entry e = idle.get(i);
+                if (e.fullName.equals(fullName)) {
+                    idle.remove(i);
+                    toClose.add(e);
+                    nEvictions++;
+                }
+            }
+            for (Entry e : lent.values()) {
+                if (e.fullName.equals(fullName))
+                    e.invalid = true;
+            }
+        }
+        close(toClose);
+    }
+
+    /**
+     * This closes the NetcdfFiles which have been idle too long.
+     * acquire() and release() do this, but a busy server's other threads
+     * (e.g., LoadDatasets) should call this periodically, too.
+     */
+    public void closeExpired() {
+        ArrayList<Entry> toClose = new ArrayList();
+        synchronized(this) {
+            removeExcess(toClose);
+        }
+        close(toClose);
+    }
+
+    /** This closes all of the idle NetcdfFiles (e.g., when ERDDAP is shutting down). */
+    public void closeAll() {
+        ArrayList<Entry> toClose;
+        synchronized(this) {
+            toClose = new ArrayList(idle);
+            idle.clear();
+        }
+        close(toClose);
+    }
+
+    /** The number of idle NetcdfFiles in the pool. */
+    public synchronized int nIdle() {
+        return idle.size();
+    }
+
+    /** The number of times acquire() found a NetcdfFile in the pool. */
+    public synchronized long nHits() {
+        return nHits;
+    }
+
+    /** The number of times acquire() had to open a poolable file. */
+    public synchronized long nMisses() {
+        return nMisses;
+    }
+
+    /** The number of idle NetcdfFiles closed because they were too old,
+     * the pool was full, or the file changed or was invalidated. */
+    public synchronized long nEvictions() {
+        return nEvictions;
+    }
+
+    /**
+     * This returns a one line summary of the pool's statistics (for status.html).
+     *
+     * @return a one line summary of the pool's statistics (with a newline at the end).
+     */
+    public synchronized String statistics() {
+        return "NcFilePool: nIdle=" + idle.size() + " (max=" + maxOpen +
+            ") nLent=" + lent.size() +
+            " nHits=" + nHits + " nMisses=" + nMisses + " nEvictions=" + nEvictions + "\n";
+    }
+
+    /**
+     * This moves the idle entries which are too old or exceed maxOpen to toClose.
+     * The caller must be synchronized on this.
+     */
+    private void removeExcess(ArrayList<Entry> toClose) {
+        long oldestMillis = System.currentTimeMillis() - maxIdleMillis;
+        while (idle.size() > 0 &&
+               (idle.size() > maxOpen || idle.get(0).releaseMillis < oldestMillis)) {
+            toClose.add(idle.remove(0));
+            nEvictions++;
+        }
+    }
+
+    /** This closes the NetcdfFiles (outside of the synchronized blocks). */
+    private static void close(ArrayList<Entry> toClose) {
+        for (int i = 0; i < toClose.size(); i++) {
+            Entry e = toClose.get(i);
+            try {
+                if (verbose) String2.log("NcFilePool is closing " + e.fullName);
+                e.ncFile.close();
+            } catch (Throwable t) {
+                String2.log("NcFilePool caught while closing " + e.fullName + ":\n" +
+                    MustBe.throwableToString(t));
+            }
+        }
+    }
+
+}
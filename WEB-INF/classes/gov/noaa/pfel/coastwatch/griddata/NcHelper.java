@@ -640,6 +640,13 @@ public class NcHelper  {
             NetcdfFile.open(fullName);
     }
 
+    /**
+     * The shared pool of open NetcdfFiles (e.g., for EDDGridFromNcLow and EDDTableFromNcFiles).
+     * EDStatic sets its limits from setup.xml's &lt;ncFilePoolSize&gt; and
+     * &lt;ncFilePoolIdleSeconds&gt;.
+     */
+    public static NcFilePool ncFilePool = new NcFilePool(100, 300);
+
     /** 
      * This converts a List of variables to a Variable[].
      *
@@ -2551,6 +2558,68 @@ String2.log(pas13.toString());
     }
 
 
+    /**
+     * This tests NcFilePool.
+     */
+    public static void testFilePool() throws Throwable {
+        String2.log("\n*** NcHelper.testFilePool");
+        String fullName = "/temp/ncFilePool.nc";
+        File2.delete(fullName);
+        NetcdfFileWriter writer = NetcdfFileWriter.createNew(
+            NetcdfFileWriter.Version.netcdf3, fullName);
+        try {
+            Group rootGroup = writer.addGroup(null, "");
+            Dimension dim = writer.addDimension(rootGroup, "row", 3);
+            ArrayList dims = new ArrayList();
+            dims.add(dim);
+            Variable var = writer.addVariable(rootGroup, "x", DataType.INT, dims);
+            writer.create();
+            writer.write(var, get1DArray(new int[]{1, 2, 3}));
+        } finally {
+            writer.close();
+        }
+
+        NcFilePool pool = new NcFilePool(2, 60);
+
+        //a miss, then a hit which returns the same (reusable) NetcdfFile
+        NetcdfFile nc1 = pool.acquire(fullName);
+        Test.ensureEqual(pool.nMisses(), 1, "");
+        pool.release(nc1, true);
+        Test.ensureEqual(pool.nIdle(), 1, "");
+        NetcdfFile nc2 = pool.acquire(fullName);
+        Test.ensureTrue(nc1 == nc2, "");
+        Test.ensureEqual(pool.nHits(), 1, "");
+        Test.ensureEqual(pool.nIdle(), 0, "");
+        Test.ensureEqual(getPrimitiveArray(nc2.findVariable("x")).toString(), "1, 2, 3", "");
+
+        //a NetcdfFile which is lent out isn't shared
+        NetcdfFile nc3 = pool.acquire(fullName);
+        Test.ensureTrue(nc2 != nc3, "");
+        Test.ensureEqual(pool.nMisses(), 2, "");
+        pool.release(nc2, true);
+        pool.release(nc3, false); //e.g., trouble: it is closed, not pooled
+        Test.ensureEqual(pool.nIdle(), 1, "");
+
+        //invalidate closes the idle NetcdfFiles for the file
+        pool.invalidate(fullName);
+        Test.ensureEqual(pool.nIdle(), 0, "");
+        Test.ensureEqual(pool.nEvictions(), 1, "");
+
+        //a changed file isn't gotten from the pool
+        nc1 = pool.acquire(fullName);
+        pool.release(nc1, true);
+        File2.setLastModified(fullName, File2.getLastModified(fullName) - 10000);
+        nc2 = pool.acquire(fullName);
+        Test.ensureTrue(nc1 != nc2, "");
+        Test.ensureEqual(pool.nEvictions(), 2, "");
+        pool.release(nc2, true);
+
+        pool.closeAll();
+        Test.ensureEqual(pool.nIdle(), 0, "");
+        String2.log(pool.statistics());
+        File2.delete(fullName);
+    }
+
     /**
      * This tests the methods in this class.
      */
@@ -2857,6 +2926,7 @@ String2.log(pas13.toString());
         testBasic();
         testFindAllVariablesWithDims();
         testUnlimited();        
+        testFilePool();
  
         //done
         String2.log("\n***** NcHelper.test finished successfully");
@@ -19,8 +19,13 @@ import dods.dap.*;
 
 import gov.noaa.pfel.coastwatch.util.SSR;
 
+import com.sun.net.httpserver.HttpServer;
+
 import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.OutputStream;
 import java.io.Writer;
+import java.net.InetSocketAddress;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -28,6 +33,12 @@ import java.util.BitSet;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import ucar.nc2.Dimension;
 import ucar.nc2.Group;
@@ -2946,6 +2957,87 @@ expected2 =
         }       
     }
 
+    /**
+     * This tests that DConnect reuses (keeps alive) its HTTP connections and 
+     * limits the number of simultaneous connections per host,
+     * by getting data from a local, in-JVM stand-in for a DAP server.
+     */
+    public static void testDConnectKeepAlive() throws Throwable {
+        String2.log("\n*** OpendapHelper.testDConnectKeepAlive");
+        final Map<Integer,Integer> clientPorts = new ConcurrentHashMap(); //1 per TCP connection
+        final AtomicInteger nActive = new AtomicInteger();
+        final AtomicInteger maxActive = new AtomicInteger();
+
+        //the stand-in server returns x[i]=i for requests like /test.dods?x[2:4]
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/test.dods", exchange -> {
+            int active = nActive.incrementAndGet();
+            maxActive.accumulateAndGet(active, Math::max);
+            try {
+                clientPorts.put(exchange.getRemoteAddress().getPort(), 1);
+                String query = exchange.getRequestURI().getQuery(); //e.g., x[2:4]
+                int sss[] = parseStartStrideStop(query.substring(1));
+                int n = calculateNValues(sss[0], sss[1], sss[2]);
+                ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                DataOutputStream dos = new DataOutputStream(baos);
+                dos.writeBytes("Dataset {\n    Float64 x[x = " + n + "];\n} test;\nData:\n");
+                dos.writeInt(n); //XDR and DAP both write the length
+                dos.writeInt(n);
+                for (int i = sss[0]; i <= sss[2]; i += sss[1])
+                    dos.writeDouble(i);
+                dos.flush();
+                Math2.sleep(50); //so concurrent requests overlap
+                exchange.getResponseHeaders().set("Content-Description", "dods_data");
+                exchange.getResponseHeaders().set("XDODS-Server", "dods/3.7");
+                exchange.sendResponseHeaders(200, baos.size());
+                OutputStream os = exchange.getResponseBody();
+                baos.writeTo(os);
+                os.close();
+            } finally {
+                nActive.decrementAndGet();
+            }
+        });
+        ExecutorService serverPool = Executors.newFixedThreadPool(10);
+        server.setExecutor(serverPool);
+        server.start();
+        final String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/test";
+        int oldMax = DConnect.getMaxConnectionsPerHost();
+        String oldLocalHosts[] = DConnect.getLocalHosts();
+        ExecutorService clientPool = Executors.newFixedThreadPool(6);
+        try {
+            //sequential requests (from different DConnects) reuse 1 connection
+            for (int i = 0; i < 5; i++) {
+                PrimitiveArray pa[] = getPrimitiveArrays(
+                    new DConnect(url, true, 1, 1), "?x[" + i + ":" + (i + 2) + "]");
+                Test.ensureEqual(pa.length, 1, "");
+                Test.ensureEqual(pa[0].toString(), i + ".0, " + (i + 1) + ".0, " + (i + 2) + ".0", "");
+            }
+            Test.ensureEqual(clientPorts.size(), 1, "nConnections=" + clientPorts.size());
+
+            //concurrent requests are limited to maxConnectionsPerHost
+            //(127.0.0.1 normally isn't limited, so make no host local)
+            DConnect.setLocalHosts(new String[0]);
+            DConnect.setMaxConnectionsPerHost(2);
+            maxActive.set(0);
+            ArrayList<Future<PrimitiveArray[]>> futures = new ArrayList();
+            for (int i = 0; i < 6; i++) {
+                final String query = "?x[0:2:" + (2 * i) + "]";
+                futures.add(clientPool.submit(() -> 
+                    getPrimitiveArrays(new DConnect(url, true, 1, 1), query)));
+            }
+            for (int i = 0; i < 6; i++) 
+                Test.ensureEqual(futures.get(i).get()[0].size(), i + 1, "i=" + i);
+            Test.ensureEqual(maxActive.get(), 2, "");
+            Test.ensureTrue(clientPorts.size() <= 2, "nConnections=" + clientPorts.size()); 
+        } finally {
+            DConnect.setMaxConnectionsPerHost(oldMax);
+            DConnect.setLocalHosts(oldLocalHosts);
+            clientPool.shutdownNow();
+            server.stop(0);
+            serverPool.shutdownNow();
+        }
+    }
+
     /**
      * This tests the methods in this class.
      */
@@ -2955,6 +3047,7 @@ expected2 =
 /* for releases, this line should have open/close comment */
         testGetAttributes();
         testParseStartStrideStop();
+        testDConnectKeepAlive();
         testFindVarsWithSharedDimensions();
         testFindAllScalarOrMultiDimVars();
         testDapToNcDArray();
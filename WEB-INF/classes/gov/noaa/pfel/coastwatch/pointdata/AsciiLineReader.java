@@ -0,0 +1,345 @@
+/*
+ * AsciiLineReader Copyright 2026, agent (agent@local).
+ * See the LICENSE.txt file in this file's directory.
+ */
+package gov.noaa.pfel.coastwatch.pointdata;
+
+import com.cohort.array.PrimitiveArray;
+import com.cohort.util.String2;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * This reads the lines of an ASCII file (or the Strings in a String[])
+ * one at a time into a reusable char[], so that Table.readASCII and
+ * Table.readColumnarASCII can split and parse each line in place,
+ * instead of first reading the whole file into a String[]
+ * and then making a String for each item on each line.
+ * The line terminators are the same as for BufferedReader.readLine: \n, \r, or \r\n.
+ *
+ * <p>The parse methods parse the common, simple numbers (e.g., "-12" and "123.456")
+ * directly from the chars. Everything else is handed to PrimitiveArray.addString()
+ * or String2.parseDouble(), so the results are always the same as
+ * parsing the item's String.
+ *
+ * <p>This isn't thread-safe.
+ *
+ * @author agent (agent@local) 2026-10-18
+ */
+public class AsciiLineReader {
+
+    /** 10^0 ... 10^22 are exactly representable as doubles. */
+    private final static double POW10[] = {
+        1e0,  1e1,  1e2,  1e3,  1e4,  1e5,  1e6,  1e7,  1e8,  1e9,  1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    /** 10^0 ... 10^10 are exactly representable as floats. */
+    private final static float POW10F[] = {
+        1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f};
+
+    private Reader reader;   //null if reading from lines[] (or closed)
+    private String lines[];  //null if reading from reader
+    private int linesIndex = 0;
+    private char buffer[];
+    private int bufferPo = 0, bufferEnd = 0;
+    private boolean skipLF = false;
+
+    //set by scanNumber
+    private boolean negative, hasPoint;
+    private long mantissa;
+    private int nFractionDigits;
+
+    /** The chars of the current line (without the terminator).
+     * Only the first lineLength chars are valid. */
+    public char line[] = new char[256];
+
+    /** The number of chars in the current line. */
+    public int lineLength = 0;
+
+    /** The start (inclusive) and end (exclusive) of each item (from splitLine). */
+    public int itemStart[] = new int[32];
+    public int itemEnd[]   = new int[32];
+
+    /**
+     * A constructor for reading lines from a Reader.
+     *
+     * @param tReader  It will be closed by close().
+     */
+    public AsciiLineReader(Reader tReader) {
+        reader = tReader;
+        buffer = new char[65536];
+    }
+
+    /**
+     * A constructor for reading lines from a String[] (e.g., from String2.readLinesFromFile).
+     *
+     * @param tLines the lines (the Strings shouldn't have line terminators)
+     */
+    public AsciiLineReader(String tLines[]) {
+        lines = tLines;
+    }
+
+    /**
+     * This opens a file for reading.
+     *
+     * @param fullFileName
+     * @param charset  e.g., ISO-8859-1 (used if charset is null or "") or UTF-8.
+     * @return an AsciiLineReader. Call close() when done.
+     * @throws IOException if trouble (e.g., the file isn't found)
+     */
+    public static AsciiLineReader open(String fullFileName, String charset) throws IOException {
+        return new AsciiLineReader(new InputStreamReader(new FileInputStream(fullFileName),
+            charset == null || charset.length() == 0? String2.ISO_8859_1 : charset));
+    }
+
+    /**
+     * This returns the String[] of lines (if this was constructed with a String[]).
+     *
+     * @return the String[] of lines (or null if this reads from a Reader).
+     */
+    public String[] lines() {
+        return lines;
+    }
+
+    /**
+     * This reads the next line into line[] and lineLength.
+     *
+     * @return true if a line was read, or false if there are no more lines.
+     * @throws IOException if trouble
+     */
+    public boolean nextLine() throws IOException {
+        if (lines != null) {
+            if (linesIndex >= lines.length)
+                return false;
+            setLine(lines[linesIndex++]);
+            return true;
+        }
+        if (reader == null)
+            return false;
+
+        lineLength = 0;
+        boolean gotChar = false;
+        while (true) {
+            if (bufferPo >= bufferEnd) {
+                int n = reader.read(buffer, 0, buffer.length);
+                if (n < 0) { //end of file
+                    if (gotChar)
+                        return true; //the last line had no terminator
+                    return false;
+                }
+                bufferPo = 0;
+                bufferEnd = n;
+                continue;
+            }
+            char ch = buffer[bufferPo++];
+            gotChar = true;
+            if (skipLF) { //the previous line ended with \r
+                skipLF = false;
+                if (ch == '\n') {
+                    gotChar = false;
+                    continue;
+                }
+            }
+            if (ch == '\n')
+                return true;
+            if (ch == '\r') {
+                skipLF = true;
+                return true;
+            }
+            if (lineLength == line.length)
+                line = Arrays.copyOf(line, 2 * lineLength);
+            line[lineLength++] = ch;
+        }
+    }
+
+    /**
+     * This makes s the current line (e.g., to reprocess a line which was read earlier).
+     *
+     * @param s a line (without a terminator)
+     */
+    public void setLine(String s) {
+        lineLength = s.length();
+        if (lineLength > line.length)
+            line = new char[Math.max(lineLength, 2 * line.length)];
+        s.getChars(0, lineLength, line, 0);
+    }
+
+    /** This returns the current line as a String. */
+    public String lineString() {
+        return new String(line, 0, lineLength);
+    }
+
+    /** This returns true if the current line has only whitespace (like line.trim().length() == 0). */
+    public boolean isBlank() {
+        for (int po = 0; po < lineLength; po++)
+            if (line[po] > ' ')
+                return false;
+        return true;
+    }
+
+    /** This returns true if the current line has the character. */
+    public boolean lineContains(char ch) {
+        for (int po = 0; po < lineLength; po++)
+            if (line[po] == ch)
+                return true;
+        return false;
+    }
+
+    /**
+     * This splits the current line at each separator, like String2.split
+     * (i.e., the items are trim'd and a missing final item is treated as "").
+     * This doesn't treat quotes or backslashes specially.
+     * The results are in itemStart[] and itemEnd[].
+     *
+     * @param separator If separator is '\u0000', the whole (trim'd) line is one item.
+     * @return the number of items
+     */
+    public int splitLine(char separator) {
+        int nItems = 0;
+        int start = 0;
+        for (int po = 0; po <= lineLength; po++) {
+            if (po < lineLength && (separator == '\u0000' || line[po] != separator))
+                continue;
+            if (nItems == itemStart.length) {
+                itemStart = Arrays.copyOf(itemStart, 2 * nItems);
+                itemEnd   = Arrays.copyOf(itemEnd,   2 * nItems);
+            }
+            int end = po;
+            while (start < end && line[start] <= ' ')
+                start++;
+            while (end > start && line[end - 1] <= ' ')
+                end--;
+            itemStart[nItems] = start;
+            itemEnd[nItems++] = end;
+            start = po + 1;
+        }
+        return nItems;
+    }
+
+    /** This returns item #i (from splitLine) as a String. */
+    public String itemString(int i) {
+        return new String(line, itemStart[i], itemEnd[i] - itemStart[i]);
+    }
+
+    /** This returns the first nItems items (from splitLine) as a String[] (e.g., for error messages). */
+    public String[] itemStrings(int nItems) {
+        String sar[] = new String[nItems];
+        for (int i = 0; i < nItems; i++)
+            sar[i] = itemString(i);
+        return sar;
+    }
+
+    /**
+     * This scans line[start to end) to see if it is a simple decimal number:
+     * an optional sign, 1 to 18 digits, and an optional decimal point (no exponent).
+     * If so, this sets negative, mantissa, hasPoint, and nFractionDigits.
+     *
+     * @return true if it is a simple decimal number
+     */
+    private boolean scanNumber(int start, int end) {
+        int po = start;
+        boolean tNegative = false;
+        if (po < end && (line[po] == '-' || line[po] == '+'))
+            tNegative = line[po++] == '-';
+        long m = 0;
+        int nDigits = 0;
+        int nFraction = 0;
+        boolean point = false;
+        for (; po < end; po++) {
+            char ch = line[po];
+            if (ch >= '0' && ch <= '9') {
+                if (++nDigits > 18)
+                    return false;
+                m = m * 10 + (ch - '0');
+                if (point)
+                    nFraction++;
+            } else if (ch == '.' && !point) {
+                point = true;
+            } else {
+                return false;
+            }
+        }
+        if (nDigits == 0)
+            return false;
+        negative = tNegative;
+        mantissa = m;
+        hasPoint = point;
+        nFractionDigits = nFraction;
+        return true;
+    }
+
+    /**
+     * This parses line[start to end) as a double, like String2.parseDouble.
+     *
+     * @param start the first char (it should already be trim'd)
+     * @param end the end char (exclusive)
+     * @return the value (or NaN if trouble)
+     */
+    public double parseDouble(int start, int end) {
+        //only use the fast path if the result is exact (and so correctly rounded)
+        if (scanNumber(start, end) && mantissa < (1L << 53) && nFractionDigits < POW10.length) {
+            double d = nFractionDigits == 0? mantissa : mantissa / POW10[nFractionDigits];
+            return negative? -d : d;
+        }
+        return String2.parseDouble(new String(line, start, end - start));
+    }
+
+    /**
+     * This parses line[start to end) and adds the value to pa,
+     * like pa.addString(item).
+     *
+     * @param pa any type of PrimitiveArray
+     * @param start the first char (it should already be trim'd)
+     * @param end the end char (exclusive)
+     */
+    public void addTo(PrimitiveArray pa, int start, int end) {
+        Class elementClass = pa.elementClass();
+        if (elementClass != String.class && elementClass != char.class &&
+            scanNumber(start, end)) {
+
+            if (elementClass == double.class) {
+                if (mantissa < (1L << 53) && nFractionDigits < POW10.length) {
+                    double d = nFractionDigits == 0? mantissa : mantissa / POW10[nFractionDigits];
+                    pa.addDouble(negative? -d : d);
+                    return;
+                }
+            } else if (elementClass == float.class) {
+                if (mantissa < (1L << 24) && nFractionDigits < POW10F.length) {
+                    float f = nFractionDigits == 0? mantissa : mantissa / POW10F[nFractionDigits];
+                    pa.addFloat(negative? -f : f);
+                    return;
+                }
+            } else if (!hasPoint) {
+                //long, int, short, byte
+                long tl = negative? -mantissa : mantissa;
+                if (elementClass == long.class) {
+                    pa.addLong(tl);
+                    return;
+                }
+                if (tl >= Integer.MIN_VALUE && tl <= Integer.MAX_VALUE) {
+                    pa.addInt((int)tl); //narrows like addString does
+                    return;
+                }
+            }
+        }
+        pa.addString(new String(line, start, end - start));
+    }
+
+    /**
+     * This closes the reader. It is okay to call this more than once.
+     *
+     * @throws IOException if trouble
+     */
+    public void close() throws IOException {
+        if (reader != null) {
+            Reader tReader = reader;
+            reader = null;
+            tReader.close();
+        }
+    }
+
+}
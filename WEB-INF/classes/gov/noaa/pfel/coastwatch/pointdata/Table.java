@@ -2079,9 +2079,44 @@ public class Table  {
         String testColumns[], double testMin[], double testMax[], 
         String loadColumns[], boolean simplify) throws Exception {
 
-        readASCII(fullFileName, String2.readLinesFromFile(fullFileName, charset, 2), 
-            columnNamesLine, dataStartLine, tColSeparator,
-            testColumns, testMin, testMax, loadColumns, simplify); 
+        readASCII(fullFileName, charset, columnNamesLine, dataStartLine, tColSeparator,
+            testColumns, testMin, testMax, loadColumns, null, simplify); 
+    }
+
+    /**
+     * This reads data from an ASCII file, one line at a time
+     * (so the whole file is never in memory as a String[]).
+     * <br>The lineSeparator can be \n, \r\n, or \r.
+     * <br>See readASCII(fileName, lineReader, ...) for other details.
+     *
+     * @param fullFileName
+     * @param charset  e.g., ISO-8859-1 (used if charset is null or "") or UTF-8.
+     * @param loadColumnClasses the classes of the loadColumns (e.g., double.class), 
+     *     so that numbers are parsed directly into the final type of column
+     *     (or null to load the columns as Strings).
+     * @throws Exception if trouble
+     */
+    public void readASCII(String fullFileName, String charset, int columnNamesLine, 
+        int dataStartLine, String tColSeparator,
+        String testColumns[], double testMin[], double testMax[], 
+        String loadColumns[], Class loadColumnClasses[], boolean simplify) throws Exception {
+
+        //rare: the column names are after the start of the data
+        if (columnNamesLine >= dataStartLine) {
+            readASCII(fullFileName, 
+                new AsciiLineReader(String2.readLinesFromFile(fullFileName, charset, 2)), 
+                columnNamesLine, dataStartLine, tColSeparator,
+                testColumns, testMin, testMax, loadColumns, loadColumnClasses, simplify); 
+            return;
+        }
+
+        AsciiLineReader lineReader = AsciiLineReader.open(fullFileName, charset);
+        try {
+            readASCII(fullFileName, lineReader, columnNamesLine, dataStartLine, tColSeparator,
+                testColumns, testMin, testMax, loadColumns, loadColumnClasses, simplify); 
+        } finally {
+            lineReader.close();
+        }
     }
  
     /** Another variant for compatibility with older code. 
@@ -2166,6 +2201,45 @@ public class Table  {
         String testColumns[], double testMin[], double testMax[], 
         String loadColumns[], boolean simplify) {
 
+        try {
+            readASCII(fileName, new AsciiLineReader(lines), columnNamesLine,
+                dataStartLine, tColSeparator, testColumns, testMin, testMax,
+                loadColumns, null, simplify);
+        } catch (IOException e) {
+            //this won't happen: reading lines from a String[] doesn't throw IOExceptions
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * This reads data from the lines from an AsciiLineReader (e.g., a file)
+     * one line at a time.
+     * See readASCII(fileName, lines[], ...) for details.
+     *
+     * <p>Lines are split in place and, for the loadColumnClasses which are numeric,
+     * simple numbers (e.g., -12.5) are parsed directly into the final column
+     * without making a String for each item.
+     * The rows which fail the tests are discarded as they are read.
+     * If the thread is interrupted, this stops early and throws an exception.
+     *
+     * @param fileName for diagnostic messages only
+     * @param lineReader the source of the lines.
+     *    If lineReader reads from a Reader (not a String[]),
+     *    columnNamesLine must be less than dataStartLine.
+     *    The caller should close it afterwards.
+     * @param loadColumnClasses the classes of the loadColumns (e.g., double.class or String.class)
+     *     (or null to load all the columns as Strings).
+     *     If this isn't null, loadColumns must be specified, too.
+     *     The values are parsed like PrimitiveArray.addString.
+     * @throws IOException if trouble while reading
+     * @throws RuntimeException if other trouble
+     *    (e.g., a specified testColumn or loadColumn not found)
+     */
+    public void readASCII(String fileName, AsciiLineReader lineReader, int columnNamesLine,
+        int dataStartLine, String tColSeparator,
+        String testColumns[], double testMin[], double testMax[],
+        String loadColumns[], Class loadColumnClasses[], boolean simplify) throws IOException {
+
         //validate parameters
         if (verbose) String2.log("Table.readASCII " + fileName); 
         long time = System.currentTimeMillis();
@@ -2178,30 +2252,61 @@ public class Table  {
             Test.ensureEqual(testColumns.length, testMax.length, 
                 errorInMethod + "testColumns.length != testMax.length.");
         }
+        if (loadColumnClasses != null) {
+            Test.ensureTrue(loadColumns != null,
+                errorInMethod + "loadColumns must be specified if loadColumnClasses is.");
+            Test.ensureEqual(loadColumns.length, loadColumnClasses.length,
+                errorInMethod + "loadColumns.length != loadColumnClasses.length.");
+        }
 
         //clear everything
         clear();
 
-        //remove empty rows at end
-        int nRows = lines.length - dataStartLine;
-        while (nRows > 0) {
-            String ts = lines[dataStartLine + nRows - 1].trim();
-            if (ts.length() == 0 || ts.equals("\r"))
-                nRows--;
-            else break;
+        //read the lines before the data
+        String oneLine;
+        String columnNamesString = null;
+        String lines[] = lineReader.lines(); //null if reading from a file
+        if (lines != null && columnNamesLine >= dataStartLine && columnNamesLine < lines.length)
+            columnNamesString = lines[columnNamesLine];
+        int lineNumber = 0;
+        while (lineNumber < dataStartLine && lineReader.nextLine()) {
+            if (lineNumber == columnNamesLine)
+                columnNamesString = lineReader.lineString();
+            lineNumber++;
+        }
+        if (columnNamesLine >= 0 && columnNamesString == null)
+            throw new IllegalArgumentException(errorInMethod +
+                "columnNamesLine=" + columnNamesLine + " wasn't found.");
+
+        //read ahead to get the first (up to) 3 data lines.
+        //Blank lines at the end are ignored, so the look-ahead lines must end
+        //with a non-blank line (or the end of the file).
+        ArrayList<String> aheadLines = new ArrayList();
+        boolean endOfFile = false;
+        while (aheadLines.size() < 3 ||
+               aheadLines.get(aheadLines.size() - 1).trim().length() == 0) {
+            if (!lineReader.nextLine()) {
+                endOfFile = true;
+                break;
+            }
+            aheadLines.add(lineReader.lineString());
+        }
+        if (endOfFile) { //remove empty rows at end
+            while (aheadLines.size() > 0 &&
+                   aheadLines.get(aheadLines.size() - 1).trim().length() == 0)
+                aheadLines.remove(aheadLines.size() - 1);
         }        
 
         //determine column separator
         //look for separator that appears the most and on in 3 test lines
-        String oneLine;
         char colSeparator = ',';
         if (tColSeparator == null || tColSeparator.length() == 0) {
             int nTab   = 1;
             int nComma = 1;
             int nSemi  = 1;
             int nSpace = 1;
-            for (int row = 0; row < Math.min(3, nRows); row++) {
-                oneLine = lines[dataStartLine + row];
+            for (int row = 0; row < Math.min(3, aheadLines.size()); row++) {
+                oneLine = aheadLines.get(row);
                 nTab   *= String2.countAll(oneLine, "\t");
                 nComma *= String2.countAll(oneLine, ",");
                 nSemi  *= String2.countAll(oneLine, ";");
@@ -2222,7 +2327,7 @@ public class Table  {
         //read the file's column names
         StringArray fileColumnNames = new StringArray();
         if (columnNamesLine >= 0) {
-            oneLine = lines[columnNamesLine];
+            oneLine = columnNamesString;
             if (oneLine.endsWith("\r"))
                 oneLine = oneLine.substring(0, oneLine.length() - 1);
             oneLine = oneLine.trim();
@@ -2243,35 +2348,76 @@ public class Table  {
         }
 
         //get the data
+        int capacity = lines == null? 8 : Math.max(1, lines.length - dataStartLine);
         int testColumnNumbers[] = null;
         int loadColumnNumbers[] = null;
-        StringArray loadColumnSA[] = null;
+        PrimitiveArray loadColumnPA[] = null;
+        StringArray loadColumnSA[] = null; //for each loadColumn: a StringArray, or null if not a StringArray
         boolean missingItemNoted = false;
         String canonicalEmptyString = String2.canonical("");
         int expectedNItems = -1;
-        for (int row = 0; row < nRows; row++) {
-            oneLine = lines[dataStartLine + row];
-            if (oneLine.endsWith("\r"))
-                oneLine = oneLine.substring(0, oneLine.length() - 1);
+        int aheadIndex = 0;
+        for (int row = 0; true; row++) {
+
+            //get the next line into lineReader
+            if (aheadIndex < aheadLines.size()) {
+                lineReader.setLine(aheadLines.get(aheadIndex++));
+            } else {
+                aheadLines.clear();
+                aheadIndex = 0;
+                if (endOfFile || !lineReader.nextLine())
+                    break;
+                if (lineReader.isBlank()) {
+                    //blank lines are only used if a non-blank line follows
+                    aheadLines.add(lineReader.lineString());
+                    while (!endOfFile) {
+                        if (lineReader.nextLine()) {
+                            aheadLines.add(lineReader.lineString());
+                            if (!lineReader.isBlank())
+                                break;
+                        } else {
+                            endOfFile = true;
+                        }
+                    }
+                    if (endOfFile)
+                        break;
+                    lineReader.setLine(aheadLines.get(aheadIndex++));
+                }
+            }
+            if (lineReader.lineLength > 0 &&
+                lineReader.line[lineReader.lineLength - 1] == '\r')
+                lineReader.lineLength--;
+            if (row % 10000 == 9999 && Thread.currentThread().isInterrupted())
+                throw new SimpleException(errorInMethod + "The thread was interrupted.");
 
             //break the lines into items
-            String items[];
-            if (colSeparator == '\u0000')
-                items = new String[]{oneLine.trim()};
-            else if (colSeparator == ' ')
-                items = StringArray.wordsAndQuotedPhrases(oneLine).toArray();
-            else if (colSeparator == ',')
-                items = StringArray.arrayFromCSV(oneLine);  //does handle "'d phrases
-            else items = String2.split(oneLine, colSeparator);
-            //if (verbose) String2.log("row=" + row + " nItems=" + items.length + 
-            //    "\nitems=" + String2.toCSSVString(items));
+            //Simple lines are split in place. items=null indicates that.
+            String items[] = null;
+            int nItems;
+            if (colSeparator == ' ' ||
+                lineReader.lineContains('"') || lineReader.lineContains('\\')) {
+                oneLine = lineReader.lineString();
+                if (colSeparator == '\u0000')
+                    items = new String[]{oneLine.trim()};
+                else if (colSeparator == ' ')
+                    items = StringArray.wordsAndQuotedPhrases(oneLine).toArray();
+                else if (colSeparator == ',')
+                    items = StringArray.arrayFromCSV(oneLine);  //does handle "'d phrases
+                else items = String2.split(oneLine, colSeparator);
+                nItems = items.length;
+            } else if (colSeparator == ',' && lineReader.lineLength == 0) {
+                nItems = 0; //as with arrayFromCSV
+            } else {
+                nItems = lineReader.splitLine(colSeparator);
+            }
+            //if (verbose) String2.log("row=" + row + " nItems=" + nItems);
 
             //one time things 
             if (row == 0) {
-                expectedNItems = items.length;
+                expectedNItems = nItems;
 
                 //make column names (if not done already) 
-                for (int col = fileColumnNames.size(); col < items.length; col++) {
+                for (int col = fileColumnNames.size(); col < nItems; col++) {
                     fileColumnNames.add("Column#" + col);
                 }
 
@@ -2290,26 +2436,32 @@ public class Table  {
                 if (loadColumns == null) {
                     //load all
                     loadColumnNumbers = new int[fileColumnNames.size()];
+                    loadColumnPA = new PrimitiveArray[fileColumnNames.size()];
                     loadColumnSA = new StringArray[fileColumnNames.size()];
                     for (int col = 0; col < fileColumnNames.size(); col++) {
                         loadColumnNumbers[col] = col;
-                        loadColumnSA[col] = new StringArray(nRows, false); 
+                        loadColumnSA[col] = new StringArray(capacity, false);
+                        loadColumnPA[col] = loadColumnSA[col];
                         addColumn(fileColumnNames.get(col), loadColumnSA[col]);                         
                     }
                 } else {
                     loadColumnNumbers = new int[loadColumns.length];
+                    loadColumnPA = new PrimitiveArray[loadColumns.length];
                     loadColumnSA = new StringArray[loadColumns.length];
                     for (int col = 0; col < loadColumns.length; col++) {
                         loadColumnNumbers[col] = fileColumnNames.indexOf(loadColumns[col], 0);
-                        loadColumnSA[col] = new StringArray(nRows, false); 
-                        addColumn(loadColumns[col], loadColumnSA[col]); 
+                        loadColumnPA[col] = PrimitiveArray.factory(
+                            loadColumnClasses == null? String.class : loadColumnClasses[col],
+                            capacity, false);
+                        if (loadColumnPA[col] instanceof StringArray)
+                            loadColumnSA[col] = (StringArray)loadColumnPA[col];
+                        addColumn(loadColumns[col], loadColumnPA[col]);
                     }
                 }
                 //if (verbose) String2.log("loadColumnNumbers=" + String2.toCSSVString(loadColumnNumbers));
             }
 
             //ensure nItems is correct
-            int nItems = items.length;
             if (!allowRaggedRightInReadASCII && expectedNItems != nItems) 
                 throw new RuntimeException(errorInMethod + 
                     "unexpected number of items on line #" + 
@@ -2322,7 +2474,9 @@ public class Table  {
                 int which = testColumnNumbers[test];
                 if (which < 0 || which >= nItems)  //value treated as NaN. NaN will fail any test.
                     continue;
-                double d = String2.parseDouble(items[which]);
+                double d = items == null?
+                    lineReader.parseDouble(lineReader.itemStart[which], lineReader.itemEnd[which]) :
+                    String2.parseDouble(items[which]);
                 if (d >= testMin[test] && d <= testMax[test]) { //NaN will fail this test
                     continue;
                 } else {ok = false; 
@@ -2339,10 +2493,19 @@ public class Table  {
                 int itemNumber = loadColumnNumbers[col];
                 if (itemNumber < 0) {
                     //request col is not in the file
-                    loadColumnSA[col].add(canonicalEmptyString); 
+                    loadColumnPA[col].addString(canonicalEmptyString);
                 } else if (itemNumber < nItems) {
-                    String s = String2.fromNccsvString(items[itemNumber]);
-                    if (simplify) 
+                    if (items == null && loadColumnSA[col] == null) {
+                        //parse a number without making a String
+                        lineReader.addTo(loadColumnPA[col],
+                            lineReader.itemStart[itemNumber], lineReader.itemEnd[itemNumber]);
+                        continue;
+                    }
+                    String s = items == null? lineReader.itemString(itemNumber) :
+                        String2.fromNccsvString(items[itemNumber]);
+                    if (loadColumnSA[col] == null)
+                         loadColumnPA[col].addString(s);
+                    else if (simplify)
                          loadColumnSA[col].addNotCanonical(s);
                     else loadColumnSA[col].add(s); //canonical
                 } else if (allowRaggedRightInReadASCII) {  
@@ -2354,19 +2517,21 @@ public class Table  {
                             itemNumber + " not present starting on row " + (dataStartLine + row) + ".\n" +
                             "fileColNames=" + fileColumnNames + "\n" +
                             "loadColumnNumbers=" + String2.toCSSVString(loadColumnNumbers) + "\n" +
-                            "line=" + String2.annotatedString(oneLine) + "\n" +
-                            "items=" + String2.toCSSVString(items));
+                            "line=" + String2.annotatedString(lineReader.lineString()) + "\n" +
+                            "items=" + String2.toCSSVString(
+                                items == null? lineReader.itemStrings(nItems) : items));
                         missingItemNoted = true;
                     }
-                    loadColumnSA[col].add(canonicalEmptyString); //missing value
+                    loadColumnPA[col].addString(canonicalEmptyString); //missing value
                 } else {
                     throw new IllegalArgumentException(
                         errorInMethod + "itemNumber " + 
                         itemNumber + " not present starting on row " + (dataStartLine + row) + ".\n" +
                         "fileColNames=" + fileColumnNames + "\n" +
                         "loadColumnNumbers=" + String2.toCSSVString(loadColumnNumbers) + "\n" +
-                        "line=" + String2.annotatedString(oneLine) + "\n" +
-                        "items=" + String2.toCSSVString(items));
+                        "line=" + String2.annotatedString(lineReader.lineString()) + "\n" +
+                        "items=" + String2.toCSSVString(
+                            items == null? lineReader.itemStrings(nItems) : items));
                 }
             }
         }
@@ -2475,6 +2640,23 @@ public class Table  {
 "5.0E200,k,15\n" +
 "6.0E200,l,16\n";
         Test.ensureEqual(results, expected, "results=\n" + results);
+
+        //read subset directly into typed columns 
+        table = new Table();
+        table.allowRaggedRightInReadASCII = true;
+        table.readASCII(fileName, String2.ISO_8859_1, 0, 1, "", 
+            new String[]{"aByte"}, new double[]{14}, new double[]{16}, 
+            new String[]{"aDouble","aString","aByte"},  //load cols
+            new Class[]{double.class, String.class, byte.class}, false);
+        results = table.dataToString();
+        Test.ensureEqual(results, expected, "results=\n" + results);
+        //test types
+        sa.clear();
+        for (int col = 0; col < table.nColumns(); col++) 
+            sa.add(table.getColumn(col).elementClassString());
+        results = sa.toString();
+        expected = "double, String, byte";
+        Test.ensureEqual(results, expected, "results=\n" + results);
     }
 
     /** 
@@ -2734,7 +2916,7 @@ public class Table  {
 
     /**
      * This is like readColumnarASCII, but this one actually reads the 
-     * data from the file.
+     * data from the file (one line at a time).
      *
      * @param charset ISO-8859-1 (used if charset is null or "") or UTF-8
      * @throws Exception if trouble
@@ -2744,9 +2926,13 @@ public class Table  {
         String loadColumns[], int startPo[], int endPo[], Class columnClass[]) 
         throws Exception {
 
-        String lines[] = String2.readLinesFromFile(fullFileName, charset, 2);
-        readColumnarASCII(fullFileName, lines, dataStartLine,
-            loadColumns, startPo, endPo, columnClass);
+        AsciiLineReader lineReader = AsciiLineReader.open(fullFileName, charset);
+        try {
+            readColumnarASCII(fullFileName, lineReader, dataStartLine,
+                loadColumns, startPo, endPo, columnClass);
+        } finally {
+            lineReader.close();
+        }
     }
 
     /**
@@ -2781,13 +2967,38 @@ public class Table  {
         int dataStartLine,
         String loadColumns[], int startPo[], int endPo[], Class columnClass[]) {
 
+        try {
+            readColumnarASCII(fileName, new AsciiLineReader(lines), dataStartLine,
+                loadColumns, startPo, endPo, columnClass);
+        } catch (IOException e) {
+            //this won't happen: reading lines from a String[] doesn't throw IOExceptions
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * This reads fixed length ASCII data from the lines from an AsciiLineReader 
+     * (e.g., a file) one line at a time.
+     * Numbers are parsed directly from the line (usually without making a String).
+     * See readColumnarASCII(fileName, lines[], ...) for details.
+     *
+     * @param fileName for diagnostic messages only
+     * @param lineReader the source of the lines. The caller should close it afterwards.
+     * @throws IOException if trouble while reading
+     * @throws RuntimeException if other trouble
+     */
+    public void readColumnarASCII(String fileName, AsciiLineReader lineReader, 
+        int dataStartLine,
+        String loadColumns[], int startPo[], int endPo[], Class columnClass[]) 
+        throws IOException {
+
         //validate parameters
         if (verbose) String2.log("Table.readColumnarASCII " + fileName); 
         long time = System.currentTimeMillis();
         String errorInMethod = String2.ERROR + " in Table.readColumnarASCII(" + fileName + "):\n";
         dataStartLine = Math.max(0, dataStartLine);
         int nCols = loadColumns.length;
-        int nRows = lines.length;
+        String lines[] = lineReader.lines(); //null if reading from a file
         Test.ensureEqual(loadColumns.length, startPo.length, 
             errorInMethod + "loadColumns.length != startPo.length.");
         Test.ensureEqual(loadColumns.length, endPo.length, 
@@ -2814,11 +3025,6 @@ public class Table  {
         //clear everything
         clear();
 
-        //remove rows at the end of the file that are length=0.
-        while (nRows > dataStartLine &&   //dataStartLine is at least 0
-            (lines[nRows-1].equals("")))
-            nRows--;
-
         //create the columns
         PrimitiveArray pa[] = new PrimitiveArray[nCols];
         ByteArray arBool[] = new ByteArray[nCols]; //ByteArray (from boolean) if boolean, else null
@@ -2826,26 +3032,54 @@ public class Table  {
         for (int col = 0; col < nCols; col++) {
             pa[col] = PrimitiveArray.factory(
                 columnClass[col] == boolean.class? byte.class : columnClass[col], 
-                Math.max(0, nRows - dataStartLine), false);
+                lines == null? 8 : Math.max(0, lines.length - dataStartLine), false);
             addColumn(loadColumns[col], pa[col]);
             arBool[col] = columnClass[col] == boolean.class? (ByteArray)(pa[col]) : null;
             arChar[col] = columnClass[col] == char.class?    (CharArray)(pa[col]) : null;
         }
 
+        //skip the lines before the data
+        int row = 0;
+        while (row < dataStartLine && lineReader.nextLine())
+            row++;
+
         //get the data
-        for (int row = dataStartLine; row < nRows; row++) {
-            String tLine = lines[row];
-            int tLength = tLine.length();
-            for (int col = 0; col < nCols; col++) {
-                String s = tLength > startPo[col]? 
-                    tLine.substring(startPo[col], Math.min(tLength, endPo[col])).trim() : "";
-                if (columnClass[col] == boolean.class)                     
-                    arBool[col].add(String2.parseBooleanToByte(s));
-                else if (arChar[col] != null)
-                    arChar[col].add(s.length() > 0? s.charAt(0) : Character.MAX_VALUE);
-                else pa[col].addString(s);
-                //if (row < dataStartLine + 3) String2.log(">> row=" + row + " col=" + col + " s=" + s);
+        int nEmptyLines = 0; //pending. They are only used if a non-empty line follows.
+        char line[];
+        while (lineReader.nextLine()) {
+            if (row % 10000 == 9999 && Thread.currentThread().isInterrupted())
+                throw new SimpleException(errorInMethod + "The thread was interrupted.");
+            row++;
+
+            //remove rows at the end of the file that are length=0.
+            if (lineReader.lineLength == 0) {
+                nEmptyLines++;
+                continue;
             }
+
+            //the pending empty lines (if any), then this line
+            line = lineReader.line;
+            for (int i = 0; i <= nEmptyLines; i++) {
+                int tLength = i < nEmptyLines? 0 : lineReader.lineLength;
+                for (int col = 0; col < nCols; col++) {
+                    //the trim'd substring (or "")
+                    int start = startPo[col];
+                    int end = Math.min(tLength, endPo[col]);
+                    while (start < end && line[start] <= ' ')
+                        start++;
+                    while (end > start && line[end - 1] <= ' ')
+                        end--;
+                    if (start >= end)
+                        start = end = 0;
+                    if (columnClass[col] == boolean.class)                     
+                        arBool[col].add(String2.parseBooleanToByte(new String(line, start, end - start)));
+                    else if (arChar[col] != null)
+                        arChar[col].add(end > start? line[start] : Character.MAX_VALUE);
+                    else lineReader.addTo(pa[col], start, end);
+                    //if (row < dataStartLine + 3) String2.log(">> row=" + row + " col=" + col);
+                }
+            }
+            nEmptyLines = 0;
         }
 
         //simplify
@@ -6104,6 +6338,20 @@ Dataset {
     public void readNDNc(String fullName, String loadVariableNames[], 
         String constraintAxisVarName, double constraintMin, double constraintMax, 
         boolean getMetadata) throws Exception {
+        readNDNc(fullName, loadVariableNames, constraintAxisVarName, 
+            constraintMin, constraintMax, getMetadata, false);
+    }
+
+    /**
+     * This is like the other readNDNc, but optionally gets the ncFile from
+     * NcHelper.ncFilePool (and returns it there when done).
+     * Use the pool for files which are read repeatedly (e.g., by EDDTableFromNcFiles).
+     *
+     * @param usePool if true, the ncFile is gotten from NcHelper.ncFilePool.
+     */
+    public void readNDNc(String fullName, String loadVariableNames[], 
+        String constraintAxisVarName, double constraintMin, double constraintMax, 
+        boolean getMetadata, boolean usePool) throws Exception {
 
         //clear the table
         clear();
@@ -6117,7 +6365,8 @@ Dataset {
         long time = System.currentTimeMillis();
         String errorInMethod = String2.ERROR + " in Table.readNDNc " + fullName + ":\n";
         //get information
-        NetcdfFile ncFile = NcHelper.openFile(fullName);
+        NetcdfFile ncFile = usePool? NcHelper.ncFilePool.acquire(fullName) : 
+            NcHelper.openFile(fullName);
         try {
             //load the global metadata
             if (getMetadata)
@@ -6442,13 +6691,15 @@ Dataset {
             }
             
             //I do care if this throws exception
-            ncFile.close(); 
+            if (usePool) NcHelper.ncFilePool.release(ncFile, true);
+            else ncFile.close(); 
             decodeCharsAndStrings();
 
         } catch (Exception e) {
-            //make sure ncFile is explicitly closed
+            //make sure ncFile is explicitly closed (not returned to the pool)
             try {
-                ncFile.close(); 
+                if (usePool) NcHelper.ncFilePool.release(ncFile, false);
+                else ncFile.close(); 
             } catch (Exception e2) {
                 //don't care
             }
@@ -26552,6 +26803,117 @@ String2.log(table.dataToString());
         File2.delete(fileName);
     }
 
+    /**
+     * This tests that readASCII gets the same results with all line terminators
+     * (\n, \r, and \r\n), with and without a terminator on the last line,
+     * and with empty lines; and that the fast path (reading a file one line at a time,
+     * splitting each line in place, and parsing the numbers without making Strings)
+     * gets the same results as the old path (a String[] of lines, 
+     * or lines with quotes, which are split into Strings which are then parsed).
+     *
+     * @throws Exception if trouble
+     */
+    public static void testReadASCIILineEndings() throws Exception {
+        String2.log("\n***** Table.testReadASCIILineEndings");
+        verbose = true;
+        String fileName = testDir + "tempTableLineEndings.csv";
+        String charset = String2.ISO_8859_1;
+        String loadColumns[] = {"i", "d", "f", "s"};
+        Class loadColumnClasses[] = {int.class, double.class, float.class, String.class};
+        String lines[] = {"i,d,f,s", 
+            "1,2.5,-0.125,a", 
+            "-30,1e3,1234567.8,b", 
+            "007,0.1,NaN,", 
+            "2147483648,123456789012345678,16777217,d"};
+        String expected = String2.toNewlineString(lines);
+        //the same, but the quotes force the old path
+        String quotedLines[] = {"i,d,f,s", 
+            "1,2.5,-0.125,\"a\"", 
+            "-30,1e3,1234567.8,\"b\"", 
+            "007,0.1,NaN,\"\"", 
+            "2147483648,123456789012345678,16777217,\"d\""};
+
+        //the old path: the numbers are parsed with PrimitiveArray.addString
+        Table table = new Table();
+        table.readASCII(fileName, new AsciiLineReader(quotedLines), 0, 1, ",", 
+            null, null, null, loadColumns, loadColumnClasses, false);
+        String expectedTyped = table.dataToString();
+        Test.ensureEqual(table.nRows(), 4, "");
+        Test.ensureEqual(table.getIntData(0, 1), -30, "");
+        Test.ensureEqual(table.getIntData(0, 2), 7, "");
+        Test.ensureEqual(table.getDoubleData(1, 1), 1000, "");
+        Test.ensureEqual(table.getStringData(3, 0), "a", "");
+        Test.ensureEqual(table.getStringData(3, 2), "", "");
+
+        String terminators[] = {"\n", "\r", "\r\n"};
+        for (int ti = 0; ti < terminators.length; ti++) {
+            //end: 0=no terminator on the last line, 1=a terminator, 2=then empty lines
+            for (int end = 0; end < 3; end++) {
+                String term = terminators[ti];
+                String msg = "term=" + String2.annotatedString(term) + " end=" + end;
+                Test.ensureEqual(String2.writeToFile(fileName, 
+                    String2.toSVString(lines, term, end > 0) + 
+                        (end == 2? term + "  " + term : ""), 
+                    charset), "", msg);
+
+                //all Strings: the fast path (the file is read one line at a time)
+                table = new Table();
+                table.readASCII(fileName, charset, 0, 1, ",", 
+                    null, null, null, null, false);
+                Test.ensureEqual(table.dataToString(), expected, msg);
+
+                //all Strings: the old path (the lines are read into a String[])
+                table = new Table();
+                table.readASCII(fileName, String2.readLinesFromFile(fileName, charset, 2), 
+                    0, 1, ",", null, null, null, null, false);
+                Test.ensureEqual(table.dataToString(), expected, msg);
+
+                //numbers: the fast path (they are parsed in place)
+                table = new Table();
+                table.readASCII(fileName, charset, 0, 1, ",", 
+                    null, null, null, loadColumns, loadColumnClasses, false);
+                Test.ensureEqual(table.dataToString(), expectedTyped, msg);
+            }
+        }
+
+        //an empty line in the data is an error,
+        //unless allowRaggedRightInReadASCII (then it is a row of missing values)
+        String midLines[] = {"i,d,f,s", "1,2.5,-0.125,a", "", "-30,1e3,1234567.8,b"};
+        Test.ensureEqual(String2.writeToFile(fileName, 
+            String2.toSVString(midLines, "\r\n", true), charset), "", "");
+        table = new Table();
+        String msg = "shouldn't get here";
+        try {
+            table.readASCII(fileName, charset, 0, 1, ",", 
+                null, null, null, null, false);
+        } catch (Exception e) {
+            msg = e.getMessage();
+        }
+        Test.ensureTrue(msg.indexOf(
+            "unexpected number of items on line #3 (observed=0, expected=4).") >= 0, "msg=" + msg);
+
+        expected = "i,d,f,s\n1,2.5,-0.125,a\n,,,\n-30,1e3,1234567.8,b\n";
+        table = new Table();
+        table.allowRaggedRightInReadASCII = true;
+        table.readASCII(fileName, charset, 0, 1, ",", 
+            null, null, null, null, false);
+        Test.ensureEqual(table.dataToString(), expected, "");
+        table = new Table();
+        table.allowRaggedRightInReadASCII = true;
+        table.readASCII(fileName, midLines, 0, 1, ",", 
+            null, null, null, null, false);
+        Test.ensureEqual(table.dataToString(), expected, "");
+        table = new Table();
+        table.allowRaggedRightInReadASCII = true;
+        table.readASCII(fileName, charset, 0, 1, ",", 
+            null, null, null, loadColumns, loadColumnClasses, false);
+        Test.ensureEqual(table.nRows(), 3, "");
+        Test.ensureEqual(table.getIntData(0, 2), -30, "");
+        Test.ensureEqual(table.getStringData(3, 1), "", "");
+
+        File2.delete(fileName);
+    }
+
     /**
      * Test readStandardTabbedASCII.
      *
@@ -28930,6 +29292,7 @@ readAsNcCF?
         
         //readWrite tests
         testASCII();
+        testReadASCIILineEndings();
         testReadAsciiCsvFile();
         testReadAsciiSsvFile();
         testNccsv();
@@ -8,7 +8,6 @@ import com.cohort.array.PrimitiveArray;
 import com.cohort.array.DoubleArray;
 import com.cohort.array.IntArray;
 import com.cohort.util.File2;
-import com.cohort.util.LRUCache;
 import com.cohort.util.Math2;
 import com.cohort.util.String2;
 import com.cohort.util.Test;
@@ -20,8 +19,6 @@ import gov.noaa.pmel.sgt.dm.*;
 
 import java.io.File;
 import java.io.*;
-import java.util.Collections;
-import java.util.Map;
 
 
 /**
@@ -71,7 +68,7 @@ public class Boundaries  {
      * <br>There are 3 types of boundaries (National, State, Rivers).  
      */
     public final static int CACHE_SIZE = 100;
-    private Map cache = Collections.synchronizedMap(new LRUCache(CACHE_SIZE));
+    private GeometryStore.Cache cache = new GeometryStore.Cache(CACHE_SIZE);
     private int nCoarse = 0;
     private int nSuccesses = 0;
     private int nTossed = 0;
@@ -138,7 +135,7 @@ public class Boundaries  {
 
     /**
      * This gets the SGTLine with the relevant boundary information.
-     * This is thread-safe because the cache is thread-safe.
+     * This is thread-safe because the cache and GeometryStore are thread-safe.
      *
      * @param resolution 0='f'ull, 1='h'igh, 2='i'ntermediate, 3='l'ow, 4='c'rude.
      * @param west usually 0..360 or +/-180, but -720 to 720 is supported
@@ -152,12 +149,12 @@ public class Boundaries  {
         int resolution, double west, double east, 
         double south, double north) throws Exception {
 
-        String cachedName = String2.canonical(
+        String cachedName = 
             resolution + 
             "W" + String2.genEFormat10(west) +
             "E" + String2.genEFormat10(east) +
             "S" + String2.genEFormat10(south) +
-            "N" + String2.genEFormat10(north));
+            "N" + String2.genEFormat10(north);
         if (reallyVerbose) String2.log("  Boundaries.getSgtLine " + id + " request=" + cachedName);
         long time = System.currentTimeMillis();
         String tCoarse = "";
@@ -178,39 +175,36 @@ public class Boundaries  {
 
             //Cache it. Higher resolutions are slower because source file is bigger.
             //  Request is a very small part of whole world. Most paths will be rejected.
-            //Thread-safe creation of the SGTLine 
+            //The cache is thread-safe and doesn't lock on get().
             //  If there are almost simultaneous requests for the same one, 
-            //  only one thread will make it.
-            //Cache is thread-safe so synch on cachedName, not cache.
-            synchronized(cachedName) {
-
-                //*** is SGTLine in cache?
-                sgtLine = (SGTLine)cache.get(cachedName);
-                if (sgtLine == null) {
-
-                    //not in cache, make SgtLine
-                    sgtLine = readSgtLineDouble(directory + fileNames[resolution], 
-                        west, east, south, north);
-
-                    //cache full?  
-                    if (cache.size() == CACHE_SIZE) {
-                        nTossed++;
-                        tTossed = "*";
-                    } else {
-                        //if cache wasn't full, treat as success
-                        nSuccesses++;
-                        tSuccess = "*";
-                    }
+            //  both threads make it (that's fast) and the last one is cached.
 
-                    //add new path to cache
-                    cache.put(cachedName, sgtLine);
+            //*** is SGTLine in cache?
+            sgtLine = (SGTLine)cache.get(cachedName);
+            if (sgtLine == null) {
 
-                } else {
+                //not in cache, make SgtLine
+                sgtLine = readSgtLineDouble(directory + fileNames[resolution], 
+                    west, east, south, north);
 
-                    //yes, it is in cache; 
+                //cache full?  
+                if (cache.size() == CACHE_SIZE) {
+                    nTossed++;
+                    tTossed = "*";
+                } else {
+                    //if cache wasn't full, treat as success
                     nSuccesses++;
-                    tSuccess = "*(alreadyInCache)";
+                    tSuccess = "*";
                 }
+
+                //add new path to cache
+                cache.put(cachedName, sgtLine);
+
+            } else {
+
+                //yes, it is in cache; 
+                nSuccesses++;
+                tSuccess = "*(alreadyInCache)";
             }
         }
 
@@ -229,7 +223,8 @@ public class Boundaries  {
     /**
      * This creates an SGTLine from the line (e.g., boundary) 
      * info in an SGTLine object.
-     * This is the newer version that reads from .double files.
+     * This is the newer version that reads from .double files
+     * (via GeometryStore, which memory-maps and indexes each file the first time it is used).
      * 
      * @param fullFileName the full name of the .double format source file
      * @param requestMinX usually 0..360 or +/-180, but -720 to 720 is supported
@@ -247,8 +242,7 @@ public class Boundaries  {
 
         //if (reallyVerbose) String2.log("    readSGTLine");
 
-        DataInputStream dis = new DataInputStream( new BufferedInputStream(
-            new FileInputStream(fullFileName)));
+        GeometryStore store = GeometryStore.get(fullFileName, GeometryStore.DOUBLE_FORMAT);
         DoubleArray lat = new DoubleArray(); //accumlate the results
         DoubleArray lon = new DoubleArray();
         double shift[] = {-720, -360, 0, 360};
@@ -261,28 +255,17 @@ public class Boundaries  {
         }
         int nObjects = 0, nLatSkip = 0, nLonSkip = 0, nKeep = 0;
         //double minMinLon = 1e10, maxMaxLon = -1e10;   //file has minMinLon=6.10360875868E-4 maxMaxLon=359.99969482
-        while (true) { 
-            //read a path
-
-            //first value, first row should be NaN
-            if (!Double.isNaN(dis.readDouble())) {
-                dis.close();
-                throw new RuntimeException("Unexpected finite value at beginning of path in " +
-                    fullFileName);
-            }
-
-            //second value, first row is nPoints
-            int nPoints = Math2.roundToInt(dis.readDouble());
-            if (nPoints <= 0 || nPoints == Integer.MAX_VALUE) {
-                //end of file
-                break;
-            }
-
-            //read path's minLon minLat
-            double minLon = dis.readDouble();
-            double minLat = dis.readDouble();      
-            double maxLon = dis.readDouble();
-            double maxLat = dis.readDouble(); 
+        int candidates[] = store.candidates(requestMinX, requestMaxX, requestMinY, requestMaxY,
+            shift);
+        nLatSkip = store.nParts - candidates.length; //rejected by the spatial index
+        for (int ci = 0; ci < candidates.length; ci++) { 
+            //get a path's nPoints, minLon, minLat, maxLon, maxLat
+            int part = candidates[ci];
+            int nPoints = store.nPoints(part);
+            double minLon = store.west(part);
+            double minLat = store.south(part);
+            double maxLon = store.east(part);
+            double maxLat = store.north(part); 
             
             //if (debug) {
             //    minMinLon = Math.min(minMinLon, minLon);
@@ -293,7 +276,6 @@ public class Boundaries  {
             if (minLat > requestMaxY || maxLat < requestMinY) {
                 //skip this path
                 nLatSkip++;
-                dis.skipBytes(nPoints * 16);
                 continue;
             }
 
@@ -317,7 +299,6 @@ public class Boundaries  {
             if (!displayIt) {
                 //skip this path
                 nLonSkip++;
-                dis.skipBytes(nPoints * 16);
                 continue;
             }
             nKeep++;
@@ -331,8 +312,8 @@ public class Boundaries  {
             for (int point = 0; point < nPoints; point++) {
                 oLon = tLon;
                 oLat = tLat;
-                tLon = dis.readDouble();
-                tLat = dis.readDouble();      
+                tLon = store.lon(part, point);
+                tLat = store.lat(part, point);      
                 if (debug) {
                     polyMinLon = Math.min(polyMinLon, tLon);
                     polyMaxLon = Math.max(polyMaxLon, tLon);
@@ -395,7 +376,6 @@ public class Boundaries  {
             }
         }
 
-        dis.close();
         if (reallyVerbose) String2.log("    Boundaries.readSgtLine nLatSkip=" + nLatSkip +
             " nLonSkip=" + nLonSkip + " nKeep=" + nKeep + " nObjects=" + nObjects);        
         //if (debug) String2.log(">>>      minMinLon=" + minMinLon + " maxMaxLon=" + maxMaxLon);
@@ -6,7 +6,6 @@ package gov.noaa.pfel.coastwatch.sgt;
 
 import com.cohort.array.IntArray;
 import com.cohort.util.File2;
-import com.cohort.util.LRUCache;
 import com.cohort.util.Math2;
 import com.cohort.util.String2;
 import com.cohort.util.Test;
@@ -17,8 +16,6 @@ import gov.noaa.pfel.coastwatch.util.SSR;
 import java.awt.geom.GeneralPath;
 import java.io.File;
 import java.io.*;
-import java.util.Collections;
-import java.util.Map;
 
 
 /**
@@ -73,7 +70,7 @@ public class GSHHS  {
      * <br>Remember that land and lakes are requested/cached separately.
      */
     public final static int CACHE_SIZE = 100;
-    private static Map cache = Collections.synchronizedMap(new LRUCache(CACHE_SIZE));
+    private static GeometryStore.Cache cache = new GeometryStore.Cache(CACHE_SIZE);
     private static int nCoarse = 0;
     private static int nSuccesses = 0;
     private static int nTossed = 0;
@@ -85,7 +82,7 @@ public class GSHHS  {
 
     /**
      * This gets the GeneralPath with the relevant shoreline information.
-     * This is thread-safe because the cache is thread-safe.
+     * This is thread-safe because the cache and GeometryStore are thread-safe.
      *
      * @param resolution 'f'ull, 'h'igh, 'i'ntermediate, 'l'ow, 'c'rude.
      * @param desiredLevel determines the specific level of data:
@@ -105,13 +102,13 @@ public class GSHHS  {
         char resolution, int desiredLevel, double westDeg, double eastDeg, 
         double southDeg, double northDeg, boolean addAntarcticCorners) throws Exception {
 
-        String cachedName = String2.canonical(
+        String cachedName = 
             "GSHHS" + resolution + desiredLevel +
             "W" + String2.genEFormat10(westDeg) +
             "E" + String2.genEFormat10(eastDeg) +
             "S" + String2.genEFormat10(southDeg) +
             "N" + String2.genEFormat10(northDeg) +
-            "A" + (addAntarcticCorners? "1" : "0"));
+            "A" + (addAntarcticCorners? "1" : "0");
         if (reallyVerbose) String2.log("  GSHHS.getGeneralPath request=" + cachedName);
         long time = System.currentTimeMillis();
         String tCoarse = "";
@@ -135,37 +132,34 @@ public class GSHHS  {
 
             //Cache it. Higher resolutions are slower because source file is bigger.
             //  Request is a very small part of whole world. Most paths will be rejected.
-            //Thread-safe creation of the GeneralPath
+            //The cache is thread-safe and doesn't lock on get().
             //  If there are almost simultaneous requests for the same one, 
-            //  only one thread will make it.
-            //Cache is thread-safe so synch on cachedName, not cache.
-            synchronized(cachedName) {
-
-                //*** is GeneralPath in cache?
-                path = (GeneralPath)cache.get(cachedName);
-                if (path == null) {
-
-                    //not in cache, so make GeneralPath
-                    path = rawGetGeneralPath(resolution, desiredLevel, 
-                        westDeg, eastDeg, southDeg, northDeg, addAntarcticCorners);
-
-                    //cache full?
-                    if (cache.size() == CACHE_SIZE) {
-                        tTossed = "*";
-                        nTossed++;
-                    } else {
-                        tSuccess = "*";  //if cache wasn't full, treat as success
-                        nSuccesses++;
-                    }
+            //  both threads make it (that's fast) and the last one is cached.
 
-                    //put new path in the cache
-                    cache.put(cachedName, path);
+            //*** is GeneralPath in cache?
+            path = (GeneralPath)cache.get(cachedName);
+            if (path == null) {
 
+                //not in cache, so make GeneralPath
+                path = rawGetGeneralPath(resolution, desiredLevel, 
+                    westDeg, eastDeg, southDeg, northDeg, addAntarcticCorners);
+
+                //cache full?
+                if (cache.size() == CACHE_SIZE) {
+                    tTossed = "*";
+                    nTossed++;
                 } else {
-                    //yes, it is in cache.   
-                    tSuccess = "*(already in cache)";
+                    tSuccess = "*";  //if cache wasn't full, treat as success
                     nSuccesses++;
                 }
+
+                //put new path in the cache
+                cache.put(cachedName, path);
+
+            } else {
+                //yes, it is in cache.   
+                tSuccess = "*(already in cache)";
+                nSuccesses++;
             }
         }
 
@@ -219,7 +213,8 @@ public class GSHHS  {
     }
 
     /**
-     * This actually reads the GSHHS files and populates lon and lat with info for a GeneralPath.
+     * This actually reads the GSHHS files (via GeometryStore, which memory-maps and indexes
+     * each file the first time it is used) and populates lon and lat with info for a GeneralPath.
      * This has nothing to do with the cache system.
      *
      * @param gshhsDir the directory with the gshhs_[fhilc].b data files, with a slash at the end.
@@ -262,81 +257,29 @@ public class GSHHS  {
         int shift[] = {-2 * intShift, -intShift, 0, intShift};
         boolean doShift[] = new boolean[4];
 
-        //open the file
-        //String2.log(File2.hexDump(dir + "gshhs_" + resolution + ".b", 10000));
-        DataInputStream dis = new DataInputStream(new BufferedInputStream(
-            new FileInputStream(gshhsDir + "gshhs_" + resolution + ".b")));
-        byte buffer[] = new byte[4];
+        //get the polygons which might be relevant from the (memory-mapped, indexed) file
+        GeometryStore store = GeometryStore.get(gshhsDir + "gshhs_" + resolution + ".b", 
+            GeometryStore.GSHHS_FORMAT);
+        int candidates[] = store.candidates(desiredWest, desiredEast, desiredSouth, desiredNorth,
+            new double[]{shift[0], shift[1], shift[2], shift[3]});
 
-        //read the records
         //the xArrays and yArrays grow as needed
-        int xArray[] = new int[1];
-        int yArray[] = new int[1];
+        int extraX[] = new int[3];
+        int extraY[] = new int[3];
         int xArray2[] = new int[1];
         int yArray2[] = new int[1];
-        boolean aMsgDisplayed = false;
-        boolean gMsgDisplayed = false;
-        int count = 0;
-        while (dis.available() > 0) {
-            //read the header
-            /* old GSHHS v 1.x
-            int id        = dis.readInt();   
-            int n         = dis.readInt();   
-            int level     = dis.readInt(); 
-            int west      = dis.readInt();  
-            int east      = dis.readInt();   
-            int south     = dis.readInt();   
-            int north     = dis.readInt();  
-            int area      = dis.readInt();   
-            int greenwich = dis.readShort(); //1 == it crosses greenwich
-            int source    = dis.readShort(); 
-            */
-
-            //GSHHS v2.1.1  2011-03-14
-            //GPL License http://www.soest.hawaii.edu/pwessel/gshhs/README.TXT
-            //int id        = DataStream.readInt(true, dis, buffer); // Unique polygon id number, starting at 0 
-            int id        = dis.readInt(); // Unique polygon id number, starting at 0 
-            int n         = dis.readInt(); // Number of points in this polygon 
-            int flag      = dis.readInt(); // = level + version << 8 + greenwich << 16 + source << 24 + river << 25 
-            // flag contains 5 items, as follows:
-            // low byte:    level = flag & 255: Values: 1 land, 2 lake, 3 island_in_lake, 4 pond_in_island_in_lake
-            // 2nd byte:    version = (flag >> 8) & 255: Values: Should be 7 for GSHHS release 7 (i.e., version 2.0)
-            // 3rd byte:    greenwich = (flag >> 16) & 1: Values: Greenwich is 1 if Greenwich is crossed
-            // 4th byte:    source = (flag >> 24) & 1: Values: 0 = CIA WDBII, 1 = WVS
-            // 4th byte:    river = (flag >> 25) & 1: Values: 0 = not set, 1 = river-lake and level = 2
-            //
-            int west      = dis.readInt(); // min/max extent in micro-degrees    0 - 360 deg
-            int east      = dis.readInt(); 
-            int south     = dis.readInt(); 
-            int north     = dis.readInt(); 
-            int area      = dis.readInt(); // Area of polygon in 1/10 km^2 
-            int area_full = dis.readInt(); // Area of original full-resolution polygon in 1/10 km^2 
-            int container = dis.readInt(); // Id of container polygon that encloses this polygon (-1 if none) 
-            int ancestor  = dis.readInt(); // Id of ancestor polygon in the full resolution set that was the source of this polygon (-1 if none) 
-
+        for (int ci = 0; ci < candidates.length; ci++) {
+            //the header info   (see GeometryStore for the GSHHS v2.1.1 file format)
+            int p = candidates[ci];
+            int n         = store.nPoints(p);
+            int flag      = store.flag(p);
+            int west      = (int)store.west(p); // min/max extent in micro-degrees    0 - 360 deg
+            int east      = (int)store.east(p); 
+            int south     = (int)store.south(p); 
+            int north     = (int)store.north(p); 
             int level = flag & 255;
             int greenwich = (flag >> 16) & 1; //Values: Greenwich is 1 if Greenwich is crossed
 
-            //if (debug && west > east) String2.pressEnterToContinue("  west=" + west + "east=" + east + " greenwich=" + greenwich);
-
-            //if (greenwich == 1)                        
-            //String2.log("id=" + id + " level=" + level + " gwch=" + greenwich + " ver=" + ((flag >> 8) & 255) + 
-            //  " n=" + n + " wesn=" + west + "/" + east + "/" + south + "/" + north);
-
-            //tests show greenwich objects have a negative west bound (e.g., -1deg)
-            //even though <0 lon values are stored +360
-            //if (!gMsgDisplayed && greenwich == 1) {
-            //    String2.log("greenwich n=" + n + " west=" + west + " east=" + east + " south=" + south + " north=" + north);
-            //    gMsgDisplayed = true;
-            //}
-
-            //tests show antarctic object has 
-            //bounds (degrees) are west=0 east=360 south=-90 north=-63
-            //if (!aMsgDisplayed && south < -60000000) {
-            //    String2.log("antartic n=" + n + " west=" + west + " east=" + east + " south=" + south + " north=" + north);
-            //    aMsgDisplayed = true;
-            //}
-
             //Do the tests for the 4 possible independent uses of this data.
             boolean levelAndLatOK = level == desiredLevel &&  //was <=
                 south < desiredNorth &&
@@ -360,70 +303,40 @@ public class GSHHS  {
             //can I use the object?   
             if (doSomething && !skip) {
 
-                //read the data
-                if (n + 4 > xArray.length) {
-                    xArray = new int[n + 4];  //+4 for addAntarticCorners
-                    yArray = new int[n + 4];
-                }
-                for (int i = 0; i < n; i++) {
-                    xArray[i] = dis.readInt();
-                    yArray[i] = dis.readInt();
-                    //String2.log("xarray=" +String2.toCSSVString(xArray));
-                    //String2.log("yarray=" +String2.toCSSVString(yArray));
-                }  
-
-                //for addAntarcticCorners, insert points at corners of map.
+                //for addAntarcticCorners, add points at corners of map.
                 //antarctic object bounds (degrees) are west=0 east=360 south=-90 north=-63
-                //search for lon=0
-                if (south == -90000000) { //catches antarctic polygon
-                    //this shows first x=360 (exact), x decreases to 0 (exact)
-                    //  and y's are the perimeter (not to south pole)
-                    //String2.log("antarctic n=" + n + " x[0]=" + xArray[0] + 
-                    //    " x[1]=" + xArray[1] + " x[n-2]=" + xArray[n-2] + 
-                    //    " x[n-1]=" + xArray[n-1] + "\n" +
-                    //    "    y[0]=" + yArray[0] + 
-                    //    " y[1]=" + yArray[1] + " y[n-2]=" + yArray[n-2] + 
-                    //    " y[n-1]=" + yArray[n-1]);
-                    if (addAntarcticCorners) {
-                        //add the 3 antarctic corner points to make a polygon (1st pt = last)
-                        //this leaves seam at x=0 ... x=360
-                        xArray[n    ] = 0;         yArray[n    ] = -90000000;
-                        xArray[n + 1] = 360000000; yArray[n + 1] = -90000000;
-                        xArray[n + 2] = 360000000; yArray[n + 2] = yArray[0];
-                        n += 3;
+                //  first x=360 (exact), x decreases to 0 (exact)
+                //  and y's are the perimeter (not to south pole)
+                int nExtra = 0;
+                if (south == -90000000 && addAntarcticCorners) { //catches antarctic polygon
+                    //add the 3 antarctic corner points to make a polygon (1st pt = last)
+                    //this leaves seam at x=0 ... x=360
+                    extraX[0] = 0;         extraY[0] = -90000000;
+                    extraX[1] = 360000000; extraY[1] = -90000000;
+                    extraX[2] = 360000000; extraY[2] = store.y(p, 0);
+                    nExtra = 3;
+                    //if polygon crosses greenwich, x's < 0 are stored +360 degrees
+                    //  (store.x() shifts the polygon's points left)
+                    if (greenwich == 1) {
+                        for (int i = 0; i < nExtra; i++) 
+                            if (extraX[i] > east) 
+                                extraX[i] -= intShift; 
                     }
                 }
-
-                //if polygon crosses greenwich, x's < 0 are stored +360 degrees
-                //see https://www.ngdc.noaa.gov/mgg/shorelines/gshhs.html  where is new gshhs.c?
-                //so shift left so points are continguous and match west/east of the polygon
-                if (greenwich == 1) {
-                    for (int i = 0; i < n; i++) 
-                        if (xArray[i] > east) {
-                            xArray[i] -= intShift; 
-                            //String2.log("greenwich left"); 
-                        }
-                }  
-                
+                if (n + nExtra > xArray2.length) {
+                    xArray2 = new int[n + nExtra];
+                    yArray2 = new int[n + nExtra];
+                }
 
                 //test/do each doShift
                 for (int ds = 0; ds < 4; ds++) {
                     if (doShift[ds]) {
                         int tShift = shift[ds];
 
-                        //copy the data into x/yArray2's  
-                        //so source data is undisturbed for other doShift
-                        if (n > xArray2.length) {
-                            xArray2 = new int[n];
-                            yArray2 = new int[n];
-                        }
-                        System.arraycopy(xArray, 0, xArray2, 0, n);
-                        System.arraycopy(yArray, 0, yArray2, 0, n);
-
                         //reduce and draw
-                        int tn = reduce(n, xArray2, yArray2, 
+                        int tn = store.reduce(p, extraX, extraY, nExtra, 
                             desiredWest - tShift, desiredEast - tShift, //faster to shift desired the opposite way                      
-                            desiredSouth, desiredNorth);                //  than to shift xArray2 the correct way
+                            desiredSouth, desiredNorth, xArray2, yArray2); //  than to shift xArray2 the correct way
                         if (tn > 0) {
                             lon.add(Integer.MAX_VALUE); //indicates moveTo next point
                             lat.add(Integer.MAX_VALUE);
@@ -434,16 +347,8 @@ public class GSHHS  {
                         }
                     }
                 }
-
-            } else {
-                //skip over the data
-                long remain = 8L * n;   //2 (x,y) * 4 (bytes/int)
-                while (remain > 0) 
-                    remain -= dis.skip(remain);
             }
-
         }
-        dis.close();
         if (reallyVerbose) String2.log("  GSHHS.getPathInfo done. res=" + resolution +
             " level=" + (desiredLevel==1? "land" : desiredLevel==2? "lake" : "" + desiredLevel) + 
             " TIME=" + (System.currentTimeMillis() - time) + "ms");
@@ -464,7 +369,59 @@ public class GSHHS  {
      * @param north  appropriate for ya
      * @return n the new active number of points in the arrays (may be 0)
      */
-    public static int reduce(int n, int x[], int y[], 
+    public static int reduce(int n, final int x[], final int y[], 
+        int west, int east, int south, int north) {
+
+        if (x == null || y == null) 
+            n = 0;
+        //the points are reduced in place (nGood is always <= the index being read)
+        return reduce(n, new ReducePoints() {
+                public int x(int i) {return x[i];}
+                public int y(int i) {return y[i];}
+                public int sameSectorEnd(int i, int tWest, int tEast, int tSouth, int tNorth) {
+                    return i + 1;
+                }
+            }, x, y, west, east, south, north);
+    }
+
+    /**
+     * The points for reduce(int, ReducePoints, ...).
+     * This lets GSHHS.reduce (points in arrays) and GeometryStore.reduce 
+     * (points in a memory-mapped file) share the reduction loop.
+     */
+    interface ReducePoints {
+        /** The x value of point i. */
+        int x(int i);
+
+        /** The y value of point i. */
+        int y(int i);
+
+        /**
+         * This lets reduce skip points which are known to be in the same 
+         * sector as point i (e.g., a chunk of points whose bounds are in one sector).
+         *
+         * @return the index after the last point known to be in point i's sector
+         *   (or i+1 if unknown)
+         */
+        int sameSectorEnd(int i, int west, int east, int south, int north);
+    }
+
+    /**
+     * This is the reduction loop used by reduce(int, int[], ...) and GeometryStore.reduce.
+     *
+     * @param n the number of points
+     * @param points the source of the points
+     * @param xOut receives the x values of the points which are kept 
+     *   (it may be the array that points reads from, since 
+     *   a point is never written at a higher index than it is read from)
+     * @param yOut receives the y values of the points which are kept
+     * @param west   appropriate for the x values
+     * @param east   appropriate for the x values
+     * @param south  appropriate for the y values
+     * @param north  appropriate for the y values
+     * @return the number of points which were kept (may be 0)
+     */
+    static int reduce(int n, ReducePoints points, int xOut[], int yOut[],
         int west, int east, int south, int north) {
 
         if (west > east) {
@@ -475,7 +432,7 @@ public class GSHHS  {
             String2.log("ERROR in GSHHS.reduce: south=" + south + " > north=" + north);
             return 0;
         }
-        if (n == 0 || x == null || y == null) 
+        if (n == 0) 
             return 0;
 
         //algorithm assigns a point to a sector:
@@ -490,19 +447,17 @@ public class GSHHS  {
         // * keep 1st and last points of a sequence in another sector
         int nGood = 0;  //temp n good points  
         int sequenceStarti = 0;
-        int sequenceSector = -1; //unknown
+        int sequenceSector = sector(points.x(0), points.y(0), west, east, south, north);
         boolean sectorUsed[] = new boolean[9]; //all false
-        for (int i = 0; i <= n; i++) {  //yes, n deals with post code
+        int i = points.sameSectorEnd(0, west, east, south, north);
+        while (i <= n) {  //yes, n deals with post code
 
             //what sector is this point?
             int sector = -1;  //for when i==n
+            int nextI = i + 1;
             if (i < n) {
-                sector = (y[i] > north? 6 : y[i] >= south? 3 : 0) +
-                         (x[i] > east?  2 : x[i] >= west?  1 : 0);
-                if (i == 0) {
-                    sequenceSector = sector;
-                    continue;
-                }
+                sector = sector(points.x(i), points.y(i), west, east, south, north);
+                nextI = points.sameSectorEnd(i, west, east, south, north);
             } 
 
             //did the sector change?
@@ -510,25 +465,23 @@ public class GSHHS  {
                 sectorUsed[sequenceSector] = true;
                 if (sequenceSector == 4) {
                     //keep all of the points in the sequence
-                    if (nGood == 0) {
-                        nGood = i; //already in place
-                    } else {
-                        System.arraycopy(x, sequenceStarti, x, nGood, i - sequenceStarti);
-                        System.arraycopy(y, sequenceStarti, y, nGood, i - sequenceStarti);
-                        nGood += i - sequenceStarti;
+                    for (int j = sequenceStarti; j < i; j++) {
+                        xOut[nGood  ] = points.x(j);
+                        yOut[nGood++] = points.y(j);
                     }
                 } else {
                     //just keep the first and last points in the sequence
-                    x[nGood  ] = x[sequenceStarti];
-                    y[nGood++] = y[sequenceStarti];
+                    xOut[nGood  ] = points.x(sequenceStarti);
+                    yOut[nGood++] = points.y(sequenceStarti);
                     if (i - 1 > sequenceStarti) { //if >1 point in sequence
-                        x[nGood  ] = x[i - 1];
-                        y[nGood++] = y[i - 1];
+                        xOut[nGood  ] = points.x(i - 1);
+                        yOut[nGood++] = points.y(i - 1);
                     }
                 }
                 sequenceStarti = i;
                 sequenceSector = sector; 
             }
+            i = nextI;
         }
 
         //if (n > 1000) String2.log("GSHHS.reduce n=" + n + " nGood=" + nGood); 
@@ -558,6 +511,12 @@ public class GSHHS  {
         return nGood;
     }
 
+    /** The sector of a point (see reduce). */
+    static int sector(int x, int y, int west, int east, int south, int north) {
+        return (y > north? 6 : y >= south? 3 : 0) +
+               (x > east?  2 : x >= west?  1 : 0);
+    }
+
     /**
      * This is perfectly identical to the int version of reduce() above, but for double parameters.
      *
@@ -0,0 +1,539 @@
+/*
+ * GeometryStore Copyright 2026, agent (agent@local).
+ * See the LICENSE.txt file in this file's directory.
+ */
+package gov.noaa.pfel.coastwatch.sgt;
+
+import com.cohort.util.Math2;
+import com.cohort.util.String2;
+import com.cohort.util.Test;
+
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * This provides fast, thread-safe access to the polygons or polylines
+ * (the "parts") in a GSHHS gshhs_?.b file or a Boundaries .double file
+ * (there is one file for each resolution: f, h, i, l, c).
+ * The file is memory-mapped (so the data is read from disk just once and
+ * isn't on the Java heap) and indexed once (see get()):
+ * <ul>
+ * <li>Each part's header (number of points, level, bounding box) is in memory.
+ * <li>The parts are spatially indexed in CELL_DEGREES x CELL_DEGREES cells,
+ *   so candidates() only has to look at the parts near the request.
+ * <li>For GSHHS files, each part's points are divided into chunks of CHUNK_SIZE points,
+ *   each with a bounding box, so that reduce() can skip over the chunks
+ *   which are entirely in one sector outside of the request
+ *   (e.g., most of Eurasia when drawing a small map of the Baltic Sea)
+ *   without looking at their points.
+ * </ul>
+ *
+ * <p>This also has Cache, a small thread-safe LRU cache for the
+ * GeneralPaths and SGTLines made from the parts.
+ *
+ * @author agent (agent@local) 2026-10-18
+ */
+public class GeometryStore {
+
+    /**
+     * Set this to true (by calling verbose=true in your program, not by changing the code here)
+     * if you want lots of diagnostic messages sent to String2.log.
+     */
+    public static boolean verbose = false;
+
+    /** A GSHHS gshhs_?.b file: for each polygon, a header with 11 ints,
+     * then n pairs of int x,y (in millionths of a degree). */
+    public final static int GSHHS_FORMAT = 0;
+
+    /** A Boundaries .double file: for each polyline, NaN, nPoints,
+     * minLon, minLat, maxLon, maxLat, then nPoints pairs of double lon,lat.
+     * The end of the file has NaN, NaN. */
+    public final static int DOUBLE_FORMAT = 1;
+
+    /** The size (in degrees) of the cells of the spatial index. */
+    public final static int CELL_DEGREES = 10;
+
+    /** The number of points in each chunk (GSHHS files only). */
+    public final static int CHUNK_SIZE = 128;
+
+    //the cells cover lon -360 to 720 and lat -90 to 90 (parts beyond that are in the edge cells)
+    private final static int CELL_MIN_LON = -360;
+    private final static int N_CELL_COLUMNS = 1080 / CELL_DEGREES;
+    private final static int N_CELL_ROWS = 180 / CELL_DEGREES;
+
+    private final static int MICRO = 1000000;
+
+    /** fullFileName -&gt; GeometryStore */
+    private final static ConcurrentHashMap<String, GeometryStore> stores =
+        new ConcurrentHashMap(16, 0.75f, 4);
+
+    public final String fullFileName;
+    public final int format;
+    /** The number of parts. */
+    public final int nParts;
+
+    //for GSHHS_FORMAT, the file is viewed as ints; for DOUBLE_FORMAT as doubles.
+    //Only absolute get()s are used, so they are thread-safe.
+    private final IntBuffer ints;
+    private final DoubleBuffer doubles;
+
+    //info for each part
+    /** The index (in ints or doubles) of the x value of each part's first point. */
+    private final int firstPoint[];
+    private final int nPoints[];
+    /** GSHHS: the flag (level + version &lt;&lt; 8 + greenwich &lt;&lt; 16 + ...). DOUBLE: 0. */
+    private final int flag[];
+    /** The bounding box as in the file header (GSHHS: millionths of a degree). */
+    private final double west[], east[], south[], north[];
+    /** The index (in chunkMinX, ...) of each part's first chunk (GSHHS only). */
+    private final int firstChunk[];
+    private final int chunkMinX[], chunkMaxX[], chunkMinY[], chunkMaxY[];
+
+    /** The indexes of the parts which overlap each cell (in increasing order). */
+    private final int cellParts[][];
+
+    /**
+     * This returns the GeometryStore for a file, making it (reading and indexing the file)
+     * the first time it is requested.
+     *
+     * @param fullFileName the dir + name of a gshhs_?.b or .double file
+     * @param format GSHHS_FORMAT or DOUBLE_FORMAT
+     * @return the GeometryStore
+     * @throws Exception if trouble (e.g., the file isn't found)
+     */
+    public static GeometryStore get(String fullFileName, int format) throws Exception {
+        GeometryStore store = stores.get(fullFileName);
+        if (store == null) {
+            //if 2 threads make it at once, that's okay. Only one is kept.
+            store = new GeometryStore(fullFileName, format);
+            GeometryStore previous = stores.putIfAbsent(fullFileName, store);
+            if (previous != null)
+                store = previous;
+        }
+        return store;
+    }
+
+    /**
+     * The constructor. Use get() instead of this.
+     *
+     * @param tFullFileName the dir + name of a gshhs_?.b or .double file
+     * @param tFormat GSHHS_FORMAT or DOUBLE_FORMAT
+     * @throws Exception if trouble
+     */
+    private GeometryStore(String tFullFileName, int tFormat) throws Exception {
+        long time = System.currentTimeMillis();
+        fullFileName = tFullFileName;
+        format = tFormat;
+
+        //memory-map the file (the mapping stays valid after the channel is closed)
+        ByteBuffer bb;
+        RandomAccessFile raf = new RandomAccessFile(fullFileName, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            bb = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()); //big endian
+        } finally {
+            raf.close();
+        }
+        ints    = format == GSHHS_FORMAT? bb.asIntBuffer()    : null;
+        doubles = format == GSHHS_FORMAT? null : bb.asDoubleBuffer();
+
+        //read the headers
+        int capacity = 1024;
+        int tFirstPoint[] = new int[capacity], tNPoints[] = new int[capacity], tFlag[] = new int[capacity];
+        double tWest[] = new double[capacity], tEast[] = new double[capacity],
+            tSouth[] = new double[capacity], tNorth[] = new double[capacity];
+        int n = 0;
+        int po = 0;
+        while (true) {
+            if (format == GSHHS_FORMAT) {
+                if (po + 11 > ints.limit())
+                    break;
+            } else {
+                if (po + 2 > doubles.limit())
+                    break;
+                if (!Double.isNaN(doubles.get(po)))
+                    throw new RuntimeException("Unexpected finite value at beginning of path in " +
+                        fullFileName);
+                int tn = Math2.roundToInt(doubles.get(po + 1));
+                if (tn <= 0 || tn == Integer.MAX_VALUE) //end of file
+                    break;
+            }
+            if (n == capacity) {
+                capacity *= 2;
+                tFirstPoint = Arrays.copyOf(tFirstPoint, capacity);
+                tNPoints = Arrays.copyOf(tNPoints, capacity);
+                tFlag    = Arrays.copyOf(tFlag,    capacity);
+                tWest    = Arrays.copyOf(tWest,    capacity);
+                tEast    = Arrays.copyOf(tEast,    capacity);
+                tSouth   = Arrays.copyOf(tSouth,   capacity);
+                tNorth   = Arrays.copyOf(tNorth,   capacity);
+            }
+            if (format == GSHHS_FORMAT) {
+                //id, n, flag, west, east, south, north, area, area_full, container, ancestor
+                tNPoints[n] = ints.get(po + 1);
+                tFlag[n]    = ints.get(po + 2);
+                tWest[n]    = ints.get(po + 3);
+                tEast[n]    = ints.get(po + 4);
+                tSouth[n]   = ints.get(po + 5);
+                tNorth[n]   = ints.get(po + 6);
+                tFirstPoint[n] = po + 11;
+            } else {
+                //NaN, nPoints, minLon, minLat, maxLon, maxLat
+                tNPoints[n] = Math2.roundToInt(doubles.get(po + 1));
+                tWest[n]    = doubles.get(po + 2);
+                tSouth[n]   = doubles.get(po + 3);
+                tEast[n]    = doubles.get(po + 4);
+                tNorth[n]   = doubles.get(po + 5);
+                tFirstPoint[n] = po + 6;
+            }
+            po = tFirstPoint[n] + 2 * tNPoints[n];
+            n++;
+        }
+        nParts = n;
+        firstPoint = tFirstPoint;
+        nPoints = tNPoints;
+        flag = tFlag;
+        west = tWest;
+        east = tEast;
+        south = tSouth;
+        north = tNorth;
+
+        //GSHHS: the bounding box of each chunk
+        if (format == GSHHS_FORMAT) {
+            firstChunk = new int[nParts + 1];
+            int nChunks = 0;
+            for (int p = 0; p < nParts; p++) {
+                firstChunk[p] = nChunks;
+                nChunks += (nPoints[p] + CHUNK_SIZE - 1) / CHUNK_SIZE;
+            }
+            firstChunk[nParts] = nChunks;
+            chunkMinX = new int[nChunks];
+            chunkMaxX = new int[nChunks];
+            chunkMinY = new int[nChunks];
+            chunkMaxY = new int[nChunks];
+            for (int p = 0; p < nParts; p++) {
+                for (int i = 0; i < nPoints[p]; i++) {
+                    int c = firstChunk[p] + i / CHUNK_SIZE;
+                    int x = x(p, i);
+                    int y = ints.get(firstPoint[p] + 2 * i + 1);
+                    if (i % CHUNK_SIZE == 0) {
+                        chunkMinX[c] = x; chunkMaxX[c] = x;
+                        chunkMinY[c] = y; chunkMaxY[c] = y;
+                    } else {
+                        if (x < chunkMinX[c]) chunkMinX[c] = x; else if (x > chunkMaxX[c]) chunkMaxX[c] = x;
+                        if (y < chunkMinY[c]) chunkMinY[c] = y; else if (y > chunkMaxY[c]) chunkMaxY[c] = y;
+                    }
+                }
+            }
+        } else {
+            firstChunk = null;
+            chunkMinX = null; chunkMaxX = null; chunkMinY = null; chunkMaxY = null;
+        }
+
+        //the spatial index
+        int cellN[] = new int[N_CELL_COLUMNS * N_CELL_ROWS];
+        int tCellParts[][] = null;
+        for (int pass = 0; pass < 2; pass++) { //pass 0 counts, pass 1 stores
+            for (int p = 0; p < nParts; p++) {
+                int col0 = column(west[p]), col1 = column(east[p]);
+                int row0 = row(south[p]),   row1 = row(north[p]);
+                for (int col = col0; col <= col1; col++) {
+                    for (int row = row0; row <= row1; row++) {
+                        int cell = row * N_CELL_COLUMNS + col;
+                        if (pass == 1)
+                            tCellParts[cell][cellN[cell]] = p;
+                        cellN[cell]++;
+                    }
+                }
+            }
+            if (pass == 0) {
+                tCellParts = new int[cellN.length][];
+                for (int cell = 0; cell < cellN.length; cell++) {
+                    tCellParts[cell] = new int[cellN[cell]];
+                    cellN[cell] = 0;
+                }
+            }
+        }
+        cellParts = tCellParts;
+
+        if (verbose) String2.log("GeometryStore(" + fullFileName + ") nParts=" + nParts +
+            " time=" + (System.currentTimeMillis() - time) + "ms");
+    }
+
+    /** The column of the spatial index cell with a longitude (in the file's units). */
+    private int column(double lon) {
+        if (format == GSHHS_FORMAT)
+            lon /= MICRO;
+        return Math.max(0, Math.min(N_CELL_COLUMNS - 1,
+            (int)Math.floor((lon - CELL_MIN_LON) / CELL_DEGREES)));
+    }
+
+    /** The row of the spatial index cell with a latitude (in the file's units). */
+    private int row(double lat) {
+        if (format == GSHHS_FORMAT)
+            lat /= MICRO;
+        return Math.max(0, Math.min(N_CELL_ROWS - 1,
+            (int)Math.floor((lat + 90) / CELL_DEGREES)));
+    }
+
+    /**
+     * This returns the indexes (in increasing order, i.e., the order in the file)
+     * of the parts which might overlap the request
+     * (i.e., whose bounding box is in a spatial index cell which overlaps the request),
+     * after the parts are shifted by any of the shifts.
+     * The caller must still test each part's bounding box.
+     *
+     * @param tWest   in the file's units (GSHHS: millionths of a degree)
+     * @param tEast   in the file's units
+     * @param tSouth  in the file's units
+     * @param tNorth  in the file's units
+     * @param shifts  the longitude shifts (in the file's units) that the caller will try
+     * @return the indexes of the candidate parts
+     */
+    public int[] candidates(double tWest, double tEast, double tSouth, double tNorth,
+        double shifts[]) {
+
+        BitSet bitSet = new BitSet(nParts);
+        int row0 = row(tSouth), row1 = row(tNorth);
+        for (int s = 0; s < shifts.length; s++) {
+            int col0 = column(tWest - shifts[s]), col1 = column(tEast - shifts[s]);
+            for (int col = col0; col <= col1; col++) {
+                for (int row = row0; row <= row1; row++) {
+                    int tParts[] = cellParts[row * N_CELL_COLUMNS + col];
+                    for (int i = 0; i < tParts.length; i++)
+                        bitSet.set(tParts[i]);
+                }
+            }
+        }
+        int result[] = new int[bitSet.cardinality()];
+        int po = 0;
+        for (int p = bitSet.nextSetBit(0); p >= 0; p = bitSet.nextSetBit(p + 1))
+            result[po++] = p;
+        return result;
+    }
+
+    /** The number of points in a part. */
+    public int nPoints(int part) {return nPoints[part];}
+
+    /** The flag of a part (GSHHS: level + version &lt;&lt; 8 + greenwich &lt;&lt; 16 + ...; DOUBLE: 0). */
+    public int flag(int part) {return flag[part];}
+
+    /** The bounding box of a part (as in the file). */
+    public double west(int part)  {return west[part];}
+    public double east(int part)  {return east[part];}
+    public double south(int part) {return south[part];}
+    public double north(int part) {return north[part];}
+
+    /**
+     * GSHHS: This returns the x value of a point.
+     * If the polygon crosses greenwich, x's &gt; east (which are stored +360 degrees)
+     * are shifted left, so the points are contiguous and match west/east of the polygon.
+     */
+    public int x(int part, int i) {
+        int x = ints.get(firstPoint[part] + 2 * i);
+        return ((flag[part] >> 16) & 1) == 1 && x > east[part]? x - 360 * MICRO : x;
+    }
+
+    /** GSHHS: This returns the y value of a point. */
+    public int y(int part, int i) {
+        return ints.get(firstPoint[part] + 2 * i + 1);
+    }
+
+    /** DOUBLE: This returns the lon value of a point. */
+    public double lon(int part, int i) {
+        return doubles.get(firstPoint[part] + 2 * i);
+    }
+
+    /** DOUBLE: This returns the lat value of a point. */
+    public double lat(int part, int i) {
+        return doubles.get(firstPoint[part] + 2 * i + 1);
+    }
+
+    /**
+     * GSHHS: This is exactly like GSHHS.reduce(int...), applied to a polygon's points
+     * (see x() and y()) followed by the nExtra points in extraX and extraY,
+     * but it doesn't look at the points in chunks which are entirely
+     * in one sector outside of the desired bounds.
+     *
+     * @param part the polygon
+     * @param extraX  x values of points to be added after the polygon's points (or null)
+     * @param extraY  y values of points to be added after the polygon's points (or null)
+     * @param nExtra  the number of extra points
+     * @param tWest   the desired bounds (millionths of a degree, in the file's lon range)
+     * @param tEast
+     * @param tSouth
+     * @param tNorth
+     * @param xOut receives the x values of the points which are kept.
+     *    It must have room for nPoints(part) + nExtra values.
+     * @param yOut receives the y values of the points which are kept.
+     * @return the number of points which were kept (may be 0)
+     */
+    public int reduce(final int part, final int extraX[], final int extraY[], int nExtra,
+        int tWest, int tEast, int tSouth, int tNorth, int xOut[], int yOut[]) {
+
+        final int n = nPoints[part];
+        return GSHHS.reduce(n + nExtra, new GSHHS.ReducePoints() {
+                public int x(int i) {return pointX(part, i, extraX);}
+                public int y(int i) {return pointY(part, i, extraY);}
+                public int sameSectorEnd(int i, int west, int east, int south, int north) {
+                    //is this the start of a chunk whose points are all in one sector?
+                    if (i < n && i % CHUNK_SIZE == 0) {
+                        int c = firstChunk[part] + i / CHUNK_SIZE;
+                        boolean xOneSector = chunkMaxX[c] < west || chunkMinX[c] > east ||
+                            (chunkMinX[c] >= west && chunkMaxX[c] <= east);
+                        boolean yOneSector = chunkMaxY[c] < south || chunkMinY[c] > north ||
+                            (chunkMinY[c] >= south && chunkMaxY[c] <= north);
+                        if (xOneSector && yOneSector)
+                            return Math.min(n, i + CHUNK_SIZE); //skip the rest of the chunk
+                    }
+                    return i + 1;
+                }
+            }, xOut, yOut, tWest, tEast, tSouth, tNorth);
+    }
+
+    private int pointX(int part, int i, int extraX[]) {
+        int n = nPoints[part];
+        return i < n? x(part, i) : extraX[i - n];
+    }
+
+    private int pointY(int part, int i, int extraY[]) {
+        int n = nPoints[part];
+        return i < n? y(part, i) : extraY[i - n];
+    }
+
+
+    /**
+     * A small, thread-safe cache of the most recently used GeneralPaths or SGTLines.
+     * get() doesn't lock. When a put() makes the cache too big,
+     * the least recently used entry is removed.
+     */
+    public static class Cache {
+        private final int maxSize;
+        private final ConcurrentHashMap<String, Entry> map = new ConcurrentHashMap(16, 0.75f, 4);
+        private final AtomicLong clock = new AtomicLong();
+
+        private static class Entry {
+            final Object value;
+            volatile long lastUsed;
+            Entry(Object tValue, long tLastUsed) {value = tValue; lastUsed = tLastUsed;}
+        }
+
+        /**
+         * The constructor.
+         *
+         * @param tMaxSize the maximum number of items in the cache
+         */
+        public Cache(int tMaxSize) {
+            maxSize = tMaxSize;
+        }
+
+        /** This returns the cached value (or null if the key isn't in the cache). */
+        public Object get(String key) {
+            Entry entry = map.get(key);
+            if (entry == null)
+                return null;
+            entry.lastUsed = clock.incrementAndGet();
+            return entry.value;
+        }
+
+        /** This puts a value in the cache. */
+        public void put(String key, Object value) {
+            map.put(key, new Entry(value, clock.incrementAndGet()));
+            while (map.size() > maxSize) {
+                //remove the least recently used entry (the cache is small, so a scan is fast)
+                String oldestKey = null;
+                long oldest = Long.MAX_VALUE;
+                Iterator<Map.Entry<String, Entry>> it = map.entrySet().iterator();
+                while (it.hasNext()) {
+                    Map.Entry<String, Entry> me = it.next();
+                    if (me.getValue().lastUsed < oldest) {
+                        oldest = me.getValue().lastUsed;
+                        oldestKey = me.getKey();
+                    }
+                }
+                if (oldestKey == null)
+                    break;
+                map.remove(oldestKey);
+            }
+        }
+
+        /** The number of items in the cache. */
+        public int size() {
+            return map.size();
+        }
+    }
+
+    /**
+     * This tests this class.
+     *
+     * @throws Exception if trouble
+     */
+    public static void test() throws Exception {
+        String2.log("\n*** GeometryStore.test()");
+        verbose = true;
+
+        //reduce() gets the same results as GSHHS.reduce() (which reads all of the points)
+        GeometryStore store = get(GSHHS.gshhsDirectory + "gshhs_l.b", GSHHS_FORMAT);
+        int bounds[][] = { //wesn, in millionths of a degree
+            {0, 360000000, -90000000, 90000000},
+            {230000000, 250000000, 30000000, 50000000},
+            {10000000, 30000000, 50000000, 66000000},
+            {100000000, 101000000, 0, 1000000}};
+        int nKept = 0;
+        for (int b = 0; b < bounds.length; b++) {
+            int w = bounds[b][0], e = bounds[b][1], s = bounds[b][2], nn = bounds[b][3];
+            for (int p = 0; p < store.nParts; p++) {
+                int n = store.nPoints(p);
+                int x1[] = new int[n], y1[] = new int[n];
+                for (int i = 0; i < n; i++) {
+                    x1[i] = store.x(p, i);
+                    y1[i] = store.y(p, i);
+                }
+                int n1 = GSHHS.reduce(n, x1, y1, w, e, s, nn);
+                int x2[] = new int[n], y2[] = new int[n];
+                int n2 = store.reduce(p, null, null, 0, w, e, s, nn, x2, y2);
+                Test.ensureEqual(n2, n1, "b=" + b + " p=" + p);
+                for (int i = 0; i < n1; i++) {
+                    if (x2[i] != x1[i] || y2[i] != y1[i])
+                        Test.error("b=" + b + " p=" + p + " i=" + i);
+                }
+                nKept += n1;
+            }
+        }
+        Test.ensureTrue(nKept > 10000, "nKept=" + nKept);
+
+        //candidates() includes all of the parts which overlap the request
+        int cand[] = store.candidates(230000000, 250000000, 30000000, 50000000, new double[]{0});
+        Test.ensureTrue(cand.length > 0 && cand.length < store.nParts / 4,
+            "nCandidates=" + cand.length + " nParts=" + store.nParts);
+        for (int p = 0; p < store.nParts; p++) {
+            if (store.west(p) < 250000000 && store.east(p) > 230000000 &&
+                store.south(p) < 50000000 && store.north(p) > 30000000)
+                Test.ensureTrue(Arrays.binarySearch(cand, p) >= 0, "p=" + p);
+        }
+
+        //Cache
+        Cache cache = new Cache(3);
+        for (int i = 0; i < 3; i++)
+            cache.put("" + i, "" + (11 * i));
+        Test.ensureEqual(cache.get("0"), "0", ""); //now 1 is the least recently used
+        cache.put("3", "33");
+        Test.ensureEqual(cache.size(), 3, "");
+        Test.ensureEqual(cache.get("1"), null, "");
+        Test.ensureEqual(cache.get("2"), "22", "");
+        Test.ensureEqual(cache.get("3"), "33", "");
+
+        String2.log("\n*** GeometryStore.test() finished successfully.");
+    }
+
+}
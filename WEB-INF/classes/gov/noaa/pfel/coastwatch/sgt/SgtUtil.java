@@ -639,6 +639,8 @@ public class SgtUtil  {
         PdfContentByte pdfContentByte = writer.getDirectContent();
         PdfTemplate pdfTemplate = pdfContentByte.createTemplate(bbWidth, bbHeight);
         Graphics2D g2D = pdfTemplate.createGraphics(bbWidth, bbHeight); 
+        //keep grid cells as vector graphics (not one image)
+        g2D.setRenderingHint(GridCartesianRenderer.KEY_RASTER_AS_IMAGE, Boolean.FALSE);
 
         return new Object[]{g2D, document, pdfContentByte, pdfTemplate};
     }
@@ -165,6 +165,10 @@ public class Erddap extends HttpServlet {
     public final static String REQUESTED_RANGE_NOT_SATISFIABLE = 
                               "REQUESTED_RANGE_NOT_SATISFIABLE: ";
 
+    /** The names of the WMS layers which aren't data layers. */
+    public final static String WMS_NON_DATA_LAYERS[] = 
+        {"Land", "LandMask", "Coastlines", "LakesAndRivers", "Nations", "States"};
+
     //General/relative width is determined by what looks good in Chrome.
     //But Firefox shows TextArea's as very wide, so leads to these values.
     public final static int dpfTFWidth = 56; //data provider form TextField width
@@ -189,6 +193,8 @@ public class Erddap extends HttpServlet {
     public ConcurrentHashMap<String,byte[]> rssHashMap  = new ConcurrentHashMap(16, 0.75f, 4); 
     public ConcurrentHashMap<String,int[]> failedLogins = new ConcurrentHashMap(16, 0.75f, 4); 
     public ConcurrentHashMap<String,ConcurrentHashMap> categoryInfo = new ConcurrentHashMap(16, 0.75f, 4);  
+    /** key=datasetID value=Integer(task#) of the dataset's last TASK_SEED_WMS_TILES task */
+    private ConcurrentHashMap<String,Integer> lastSeedWmsTilesTask = new ConcurrentHashMap(16, 0.75f, 4); 
     public long lastClearedFailedLogins = System.currentTimeMillis();
 
 
@@ -247,9 +253,12 @@ public class Erddap extends HttpServlet {
         //open String2 log system and log to BPD/logs/log.txt
         String2.setupLog(false, false, //tLogToSystemOut, tLogToSystemErr,
             newLogTxt, true, EDStatic.logMaxSizeMB * Math2.BytesPerMB); //fileName, append, maxSize
+        String2.setupAsyncLog(EDStatic.logAsyncBufferSize, EDStatic.logAsyncDropIfFull);
         String2.log("\n\\\\\\\\**** Start Erddap v" + EDStatic.erddapVersion + 
             " constructor at " + timeStamp + "\n" +
-            "logFile=" + String2.logFileName() + " logMaxSizeMB=" + EDStatic.logMaxSizeMB + "\n" +
+            "logFile=" + String2.logFileName() + " logMaxSizeMB=" + EDStatic.logMaxSizeMB + 
+                " logAsyncBufferSize=" + EDStatic.logAsyncBufferSize + 
+                " logAsyncDropIfFull=" + EDStatic.logAsyncDropIfFull + "\n" +
             String2.standardHelpAboutMessage() + "\n" +
             "verbose=" + verbose + " reallyVerbose=" + reallyVerbose + "\n" +
             "bigParentDirectory=" + BPD + "\n" +
@@ -3888,6 +3897,7 @@ writer.write(
         String tErddapUrl = EDStatic.erddapUrl(loggedInAs);       
         String requestUrl = request.getRequestURI();  //post EDStatic.baseUrl, pre "?"
         String fileTypeName = "";
+        ResponseCache.Tee responseTee = null; //if the response is being added to the ResponseCache
         try {
             boolean hasDatasetID = datasetIDStartsAt < requestUrl.length();
             String endOfRequestUrl = hasDatasetID? requestUrl.substring(datasetIDStartsAt) : "";
@@ -4144,16 +4154,40 @@ writer.write(
             //*** tell the dataset to send the data
             try {
                 //give the dataset the opportunity to update (DAP)
-                dataset.update();
+                if (dataset.update())
+                    seedWmsTilesLater(dataset);
+
+                //is the response in the ResponseCache?
+                //The name is determined after update() since it may depend on the axis values.
+                ResponseCache responseCache = EDStatic.responseCache;
+                boolean sent = false;
+                if (responseCache != null && ResponseCache.isCacheable(fileTypeName)) {
+                    int responseGeneration = responseCache.generation(id);
+                    String responseName = dataset.suggestFileName(loggedInAs, userDapQuery, 
+                        fileTypeName) + extension;
+                    sent = responseCache.sendCached(id, responseName, outputStreamSource);
+                    if (!sent) 
+                        outputStreamSource = responseTee = responseCache.tee(id, responseName, 
+                            outputStreamSource, responseGeneration);
+                }
 
                 //respond to the request
-                dataset.respondToDapQuery(request, response,
-                    loggedInAs, requestUrl, userDapQuery, 
-                    outputStreamSource, 
-                    cacheDir, fileName, fileTypeName);            
+                if (!sent)
+                    dataset.respondToDapQuery(request, response,
+                        loggedInAs, requestUrl, userDapQuery, 
+                        outputStreamSource, 
+                        cacheDir, fileName, fileTypeName);            
+
+                //EDDTableFromHttpGet .insert and .delete change the data
+                if (responseCache != null && 
+                    (fileTypeName.equals(".insert") || fileTypeName.equals(".delete")))
+                    responseCache.invalidate(id);
 
             } catch (WaitThenTryAgainException wttae) {
                 String2.log("!!ERDDAP caught WaitThenTryAgainException");
+                if (responseTee != null) 
+                    responseTee.abandon(); //the response may be incomplete or from the old dataset
+                    //(a retry below writes through the abandoned tee, which then just passes the bytes on)
 
                 //unload the dataset and set flag to reload it
                 LoadDatasets.tryToUnload(this, id, new StringArray(), true); //needToUpdateLucene
@@ -4205,10 +4239,14 @@ writer.write(
             OutputStream out = outputStreamSource.outputStream("");
             if (out instanceof ZipOutputStream) ((ZipOutputStream)out).closeEntry();
             out.close(); //essential, to end compression
+            if (responseTee != null)
+                responseTee.finish();
             return;
 
         } catch (Throwable t) {
-            EDStatic.rethrowClientAbortException(t);  //first thing in catch{}
+            if (responseTee != null) 
+                responseTee.abandon(); //it doesn't throw exceptions
+            EDStatic.rethrowClientAbortException(t);  //first thing in catch{} (after abandon())
 
             //deal with the DAP error
 
@@ -5304,7 +5342,8 @@ Spec questions? Ask Jeff DLb (author of WMS spec!): Jeff.deLaBeaujardiere@noaa.g
 
         //give the dataset the opportunity to update  (WCS)
         try {
-            eddGrid.update();
+            if (eddGrid.update())
+                seedWmsTilesLater(eddGrid);
         } catch (WaitThenTryAgainException e) {
             //unload the dataset and set flag to reload it
             LoadDatasets.tryToUnload(this, tDatasetID, new StringArray(), true); //needToUpdateLucene
@@ -5608,7 +5647,8 @@ Spec questions? Ask Jeff DLb (author of WMS spec!): Jeff.deLaBeaujardiere@noaa.g
 
             //give the dataset the opportunity to update  (WMS)
             try {
-                eddGrid.update();
+                if (eddGrid.update())
+                    seedWmsTilesLater(eddGrid);
             } catch (WaitThenTryAgainException e) {
                 //unload the dataset and set flag to reload it
                 LoadDatasets.tryToUnload(this, tDatasetID, new StringArray(), true); //needToUpdateLucene
@@ -6500,8 +6540,41 @@ Spec questions? Ask Jeff DLb (author of WMS spec!): Jeff.deLaBeaujardiere@noaa.g
 
             }
 
+            //is the user allowed to use the layers' datasets?
+            //(check before using the cache, since all users share the cached images)
+            String roles[] = EDStatic.getRoles(loggedInAs);
+            for (int layeri = 0; layeri < layers.length; layeri++) {
+                int spo = layers[layeri].indexOf(EDD.WMS_SEPARATOR);
+                EDDGrid eddGrid = spo <= 0? null : 
+                    gridDatasetHashMap.get(layers[layeri].substring(0, spo));
+                if (eddGrid != null && 
+                    !eddGrid.isAccessibleTo(roles) &&
+                    !eddGrid.graphsAccessibleToPublic()) {
+                    //WMS: all requests are graphics requests
+                    //listPrivateDatasets doesn't apply
+                    EDStatic.sendHttpUnauthorizedError(loggedInAs, response, 
+                        eddGrid.datasetID(), false);
+                    return;
+                }
+            }
+
+            //if request is for a tile of mainDatasetID's data, use the WMS tile cache
+            WmsTileCache tileCache = EDStatic.wmsTileCache;
+            String tileFullName = null;
+            int tileGeneration = 0;
+            if (tileCache != null && mainDatasetID != null && !isNonDataLayer) {
+                tileGeneration = tileCache.generation(mainDatasetID);
+                tileFullName = wmsTileFullName(mainDatasetID, layers, transparent, bgColori,
+                    queryMap, minx, maxx, miny, maxy, width, height);
+                if (tileFullName != null) {
+                    cacheDir = File2.getDirectory(tileFullName);
+                    fileName = File2.getNameNoExtension(tileFullName);
+                }
+            }
+
             //is the image in the cache?
-            if (File2.isFile(cacheDir + fileName + extension)) { 
+            if (tileFullName != null? tileCache.isCached(cacheDir + fileName + extension) :
+                File2.isFile(cacheDir + fileName + extension)) { 
                 //touch nonDataLayer files, since they don't change
                 if (isNonDataLayer)
                     File2.touch(cacheDir + fileName + extension);
@@ -6518,204 +6591,31 @@ Spec questions? Ask Jeff DLb (author of WMS spec!): Jeff.deLaBeaujardiere@noaa.g
             
 
             //*** params are basically ok; try to make the map
-            //make the image
-            BufferedImage bufferedImage = new BufferedImage(width, height, 
-                BufferedImage.TYPE_INT_ARGB); //I need opacity "A"
-            Graphics g = bufferedImage.getGraphics(); 
-            Graphics2D g2 = (Graphics2D)g;
-            Color bgColor = new Color(0xFF000000 | bgColori); //0xFF000000 makes it opaque
-            g.setColor(bgColor);    
-            g.fillRect(0, 0, width, height);  
-
-            //add the layers
-            String roles[] = EDStatic.getRoles(loggedInAs);
-            LAYER:
-            for (int layeri = 0; layeri < layers.length; layeri++) {
-
-                //***deal with non-data layers
-                if (layers[layeri].equals(""))
-                    continue; 
-                if (layers[layeri].equals("Land") || 
-                    layers[layeri].equals("LandMask") || 
-                    layers[layeri].equals("Coastlines") || 
-                    layers[layeri].equals("LakesAndRivers") || 
-                    layers[layeri].equals("Nations") ||
-                    layers[layeri].equals("States")) {
-                    SgtMap.makeCleanMap(minx, maxx, miny, maxy, 
-                        false,
-                        null, 1, 1, 0, null,
-                        layers[layeri].equals("Land") || 
-                        layers[layeri].equals("LandMask"), //no need to draw it twice; no distinction here
-                        layers[layeri].equals("Coastlines"), 
-                        layers[layeri].equals("LakesAndRivers")? 
-                            SgtMap.STROKE_LAKES_AND_RIVERS : //stroke (not fill) so, e.g., Great Lakes temp data not obscured by lakeColor
-                            SgtMap.NO_LAKES_AND_RIVERS,
-                        layers[layeri].equals("Nations"), 
-                        layers[layeri].equals("States"),
-                        g2, width, height,
-                        0, 0, width, height);  
-                    //String2.log("WMS layeri="+ layeri + " request was for a non-data layer=" + layers[layeri]);
-                    continue;
-                }
-
-                //*** deal with grid data
-                int spo = layers[layeri].indexOf(EDD.WMS_SEPARATOR);
-                if (spo <= 0 || spo >= layers[layeri].length() - 1)
-                    throw new SimpleException(EDStatic.queryError + "LAYER=" + layers[layeri] + 
-                        " is invalid (invalid separator position).");
-                String datasetID = layers[layeri].substring(0, spo);
-                String destVar = layers[layeri].substring(spo + 1);
-                EDDGrid eddGrid = gridDatasetHashMap.get(datasetID);
-                if (eddGrid == null)
-                    throw new SimpleException(EDStatic.queryError + "LAYER=" + layers[layeri] + 
-                        " is invalid (dataset not found).");
-                if (!eddGrid.isAccessibleTo(roles) &&
-                    !eddGrid.graphsAccessibleToPublic()) {
-                    //WMS: all requests are graphics requests
-                    //listPrivateDatasets doesn't apply
-                    EDStatic.sendHttpUnauthorizedError(loggedInAs, response, datasetID,
-                        false);
-                    return;
-                }
-                if (eddGrid.accessibleViaWMS().length() > 0)
-                    throw new SimpleException(EDStatic.queryError + "LAYER=" + layers[layeri] + 
-                        " is invalid (not accessible via WMS).");
-                int dvi = String2.indexOf(eddGrid.dataVariableDestinationNames(), destVar);
-                if (dvi < 0)
-                    throw new SimpleException(EDStatic.queryError + "LAYER=" + layers[layeri] + 
-                        " is invalid (variable not found).");
-                EDV tDataVariable = eddGrid.dataVariables()[dvi];
-                if (!tDataVariable.hasColorBarMinMax())
-                    throw new SimpleException(EDStatic.queryError + "LAYER=" + layers[layeri] + 
-                        " is invalid (variable doesn't have valid colorBarMinimum/Maximum).");
-
-                //style  (currently just the default)
-                if (!styles[layeri].equals("") && 
-                    !styles[layeri].toLowerCase().equals("default")) { //nonstandard?  but allow it
-                    throw new SimpleException(EDStatic.queryError + "for LAYER=" + layers[layeri] + 
-                        ", STYLE=" + styles[layeri] + " is invalid (must be \"\").");
-                }
-
-                //get other dimension info
-                EDVGridAxis ava[] = eddGrid.axisVariables();
-                StringBuilder tQuery = new StringBuilder(destVar);
-                for (int avi = 0; avi < ava.length; avi++) {
-                    EDVGridAxis av = ava[avi];
-                    if (avi == eddGrid.lonIndex()) {
-                        if (maxx <= av.destinationMin() ||
-                            minx >= av.destinationMax()) {
-                            if (reallyVerbose) String2.log("  layer=" + layeri + 
-                                " rejected because request is out of lon range.");
-                            continue LAYER;
-                        }
-                        int first = av.destinationToClosestSourceIndex(minx);
-                        int last = av.destinationToClosestSourceIndex(maxx);
-                        if (first > last) {int ti = first; first = last; last = ti;}
-                        int stride = DataHelper.findStride(last - first + 1, width);
-                        tQuery.append("[" + first + ":" + stride + ":" + last + "]");
-                        continue;
-                    }
-
-                    if (avi == eddGrid.latIndex()) {
-                        if (maxy <= av.destinationMin() ||
-                            miny >= av.destinationMax()) {
-                            if (reallyVerbose) String2.log("  layer=" + layeri + 
-                                " rejected because request is out of lat range.");
-                            continue LAYER;
-                        }
-                        int first = av.destinationToClosestSourceIndex(miny);
-                        int last = av.destinationToClosestSourceIndex(maxy);
-                        if (first > last) {int ti = first; first = last; last = ti;}
-                        int stride = DataHelper.findStride(last - first + 1, height);
-                        tQuery.append("[" + first + ":" + stride + ":" + last + "]");
-                        continue;
-                    }
-
-                    //all other axes
-                    String tAvName = 
-                        avi == eddGrid.altIndex()? "elevation" :
-                        avi == eddGrid.depthIndex()? "elevation" :  //convert depth to elevation
-                        avi == eddGrid.timeIndex()? "time" : 
-                        "dim_" + ava[avi].destinationName().toLowerCase(); //make it case-insensitive for queryMap.get
-                    String tValueS = queryMap.get(tAvName);
-                    if (tValueS == null || 
-                        (avi == eddGrid.timeIndex() && tValueS.toLowerCase().equals("current")))
-                        //default is always the last value
-                        tQuery.append("[" + (ava[avi].sourceValues().size() - 1) + "]");
-                    else {
-                        double tValueD = av.destinationToDouble(tValueS); //needed in particular for iso time -> epoch seconds
-                        if (avi == eddGrid.depthIndex())
-                            tValueD = -tValueD;
-                        if (Double.isNaN(tValueD) ||
-                            tValueD < av.destinationCoarseMin() ||
-                            tValueD > av.destinationCoarseMax()) {
-                            if (reallyVerbose) String2.log("  layer=" + layeri + 
-                                " rejected because tValueD=" + tValueD + 
-                                " for " + tAvName);
-                            continue LAYER;
-                        }
-                        int first = av.destinationToClosestSourceIndex(tValueD);
-                        tQuery.append("[" + first + "]");
-                    }
+            //The render pool limits the number of images being made at once
+            //and has identical requests (e.g., from several users) share one render.
+            if (tileFullName != null)
+                new File(cacheDir).mkdirs(); //it's okay if it already exists (e.g., made by another thread)
+            final String fTileFullName = tileFullName;
+            final String fullNameNoExt = cacheDir + fileName;
+            final String fullName = fullNameNoExt + extension;
+            final int fWidth = width, fHeight = height, fBgColori = bgColori, fTileGeneration = tileGeneration;
+            final boolean fTransparent = transparent;
+            final String fMainDatasetID = mainDatasetID;
+            EDStatic.wmsRenderPool.render(fullName, () -> {
+                //was it just made by a similar request?
+                if (fTileFullName != null? tileCache.isCached(fullName) : File2.isFile(fullName))
+                    return Boolean.TRUE;
+                try {
+                    makeWmsImage(loggedInAs, layers, styles, queryMap,
+                        minx, maxx, miny, maxy, fWidth, fHeight, fTransparent, fBgColori,
+                        fullNameNoExt);
+                } catch (Throwable t) {
+                    throw ThreadedWorkManager.rethrow(t);
                 }
-
-                //get the data
-                GridDataAccessor gda = new GridDataAccessor(
-                    eddGrid, 
-                    "/" + EDStatic.warName + "/griddap/" + datasetID + ".dods", tQuery.toString(), 
-                    false, //Grid needs column-major order
-                    true); //convertToNaN
-                long requestNL = gda.totalIndex().size();
-                EDStatic.ensureArraySizeOkay(requestNL, "doWmsGetMap");
-                int nBytesPerElement = 8;
-                int requestN = (int)requestNL; //safe since checked by ensureArraySizeOkay above
-                EDStatic.ensureMemoryAvailable(requestNL * nBytesPerElement, "doWmsGetMap"); 
-                Grid grid = new Grid();
-                grid.data = new double[requestN];
-                int po = 0;
-                while (gda.increment()) 
-                    grid.data[po++] = gda.getDataValueAsDouble(0);
-                grid.lon = gda.axisValues(eddGrid.lonIndex()).toDoubleArray();
-                grid.lat = gda.axisValues(eddGrid.latIndex()).toDoubleArray(); 
-                gda = null; //free up memory if possible
-
-                //make the palette
-                //I checked hasColorBarMinMax above.
-                //Note that EDV checks validity of values.
-                double minData = tDataVariable.combinedAttributes().getDouble("colorBarMinimum"); 
-                double maxData = tDataVariable.combinedAttributes().getDouble("colorBarMaximum"); 
-                String palette = tDataVariable.combinedAttributes().getString("colorBarPalette"); 
-                if (String2.indexOf(EDStatic.palettes, palette) < 0)
-                    palette = Math2.almostEqual(3, -minData, maxData)? "BlueWhiteRed" : "Rainbow"; 
-                int nSections = tDataVariable.combinedAttributes().getInt("colorBarNSections"); 
-                if (nSections > 100)
-                    nSections = -1;
-                boolean paletteContinuous = String2.parseBoolean( //defaults to true
-                    tDataVariable.combinedAttributes().getString("colorBarContinuous")); 
-                String scale = tDataVariable.combinedAttributes().getString("colorBarScale"); 
-                if (String2.indexOf(EDV.VALID_SCALES, scale) < 0)
-                    scale = "Linear";
-                String cptFullName = CompoundColorMap.makeCPT(EDStatic.fullPaletteDirectory, 
-                    palette, scale, minData, maxData, nSections, paletteContinuous, 
-                    EDStatic.fullCptCacheDirectory);
-
-                //draw the data on the map
-                //for now, just cartesian  -- BEWARE: it may be stretched!
-                SgtMap.makeCleanMap( 
-                    minx, maxx, miny, maxy, 
-                    false,
-                    grid, 1, 1, 0, cptFullName, 
-                    false, false, SgtMap.NO_LAKES_AND_RIVERS, false, false,
-                    g2, width, height,
-                    0, 0, width, height); 
-
-            }
-
-            //save image as file in cache dir
-            //(It saves as temp file, then renames if ok.)
-            SgtUtil.saveAsTransparentPng(bufferedImage, 
-                transparent? bgColor : null, 
-                cacheDir + fileName); 
+                if (fTileFullName != null)
+                    tileCache.added(fMainDatasetID, fullName, fTileGeneration);
+                return Boolean.TRUE;
+            });
 
             //copy image from file to client
             if (reallyVerbose) String2.log("  image created. copying to client: " + fileName + extension);
@@ -6800,6 +6700,555 @@ Spec questions? Ask Jeff DLb (author of WMS spec!): Jeff.deLaBeaujardiere@noaa.g
 
     }
 
+    /**
+     * This makes the image for a WMS GetMap request and saves it as a .png file.
+     * If &lt;wmsRenderStripHeight&gt; in setup.xml is &gt;0 and the image is
+     * at least twice that tall, horizontal strips of the image are made in parallel.
+     *
+     * @param loggedInAs  the name of the logged in user (or null if not logged in)
+     * @param layers the requested layers
+     * @param styles the requested styles (parallels layers)
+     * @param queryMap has name=value from the url query string (for the values of the other dimensions).
+     *    names are toLowerCase. values are original values.
+     * @param minx the minimum longitude 
+     * @param maxx the maximum longitude 
+     * @param miny the minimum latitude 
+     * @param maxy the maximum latitude 
+     * @param width the image's width (in pixels)
+     * @param height the image's height (in pixels)
+     * @param transparent if true, the background color is made transparent
+     * @param bgColori the background color, e.g., 0xFFFFFF
+     * @param fullFileNameNoExt the dir + name (without the .png extension) of the file to be made
+     * @throws Throwable if trouble (e.g., the user isn't authorized to use a layer's dataset)
+     */
+    protected void makeWmsImage(String loggedInAs,
+        String layers[], String styles[], HashMap<String, String> queryMap,
+        double minx, double maxx, double miny, double maxy,
+        int width, int height, boolean transparent, int bgColori,
+        String fullFileNameNoExt) throws Throwable {
+
+        //make the image
+        BufferedImage bufferedImage = new BufferedImage(width, height, 
+            BufferedImage.TYPE_INT_ARGB); //I need opacity "A"
+        Graphics g = bufferedImage.getGraphics(); 
+        Color bgColor = new Color(0xFF000000 | bgColori); //0xFF000000 makes it opaque
+        g.setColor(bgColor);    
+        g.fillRect(0, 0, width, height);  
+
+        //add the layers
+        String roles[] = EDStatic.getRoles(loggedInAs);
+        int nStrips = EDStatic.wmsRenderStripHeight <= 0? 1 : 
+            Math.min(height / EDStatic.wmsRenderStripHeight, EDStatic.wmsRenderThreads);
+        drawWmsStrips(g, width, height, bgColor, nStrips, 
+            (sg2, row0, row1) -> drawWmsLayers(sg2, roles, layers, styles, queryMap, 
+                minx, maxx, miny, maxy, width, height, row0, row1));
+
+        //save image as file
+        //(It saves as temp file, then renames if ok.)
+        SgtUtil.saveAsTransparentPng(bufferedImage, 
+            transparent? bgColor : null, 
+            fullFileNameNoExt); 
+    }
+
+    /** This draws some rows of an image (see drawWmsStrips). */
+    protected interface WmsRowsDrawer {
+        /**
+         * @param g2 the graphics object for the rows, which is width x (row1 - row0) pixels,
+         *    with the background already drawn
+         * @param row0 the first row to be drawn (0 is the top row)
+         * @param row1 the last row to be drawn (exclusive)
+         * @throws Throwable if trouble
+         */
+        void draw(Graphics2D g2, int row0, int row1) throws Throwable;
+    }
+
+    /**
+     * This draws an image (e.g., for makeWmsImage). 
+     * If nStrips &gt;= 2, horizontal strips of the image are drawn in parallel
+     * (on EDStatic.wmsStripExecutor's threads, which are shared by all requests),
+     * then put together.
+     *
+     * @param g the graphics object for the whole image, with the background already drawn
+     * @param width the image's width (in pixels)
+     * @param height the image's height (in pixels)
+     * @param bgColor the background color (for the strips)
+     * @param nStrips the number of strips (&lt;2 draws the image in one pass)
+     * @param drawer draws some rows of the image
+     * @throws Throwable if trouble
+     */
+    protected static void drawWmsStrips(Graphics g, int width, int height, Color bgColor,
+        int nStrips, WmsRowsDrawer drawer) throws Throwable {
+
+        if (nStrips < 2) {
+            drawer.draw((Graphics2D)g, 0, height);
+            return;
+        }
+
+        //make horizontal strips of the image in parallel, then put them together
+        if (reallyVerbose) String2.log("  drawWmsStrips nStrips=" + nStrips);
+        ThreadedWorkManager<BufferedImage> twm = new ThreadedWorkManager("wmsStrips", 
+            nStrips, EDStatic.wmsStripExecutor);
+        try {
+            for (int strip = 0; strip < nStrips; strip++) {
+                final int row0 = strip * height / nStrips;
+                final int row1 = (strip + 1) * height / nStrips;
+                twm.addTask(() -> {
+                    BufferedImage stripImage = new BufferedImage(width, row1 - row0, 
+                        BufferedImage.TYPE_INT_ARGB); 
+                    Graphics2D sg2 = (Graphics2D)stripImage.getGraphics();
+                    sg2.setColor(bgColor);
+                    sg2.fillRect(0, 0, width, row1 - row0);
+                    try {
+                        drawer.draw(sg2, row0, row1);
+                    } catch (Throwable t) {
+                        throw ThreadedWorkManager.rethrow(t);
+                    }
+                    sg2.dispose();
+                    return stripImage;
+                });
+            }
+            for (int strip = 0; strip < nStrips; strip++) 
+                g.drawImage(twm.next(), 0, strip * height / nStrips, null);
+        } finally {
+            twm.forceShutdown(); //cancels the unfinished strips, but doesn't shut down the shared executor
+        }
+    }
+
+    /**
+     * This returns the latitude at the top edge of a row of a WMS image 
+     * (or the bottom edge of the image if row = height).
+     *
+     * @param miny the minimum latitude of the whole image
+     * @param maxy the maximum latitude of the whole image
+     * @param height the whole image's height (in pixels)
+     * @param row 0 (the top row) to height
+     * @return the latitude 
+     */
+    protected static double wmsRowLat(double miny, double maxy, int height, int row) {
+        return row == 0?      maxy : 
+               row == height? miny : 
+               maxy - row * (maxy - miny) / height;
+    }
+
+    /**
+     * If layer is a non-data layer (e.g., Land or Coastlines), this draws it.
+     *
+     * @param g2 the graphics object for the rows, which is width x rowsHeight pixels
+     * @param layer the layer's name, e.g., Land
+     * @param minx the minimum longitude 
+     * @param maxx the maximum longitude 
+     * @param rowMiny the minimum latitude of the rows
+     * @param rowMaxy the maximum latitude of the rows
+     * @param width the image's width (in pixels)
+     * @param rowsHeight the height of the rows (in pixels)
+     * @return true if layer is a non-data layer (so it was drawn)
+     * @throws Throwable if trouble
+     */
+    protected static boolean drawWmsNonDataLayer(Graphics2D g2, String layer,
+        double minx, double maxx, double rowMiny, double rowMaxy, 
+        int width, int rowsHeight) throws Throwable {
+
+        if (layer.equals("Land") || 
+            layer.equals("LandMask") || 
+            layer.equals("Coastlines") || 
+            layer.equals("LakesAndRivers") || 
+            layer.equals("Nations") ||
+            layer.equals("States")) {
+            SgtMap.makeCleanMap(minx, maxx, rowMiny, rowMaxy, 
+                false,
+                null, 1, 1, 0, null,
+                layer.equals("Land") || 
+                layer.equals("LandMask"), //no need to draw it twice; no distinction here
+                layer.equals("Coastlines"), 
+                layer.equals("LakesAndRivers")? 
+                    SgtMap.STROKE_LAKES_AND_RIVERS : //stroke (not fill) so, e.g., Great Lakes temp data not obscured by lakeColor
+                    SgtMap.NO_LAKES_AND_RIVERS,
+                layer.equals("Nations"), 
+                layer.equals("States"),
+                g2, width, rowsHeight,
+                0, 0, width, rowsHeight);  
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * This draws rows row0 (inclusive) to row1 (exclusive) of the image 
+     * for a WMS GetMap request (see makeWmsImage).
+     *
+     * @param g2 the graphics object for the rows, e.g., for an image 
+     *    which is width x (row1 - row0) pixels, with the background already drawn
+     * @param roles the user's roles (see EDStatic.getRoles)
+     * @param layers the requested layers
+     * @param styles the requested styles (parallels layers)
+     * @param queryMap has name=value from the url query string (for the values of the other dimensions).
+     *    names are toLowerCase. values are original values.
+     * @param minx the minimum longitude of the whole image
+     * @param maxx the maximum longitude of the whole image
+     * @param miny the minimum latitude of the whole image
+     * @param maxy the maximum latitude of the whole image
+     * @param width the whole image's width (in pixels)
+     * @param height the whole image's height (in pixels)
+     * @param row0 the first row to be drawn (0 is the top row)
+     * @param row1 the last row to be drawn (exclusive), e.g., height
+     * @throws Throwable if trouble (e.g., the user isn't authorized to use a layer's dataset)
+     */
+    protected void drawWmsLayers(Graphics2D g2, String roles[],
+        String layers[], String styles[], HashMap<String, String> queryMap,
+        double minx, double maxx, double miny, double maxy,
+        int width, int height, int row0, int row1) throws Throwable {
+
+        //the latitude range and height of the rows
+        double rowMaxy = wmsRowLat(miny, maxy, height, row0);
+        double rowMiny = wmsRowLat(miny, maxy, height, row1);
+        int rowsHeight = row1 - row0;
+
+        LAYER:
+        for (int layeri = 0; layeri < layers.length; layeri++) {
+
+            //***deal with non-data layers
+            if (layers[layeri].equals(""))
+                continue; 
+            if (drawWmsNonDataLayer(g2, layers[layeri], minx, maxx, rowMiny, rowMaxy, 
+                    width, rowsHeight)) 
+                continue;
+
+            //*** deal with grid data
+            int spo = layers[layeri].indexOf(EDD.WMS_SEPARATOR);
+            if (spo <= 0 || spo >= layers[layeri].length() - 1)
+                throw new SimpleException(EDStatic.queryError + "LAYER=" + layers[layeri] + 
+                    " is invalid (invalid separator position).");
+            String datasetID = layers[layeri].substring(0, spo);
+            String destVar = layers[layeri].substring(spo + 1);
+            EDDGrid eddGrid = gridDatasetHashMap.get(datasetID);
+            if (eddGrid == null)
+                throw new SimpleException(EDStatic.queryError + "LAYER=" + layers[layeri] + 
+                    " is invalid (dataset not found).");
+            if (!eddGrid.isAccessibleTo(roles) &&
+                !eddGrid.graphsAccessibleToPublic()) {
+                //WMS: all requests are graphics requests
+                //listPrivateDatasets doesn't apply
+                //(doWmsGetMap checks this first and sends an HTTP Unauthorized error)
+                throw new SimpleException(EDStatic.queryError + "LAYER=" + layers[layeri] + 
+                    " is invalid (not accessible).");
+            }
+            if (eddGrid.accessibleViaWMS().length() > 0)
+                throw new SimpleException(EDStatic.queryError + "LAYER=" + layers[layeri] + 
+                    " is invalid (not accessible via WMS).");
+            int dvi = String2.indexOf(eddGrid.dataVariableDestinationNames(), destVar);
+            if (dvi < 0)
+                throw new SimpleException(EDStatic.queryError + "LAYER=" + layers[layeri] + 
+                    " is invalid (variable not found).");
+            EDV tDataVariable = eddGrid.dataVariables()[dvi];
+            if (!tDataVariable.hasColorBarMinMax())
+                throw new SimpleException(EDStatic.queryError + "LAYER=" + layers[layeri] + 
+                    " is invalid (variable doesn't have valid colorBarMinimum/Maximum).");
+
+            //style  (currently just the default)
+            if (!styles[layeri].equals("") && 
+                !styles[layeri].toLowerCase().equals("default")) { //nonstandard?  but allow it
+                throw new SimpleException(EDStatic.queryError + "for LAYER=" + layers[layeri] + 
+                    ", STYLE=" + styles[layeri] + " is invalid (must be \"\").");
+            }
+
+            //get other dimension info
+            EDVGridAxis ava[] = eddGrid.axisVariables();
+            StringBuilder tQuery = new StringBuilder(destVar);
+            for (int avi = 0; avi < ava.length; avi++) {
+                EDVGridAxis av = ava[avi];
+                if (avi == eddGrid.lonIndex()) {
+                    if (maxx <= av.destinationMin() ||
+                        minx >= av.destinationMax()) {
+                        if (reallyVerbose) String2.log("  layer=" + layeri + 
+                            " rejected because request is out of lon range.");
+                        continue LAYER;
+                    }
+                    int first = av.destinationToClosestSourceIndex(minx);
+                    int last = av.destinationToClosestSourceIndex(maxx);
+                    if (first > last) {int ti = first; first = last; last = ti;}
+                    int stride = DataHelper.findStride(last - first + 1, width);
+                    tQuery.append("[" + first + ":" + stride + ":" + last + "]");
+                    continue;
+                }
+
+                if (avi == eddGrid.latIndex()) {
+                    if (maxy <= av.destinationMin() ||
+                        miny >= av.destinationMax()) {
+                        if (reallyVerbose) String2.log("  layer=" + layeri + 
+                            " rejected because request is out of lat range.");
+                        continue LAYER;
+                    }
+                    int first = av.destinationToClosestSourceIndex(miny);
+                    int last = av.destinationToClosestSourceIndex(maxy);
+                    if (first > last) {int ti = first; first = last; last = ti;}
+                    int stride = DataHelper.findStride(last - first + 1, height);
+                    if (rowsHeight < height) {
+                        //just get the data for these rows of the image (+1 row on each side),
+                        //using the same source rows as for the whole image, so the strips match
+                        int rFirst = av.destinationToClosestSourceIndex(rowMiny);
+                        int rLast = av.destinationToClosestSourceIndex(rowMaxy);
+                        if (rFirst > rLast) {int ti = rFirst; rFirst = rLast; rLast = ti;}
+                        int tFirst = first + Math.max(0, (rFirst - first) / stride - 1) * stride;
+                        last = first + Math.min((last - first) / stride, (rLast - first) / stride + 2) * stride;
+                        first = tFirst;
+                    }
+                    tQuery.append("[" + first + ":" + stride + ":" + last + "]");
+                    continue;
+                }
+
+                //all other axes
+                int first = wmsAxisIndex(eddGrid, avi, queryMap);
+                if (first < 0) {
+                    if (reallyVerbose) String2.log("  layer=" + layeri + 
+                        " rejected because the requested " + av.destinationName() + 
+                        " is invalid or out of range.");
+                    continue LAYER;
+                }
+                tQuery.append("[" + first + "]");
+            }
+
+            //get the data
+            GridDataAccessor gda = new GridDataAccessor(
+                eddGrid, 
+                "/" + EDStatic.warName + "/griddap/" + datasetID + ".dods", tQuery.toString(), 
+                false, //Grid needs column-major order
+                true); //convertToNaN
+            long requestNL = gda.totalIndex().size();
+            EDStatic.ensureArraySizeOkay(requestNL, "doWmsGetMap");
+            int nBytesPerElement = 8;
+            int requestN = (int)requestNL; //safe since checked by ensureArraySizeOkay above
+            EDStatic.ensureMemoryAvailable(requestNL * nBytesPerElement, "doWmsGetMap"); 
+            Grid grid = new Grid();
+            grid.data = new double[requestN];
+            int po = 0;
+            try {
+                while (gda.increment()) 
+                    grid.data[po++] = gda.getDataValueAsDouble(0);
+            } finally {
+                gda.releaseResources(); //e.g., after an exception
+            }
+            grid.lon = gda.axisValues(eddGrid.lonIndex()).toDoubleArray();
+            grid.lat = gda.axisValues(eddGrid.latIndex()).toDoubleArray(); 
+            gda = null; //free up memory if possible
+
+            //make the palette
+            //I checked hasColorBarMinMax above.
+            //Note that EDV checks validity of values.
+            double minData = tDataVariable.combinedAttributes().getDouble("colorBarMinimum"); 
+            double maxData = tDataVariable.combinedAttributes().getDouble("colorBarMaximum"); 
+            String palette = tDataVariable.combinedAttributes().getString("colorBarPalette"); 
+            if (String2.indexOf(EDStatic.palettes, palette) < 0)
+                palette = Math2.almostEqual(3, -minData, maxData)? "BlueWhiteRed" : "Rainbow"; 
+            int nSections = tDataVariable.combinedAttributes().getInt("colorBarNSections"); 
+            if (nSections > 100)
+                nSections = -1;
+            boolean paletteContinuous = String2.parseBoolean( //defaults to true
+                tDataVariable.combinedAttributes().getString("colorBarContinuous")); 
+            String scale = tDataVariable.combinedAttributes().getString("colorBarScale"); 
+            if (String2.indexOf(EDV.VALID_SCALES, scale) < 0)
+                scale = "Linear";
+            String cptFullName = CompoundColorMap.makeCPT(EDStatic.fullPaletteDirectory, 
+                palette, scale, minData, maxData, nSections, paletteContinuous, 
+                EDStatic.fullCptCacheDirectory);
+
+            //draw the data on the map
+            //for now, just cartesian  -- BEWARE: it may be stretched!
+            SgtMap.makeCleanMap( 
+                minx, maxx, rowMiny, rowMaxy, 
+                false,
+                grid, 1, 1, 0, cptFullName, 
+                false, false, SgtMap.NO_LAKES_AND_RIVERS, false, false,
+                g2, width, rowsHeight,
+                0, 0, width, rowsHeight); 
+
+        }
+    }
+
+    /**
+     * For a WMS GetMap request, this finds the index of the requested value
+     * of an axis (other than longitude and latitude).
+     * The default (if the value isn't specified, or time=current) is the last value.
+     *
+     * @param eddGrid the dataset
+     * @param avi the axis variable index (not eddGrid.lonIndex() or eddGrid.latIndex())
+     * @param queryMap has name=value from the url query string.
+     *    names are toLowerCase. values are original values.
+     * @return the index, or -1 if the requested value is invalid or out of range
+     */
+    protected static int wmsAxisIndex(EDDGrid eddGrid, int avi, 
+        HashMap<String, String> queryMap) {
+
+        EDVGridAxis av = eddGrid.axisVariables()[avi];
+        String tAvName = 
+            avi == eddGrid.altIndex()? "elevation" :
+            avi == eddGrid.depthIndex()? "elevation" :  //convert depth to elevation
+            avi == eddGrid.timeIndex()? "time" : 
+            "dim_" + av.destinationName().toLowerCase(); //make it case-insensitive for queryMap.get
+        String tValueS = queryMap.get(tAvName);
+        if (tValueS == null || 
+            (avi == eddGrid.timeIndex() && tValueS.toLowerCase().equals("current")))
+            //default is always the last value
+            return av.sourceValues().size() - 1;
+        double tValueD = av.destinationToDouble(tValueS); //needed in particular for iso time -> epoch seconds
+        if (avi == eddGrid.depthIndex())
+            tValueD = -tValueD;
+        if (Double.isNaN(tValueD) ||
+            tValueD < av.destinationCoarseMin() ||
+            tValueD > av.destinationCoarseMax()) 
+            return -1;
+        return av.destinationToClosestSourceIndex(tValueD);
+    }
+
+    /**
+     * If a WMS GetMap request is for a tile (see WmsTileCache) of just one dataset's data,
+     * this returns the tile's full file name.
+     *
+     * @param datasetID the dataset (from the WMS request's URL)
+     * @param layers the requested layers.
+     *    All of the data layers must be from datasetID.
+     * @param transparent
+     * @param bgColori
+     * @param queryMap has name=value from the url query string.
+     *    names are toLowerCase. values are original values.
+     * @param minx the minimum longitude 
+     * @param maxx the maximum longitude 
+     * @param miny the minimum latitude 
+     * @param maxy the maximum latitude 
+     * @param width the image's width (in pixels)
+     * @param height the image's height (in pixels)
+     * @return the tile's full file name (with the .png extension), 
+     *    or null if the request can't use the tile cache.
+     */
+    protected String wmsTileFullName(String datasetID, String layers[], 
+        boolean transparent, int bgColori, HashMap<String, String> queryMap,
+        double minx, double maxx, double miny, double maxy, int width, int height) {
+
+        int zxy[] = WmsTileCache.tileZXY(minx, maxx, miny, maxy, width, height);
+        EDDGrid eddGrid = gridDatasetHashMap.get(datasetID);
+        if (zxy == null || eddGrid == null ||
+            eddGrid.lonIndex() == 0 || eddGrid.latIndex() == 0) //the leftmost axis must be e.g., time
+            return null;
+        for (int layeri = 0; layeri < layers.length; layeri++) {
+            String layer = layers[layeri];
+            if (layer.length() > 0 &&
+                String2.indexOf(WMS_NON_DATA_LAYERS, layer) < 0 &&
+                !layer.startsWith(datasetID + EDD.WMS_SEPARATOR))
+                return null;
+        }
+
+        //the tile set is identified by everything (except the bbox) which affects the image
+        int nAv = eddGrid.axisVariables().length;
+        int leftmostIndex = -1;
+        StringBuilder sb = new StringBuilder(String2.toSVString(layers, ",", false));
+        sb.append("&transparent=" + transparent + "&bgcolor=" + bgColori + "&indexes=");
+        for (int avi = 0; avi < nAv; avi++) {
+            if (avi == eddGrid.lonIndex() || avi == eddGrid.latIndex())
+                continue;
+            int index = wmsAxisIndex(eddGrid, avi, queryMap);
+            if (index < 0)
+                return null; //let the usual system deal with it
+            if (avi == 0)
+                leftmostIndex = index;
+            else sb.append(index + ",");
+        }
+        return WmsTileCache.tileDir(datasetID, String2.md5Hex12(sb.toString()), 
+            leftmostIndex, zxy) + zxy[2] + ".png";
+    }
+
+    /**
+     * If the WMS tile cache is active (see &lt;wmsTileCacheMB&gt; and 
+     * &lt;wmsTileSeedMaxZoom&gt; in setup.xml) and the dataset is an 
+     * EDDGrid which is accessible to the public via WMS, 
+     * this adds a task to the TaskThread to seed the dataset's WMS tiles.
+     * This is only called when update() finds new data (not when a dataset 
+     * is loaded or reloaded, so that starting ERDDAP doesn't cause a burst of 
+     * tile making for all of the datasets).
+     *
+     * @param edd a dataset
+     */
+    protected void seedWmsTilesLater(EDD edd) {
+        if (EDStatic.wmsTileCache == null || EDStatic.wmsTileSeedMaxZoom < 0 ||
+            !EDStatic.wmsActive || !(edd instanceof EDDGrid) ||
+            edd.accessibleViaWMS().length() > 0 ||
+            (!edd.isAccessibleTo(null) && !edd.graphsAccessibleToPublic()))
+            return;
+        String tDatasetID = edd.datasetID();
+        synchronized (lastSeedWmsTilesTask) {
+            //if the previous seed task for this dataset hasn't been done yet, it will do
+            Integer lastTask = lastSeedWmsTilesTask.get(tDatasetID);
+            if (lastTask != null && EDStatic.lastFinishedTask < lastTask.intValue())
+                return;
+            int taskNumber = EDStatic.addTask(tDatasetID, 
+                new Object[]{TaskThread.TASK_SEED_WMS_TILES, this, tDatasetID});
+            if (taskNumber >= 0) 
+                lastSeedWmsTilesTask.put(tDatasetID, new Integer(taskNumber));
+        }
+        EDStatic.ensureTaskThreadIsRunningIfNeeded();
+    }
+
+    /**
+     * This makes the WMS tiles (see WmsTileCache) which aren't already cached 
+     * for the default (latest) time of each of a dataset's data variables
+     * (which has colorBarMinimum and colorBarMaximum)
+     * for zoom levels 0 through EDStatic.wmsTileSeedMaxZoom,
+     * with the parameters that ERDDAP's WMS web pages use 
+     * (transparent=true and bgcolor=0x808080),
+     * so that the first users to request them get them quickly.
+     * TaskThread calls this (see seedWmsTilesLater).
+     *
+     * @param datasetID
+     * @return the number of tiles which were made
+     * @throws Throwable if trouble
+     */
+    public int seedWmsTiles(String datasetID) throws Throwable {
+        WmsTileCache tileCache = EDStatic.wmsTileCache;
+        EDDGrid eddGrid = gridDatasetHashMap.get(datasetID);
+        if (tileCache == null || eddGrid == null ||
+            eddGrid.lonIndex() < 0 || eddGrid.latIndex() < 0)
+            return 0;
+        long time = System.currentTimeMillis();
+        EDVGridAxis lonAv = eddGrid.axisVariables()[eddGrid.lonIndex()];
+        EDVGridAxis latAv = eddGrid.axisVariables()[eddGrid.latIndex()];
+        HashMap<String, String> queryMap = new HashMap(); //i.e., use the defaults
+        int bgColori = 0x808080;
+        int nMade = 0;
+        for (int dvi = 0; dvi < eddGrid.dataVariables().length; dvi++) {
+            EDV edv = eddGrid.dataVariables()[dvi];
+            if (!edv.hasColorBarMinMax())
+                continue;
+            String layers[] = {datasetID + EDD.WMS_SEPARATOR + edv.destinationName()};
+            String styles[] = {""};
+            for (int z = 0; z <= EDStatic.wmsTileSeedMaxZoom; z++) {
+                double size = 180.0 / (1 << z);
+                int x0 = Math.max(0,            (int)Math.floor((lonAv.destinationMin() + 180) / size));
+                int x1 = Math.min(3 * (1 << z), (int)Math.ceil( (lonAv.destinationMax() + 180) / size));
+                int y0 = Math.max(0,            (int)Math.floor((90 - latAv.destinationMax()) / size));
+                int y1 = Math.min(1 << z,       (int)Math.ceil( (90 - latAv.destinationMin()) / size));
+                for (int x = x0; x < x1; x++) {
+                    for (int y = y0; y < y1; y++) {
+                        double bbox[] = WmsTileCache.tileBBox(z, x, y);
+                        int tileGeneration = tileCache.generation(datasetID);
+                        String tileFullName = wmsTileFullName(datasetID, layers, true, bgColori,
+                            queryMap, bbox[0], bbox[1], bbox[2], bbox[3], 
+                            WmsTileCache.TILE_SIZE, WmsTileCache.TILE_SIZE);
+                        if (tileFullName == null || tileCache.isCached(tileFullName))
+                            continue;
+                        new File(File2.getDirectory(tileFullName)).mkdirs();
+                        makeWmsImage(null, layers, styles, queryMap,
+                            bbox[0], bbox[1], bbox[2], bbox[3], 
+                            WmsTileCache.TILE_SIZE, WmsTileCache.TILE_SIZE, true, bgColori,
+                            tileFullName.substring(0, tileFullName.length() - 4)); //remove .png
+                        tileCache.added(datasetID, tileFullName, tileGeneration);
+                        nMade++;
+                    }
+                }
+            }
+        }
+        if (verbose) String2.log("seedWmsTiles(" + datasetID + ") made " + nMade + 
+            " tiles in " + (System.currentTimeMillis() - time) + "ms.");
+        return nMade;
+    }
+
     /**
      * Respond to WMS GetCapabilities request for doWms.
      * To become a Layer, a grid variable must use evenly-spaced longitude and latitude variables.
@@ -17276,6 +17725,49 @@ expected =
         }
     }
 
+    /**
+     * This tests that a WMS image drawn in strips (see drawWmsStrips)
+     * matches the image drawn in one pass.
+     */
+    public static void testWmsStrips() throws Throwable {
+        String2.log("\n*** Erddap.testWmsStrips()");
+        final String layers[] = {"Land", "Coastlines", "Nations", "States"};
+        final double minx = -135, maxx = -105, miny = 22, maxy = 52;
+        final int width = 300, height = 400, nStrips = 4;
+        Color bgColor = new Color(0xFF808080);
+        BufferedImage images[] = new BufferedImage[2];
+        for (int i = 0; i < 2; i++) {
+            images[i] = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            Graphics g = images[i].getGraphics();
+            g.setColor(bgColor);
+            g.fillRect(0, 0, width, height);
+            drawWmsStrips(g, width, height, bgColor, i == 0? 1 : nStrips, 
+                (g2, row0, row1) -> {
+                    for (int layeri = 0; layeri < layers.length; layeri++)
+                        Test.ensureTrue(drawWmsNonDataLayer(g2, layers[layeri], minx, maxx, 
+                            wmsRowLat(miny, maxy, height, row1), wmsRowLat(miny, maxy, height, row0),
+                            width, row1 - row0), layers[layeri]);
+                });
+            g.dispose();
+        }
+
+        //the pixels are the same, except perhaps the antialiased edges 
+        //of lines which cross the strips' boundaries
+        int nDifferent = 0;
+        for (int y = 0; y < height; y++) {
+            boolean nearBoundary = false;
+            for (int strip = 1; strip < nStrips; strip++)
+                nearBoundary |= Math.abs(y - strip * height / nStrips) <= 1;
+            for (int x = 0; x < width; x++) {
+                if (images[0].getRGB(x, y) != images[1].getRGB(x, y)) {
+                    nDifferent++;
+                    Test.ensureTrue(nearBoundary, "The strips' pixels differ at x=" + x + " y=" + y);
+                }
+            }
+        }
+        String2.log("nDifferent=" + nDifferent + " (next to the strips' boundaries)");
+    }
+
     /**
      * This is used by Bob to do simple tests of the basic Erddap services 
      * from the ERDDAP at EDStatic.erddapUrl. It assumes Bob's test datasets are available.
@@ -17283,6 +17775,7 @@ expected =
      */
     public static void test() throws Throwable {
 /* for releases, this line should have open/close comment */
+        testWmsStrips();
         testBasic();
         testJsonld();
     }
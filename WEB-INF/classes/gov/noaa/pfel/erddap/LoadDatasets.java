@@ -12,8 +12,10 @@ import com.cohort.util.File2;
 import com.cohort.util.Math2;
 import com.cohort.util.MustBe;
 import com.cohort.util.String2;
+import com.cohort.util.Test;
 import com.cohort.util.XML;
 
+import gov.noaa.pfel.coastwatch.griddata.NcHelper;
 import gov.noaa.pfel.coastwatch.sgt.GSHHS;
 import gov.noaa.pfel.coastwatch.sgt.SgtMap;
 import gov.noaa.pfel.coastwatch.util.SimpleXMLReader;
@@ -25,13 +27,21 @@ import gov.noaa.pfel.erddap.variable.EDV;
 import gov.noaa.pfel.erddap.variable.EDVGridAxis;
 //import gov.noaa.pfel.erddap.variable.EDVTimeGridAxis;
 
+import java.io.ByteArrayInputStream;
 import java.io.FileInputStream;
 import java.net.HttpURLConnection;
 import java.io.InputStream;
 import java.net.URL;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -73,8 +83,16 @@ import org.apache.lucene.index.Term;
  *     (not in batch mode).
  * <li> Loading datasets takes time, but is done in a separate thread
  *    so it never slows down requests for a dataset.
- * <li> Only one thread is used to load all the datasets, so loading
+ * <li> By default, only one thread is used to load all the datasets, so loading
  *    datasets never becomes a drain of computer resources.
+ *    If setup.xml's &lt;nLoadDatasetsThreads&gt; is more than 1,
+ *    that many datasets are constructed at once (in loadPool threads),
+ *    but the LoadDatasets thread is still the only thread that puts the datasets
+ *    in place in erddap (and updates categoryInfo, Lucene, subscriptions, RSS),
+ *    so that part still doesn't have thread synchronization issues.
+ *    A dataset which uses other datasets from this ERDDAP (e.g., EDDGridLonPM180
+ *    or EDDTableAggregateRows with a local sourceUrl) isn't started
+ *    until those datasets have been loaded.
  * <li> The datasets.xml file is read anew each time this is run,
  *    so you can make changes to the file (e.g., add datasets or change metadata)
  *    and the results take effect without restarting Erddap.
@@ -103,6 +121,130 @@ public class LoadDatasets extends Thread {
     private final static boolean ADD = true;
     private final static boolean REMOVE = false;
 
+    /** The results of trying to construct one dataset. */
+    private static class LoadResult {
+        String datasetID;
+        String errorLocation; //e.g., "datasets.xml error on line #123"
+        EDD dataset;          //null if it failed to load
+        Throwable throwable;  //null if it loaded successfully
+        long millis;          //time to construct the dataset
+    }
+
+    /** This receives the LoadResults from a LoadPool (on the LoadDatasets thread). */
+    interface Publisher {
+        /**
+         * @param result a dataset which has finished loading
+         * @return false if the LoadDatasets thread was interrupted
+         */
+        boolean publish(LoadResult result) throws Exception;
+    }
+
+    /**
+     * This constructs datasets in a pool of daemon threads 
+     * (used by run() if EDStatic.nLoadDatasetsThreads &gt; 1).
+     * Only the LoadDatasets thread calls its methods, so the results are 
+     * published one at a time, on that thread.
+     */
+    static class LoadPool {
+        private final ExecutorService pool;
+        private final ExecutorCompletionService<LoadResult> completion;
+        /** The datasetIDs being constructed whose results haven't been taken. */
+        private final HashSet<String> loadingIDs = new HashSet();
+
+        /**
+         * The constructor.
+         *
+         * @param nThreads the number of datasets to construct at once
+         */
+        LoadPool(int nThreads) {
+            pool = Executors.newFixedThreadPool(nThreads, 
+                new ThreadFactory() {
+                    int n = 0;
+                    public synchronized Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "LoadDatasets_" + n++);
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+            completion = new ExecutorCompletionService(pool);
+        }
+
+        /** The number of datasets being constructed whose results haven't been taken. */
+        int nLoading() {
+            return loadingIDs.size();
+        }
+
+        /**
+         * This submits a dataset to be constructed in a pool thread.
+         *
+         * @param result with datasetID and errorLocation. The task sets the
+         *    dataset (or throwable) and millis.
+         * @param constructor makes the dataset
+         */
+        void submit(final LoadResult result, final Callable<EDD> constructor) {
+            loadingIDs.add(result.datasetID);
+            completion.submit(() -> {
+                long tStartMillis = System.currentTimeMillis();
+                try {
+                    result.dataset = constructor.call();
+                } catch (Throwable t) {
+                    result.throwable = t;
+                }
+                result.millis = System.currentTimeMillis() - tStartMillis;
+                return result;
+            });
+        }
+
+        /**
+         * This publishes the results which have already finished (without waiting).
+         *
+         * @return false if the LoadDatasets thread was interrupted
+         */
+        boolean publishFinished(Publisher publisher) throws Exception {
+            Future<LoadResult> future;
+            while ((future = completion.poll()) != null) {
+                if (!publisher.publish(taken(future)))
+                    return false;
+            }
+            return true;
+        }
+
+        /**
+         * This waits for (and publishes the results of) the other datasets 
+         * as they finish, until none of datasetIDs are being constructed.
+         *
+         * @param datasetIDs  If null, this waits for all of the datasets.
+         * @return false if the LoadDatasets thread was interrupted
+         * @throws InterruptedException if interrupted while waiting
+         */
+        boolean waitFor(StringArray datasetIDs, Publisher publisher) throws Exception {
+            int i = 0;
+            while (datasetIDs == null? loadingIDs.size() > 0 : i < datasetIDs.size()) {
+                if (datasetIDs != null && !loadingIDs.contains(datasetIDs.get(i))) {
+                    i++;
+                    continue;
+                }
+                if (!publisher.publish(taken(completion.take()))) 
+                    return false;
+            }
+            return true;
+        }
+
+        private LoadResult taken(Future<LoadResult> future) throws Exception {
+            LoadResult result = future.get(); //the task catches all Throwables
+            loadingIDs.remove(result.datasetID);
+            return result;
+        }
+
+        /** This interrupts the unfinished tasks (if any). */
+        void shutdownNow() {
+            pool.shutdownNow();
+        }
+    }
+
+    //*** things used by run() if EDStatic.nLoadDatasetsThreads > 1
+    private LoadPool loadPool;
+
     /* This is set by run if there is an unexpected error. */   
     public String unexpectedError = ""; 
 
@@ -157,6 +299,9 @@ public class LoadDatasets extends Thread {
                 System.gc();  Thread.sleep(Math2.gcSleep); //before get memoryString
                 memoryInUse = Math2.getMemoryInUse();
                 String2.log(Math2.memoryString() + " " + Math2.xmxMemoryString());
+
+                //close the ncFiles that have been idle too long
+                NcHelper.ncFilePool.closeExpired();
             }
             long startTime = System.currentTimeMillis();
             int oldNGrid = erddap.gridDatasetHashMap.size();
@@ -204,6 +349,17 @@ public class LoadDatasets extends Thread {
                 inputStream = new FileInputStream(newFileName);
             }
 
+            //construct datasets in parallel?
+            //datasetsThatFailedToLoadSB is reassigned at the end, so the lambda uses a copy
+            final StringBuilder datasetsThatFailedToLoadSB2 = datasetsThatFailedToLoadSB;
+            Publisher publisher = result -> 
+                datasetLoaded(result, changedDatasetIDs, datasetsThatFailedToLoadSB2);
+            if (EDStatic.nLoadDatasetsThreads > 1) {
+                loadPool = new LoadPool(EDStatic.nLoadDatasetsThreads);
+                String2.log("LoadDatasets is using nLoadDatasetsThreads=" + 
+                    EDStatic.nLoadDatasetsThreads);
+            }
+
             //read datasets.xml
             xmlReader = new SimpleXMLReader(inputStream, "erddapDatasets");
             String startError = "datasets.xml error on line #";
@@ -219,9 +375,21 @@ public class LoadDatasets extends Thread {
                     return;
                 }
 
+                //publish the datasets which have finished loading in loadPool threads
+                if (loadPool != null && !loadPool.publishFinished(publisher)) {
+                    xmlReader.close();
+                    return; //interrupted
+                }
+
                 xmlReader.nextTag();
                 String tags = xmlReader.allTags();
                 if (tags.equals("</erddapDatasets>")) {
+                    //wait for the datasets still loading in loadPool threads
+                    if (loadPool != null && 
+                        !waitForLoadPool(null, publisher, changedDatasetIDs)) {
+                        xmlReader.close();
+                        return; //interrupted
+                    }
                     break;
                 } else if (tags.equals("<erddapDatasets><dataset>")) {
                     //just load minimal datasets?
@@ -325,114 +493,60 @@ public class LoadDatasets extends Thread {
                             xmlReader.nextTag();
                             tags = xmlReader.allTags();
                         }
-                    } else {
-                        //try to load this dataset
+                    } else if (loadPool != null) {
+                        //construct this dataset in a loadPool thread
                         nTry++;
-                        String change = "";
-                        EDD dataset = null, oldDataset = null;
-                        boolean oldCatInfoRemoved = false;
-                        long timeToLoadThisDataset = System.currentTimeMillis();
-                        try {
-                            dataset = EDD.fromXml(erddap, xmlReader.attributeValue("type"), xmlReader);
-
-                            //check for interruption right before making changes to Erddap
-                            if (isInterrupted()) { //this is a likely place to catch interruption
-                                String2.log("*** The LoadDatasets thread was interrupted at " + 
-                                    Calendar2.getCurrentISODateTimeStringLocalTZ());
-                                xmlReader.close();
-                                updateLucene(erddap, changedDatasetIDs);
-                                lastLuceneUpdate = System.currentTimeMillis();
-                                return;
-                            }
-
-                            //do several things in quick succession...
-                            //(??? synchronize on (?) if really need avoid inconsistency)
-
-                            //was there a dataset with the same datasetID?
-                            oldDataset = erddap.gridDatasetHashMap.get(tId);
-                            if (oldDataset == null)
-                                oldDataset = erddap.tableDatasetHashMap.get(tId);
-
-                            //if oldDataset existed, remove its info from categoryInfo
-                            //(check now, before put dataset in place, in case EDDGrid <--> EDDTable)
-                            if (oldDataset != null) {
-                                addRemoveDatasetInfo(REMOVE, erddap.categoryInfo, oldDataset); 
-                                oldCatInfoRemoved = true;
-                            }
+                        LoadResult result = new LoadResult();
+                        result.datasetID = tId;
+                        result.errorLocation = startError + xmlReader.lineNumber();
+                        String tType = xmlReader.attributeValue("type");
+                        String datasetXml = readDatasetXml(xmlReader); //reads to </dataset>
+
+                        //first, wait for any datasets from this ERDDAP that this dataset uses
+                        if (!waitForLoadPool(localDatasetIDs(datasetXml), publisher, 
+                                changedDatasetIDs)) {
+                            xmlReader.close();
+                            return; //interrupted
+                        }
 
-                            //put dataset in place
-                            //(hashMap.put atomically replaces old version with new)
-                            if ((oldDataset == null || oldDataset instanceof EDDGrid) &&
-                                                          dataset instanceof EDDGrid) {
-                                erddap.gridDatasetHashMap.put(tId, (EDDGrid)dataset);  //was/is grid
-
-                            } else if ((oldDataset == null || oldDataset instanceof EDDTable) &&
-                                                                 dataset instanceof EDDTable) {
-                                erddap.tableDatasetHashMap.put(tId, (EDDTable)dataset); //was/is table 
-
-                            } else if (dataset instanceof EDDGrid) {
-                                if (oldDataset != null)
-                                    erddap.tableDatasetHashMap.remove(tId);   //was table
-                                erddap.gridDatasetHashMap.put(tId, (EDDGrid)dataset);  //now grid
-
-                            } else if (dataset instanceof EDDTable) {
-                                if (oldDataset != null)
-                                    erddap.gridDatasetHashMap.remove(tId);    //was grid
-                                erddap.tableDatasetHashMap.put(tId, (EDDTable)dataset); //now table
+                        loadPool.submit(result, () -> {
+                            SimpleXMLReader datasetXmlReader = new SimpleXMLReader(
+                                new ByteArrayInputStream(String2.getUTF8Bytes(
+                                    "<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n" +
+                                    "<erddapDatasets>\n" + datasetXml + "</erddapDatasets>\n")), 
+                                "erddapDatasets");
+                            try {
+                                datasetXmlReader.nextTag(); //<erddapDatasets><dataset>
+                                return EDD.fromXml(erddap, tType, datasetXmlReader);
+                            } finally {
+                                datasetXmlReader.close();
                             }
+                        });
 
-                            //add new info to categoryInfo
-                            addRemoveDatasetInfo(ADD, erddap.categoryInfo, dataset); 
-
-                            //clear the dataset's cache 
-                            //since axis values may have changed and "last" may have changed
-                            File2.deleteAllFiles(dataset.cacheDirectory());                           
-                       
-                            change = dataset.changed(oldDataset);
-                            if (change.length() == 0 && dataset instanceof EDDTable)
-                                change = "The dataset was reloaded.";
-
+                    } else {
+                        //try to load this dataset
+                        nTry++;
+                        LoadResult result = new LoadResult();
+                        result.datasetID = tId;
+                        long tStartMillis = System.currentTimeMillis();
+                        try {
+                            result.dataset = EDD.fromXml(erddap, xmlReader.attributeValue("type"), xmlReader);
                         } catch (Throwable t) {
-                            dataset = null;
-                            timeToLoadThisDataset = System.currentTimeMillis() - timeToLoadThisDataset;
-
-                            //check for interruption right before making changes to Erddap
-                            if (isInterrupted()) { //this is a likely place to catch interruption
-                                String tError2 = "*** The LoadDatasets thread was interrupted at " + 
-                                    Calendar2.getCurrentISODateTimeStringLocalTZ();
-                                String2.log(tError2);
-                                warningsFromLoadDatasets.append(tError2 + "\n\n");
-                                xmlReader.close();
-                                updateLucene(erddap, changedDatasetIDs);
-                                lastLuceneUpdate = System.currentTimeMillis();
-                                return;
-                            }
-
-
-                            //actually remove old dataset (if any existed)
-                            EDD tDataset = erddap.gridDatasetHashMap.remove(tId); //always ensure it was removed
-                            if (tDataset == null)
-                                tDataset = erddap.tableDatasetHashMap.remove(tId);
-                            if (oldDataset == null)
-                                oldDataset = tDataset;
-
-                            //if oldDataset existed, remove it from categoryInfo
-                            if (oldDataset != null && !oldCatInfoRemoved)
-                                addRemoveDatasetInfo(REMOVE, erddap.categoryInfo, oldDataset); 
-
-                            String tError = startError + xmlReader.lineNumber() + "\n" + 
-                                "While trying to load datasetID=" + tId + " (after " +
-                                    timeToLoadThisDataset + " ms)\n" +
-                                MustBe.throwableToString(t);
-                            String2.log(tError);
-                            warningsFromLoadDatasets.append(tError + "\n\n");
-                            datasetsThatFailedToLoadSB.append(tId + ", ");
+                            result.throwable = t;
+                        }
+                        result.millis = System.currentTimeMillis() - tStartMillis;
+                        result.errorLocation = startError + xmlReader.lineNumber();
+                        if (!datasetLoaded(result, changedDatasetIDs, datasetsThatFailedToLoadSB)) {
+                            xmlReader.close();
+                            return; //interrupted
+                        }
 
+                        if (result.throwable != null) {
                             //stop???
                             if (!xmlReader.isOpen()) { //error was really serious
                                 xmlReader.close();
                                 throw new RuntimeException(startError + xmlReader.lineNumber() + 
-                                    ": " + t.toString(), t);
+                                    ": " + result.throwable.toString(), result.throwable);
                             }
            
                             //skip over the remaining tags for this dataset
@@ -444,109 +558,7 @@ public class LoadDatasets extends Thread {
                                 throw new RuntimeException(startError + xmlReader.lineNumber() + 
                                     ": " + t2.toString(), t2);
                             }
-
-                            //change      (if oldDataset=null and new one failed to load, no change)
-                            if (oldDataset != null)  
-                                change = tError;
-                        }
-                        if (verbose) String2.log("change=" + change);
-
-                        //whether succeeded (new or swapped in) or failed (removed), it was changed
-                        changedDatasetIDs.add(tId);
-                        if (System.currentTimeMillis() - lastLuceneUpdate >
-                            MAX_MILLIS_BEFORE_LUCENE_UPDATE) {
-                            updateLucene(erddap, changedDatasetIDs);
-                            lastLuceneUpdate = System.currentTimeMillis();
-                        }
-
-                        //trigger subscription and dataset.onChange actions (after new dataset is in place)
-                        EDD cooDataset = dataset == null? oldDataset : dataset; //currentOrOld, may be null
-                        if (change.length() > 0) {
-                            try {
-                                StringArray actions = null;
-
-                                if (EDStatic.subscriptionSystemActive) { 
-                                    //get subscription actions
-                                    try { //beware exceptions from subscriptions
-                                        actions = EDStatic.subscriptions.listActions(tId);
-                                    } catch (Throwable listT) {
-                                        String subject = startError + xmlReader.lineNumber() + " with Subscriptions";
-                                        String content = MustBe.throwableToString(listT); 
-                                        String2.log(subject + ":\n" + content);
-                                        EDStatic.email(EDStatic.emailEverythingToCsv, subject, content);
-                                        actions = new StringArray();
-                                    }
-                                } else actions = new StringArray();
-
-                                //get dataset.onChange actions
-                                int nSubscriptionActions = actions.size();
-                                if (cooDataset != null) {
-                                    if (cooDataset.onChange() != null) actions.append(cooDataset.onChange());
-                                }
-
-                                //do the actions
-                                if (verbose) String2.log("nActions=" + actions.size());
-
-                                for (int a = 0; a < actions.size(); a++) {
-                                    String tAction = actions.get(a);
-                                    if (verbose) 
-                                        String2.log("doing action[" + a + "]=" + tAction);
-                                    try {
-                                        if (tAction.startsWith("http://") ||
-                                            tAction.startsWith("https://")) {
-                                            if (tAction.indexOf("/" + EDStatic.warName + "/setDatasetFlag.txt?") > 0 &&
-                                                (tAction.startsWith(EDStatic.baseUrl) ||  
-                                                 tAction.startsWith(EDStatic.baseHttpsUrl) ||  
-                                                 tAction.startsWith("https://localhost") ||
-                                                 tAction.startsWith("http://localhost")  ||
-                                                 tAction.startsWith("https://127.0.0.1") ||
-                                                 tAction.startsWith("http://127.0.0.1"))) { 
-                                                //a dataset on this ERDDAP! just set the flag
-                                                //e.g., http://coastwatch.pfeg.noaa.gov/erddap/setDatasetFlag.txt?datasetID=ucsdHfrW500&flagKey=##########
-                                                String trDatasetID = String2.extractCaptureGroup(tAction, ".*datasetID=(.+?)&.*", 1);
-                                                if (trDatasetID == null)
-                                                    SSR.touchUrl(tAction, 60000); //fall back; just do it
-                                                else EDD.requestReloadASAP(trDatasetID);
-
-                                            } else {
-                                                //but don't get the input stream! I don't need to, 
-                                                //and it is a big security risk.
-                                                SSR.touchUrl(tAction, 60000);
-                                            }
-                                        } else if (tAction.startsWith("mailto:")) {
-                                            String tEmail = tAction.substring("mailto:".length());
-                                            EDStatic.email(tEmail,
-                                                "datasetID=" + tId + " changed.", 
-                                                "datasetID=" + tId + " changed.\n" + 
-                                                change + "\n\n*****\n" +
-                                                (a < nSubscriptionActions? 
-                                                    EDStatic.subscriptions.messageToRequestList(tEmail) :
-                                                    "This action is specified in datasets.xml.\n")); 
-                                                    //It would be nice to include unsubscribe 
-                                                    //info for this action, 
-                                                    //but it isn't easily available.
-                                        } else {
-                                            throw new RuntimeException("The startsWith of action=" + 
-                                                tAction + " is not allowed!");
-                                        }
-                                    } catch (Throwable actionT) {
-                                        String2.log(startError + xmlReader.lineNumber() + "\n" + 
-                                            "action=" + tAction + "\n" + 
-                                            MustBe.throwableToString(actionT));
-                                    }
-                                }
-                            } catch (Throwable subT) {
-                                String subject = startError + xmlReader.lineNumber() + " with Subscriptions";
-                                String content = MustBe.throwableToString(subT); 
-                                String2.log(subject + ":\n" + content);
-                                EDStatic.email(EDStatic.emailEverythingToCsv, subject, content);
-                            }
                         }
-
-                        //trigger RSS action 
-                        // (after new dataset is in place and if there is either a current or older dataset)
-                        if (cooDataset != null && change.length() > 0) 
-                            cooDataset.updateRSS(erddap, change);
                     }
 
                 } else if (tags.equals("<erddapDatasets><subscriptionEmailBlacklist>")) {
@@ -944,8 +956,316 @@ public class LoadDatasets extends Thread {
                 String2.log(unexpectedError);
                 EDStatic.email(EDStatic.emailEverythingToCsv, subject, content);
             }
+        } finally {
+            if (loadPool != null) {
+                loadPool.shutdownNow(); //interrupts unfinished tasks (if any)
+                loadPool = null;
+            }
+        }
+
+    }
+
+    /**
+     * This calls loadPool.waitFor() (which publishes the other datasets
+     * as they finish loading) and handles an interruption while waiting.
+     *
+     * @param datasetIDs the datasets to wait for (or null for all)
+     * @return false if this thread was interrupted (so run() should return)
+     */
+    private boolean waitForLoadPool(StringArray datasetIDs, Publisher publisher,
+        StringArray changedDatasetIDs) throws Exception {
+
+        try {
+            return loadPool.waitFor(datasetIDs, publisher);
+        } catch (InterruptedException e) {
+            String2.log("*** The LoadDatasets thread was interrupted at " + 
+                Calendar2.getCurrentISODateTimeStringLocalTZ());
+            updateLucene(erddap, changedDatasetIDs);
+            lastLuceneUpdate = System.currentTimeMillis();
+            return false;
+        }
+    }
+
+    /**
+     * This reads the rest of a &lt;dataset&gt; (xmlReader is at the &lt;dataset&gt; tag)
+     * and returns it as an xml String, so it can be parsed by a different thread.
+     * When this returns, xmlReader is at the &lt;/dataset&gt; tag.
+     *
+     * @param xmlReader positioned at &lt;erddapDatasets&gt;&lt;dataset&gt;
+     * @return the xml for the dataset, e.g., "&lt;dataset type=...&gt;...&lt;/dataset&gt;"
+     * @throws Exception if trouble
+     */
+    private static String readDatasetXml(SimpleXMLReader xmlReader) throws Exception {
+        StringBuilder sb = new StringBuilder();
+        int startStackSize = xmlReader.stackSize();
+        while (true) {
+            String tag = xmlReader.topTag();
+            if (tag.startsWith("/")) {
+                //end tag: write the content then the end tag
+                sb.append(XML.encodeAsXML(xmlReader.content()) + "<" + tag + ">\n");
+                if (xmlReader.stackSize() == startStackSize) 
+                    return sb.toString();
+            } else {
+                sb.append("<" + tag);
+                String names[] = xmlReader.attributeNames();
+                for (int i = 0; i < names.length; i++) 
+                    sb.append(" " + names[i] + "=\"" + 
+                        XML.encodeAsXML(xmlReader.attributeValue(names[i])) + "\"");
+                sb.append(">");
+            }
+            xmlReader.nextTag();
+        }
+    }
+
+    /** 
+     * This finds the datasetIDs of the datasets from this ERDDAP which are used 
+     * by a dataset (e.g., EDDGridLonPM180 and EDDTableAggregateRows children which
+     * are EDD...FromErddap datasets with a local sourceUrl).
+     *
+     * @param datasetXml the xml for one dataset
+     * @return the local datasetIDs (perhaps size=0)
+     */
+    static StringArray localDatasetIDs(String datasetXml) {
+        StringArray ids = new StringArray();
+        int po = datasetXml.indexOf("<sourceUrl>");
+        while (po >= 0) {
+            int po2 = datasetXml.indexOf("</sourceUrl>", po);
+            if (po2 < 0)
+                break;
+            String url = XML.decodeEntities(datasetXml.substring(po + 11, po2)).trim();
+            if (url.startsWith(EDStatic.baseUrl) ||
+                (EDStatic.baseHttpsUrl.startsWith("https://") && 
+                    url.startsWith(EDStatic.baseHttpsUrl)) ||
+                url.startsWith("http://127.0.0.1")  || url.startsWith("http://localhost") ||
+                url.startsWith("https://127.0.0.1") || url.startsWith("https://localhost")) 
+                ids.add(File2.getNameNoExtension(url));
+            po = datasetXml.indexOf("<sourceUrl>", po2);
+        }
+        return ids;
+    }
+
+    /**
+     * This puts a newly constructed dataset in place (or, if it failed to load,
+     * removes the old version of the dataset) and does the related actions
+     * (categoryInfo, Lucene, subscriptions, onChange, RSS).
+     * This is only called by the LoadDatasets thread.
+     *
+     * @param result the results of trying to construct the dataset
+     * @param changedDatasetIDs receives tId
+     * @param datasetsThatFailedToLoadSB receives tId if the dataset failed to load
+     * @return false if this thread was interrupted (so run() should return)
+     */
+    private boolean datasetLoaded(LoadResult result, StringArray changedDatasetIDs, 
+        StringBuilder datasetsThatFailedToLoadSB) {
+
+        String tId = result.datasetID;
+        String change = "";
+        EDD dataset = result.dataset, oldDataset = null;
+        boolean oldCatInfoRemoved = false;
+        if (result.throwable == null) {
+            try {
+                //check for interruption right before making changes to Erddap
+                if (isInterrupted()) { //this is a likely place to catch interruption
+                    String2.log("*** The LoadDatasets thread was interrupted at " + 
+                        Calendar2.getCurrentISODateTimeStringLocalTZ());
+                    updateLucene(erddap, changedDatasetIDs);
+                    lastLuceneUpdate = System.currentTimeMillis();
+                    return false;
+                }
+
+                //do several things in quick succession...
+                //(??? synchronize on (?) if really need avoid inconsistency)
+
+                //was there a dataset with the same datasetID?
+                oldDataset = erddap.gridDatasetHashMap.get(tId);
+                if (oldDataset == null)
+                    oldDataset = erddap.tableDatasetHashMap.get(tId);
+
+                //if oldDataset existed, remove its info from categoryInfo
+                //(check now, before put dataset in place, in case EDDGrid <--> EDDTable)
+                if (oldDataset != null) {
+                    addRemoveDatasetInfo(REMOVE, erddap.categoryInfo, oldDataset); 
+                    oldCatInfoRemoved = true;
+                }
+
+                //put dataset in place
+                //(hashMap.put atomically replaces old version with new)
+                if ((oldDataset == null || oldDataset instanceof EDDGrid) &&
+                                              dataset instanceof EDDGrid) {
+                    erddap.gridDatasetHashMap.put(tId, (EDDGrid)dataset);  //was/is grid
+
+                } else if ((oldDataset == null || oldDataset instanceof EDDTable) &&
+                                                     dataset instanceof EDDTable) {
+                    erddap.tableDatasetHashMap.put(tId, (EDDTable)dataset); //was/is table 
+
+                } else if (dataset instanceof EDDGrid) {
+                    if (oldDataset != null)
+                        erddap.tableDatasetHashMap.remove(tId);   //was table
+                    erddap.gridDatasetHashMap.put(tId, (EDDGrid)dataset);  //now grid
+
+                } else if (dataset instanceof EDDTable) {
+                    if (oldDataset != null)
+                        erddap.gridDatasetHashMap.remove(tId);    //was grid
+                    erddap.tableDatasetHashMap.put(tId, (EDDTable)dataset); //now table
+                }
+
+                //add new info to categoryInfo
+                addRemoveDatasetInfo(ADD, erddap.categoryInfo, dataset); 
+
+                //clear the dataset's cache 
+                //since axis values may have changed and "last" may have changed
+                File2.deleteAllFiles(dataset.cacheDirectory());                           
+                if (EDStatic.wmsTileCache != null)
+                    EDStatic.wmsTileCache.removeDataset(tId);
+                if (EDStatic.responseCache != null)
+                    EDStatic.responseCache.removeDataset(tId);
+           
+                change = dataset.changed(oldDataset);
+                if (change.length() == 0 && dataset instanceof EDDTable)
+                    change = "The dataset was reloaded.";
+
+            } catch (Throwable t) {
+                result.throwable = t;
+            }
+        }
+
+        if (result.throwable != null) {
+            Throwable t = result.throwable;
+            dataset = null;
+
+            //check for interruption right before making changes to Erddap
+            if (isInterrupted()) { //this is a likely place to catch interruption
+                String tError2 = "*** The LoadDatasets thread was interrupted at " + 
+                    Calendar2.getCurrentISODateTimeStringLocalTZ();
+                String2.log(tError2);
+                warningsFromLoadDatasets.append(tError2 + "\n\n");
+                updateLucene(erddap, changedDatasetIDs);
+                lastLuceneUpdate = System.currentTimeMillis();
+                return false;
+            }
+
+            //actually remove old dataset (if any existed)
+            EDD tDataset = erddap.gridDatasetHashMap.remove(tId); //always ensure it was removed
+            if (tDataset == null)
+                tDataset = erddap.tableDatasetHashMap.remove(tId);
+            if (oldDataset == null)
+                oldDataset = tDataset;
+
+            //if oldDataset existed, remove it from categoryInfo
+            if (oldDataset != null && !oldCatInfoRemoved)
+                addRemoveDatasetInfo(REMOVE, erddap.categoryInfo, oldDataset); 
+
+            String tError = result.errorLocation + "\n" + 
+                "While trying to load datasetID=" + tId + " (after " +
+                    result.millis + " ms)\n" +
+                MustBe.throwableToString(t);
+            String2.log(tError);
+            warningsFromLoadDatasets.append(tError + "\n\n");
+            datasetsThatFailedToLoadSB.append(tId + ", ");
+
+            //change      (if oldDataset=null and new one failed to load, no change)
+            if (oldDataset != null)  
+                change = tError;
+        }
+        if (verbose) String2.log("change=" + change);
+
+        //whether succeeded (new or swapped in) or failed (removed), it was changed
+        changedDatasetIDs.add(tId);
+        if (System.currentTimeMillis() - lastLuceneUpdate >
+            MAX_MILLIS_BEFORE_LUCENE_UPDATE) {
+            updateLucene(erddap, changedDatasetIDs);
+            lastLuceneUpdate = System.currentTimeMillis();
+        }
+
+        //trigger subscription and dataset.onChange actions (after new dataset is in place)
+        EDD cooDataset = dataset == null? oldDataset : dataset; //currentOrOld, may be null
+        if (change.length() > 0) {
+            try {
+                StringArray actions = null;
+
+                if (EDStatic.subscriptionSystemActive) { 
+                    //get subscription actions
+                    try { //beware exceptions from subscriptions
+                        actions = EDStatic.subscriptions.listActions(tId);
+                    } catch (Throwable listT) {
+                        String subject = result.errorLocation + " with Subscriptions";
+                        String content = MustBe.throwableToString(listT); 
+                        String2.log(subject + ":\n" + content);
+                        EDStatic.email(EDStatic.emailEverythingToCsv, subject, content);
+                        actions = new StringArray();
+                    }
+                } else actions = new StringArray();
+
+                //get dataset.onChange actions
+                int nSubscriptionActions = actions.size();
+                if (cooDataset != null) {
+                    if (cooDataset.onChange() != null) actions.append(cooDataset.onChange());
+                }
+
+                //do the actions
+                if (verbose) String2.log("nActions=" + actions.size());
+
+                for (int a = 0; a < actions.size(); a++) {
+                    String tAction = actions.get(a);
+                    if (verbose) 
+                        String2.log("doing action[" + a + "]=" + tAction);
+                    try {
+                        if (tAction.startsWith("http://") ||
+                            tAction.startsWith("https://")) {
+                            if (tAction.indexOf("/" + EDStatic.warName + "/setDatasetFlag.txt?") > 0 &&
+                                (tAction.startsWith(EDStatic.baseUrl) ||  
+                                 tAction.startsWith(EDStatic.baseHttpsUrl) ||  
+                                 tAction.startsWith("https://localhost") ||
+                                 tAction.startsWith("http://localhost")  ||
+                                 tAction.startsWith("https://127.0.0.1") ||
+                                 tAction.startsWith("http://127.0.0.1"))) { 
+                                //a dataset on this ERDDAP! just set the flag
+                                //e.g., http://coastwatch.pfeg.noaa.gov/erddap/setDatasetFlag.txt?datasetID=ucsdHfrW500&flagKey=##########
+                                String trDatasetID = String2.extractCaptureGroup(tAction, ".*datasetID=(.+?)&.*", 1);
+                                if (trDatasetID == null)
+                                    SSR.touchUrl(tAction, 60000); //fall back; just do it
+                                else EDD.requestReloadASAP(trDatasetID);
+
+                            } else {
+                                //but don't get the input stream! I don't need to, 
+                                //and it is a big security risk.
+                                SSR.touchUrl(tAction, 60000);
+                            }
+                        } else if (tAction.startsWith("mailto:")) {
+                            String tEmail = tAction.substring("mailto:".length());
+                            EDStatic.email(tEmail,
+                                "datasetID=" + tId + " changed.", 
+                                "datasetID=" + tId + " changed.\n" + 
+                                change + "\n\n*****\n" +
+                                (a < nSubscriptionActions? 
+                                    EDStatic.subscriptions.messageToRequestList(tEmail) :
+                                    "This action is specified in datasets.xml.\n")); 
+                                    //It would be nice to include unsubscribe 
+                                    //info for this action, 
+                                    //but it isn't easily available.
+                        } else {
+                            throw new RuntimeException("The startsWith of action=" + 
+                                tAction + " is not allowed!");
+                        }
+                    } catch (Throwable actionT) {
+                        String2.log(result.errorLocation + "\n" + 
+                            "action=" + tAction + "\n" + 
+                            MustBe.throwableToString(actionT));
+                    }
+                }
+            } catch (Throwable subT) {
+                String subject = result.errorLocation + " with Subscriptions";
+                String content = MustBe.throwableToString(subT); 
+                String2.log(subject + ":\n" + content);
+                EDStatic.email(EDStatic.emailEverythingToCsv, subject, content);
+            }
         }
 
+        //trigger RSS action 
+        // (after new dataset is in place and if there is either a current or older dataset)
+        if (cooDataset != null && change.length() > 0) 
+            cooDataset.updateRSS(erddap, change);
+        return true;
     }
 
     /** 
@@ -1076,6 +1396,10 @@ public class LoadDatasets extends Thread {
         String2.log("*** unloading datasetID=" + tId);
         addRemoveDatasetInfo(REMOVE, erddap.categoryInfo, oldEdd); 
         File2.deleteAllFiles(EDD.cacheDirectory(tId));
+        if (EDStatic.wmsTileCache != null)
+            EDStatic.wmsTileCache.removeDataset(tId);
+        if (EDStatic.responseCache != null)
+            EDStatic.responseCache.removeDataset(tId);
         changedDatasetIDs.add(tId);
         if (needToUpdateLucene)
             updateLucene(erddap, changedDatasetIDs);
@@ -1220,4 +1544,78 @@ public class LoadDatasets extends Thread {
     }
 
 
+    /**
+     * This tests localDatasetIDs and that LoadPool constructs datasets in parallel 
+     * but doesn't start a dataset until the local datasets it uses have been published.
+     *
+     * @throws Throwable if trouble
+     */
+    public static void test() throws Throwable {
+        String2.log("\n*** LoadDatasets.test()");
+
+        //localDatasetIDs
+        String xml = 
+            "<dataset type=\"EDDGridLonPM180\" datasetID=\"pm180\">\n" +
+            "<dataset type=\"EDDGridFromErddap\" datasetID=\"c1\">\n" +
+            "<sourceUrl>" + EDStatic.baseUrl + "/erddap/griddap/a</sourceUrl>\n</dataset>\n" +
+            "<dataset type=\"EDDGridFromErddap\" datasetID=\"c2\">\n" +
+            "<sourceUrl>http://localhost:8080/erddap/griddap/b</sourceUrl>\n</dataset>\n" +
+            "<dataset type=\"EDDGridFromErddap\" datasetID=\"c3\">\n" +
+            "<sourceUrl>https://127.0.0.1:8443/erddap/griddap/c</sourceUrl>\n</dataset>\n" +
+            "<dataset type=\"EDDGridFromErddap\" datasetID=\"c4\">\n" +
+            "<sourceUrl>https://coastwatch.pfeg.noaa.gov/erddap/griddap/d</sourceUrl>\n</dataset>\n" +
+            "</dataset>\n";
+        Test.ensureEqual(localDatasetIDs(xml).toString(), "a, b, c", "");
+        if (EDStatic.baseHttpsUrl.startsWith("https://"))
+            Test.ensureEqual(localDatasetIDs(
+                "<sourceUrl>" + EDStatic.baseHttpsUrl + "/erddap/tabledap/e</sourceUrl>").toString(), 
+                "e", "");
+
+        //LoadPool: "slow" and "fast" load in parallel, "user" waits for "slow", "bad" fails
+        final AtomicInteger nRunning = new AtomicInteger(), maxRunning = new AtomicInteger();
+        final StringArray published = new StringArray();
+        Publisher publisher = result -> {
+            published.add(result.datasetID + 
+                (result.throwable == null? "" : "(" + result.throwable.getMessage() + ")"));
+            return true;
+        };
+        LoadPool loadPool = new LoadPool(3);
+        try {
+            String ids[]     = {"slow", "fast", "user", "bad"};
+            int sleepMillis[] = {  500,    100,      0,     0};
+            for (int i = 0; i < ids.length; i++) {
+                if (ids[i].equals("user")) {
+                    Test.ensureTrue(loadPool.waitFor(new StringArray(new String[]{"slow"}), publisher), "");
+                    Test.ensureEqual(published.toString(), "fast, slow", "");
+                }
+                LoadResult result = new LoadResult();
+                result.datasetID = ids[i];
+                final int tSleepMillis = sleepMillis[i];
+                final boolean fail = ids[i].equals("bad");
+                loadPool.submit(result, () -> {
+                    int n = nRunning.incrementAndGet();
+                    synchronized (maxRunning) {
+                        maxRunning.set(Math.max(maxRunning.get(), n));
+                    }
+                    Math2.sleep(tSleepMillis);
+                    nRunning.decrementAndGet();
+                    if (fail)
+                        throw new RuntimeException("failed");
+                    return null;
+                });
+            }
+            Test.ensureTrue(loadPool.waitFor(null, publisher), "");
+            Test.ensureEqual(loadPool.nLoading(), 0, "");
+            Test.ensureEqual(published.size(), 4, published.toString());
+            Test.ensureEqual(published.subset(0, 1, 1).toString(), "fast, slow", "");
+            Test.ensureTrue(published.indexOf("bad(failed)") >= 2, published.toString());
+            Test.ensureEqual(maxRunning.get(), 2, "slow and fast should have run at the same time");
+            Test.ensureTrue(loadPool.publishFinished(publisher), "");
+            Test.ensureEqual(published.size(), 4, published.toString());
+        } finally {
+            loadPool.shutdownNow();
+        }
+        String2.log("\n*** LoadDatasets.test() finished successfully.");
+    }
+
 }
@@ -0,0 +1,458 @@
+/*
+ * CellEncoder Copyright 2026, agent (agent@local).
+ * See the LICENSE.txt file in this file's directory.
+ */
+package gov.noaa.pfel.erddap.dataset;
+
+import com.cohort.array.Attributes;
+import com.cohort.array.ByteArray;
+import com.cohort.array.DoubleArray;
+import com.cohort.array.FloatArray;
+import com.cohort.array.IntArray;
+import com.cohort.array.LongArray;
+import com.cohort.array.PrimitiveArray;
+import com.cohort.array.ShortArray;
+import com.cohort.array.StringArray;
+import com.cohort.util.Calendar2;
+import com.cohort.util.Math2;
+import com.cohort.util.String2;
+import com.cohort.util.Test;
+
+import gov.noaa.pfel.coastwatch.pointdata.Table;
+import gov.noaa.pfel.erddap.variable.EDV;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.GregorianCalendar;
+import java.util.Random;
+
+/**
+ * This formats the numbers and times in the cells of a table into a reusable
+ * buffer (without making a String for each value) and then writes the
+ * buffer to a Writer. It is used by the text TableWriters
+ * (e.g., TableWriterSeparatedValue and TableWriterJson),
+ * which spend most of their time formatting numbers and times.
+ *
+ * <p>The text is exactly the same as from PrimitiveArray.getString(row) and
+ * Calendar2.epochSecondsToLimitedIsoStringT(time_precision, seconds, NaNString).
+ * Numbers are formatted by StringBuilder.append(double) (et al.),
+ * which uses the same algorithm as Double.toString(d).
+ * For times, the date part (e.g., "2018-04-19") is only calculated
+ * (with a GregorianCalendar) when the day changes;
+ * the time part is calculated with simple arithmetic.
+ *
+ * <p>Typical use: append() the parts of a row, then call write()
+ * (e.g., at the end of each row).
+ * This is not thread-safe; each TableWriter has its own CellEncoder.
+ *
+ * @author agent (agent@local) 2026-10-18
+ */
+public class CellEncoder {
+
+    /**
+     * Set this to true (by calling verbose=true in your program,
+     * not by changing the code here)
+     * if you want lots of diagnostic messages sent to String2.log.
+     */
+    public static boolean verbose = false;
+
+    /** Times more than this many millis from 1970 (about 31,700 years)
+     * are formatted by Calendar2 (so the day arithmetic can't overflow). */
+    public final static long MAX_FAST_MILLIS = 1000000000000000L;
+
+    private final static long MILLIS_PER_DAY = Calendar2.MILLIS_PER_DAY;
+
+    private final Writer writer;
+    private final StringBuilder sb = new StringBuilder(256);
+    private char chars[] = new char[256];
+
+    //the date part of the most recent time
+    private final GregorianCalendar gc = Calendar2.newGCalendarZulu();
+    private long cachedDay = Long.MIN_VALUE;
+    private String cachedDate = null; //e.g., "2018-04-19" or "-0003-01-02"
+
+    //the most recent time_precision
+    private boolean precisionKnown = false;
+    private String cachedPrecision = null;
+    private int precisionLevel; //see setPrecision
+    private boolean precisionZ;
+
+    /**
+     * The constructor.
+     *
+     * @param tWriter the Writer which receives the text when write() is called.
+     */
+    public CellEncoder(Writer tWriter) {
+        writer = tWriter;
+    }
+
+    /**
+     * This appends a String to the buffer.
+     *
+     * @param s a String (must not be null)
+     * @return this (for convenience)
+     */
+    public CellEncoder append(String s) {
+        sb.append(s);
+        return this;
+    }
+
+    /**
+     * This appends a char to the buffer.
+     *
+     * @param ch a char
+     * @return this (for convenience)
+     */
+    public CellEncoder append(char ch) {
+        sb.append(ch);
+        return this;
+    }
+
+    /**
+     * This returns the number of chars currently in the buffer.
+     *
+     * @return the number of chars currently in the buffer.
+     */
+    public int length() {
+        return sb.length();
+    }
+
+    /**
+     * This appends a number from a numeric PrimitiveArray to the buffer,
+     * formatted exactly like pa.getString(row).
+     * Other types of PrimitiveArrays (e.g., StringArray) are supported (via getString),
+     * but not efficiently.
+     *
+     * @param pa a PrimitiveArray
+     * @param row the row number
+     * @param missingString the String to be appended if the value is a
+     *    missing value (i.e., if getString(row) would return ""), e.g., "NaN", "null", or "".
+     * @return true if a (non-missing) value was appended
+     */
+    public boolean appendNumber(PrimitiveArray pa, int row, String missingString) {
+        if (pa instanceof DoubleArray) {
+            double d = ((DoubleArray)pa).get(row);
+            if (Double.isFinite(d)) { sb.append(d); return true; }
+        } else if (pa instanceof FloatArray) {
+            float f = ((FloatArray)pa).get(row);
+            if (Float.isFinite(f)) { sb.append(f); return true; }
+        } else if (pa instanceof IntArray) {
+            int i = ((IntArray)pa).get(row);
+            if (i != Integer.MAX_VALUE) { sb.append(i); return true; }
+        } else if (pa instanceof LongArray) {
+            long l = ((LongArray)pa).get(row);
+            if (l != Long.MAX_VALUE) { sb.append(l); return true; }
+        } else if (pa instanceof ShortArray) {
+            short s = ((ShortArray)pa).get(row);
+            if (s != Short.MAX_VALUE) { sb.append((int)s); return true; }
+        } else if (pa instanceof ByteArray) {
+            byte b = ((ByteArray)pa).get(row);
+            if (b != Byte.MAX_VALUE) { sb.append((int)b); return true; }
+        } else {
+            String s = pa.getString(row);
+            if (s.length() > 0) { sb.append(s); return true; }
+        }
+        sb.append(missingString);
+        return false;
+    }
+
+    /**
+     * This appends an ISO 8601 time to the buffer, formatted exactly like
+     * Calendar2.epochSecondsToLimitedIsoStringT(time_precision, seconds, NaNString).
+     *
+     * @param time_precision e.g., null or "1970-01-01T00:00:00Z" (see
+     *    Calendar2.limitedFormatAsISODateTimeT)
+     * @param seconds the epochSeconds value
+     * @param NaNString the String to be appended if seconds is NaN
+     *    (or otherwise can't be formatted)
+     * @return true if a time (not NaNString) was appended
+     */
+    public boolean appendTime(String time_precision, double seconds, String NaNString) {
+        //should be floor(?), but round avoids issues with computer precision
+        long millis = Math2.roundToLong(seconds * 1000);
+        if (millis == Long.MAX_VALUE) {
+            sb.append(NaNString);
+            return false;
+        }
+        if (millis > MAX_FAST_MILLIS || millis < -MAX_FAST_MILLIS) {
+            String s = Calendar2.epochSecondsToLimitedIsoStringT(
+                time_precision, seconds, NaNString);
+            sb.append(s);
+            return s != NaNString;
+        }
+
+        //get the date part
+        long day = Math.floorDiv(millis, MILLIS_PER_DAY);
+        if (day != cachedDay) {
+            try {
+                gc.setTimeInMillis(day * MILLIS_PER_DAY);
+                cachedDate = Calendar2.formatAsISODate(gc);
+                cachedDay = day;
+            } catch (Exception e) {
+                sb.append(NaNString);
+                return false;
+            }
+        }
+
+        if (!precisionKnown || time_precision != cachedPrecision)
+            setPrecision(time_precision);
+
+        //build it  (see Calendar2.limitedFormatAsISODateTimeT)
+        //Warning: year may be 5 chars, e.g., -0003
+        int dateLength = cachedDate.length();
+        if (precisionLevel == 1) {
+            sb.append(cachedDate, 0, dateLength - 6);
+        } else if (precisionLevel == 2) {
+            sb.append(cachedDate, 0, dateLength - 3);
+        } else {
+            sb.append(cachedDate);
+            if (precisionLevel >= 4) {
+                int ms = (int)(millis - day * MILLIS_PER_DAY); //0 .. 86399999
+                sb.append('T');
+                append2(ms / 3600000);
+                if (precisionLevel >= 5) {
+                    sb.append(':');
+                    append2((ms / 60000) % 60);
+                    if (precisionLevel >= 6) {
+                        sb.append(':');
+                        append2((ms / 1000) % 60);
+                        if (precisionLevel >= 7) {
+                            ms %= 1000;
+                            sb.append('.');
+                            sb.append((char)('0' + ms / 100));
+                            if (precisionLevel >= 8) {
+                                sb.append((char)('0' + (ms / 10) % 10));
+                                if (precisionLevel >= 9)
+                                    sb.append((char)('0' + ms % 10));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        if (precisionZ)
+            sb.append('Z');
+        return true;
+    }
+
+    /** This appends a 2 digit number (0 - 99) with a leading 0 if needed. */
+    private void append2(int i) {
+        sb.append((char)('0' + i / 10));
+        sb.append((char)('0' + i % 10));
+    }
+
+    /**
+     * This converts a time_precision into precisionLevel (1=year, 2=month,
+     * 3=date, 4=hour, 5=minute, 6=second, 7=0.1 second, 8=0.01 second,
+     * 9=millisecond) and precisionZ, following the rules in
+     * Calendar2.limitedFormatAsISODateTimeT.
+     */
+    private void setPrecision(String time_precision) {
+        cachedPrecision = time_precision;
+        precisionKnown = true;
+
+        String tp = time_precision;
+        if (tp == null || tp.length() == 0)
+            tp = "1970-01-01T00:00:00Z";
+        precisionZ = false;
+        if (tp.charAt(tp.length() - 1) == 'Z') {
+            tp = tp.substring(0, tp.length() - 1);
+            precisionZ = true;
+        }
+        precisionLevel =
+            tp.equals("1970")?                    1 :
+            tp.equals("1970-01")?                 2 :
+            tp.equals("1970-01-01")?              3 :
+            tp.equals("1970-01-01T00")?           4 :
+            tp.equals("1970-01-01T00:00")?        5 :
+            tp.length() == 0 ||
+            tp.equals("1970-01-01T00:00:00")?     6 :
+            tp.equals("1970-01-01T00:00:00.0")?   7 :
+            tp.equals("1970-01-01T00:00:00.00")?  8 :
+            tp.equals("1970-01-01T00:00:00.000")? 9 : -1;
+        if (precisionLevel == -1) {
+            //default: seconds, with Z
+            precisionLevel = 6;
+            precisionZ = true;
+        }
+    }
+
+    /**
+     * This writes the contents of the buffer to the writer and clears the buffer.
+     * This doesn't flush the writer.
+     *
+     * @throws IOException if trouble
+     */
+    public void write() throws IOException {
+        int n = sb.length();
+        if (n == 0)
+            return;
+        if (n > chars.length)
+            chars = new char[Math.max(n, 2 * chars.length)];
+        sb.getChars(0, n, chars, 0);
+        writer.write(chars, 0, n);
+        sb.setLength(0);
+    }
+
+
+    /**
+     * This tests the methods in this class.
+     *
+     * @throws Throwable if trouble
+     */
+    public static void test() throws Throwable {
+        String2.log("\n*** CellEncoder.test()");
+        verbose = true;
+
+        StringWriter sw = new StringWriter();
+        CellEncoder cell = new CellEncoder(sw);
+
+        //numbers: same as getString
+        PrimitiveArray pas[] = {
+            new DoubleArray(new double[]{0, -0.0, 1, -1.5, 1e-300, 1.234567890123e25,
+                Double.MIN_VALUE, Double.MAX_VALUE, 0.1 + 0.2, Double.NaN,
+                Double.POSITIVE_INFINITY}),
+            new FloatArray(new float[]{0, 1, -1.5f, 1e-30f, 3.4028235e38f, 0.1f,
+                Float.NaN, Float.NEGATIVE_INFINITY}),
+            new IntArray(new int[]{0, -1, Integer.MIN_VALUE, Integer.MAX_VALUE - 1,
+                Integer.MAX_VALUE}),
+            new LongArray(new long[]{0, -1, Long.MIN_VALUE, Long.MAX_VALUE}),
+            new ShortArray(new short[]{0, -1, Short.MIN_VALUE, Short.MAX_VALUE}),
+            new ByteArray(new byte[]{0, -1, Byte.MIN_VALUE, Byte.MAX_VALUE}),
+            new StringArray(new String[]{"a b", ""})};
+        for (int p = 0; p < pas.length; p++) {
+            PrimitiveArray pa = pas[p];
+            for (int row = 0; row < pa.size(); row++) {
+                String expected = pa.getString(row);
+                boolean b = cell.appendNumber(pa, row, "NaN");
+                cell.write();
+                Test.ensureEqual(sw.toString(), expected.length() == 0? "NaN" : expected,
+                    "p=" + p + " row=" + row);
+                Test.ensureEqual(b, expected.length() > 0, "p=" + p + " row=" + row);
+                sw.getBuffer().setLength(0);
+            }
+        }
+
+        //times: same as Calendar2.epochSecondsToLimitedIsoStringT
+        String precisions[] = {null, "", "1970", "1970Z", "1970-01", "1970-01-01",
+            "1970-01-01T00", "1970-01-01T00Z", "1970-01-01T00:00", "1970-01-01T00:00Z",
+            "1970-01-01T00:00:00", "1970-01-01T00:00:00Z",
+            "1970-01-01T00:00:00.0", "1970-01-01T00:00:00.0Z",
+            "1970-01-01T00:00:00.00Z", "1970-01-01T00:00:00.000",
+            "1970-01-01T00:00:00.000Z", "junk", "Z"};
+        double seconds[] = {0, -0.0, 1, -1, 0.0004, 0.0005, -0.0005, 59.999, 86399.9996,
+            86400, -86400.001, 1.5241248e9, 1.5241248e9 + 86399.123,
+            -1e10, -6.21e10, -6.22e10, -6.3e10, -1.2e11, 1e11, 2.5e14,
+            9.9e11, 1e12, -1e12, 1e17, Double.NaN, Double.POSITIVE_INFINITY, 1e300};
+        for (int p = 0; p < precisions.length; p++) {
+            for (int s = 0; s < seconds.length; s++) {
+                for (int rep = 0; rep < 2; rep++) { //2nd time uses cached date
+                    String expected = Calendar2.epochSecondsToLimitedIsoStringT(
+                        precisions[p], seconds[s], "");
+                    boolean b = cell.appendTime(precisions[p], seconds[s], "");
+                    cell.write();
+                    Test.ensureEqual(sw.toString(), expected,
+                        "p=" + precisions[p] + " s=" + seconds[s]);
+                    Test.ensureEqual(b, expected.length() > 0,
+                        "p=" + precisions[p] + " s=" + seconds[s]);
+                    sw.getBuffer().setLength(0);
+                }
+            }
+        }
+
+        //random times, in order (like a time series) and not
+        Random random = new Random(17);
+        double sec = 1e9;
+        for (int i = 0; i < 100000; i++) {
+            String tp = precisions[i % precisions.length];
+            sec = i % 2 == 0? sec + random.nextInt(20000) / 7.0 :
+                (random.nextDouble() - 0.5) * 2e12;
+            String expected = Calendar2.epochSecondsToLimitedIsoStringT(tp, sec, "");
+            cell.appendTime(tp, sec, "");
+            cell.write();
+            Test.ensureEqual(sw.toString(), expected, "tp=" + tp + " sec=" + sec);
+            sw.getBuffer().setLength(0);
+        }
+
+        //append and a big buffer
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            cell.append("abc").append(',');
+            expected.append("abc,");
+        }
+        Test.ensureEqual(cell.length(), 4000, "");
+        cell.write();
+        Test.ensureEqual(cell.length(), 0, "");
+        Test.ensureEqual(sw.toString(), expected.toString(), "");
+
+        String2.log("\n*** CellEncoder.test() finished successfully");
+    }
+
+    /**
+     * This tests the speed (rows/second) of the text TableWriters
+     * which use CellEncoder.
+     * The table has time, latitude, longitude, station, float, and int columns.
+     * The times are minutes apart, as in a typical time series.
+     *
+     * @param nRows e.g., 1000000
+     * @throws Throwable if trouble
+     */
+    public static void testSpeed(int nRows) throws Throwable {
+        String2.log("\n*** CellEncoder.testSpeed(" + nRows + ")");
+
+        //make the table
+        Table table = new Table();
+        DoubleArray time = new DoubleArray(nRows, false);
+        FloatArray lat  = new FloatArray(nRows, false);
+        FloatArray lon  = new FloatArray(nRows, false);
+        StringArray station = new StringArray(nRows, false);
+        FloatArray wtmp = new FloatArray(nRows, false);
+        IntArray count  = new IntArray(nRows, false);
+        Random random = new Random(17);
+        for (int row = 0; row < nRows; row++) {
+            time.add(1.5e9 + row * 60);
+            lat.add(30 + random.nextInt(10000) / 1000f);
+            lon.add(-130 + random.nextInt(10000) / 1000f);
+            station.add("station" + (row % 100));
+            wtmp.add(row % 50 == 0? Float.NaN : random.nextInt(300) / 10f);
+            count.add(random.nextInt(1000000));
+        }
+        table.addColumn(0, "time",      time,    new Attributes()
+            .add("units", EDV.TIME_UNITS));
+        table.addColumn(1, "latitude",  lat,     new Attributes()
+            .add("units", "degrees_north"));
+        table.addColumn(2, "longitude", lon,     new Attributes()
+            .add("units", "degrees_east"));
+        table.addColumn(3, "station",   station, new Attributes());
+        table.addColumn(4, "wtmp",      wtmp,    new Attributes()
+            .add("units", "degree_C"));
+        table.addColumn(5, "count",     count,   new Attributes());
+
+        String names[] = {".csv", ".tsv", ".json", ".jsonlCSV", ".jsonlKVP", ".nccsv"};
+        for (int w = 0; w < names.length; w++) {
+            //warm up, then time the 2nd pass
+            for (int pass = 0; pass < 2; pass++) {
+                ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                OutputStreamSource oss = new OutputStreamSourceSimple(baos);
+                TableWriter tw =
+                    w == 0? new TableWriterSeparatedValue(null, null, oss, ",",  true,  true, '2', "NaN") :
+                    w == 1? new TableWriterSeparatedValue(null, null, oss, "\t", false, true, '2', "NaN") :
+                    w == 2? new TableWriterJson( null, null, oss, null, true) :
+                    w == 3? new TableWriterJsonl(null, null, oss, false, null) :
+                    w == 4? new TableWriterJsonl(null, null, oss, true,  null) :
+                            new TableWriterNccsv(null, null, oss);
+                long tTime = System.currentTimeMillis();
+                tw.writeAllAndFinish(table.subset(0, 1, nRows - 1));
+                tTime = Math.max(1, System.currentTimeMillis() - tTime);
+                if (pass == 1)
+                    String2.log(String2.left(names[w], 10) +
+                        " rows/s=" + String2.right("" + (nRows * 1000L / tTime), 10) +
+                        "  time=" + tTime + "ms  nBytes=" + baos.size());
+            }
+        }
+        String2.log("\n*** CellEncoder.testSpeed() finished.");
+    }
+
+}
@@ -2309,6 +2309,9 @@ public abstract class EDD {
      * Note: It is pointless and counter-productive to set updateEveryNMillis 
      * to be less than a fairly reliable update time (e.g., 1000 ms).
      *
+     * <p>If a change was made, this removes the dataset's cached responses
+     * (see ResponseCache).
+     *
      * @return true if a change was made
      * @throws Throwable if serious trouble. 
      *   For simple failures, this writes info to log.txt but doesn't throw an exception.
@@ -2345,7 +2348,10 @@ public abstract class EDD {
 
         //updateLock is locked by this thread.   Do the update!
         try {
-            return lowUpdate(msg, startUpdateMillis);
+            boolean changed = lowUpdate(msg, startUpdateMillis);
+            if (changed && EDStatic.responseCache != null)
+                EDStatic.responseCache.invalidate(datasetID);
+            return changed;
 
         } finally {  
             lastUpdate = startUpdateMillis;     //say dataset is now up-to-date (or at least tried)
@@ -2775,6 +2781,58 @@ public abstract class EDD {
                 " is not supported by this dataset.");
     }
 
+    /**
+     * This returns a canonical form of a userDapQuery, so that equivalent queries 
+     * (e.g., with the &amp;constraints in a different order or with extra spaces)
+     * are identical. This is used by suggestFileName, so equivalent queries
+     * share cached files (see also ResponseCache).
+     * The result is a key, not necessarily a valid query.
+     *
+     * <p>This version (for all EDD's) just trims the parts and sorts the 
+     * &amp;constraints (but not the server-side functions or the 
+     * &amp;.commands, whose order may matter).
+     * EDDGrid and EDDTable overwrite this to also resolve the constraints
+     * (e.g., "last" and "now-1day").
+     *
+     * @param userDapQuery the part of the user's request after the '?', still percentEncoded.
+     * @return the normalized query (decoded)
+     * @throws Throwable if trouble (e.g., an invalid query)
+     */
+    public String normalizeDapQuery(String userDapQuery) throws Throwable {
+        String parts[] = Table.getDapQueryParts(userDapQuery); //decoded.  always at least 1 part (may be "")
+        StringArray constraints = new StringArray();
+        StringBuilder others = new StringBuilder();
+        for (int p = 1; p < parts.length; p++) {
+            String part = parts[p].trim();
+            if (part.length() == 0)
+                continue;
+            if (isServerSideFunction(part)) 
+                others.append("&" + part);
+            else constraints.add(part);
+        }
+        constraints.sort();
+        StringBuilder sb = new StringBuilder(parts[0].trim());
+        for (int c = 0; c < constraints.size(); c++)
+            sb.append("&" + constraints.get(c));
+        sb.append(others);
+        return sb.toString();
+    }
+
+    /**
+     * This indicates if an &amp;-separated part of a (decoded) query 
+     * is an &amp;.command (e.g., .draw=...) or a server-side function 
+     * (e.g., orderBy("time")) instead of a constraint.
+     *
+     * @param part e.g., time&gt;=2018-01-01 or distinct()
+     * @return true if it isn't a constraint
+     */
+    public static boolean isServerSideFunction(String part) {
+        if (part.startsWith("."))
+            return true;
+        int po = part.indexOf('(');
+        return po > 0 && String2.isVariableNameSafe(part.substring(0, po));
+    }
+
     /**
      * This returns a suggested fileName (no dir or extension).
      * It doesn't add a random number, so will return the same results 
@@ -2789,17 +2847,13 @@ public abstract class EDD {
      */
     public String suggestFileName(String loggedInAs, String userDapQuery, String fileTypeName) {
 
-        //decode userDapQuery to a canonical form to avoid slight differences in percent-encoding 
-        try {
-            userDapQuery = SSR.percentDecode(userDapQuery);
-        } catch (Exception e) {
-            //shouldn't happen
-        }
-
         if (".fgdc".equals(fileTypeName))     return datasetID + fgdcSuffix;    //without trailing .xml
         if (".iso19115".equals(fileTypeName)) return datasetID + iso19115Suffix;//without trailing .xml
         if (".ncml".equals(fileTypeName))     return datasetID + "_ncml";       //without trailing .xml
 
+        //convert userDapQuery to a canonical form so equivalent queries get the same name
+        userDapQuery = canonicalDapQuery(userDapQuery);
+
         //include fileTypeName in hash so, e.g., different sized .png 
         //  have different file names
         String name = datasetID + "_" + //so all files from this dataset will sort together
@@ -2808,6 +2862,30 @@ public abstract class EDD {
         return name;
     }
 
+    /**
+     * If the response cache is active (see EDStatic.responseCache), 
+     * this returns normalizeDapQuery(userDapQuery).
+     * Otherwise, or if that fails (e.g., for an invalid query), 
+     * this returns the decoded userDapQuery 
+     * (to avoid slight differences in percent-encoding).
+     *
+     * @param userDapQuery the part of the user's request after the '?', still percentEncoded.
+     * @return the canonical form of the query
+     */
+    public String canonicalDapQuery(String userDapQuery) {
+        try {
+            if (EDStatic.responseCache != null)
+                return normalizeDapQuery(userDapQuery);
+            return SSR.percentDecode(userDapQuery);
+        } catch (Throwable t) {
+            try {
+                return SSR.percentDecode(userDapQuery);
+            } catch (Exception e) {
+                return userDapQuery; //shouldn't happen
+            }
+        }
+    }
+
     /**
      * Given the last time value, this suggests a reloadEveryNMinutes value.
      *
@@ -9949,6 +10027,12 @@ public abstract class EDD {
         return !destinationName.equals(longName); //if not the same, show longName
     }
 
+    /**
+     * Synchronize on this for every read-modify-write of a table of badFiles on disk
+     * (see addBadFileToTableOnDisk and saveDirTableFileTableBadFiles).
+     */
+    private final static Object badFileMapLock = new Object();
+
     /**
      * This returns a new, empty, badFileMap (a thead-safe map).
      */
@@ -10088,6 +10172,8 @@ public abstract class EDD {
      * This reads the table of badFiles, adds dirIndex/fileName and reason, 
      *   and writes the table of badFiles. 
      * This is used outside of the constructor, when a previously good file is found to be bad.
+     * This is thread-safe (e.g., several of a request's threads may find bad files):
+     * the read-add-write is synchronized on badFileMapLock.
      * This won't throw an exception, just logs the message.
      *
      * @param dirIndex   
@@ -10099,19 +10185,21 @@ public abstract class EDD {
     public String addBadFileToTableOnDisk(int dirIndex, String fileName, long lastMod, 
         String reason) {
 
-        ConcurrentHashMap badFileMap = readBadFileMap();
-        addBadFile(badFileMap, dirIndex, fileName, lastMod, reason);
         String badFileMapFileName = badFileMapFileName();
-        int random = Math2.random(Integer.MAX_VALUE);
-        try {
-            writeBadFileMap(badFileMapFileName + random, badFileMap);
-            File2.rename(badFileMapFileName + random, badFileMapFileName);
-            return "";
-        } catch (Throwable t) {
-            File2.delete(badFileMapFileName + random);
-            String msg = "Error: " + MustBe.throwableToString(t);
-            String2.log(msg);
-            return msg;
+        synchronized (badFileMapLock) {
+            ConcurrentHashMap badFileMap = readBadFileMap();
+            addBadFile(badFileMap, dirIndex, fileName, lastMod, reason);
+            int random = Math2.random(Integer.MAX_VALUE);
+            try {
+                writeBadFileMap(badFileMapFileName + random, badFileMap);
+                File2.rename(badFileMapFileName + random, badFileMapFileName);
+                return "";
+            } catch (Throwable t) {
+                File2.delete(badFileMapFileName + random);
+                String msg = "Error: " + MustBe.throwableToString(t);
+                String2.log(msg);
+                return msg;
+            }
         }
     }
 
@@ -10190,13 +10278,52 @@ public abstract class EDD {
         }
     }
 
+    /**
+     * This returns a copy of the keys (dir#/fileName) of a badFileMap. 
+     * Call this right after readBadFileMap() (see saveDirTableFileTableBadFiles).
+     *
+     * @param badFileMap
+     * @return a copy of the keys of badFileMap
+     */
+    public static HashSet badFileMapKeys(ConcurrentHashMap badFileMap) {
+        return new HashSet(badFileMap.keySet());
+    }
+
     /** 
      * This is used by EDDGridFromFiles and EDDTableFromFiles to save 
      * all the file information to disk.
+     * This is synchronized on badFileMapLock.
+     * Since the caller may have spent a long time making its changes
+     * (e.g., while reading all of the files), the bad files which were 
+     * added to the table on disk since the caller read it
+     * (by addBadFileToTableOnDisk, e.g., by a request's thread)
+     * are first added to badFileMap, so they aren't lost.
      *
+     * @param badFileMap from readBadFileMap(), with the caller's changes
+     * @param originalBadFiles the keys of badFileMap right after readBadFileMap()
+     *   (see badFileMapKeys)
      * @throws Throwable if trouble
      */
     public void saveDirTableFileTableBadFiles(Table dirTable, Table fileTable, 
+        ConcurrentHashMap badFileMap, HashSet originalBadFiles) throws Throwable {
+
+        synchronized (badFileMapLock) {
+            ConcurrentHashMap diskBadFileMap = readBadFileMap();
+            Object keys[] = diskBadFileMap.keySet().toArray();
+            for (int k = 0; k < keys.length; k++) 
+                if (!originalBadFiles.contains(keys[k]))
+                    badFileMap.put(keys[k], diskBadFileMap.get(keys[k]));
+            lowSaveDirTableFileTableBadFiles(dirTable, fileTable, badFileMap);
+        }
+    }
+
+    /** 
+     * This does the work for saveDirTableFileTableBadFiles
+     * (which is synchronized on badFileMapLock).
+     *
+     * @throws Throwable if trouble
+     */
+    private void lowSaveDirTableFileTableBadFiles(Table dirTable, Table fileTable, 
         ConcurrentHashMap badFileMap) throws Throwable {
 
         String dirTableFileName  = datasetDir() +  DIR_TABLE_FILENAME;
@@ -27,6 +27,7 @@ import dods.dap.*;
 import gov.noaa.pfel.coastwatch.griddata.DataHelper;
 import gov.noaa.pfel.coastwatch.griddata.Grid;
 import gov.noaa.pfel.coastwatch.griddata.Matlab;
+import gov.noaa.pfel.coastwatch.griddata.Nc3StreamWriter;
 import gov.noaa.pfel.coastwatch.griddata.NcHelper;
 import gov.noaa.pfel.coastwatch.griddata.OpendapHelper;
 import gov.noaa.pfel.coastwatch.pointdata.Table;
@@ -1032,6 +1033,34 @@ public abstract class EDDGrid extends EDD {
         return sb.toString();
     }
 
+    /**
+     * This calls EDD.update() and, if the dataset was changed, 
+     * removes the dataset's cached WMS tiles (see WmsTileCache) which may be stale.
+     * See EDD.update() for details.
+     *
+     * @return true if a change was made
+     * @throws Throwable if serious trouble (see EDD.update())
+     */
+    public boolean update() throws Throwable {
+        int oldSize = axisVariables[0].sourceValues().size();
+        boolean changed = super.update();
+        WmsTileCache tileCache = EDStatic.wmsTileCache;
+        if (changed && tileCache != null) 
+            tileCache.invalidateFrom(datasetID, 
+                lowUpdateJustAppends()? Math.max(0, oldSize - 1) : 0);
+        return changed;
+    }
+
+    /**
+     * This indicates whether this dataset's lowUpdate just appends values to the 
+     * leftmost axis (so the data for the previous values (except perhaps the last) 
+     * don't change). 
+     * This returns false. Subclasses like EDDGridFromDap overwrite this.
+     */
+    protected boolean lowUpdateJustAppends() {
+        return false;
+    }
+
     
     /** 
      * This returns the axis or data variable which has the specified destination name.
@@ -1185,6 +1214,47 @@ public abstract class EDDGrid extends EDD {
         return tAxis >= 0;
     }           
 
+    /**
+     * This returns a canonical form of a userDapQuery (see EDD.normalizeDapQuery).
+     * Here, the constraints are resolved to indices (so, e.g., [(last)] and 
+     * [(now-1day)] become the current index of that value) 
+     * and are written in the standard [start:stride:stop] form (see buildDapQuery).
+     * The order of the variables isn't changed, since it is the order of the 
+     * variables in the response.
+     * The &amp;.commands (if any) are kept (in their original order).
+     *
+     * @param userDapQuery the part of the user's request after the '?', still percentEncoded.
+     * @return the normalized query (decoded)
+     * @throws Throwable if trouble (e.g., an invalid query)
+     */
+    public String normalizeDapQuery(String userDapQuery) throws Throwable {
+        StringArray destNames = new StringArray();
+        IntArray constraints = new IntArray();
+        StringBuilder sb = new StringBuilder();
+        if (isAxisDapQuery(userDapQuery)) {
+            parseAxisDapQuery(userDapQuery, destNames, constraints, false);
+            for (int i = 0; i < destNames.size(); i++) {
+                int stride = constraints.get(i * 3 + 1);
+                sb.append((i == 0? "" : ",") + destNames.get(i) + 
+                    "[" + constraints.get(i * 3) + ":" + 
+                    (stride == 1? "" : stride + ":") + 
+                    constraints.get(i * 3 + 2) + "]");
+            }
+        } else {
+            parseDataDapQuery(userDapQuery, destNames, constraints, false);
+            sb.append(buildDapQuery(destNames, constraints));
+        }
+
+        //the other parts are all &.commands
+        String ampParts[] = Table.getDapQueryParts(userDapQuery); //decoded
+        for (int ap = 1; ap < ampParts.length; ap++) {
+            String part = ampParts[ap].trim();
+            if (part.length() > 0)
+                sb.append("&" + part);
+        }
+        return sb.toString();
+    }
+
     /** 
      * This parses an OPeNDAP DAP-style grid-style query for grid data (not axis) variables, 
      *   e.g., var1,var2 or
@@ -2380,6 +2450,13 @@ public abstract class EDDGrid extends EDD {
             return;
         }
 
+        //.nc data requests are streamed (unless the file is already cached).
+        //Streamed files aren't cached (see saveAsNcStream).
+        if (fileTypeName.equals(".nc") &&
+            !File2.isFile(dir + fileName + ".nc") &&
+            saveAsNcStream(requestUrl, userDapQuery, outputStreamSource))
+            return;
+
         if (fileTypeName.endsWith("Info") && 
             (fileTypeName.equals(".smallPngInfo") ||
              fileTypeName.equals(".pngInfo") ||
@@ -4300,14 +4377,18 @@ public abstract class EDDGrid extends EDD {
                 writer.write("[" + shape[av] + "]");
 
             //send the array data
-            while (gda.increment()) {
-                //if last dimension's value is 0, start a new row
-                if (current[nAv - 1] == 0) {
-                    writer.write(OpendapHelper.EOL); //see EOL definition for comments
-                    for (int av = 0; av < nAv - 1; av++)
-                        writer.write("[" + current[av] + "]");
+            try {
+                while (gda.increment()) {
+                    //if last dimension's value is 0, start a new row
+                    if (current[nAv - 1] == 0) {
+                        writer.write(OpendapHelper.EOL); //see EOL definition for comments
+                        for (int av = 0; av < nAv - 1; av++)
+                            writer.write("[" + current[av] + "]");
+                    }
+                    writer.write(", " + gda.getDataValueAsString(0));
                 }
-                writer.write(", " + gda.getDataValueAsString(0));
+            } finally {
+                gda.releaseResources();
             }
 
             //send the axis data
@@ -4782,31 +4863,35 @@ Attributes {
             }  /* */
 
             //2017-09-14 new system
-            PrimitiveArray[] pas = gda.getPartialDataValues();
-            if        (type == byte.class  ) {
-                while (gda.incrementChunk()) 
-                    pas[0].writeDos(dos);
-                //pad byte array to 4 byte boundary
-                long tn = gda.totalIndex().size();
-                while (tn++ % 4 != 0) dos.writeByte(0);
-            } else if (type == short.class || //no exact DAP equivalent
-                       type == char.class  || //no exact DAP equivalent
-                       type == int.class)    {
-                while (gda.incrementChunk()) 
-                    (type == int.class? pas[0] : new IntArray(pas[0])).writeDos(dos);                
-            } else if (type == float.class) {
-                while (gda.incrementChunk()) 
-                    pas[0].writeDos(dos);
-            } else if (type == long.class ||  //no exact DAP equivalent
-                       type == double.class) {
-                while (gda.incrementChunk()) 
-                    (type == double.class? pas[0] : new DoubleArray(pas[0])).writeDos(dos);                
-            } else if (type == String.class) {
-                while (gda.incrementChunk()) 
-                    pas[0].externalizeForDODS(dos);
-            } else {throw new RuntimeException(EDStatic.errorInternal + "unsupported source data type=" + 
-                PrimitiveArray.elementClassToString(type));
-            } /* */
+            try {
+                PrimitiveArray[] pas = gda.getPartialDataValues();
+                if        (type == byte.class  ) {
+                    while (gda.incrementChunk()) 
+                        pas[0].writeDos(dos);
+                    //pad byte array to 4 byte boundary
+                    long tn = gda.totalIndex().size();
+                    while (tn++ % 4 != 0) dos.writeByte(0);
+                } else if (type == short.class || //no exact DAP equivalent
+                           type == char.class  || //no exact DAP equivalent
+                           type == int.class)    {
+                    while (gda.incrementChunk()) 
+                        (type == int.class? pas[0] : new IntArray(pas[0])).writeDos(dos);                
+                } else if (type == float.class) {
+                    while (gda.incrementChunk()) 
+                        pas[0].writeDos(dos);
+                } else if (type == long.class ||  //no exact DAP equivalent
+                           type == double.class) {
+                    while (gda.incrementChunk()) 
+                        (type == double.class? pas[0] : new DoubleArray(pas[0])).writeDos(dos);                
+                } else if (type == String.class) {
+                    while (gda.incrementChunk()) 
+                        pas[0].externalizeForDODS(dos);
+                } else {throw new RuntimeException(EDStatic.errorInternal + "unsupported source data type=" + 
+                    PrimitiveArray.elementClassToString(type));
+                } /* */
+            } finally {
+                gda.releaseResources();
+            }
 
             for (int av = 0; av < nAxisVariables; av++) 
                 gridDataAccessor.axisValues[av].externalizeForDODS(dos);
@@ -5274,6 +5359,7 @@ Attributes {
         String drawLegend = LEGEND_BOTTOM;
         int trim = Integer.MAX_VALUE;
         boolean ok = true;
+        GridDataAccessor gda = null;
 
         try {
             //can't handle axis request
@@ -5853,7 +5939,7 @@ Attributes {
             }
             String newQuery = buildDapQuery(newReqDataNames, constraints);
             if (reallyVerbose) String2.log("  newQuery=" + newQuery);
-            GridDataAccessor gda = new GridDataAccessor(this, requestUrl, newQuery, 
+            gda = new GridDataAccessor(this, requestUrl, newQuery, 
                 yAxisVar == null? true : //Table needs row-major order 
                     yAxisIndex > xAxisIndex, //Grid needs column-major order (so depends on axis order)
                 true); //convertToNaN
@@ -6412,6 +6498,9 @@ Attributes {
                 }
                 //else fall through to close/save image below
             }
+        } finally {
+            if (gda != null)
+                gda.releaseResources(); //e.g., after an exception while getting the data
         }
 
         //save image
@@ -7112,6 +7201,8 @@ Attributes {
             if (dos != null) 
                 try {dos.close(); } catch (Exception e2) {}
             throw e;
+        } finally {
+            gda.releaseResources();
         }
 
         //create the wav file
@@ -7506,13 +7597,17 @@ Attributes {
 
         //do the second part here 
         //note:  calling increment() on column-major gda returns data in column-major order
-        if      (elementClass == double.class) while (gda.increment()) stream.writeDouble(gda.getDataValueAsDouble(0)); 
-        else if (elementClass == float.class)  while (gda.increment()) stream.writeFloat( gda.getDataValueAsFloat(0));
-        else if (elementClass == long.class)   while (gda.increment()) stream.writeDouble(gda.getDataValueAsDouble(0)); 
-        else if (elementClass == int.class)    while (gda.increment()) stream.writeInt(   gda.getDataValueAsInt(0));
-        else if (elementClass == short.class)  while (gda.increment()) stream.writeShort( gda.getDataValueAsInt(0));
-        else if (elementClass == byte.class)   while (gda.increment()) stream.writeByte(  gda.getDataValueAsInt(0));
-        else if (elementClass == char.class)   while (gda.increment()) stream.writeChar(  gda.getDataValueAsInt(0));
+        try {
+            if      (elementClass == double.class) while (gda.increment()) stream.writeDouble(gda.getDataValueAsDouble(0)); 
+            else if (elementClass == float.class)  while (gda.increment()) stream.writeFloat( gda.getDataValueAsFloat(0));
+            else if (elementClass == long.class)   while (gda.increment()) stream.writeDouble(gda.getDataValueAsDouble(0)); 
+            else if (elementClass == int.class)    while (gda.increment()) stream.writeInt(   gda.getDataValueAsInt(0));
+            else if (elementClass == short.class)  while (gda.increment()) stream.writeShort( gda.getDataValueAsInt(0));
+            else if (elementClass == byte.class)   while (gda.increment()) stream.writeByte(  gda.getDataValueAsInt(0));
+            else if (elementClass == char.class)   while (gda.increment()) stream.writeChar(  gda.getDataValueAsInt(0));
+        } finally {
+            gda.releaseResources();
+        }
         //else if (elementClass == String.class) ...
 
         //pad data to 8 byte boundary
@@ -7817,6 +7912,129 @@ Attributes {
 
     }
  
+    /**
+     * Save the grid data in a NetCDF-3 .nc file which is streamed to the
+     * outputStream (see Nc3StreamWriter) as the data is gotten from the source,
+     * one chunk at a time, so the user starts getting the response right away
+     * and the memory needed doesn't depend on the size of the response.
+     * The file has the same contents as the file from saveAsNc(netcdf3, ...,
+     * keepUnusedAxes=true, lonAdjust=0). 
+     * Unlike saveAsNc, it isn't limited to 2GB (but each variable is limited to 4GB).
+     *
+     * <p>The request is validated and the first chunk of data is gotten before
+     * anything is written to the outputStream, so most errors (e.g., an invalid
+     * query or a source which isn't responding) are sent as normal error responses.
+     * If there is trouble after that, the response has been committed, so
+     * this logs it and rethrows the exception without finishing the file.
+     * The caller then doesn't close the outputStream, so the response
+     * is aborted (the client sees an incomplete transfer, not a short, 
+     * valid-looking .nc file).
+     *
+     * <p>The streamed file isn't saved in the dataset's cache directory,
+     * so an identical request soon after is made again (from the source)
+     * instead of being sent from the cached file (as saveAsNc's files are).
+     * That is the tradeoff for sending the response right away and not needing
+     * disk space or memory for the whole response.
+     * Requests which can't be streamed (see below) still use saveAsNc and are cached.
+     *
+     * @param requestUrl the part of the user's request, after EDStatic.baseUrl, before '?'.
+     * @param userDapQuery an OPeNDAP DAP-style query string, still percentEncoded 
+     *   (shouldn't be null). 
+     *   e.g., ATssta[45:1:45][0:1:0][120:10:140][130:10:160]
+     * @param outputStreamSource the source of an outputStream that receives the results,
+     *    usually already buffered. This doesn't close the outputStream.
+     * @return true if the response was sent, or false (and nothing was sent)
+     *    if the request can't be streamed (a request for axis variables or
+     *    a request which includes String variables), so use saveAsNc instead.
+     * @throws Throwable  if trouble. 
+     */
+    public boolean saveAsNcStream(String requestUrl, String userDapQuery,
+        OutputStreamSource outputStreamSource) throws Throwable {
+        if (reallyVerbose) String2.log("  EDDGrid.saveAsNcStream"); 
+        long time = System.currentTimeMillis();
+
+        if (isAxisDapQuery(userDapQuery)) 
+            return false;
+
+        //get gridDataAccessor first, in case of error when parsing query
+        GridDataAccessor gda = new GridDataAccessor(this, requestUrl, userDapQuery, 
+            true, false);  //rowMajor, convertToNaN         
+        GridDataAccessor tGda = null;
+        try {
+            EDV tDataVariables[] = gda.dataVariables();
+            int nDataVariables = tDataVariables.length;
+            for (int dv = 0; dv < nDataVariables; dv++) {
+                //nc3 String data needs a strlen dimension, which isn't known until all the data has been seen
+                if (tDataVariables[dv].destinationDataTypeClass() == String.class)
+                    return false;
+            }
+            String arrayQuery = buildDapArrayQuery(gda.constraints());
+
+            //define the file  (this throws an exception if a variable is too big)
+            Nc3StreamWriter writer = new Nc3StreamWriter();
+            int nAxisVariables = axisVariables.length;
+            int dimIDs[] = new int[nAxisVariables];
+            for (int av = 0; av < nAxisVariables; av++) 
+                dimIDs[av] = writer.addDimension(axisVariables[av].destinationName(), 
+                    gda.axisValues(av).size());
+            writer.setGlobalAttributes(gda.globalAttributes());
+            for (int av = 0; av < nAxisVariables; av++) 
+                writer.addVariable(axisVariables[av].destinationName(), 
+                    gda.axisValues(av).elementClass(), new int[]{dimIDs[av]}, 
+                    gda.axisAttributes(av));
+            for (int dv = 0; dv < nDataVariables; dv++) 
+                writer.addVariable(tDataVariables[dv].destinationName(), 
+                    tDataVariables[dv].destinationDataTypeClass(), dimIDs, 
+                    gda.dataAttributes(dv));
+
+            //get the first chunk of data before the response is committed
+            tGda = new GridDataAccessor(this, requestUrl, 
+                tDataVariables[0].destinationName() + arrayQuery, 
+                true, false);   //rowMajor, convertToNaN
+            boolean moreData = tGda.incrementChunk();
+
+            //write the header and the axis values
+            writer.writeHeader(outputStreamSource.outputStream(""));
+            try {
+                for (int av = 0; av < nAxisVariables; av++) 
+                    writer.writeData(gda.axisValues(av));
+
+                //write the data variables, one chunk at a time
+                for (int dv = 0; dv < nDataVariables; dv++) {
+                    if (dv > 0) {
+                        tGda.releaseResources();
+                        tGda = new GridDataAccessor(this, requestUrl, 
+                            tDataVariables[dv].destinationName() + arrayQuery, 
+                            true, false);   //rowMajor, convertToNaN
+                        moreData = tGda.incrementChunk();
+                    }
+                    PrimitiveArray pas[] = tGda.getPartialDataValues();
+                    while (moreData) {
+                        writer.writeData(pas[0]);
+                        moreData = tGda.incrementChunk();
+                    }
+                }
+                writer.finish();
+            } catch (Throwable t) {
+                //the response is committed, so it can't be changed to an error message.
+                //Don't finish the file. The caller won't close the outputStream,
+                //so the response is aborted.
+                String2.log("EDDGrid.saveAsNcStream caught an error after the response was committed," +
+                    " so the .nc response is being aborted:\n" + MustBe.throwableToString(t));
+                throw t;
+            }
+        } finally {
+            gda.releaseResources();
+            if (tGda != null)
+                tGda.releaseResources(); //e.g., after an exception
+        }
+
+        //diagnostic
+        if (reallyVerbose) String2.log("  EDDGrid.saveAsNcStream done.  TIME=" + 
+            (System.currentTimeMillis() - time) + "ms\n");
+        return true;
+    }
+ 
     /**
      * Save the grid data in an NCO JSON .ncoJson file.
      * See http://nco.sourceforge.net/nco.html#json
@@ -8429,36 +8647,40 @@ Attributes {
 
         //write the data
         int tRows = 0;
-        while (gridDataAccessor.increment()) {
-            //add a row of data to the table
-            for (int av = 0; av < nAv; av++) {
-                if      (isDoubleAv[av]) avPa[av].addDouble(gridDataAccessor.getAxisValueAsDouble(av));
-                else if (isFloatAv[av])  avPa[av].addFloat( gridDataAccessor.getAxisValueAsFloat(av));
-                else                     avPa[av].addInt(   gridDataAccessor.getAxisValueAsInt(av));
-            }
-
-            for (int dv = 0; dv < nDv; dv++) {
-                if      (isStringDv[dv]) dvPa[dv].addString(gridDataAccessor.getDataValueAsString(dv));
-                else if (isDoubleDv[dv]) dvPa[dv].addDouble(gridDataAccessor.getDataValueAsDouble(dv));
-                else if (isFloatDv[dv])  dvPa[dv].addFloat( gridDataAccessor.getDataValueAsFloat(dv));
-                else                     dvPa[dv].addInt(   gridDataAccessor.getDataValueAsInt(dv));
-            }
-            tRows++;
+        try {
+            while (gridDataAccessor.increment()) {
+                //add a row of data to the table
+                for (int av = 0; av < nAv; av++) {
+                    if      (isDoubleAv[av]) avPa[av].addDouble(gridDataAccessor.getAxisValueAsDouble(av));
+                    else if (isFloatAv[av])  avPa[av].addFloat( gridDataAccessor.getAxisValueAsFloat(av));
+                    else                     avPa[av].addInt(   gridDataAccessor.getAxisValueAsInt(av));
+                }
 
-            //write the table 
-            if (tRows >= nBufferRows) {
-                tw.writeSome(table);
-                table.removeAllRows();
-                tRows = 0;
-                if (tw.noMoreDataPlease) {
-                    tw.logCaughtNoMoreDataPlease(datasetID);
-                    break;
+                for (int dv = 0; dv < nDv; dv++) {
+                    if      (isStringDv[dv]) dvPa[dv].addString(gridDataAccessor.getDataValueAsString(dv));
+                    else if (isDoubleDv[dv]) dvPa[dv].addDouble(gridDataAccessor.getDataValueAsDouble(dv));
+                    else if (isFloatDv[dv])  dvPa[dv].addFloat( gridDataAccessor.getDataValueAsFloat(dv));
+                    else                     dvPa[dv].addInt(   gridDataAccessor.getDataValueAsInt(dv));
+                }
+                tRows++;
+
+                //write the table 
+                if (tRows >= nBufferRows) {
+                    tw.writeSome(table);
+                    table.removeAllRows();
+                    tRows = 0;
+                    if (tw.noMoreDataPlease) {
+                        tw.logCaughtNoMoreDataPlease(datasetID);
+                        break;
+                    }
                 }
             }
+            if (tRows > 0) 
+                tw.writeSome(table);
+            tw.finish();
+        } finally {
+            gridDataAccessor.releaseResources(); //e.g., after noMoreDataPlease or an exception
         }
-        if (tRows > 0) 
-            tw.writeSome(table);
-        tw.finish();
 
     }
 
@@ -11425,6 +11647,144 @@ Attributes {
 
     }
 
+    /**
+     * This tests normalizeDapQuery and canonicalDapQuery
+     * (which determine the names of cached responses).
+     */
+    public static void testNormalizeDapQuery() throws Throwable {
+        String2.log("\n*** EDDGrid.testNormalizeDapQuery()");
+        EDDGrid eddGrid = (EDDGrid)oneFromDatasetsXml(null, "erdBAssta5day"); 
+        int last = eddGrid.axisVariables()[0].sourceValues().size() - 1;
+        String expected = "sst[" + last + ":" + last + "][0:0][10:20][0:2:100]";
+
+        //the constraints are written as indices in the standard [start:stride:stop] form
+        Test.ensureEqual(eddGrid.normalizeDapQuery(
+            "sst[" + last + "][0][10:1:20][0:2:100]"), expected, "");
+        Test.ensureEqual(eddGrid.normalizeDapQuery(
+            "sst%5B" + last + ":" + last + "%5D%5B0%5D%5B10:20%5D%5B0:2:100%5D"), expected, "");
+
+        //last is resolved 
+        Test.ensureEqual(eddGrid.normalizeDapQuery(
+            "sst[last][0][10:20][0:2:100]"), expected, "");
+        Test.ensureEqual(eddGrid.normalizeDapQuery(
+            "sst[(last)][(0.0)][10:20][0:2:100]"), expected, "");
+        Test.ensureEqual(eddGrid.normalizeDapQuery(
+            "sst[last-1:last][0][10:20][0:2:100]"), 
+            "sst[" + (last - 1) + ":" + last + "][0:0][10:20][0:2:100]", "");
+
+        //axis queries
+        Test.ensureEqual(eddGrid.normalizeDapQuery("time[last],latitude[10:1:20]"), 
+            "time[" + last + ":" + last + "],latitude[10:20]", "");
+
+        //.commands are kept (trimmed), in their original order
+        Test.ensureEqual(eddGrid.normalizeDapQuery(
+            "sst[last][0][10:20][0:2:100]&.draw=surface%20&.vars=longitude|latitude|sst"), 
+            expected + "&.draw=surface&.vars=longitude|latitude|sst", "");
+        Test.ensureEqual(eddGrid.normalizeDapQuery(
+            "sst[last][0][10:20][0:2:100]&.vars=longitude|latitude|sst&.draw=surface"), 
+            expected + "&.vars=longitude|latitude|sst&.draw=surface", "");
+
+        //invalid queries throw exceptions
+        try {
+            eddGrid.normalizeDapQuery("zztop[last][0][10:20][0:2:100]");
+            throw new SimpleException("Shouldn't get here.");
+        } catch (Throwable t) {
+            Test.ensureTrue(t.toString().indexOf("zztop") >= 0, "t=" + t.toString()); 
+        }
+
+        //canonicalDapQuery only normalizes if the responseCache is active
+        ResponseCache oResponseCache = EDStatic.responseCache;
+        try {
+            EDStatic.responseCache = null;
+            Test.ensureEqual(eddGrid.canonicalDapQuery("sst%5Blast%5D[0][10:20][0:2:100]"), 
+                "sst[last][0][10:20][0:2:100]", "");
+
+            EDStatic.responseCache = new ResponseCache(1, 60000);
+            Test.ensureEqual(eddGrid.canonicalDapQuery("sst%5Blast%5D[0][10:20][0:2:100]"), 
+                expected, "");
+            //if invalid, the decoded query
+            Test.ensureEqual(eddGrid.canonicalDapQuery("zztop%5Blast%5D"), "zztop[last]", "");
+        } finally {
+            EDStatic.responseCache = oResponseCache;
+        }
+    }
+
+    /**
+     * This tests saveAsNcStream: the file must be the same as the file from saveAsNc,
+     * and if there is trouble after the response is committed, the exception
+     * must be rethrown (so the response is aborted).
+     */
+    public static void testSaveAsNcStream() throws Throwable {
+        String2.log("\n*** EDDGrid.testSaveAsNcStream()");
+        EDDGrid eddGrid = (EDDGrid)oneFromDatasetsXml(null, "erdBAssta5day"); 
+        String requestUrl = "/griddap/erdBAssta5day.nc";
+        String query = "sst[last][0][100:2:300][200:3:500]";
+        String dir = EDStatic.fullTestCacheDirectory;
+        String ncName = "testSaveAsNc.nc";
+        String streamName = "testSaveAsNcStream.nc";
+
+        eddGrid.saveAsNc(NetcdfFileWriter.Version.netcdf3, requestUrl, query,
+            dir + ncName, true, 0); //keepUnusedAxes, lonAdjust
+        FileOutputStream fos = new FileOutputStream(dir + streamName);
+        try {
+            Test.ensureTrue(eddGrid.saveAsNcStream(requestUrl, query, 
+                new OutputStreamSourceSimple(fos)), "");
+        } finally {
+            fos.close();
+        }
+        //the header and the data must be the same (except the file name on the first line)
+        String ncDump = NcHelper.dumpString(dir + ncName, true);
+        String streamDump = NcHelper.dumpString(dir + streamName, true);
+        Test.ensureEqual(streamDump.substring(streamDump.indexOf('\n')),
+            ncDump.substring(ncDump.indexOf('\n')), "");
+
+        //axis queries can't be streamed (and nothing is sent)
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        Test.ensureEqual(eddGrid.saveAsNcStream(requestUrl, "latitude[100:2:300]", 
+            new OutputStreamSourceSimple(baos)), false, "");
+        Test.ensureEqual(baos.size(), 0, "");
+
+        //errors before anything is sent are thrown (and nothing is sent)
+        try {
+            eddGrid.saveAsNcStream(requestUrl, "sst[last][0][100:2:300][200:3:99999]", 
+                new OutputStreamSourceSimple(baos));
+            throw new SimpleException("Shouldn't get here.");
+        } catch (Throwable t) {
+            Test.ensureTrue(t.toString().indexOf("Shouldn't get here") < 0, "t=" + t.toString()); 
+        }
+        Test.ensureEqual(baos.size(), 0, "");
+
+        //an error after the response is committed (here, the client disconnects
+        //after 10000 bytes) is rethrown, without finishing the file
+        final ByteArrayOutputStream partial = new ByteArrayOutputStream();
+        OutputStream failingOS = new OutputStream() {
+            public void write(int b) throws IOException {
+                if (partial.size() >= 10000)
+                    throw new IOException("Intentional error: the client disconnected.");
+                partial.write(b);
+            }
+        };
+        String msg = "shouldn't get here";
+        try {
+            eddGrid.saveAsNcStream(requestUrl, "sst[last][0][0:1000][0:1000]", 
+                new OutputStreamSourceSimple(failingOS));
+        } catch (IOException e) {
+            msg = e.getMessage();
+        }
+        Test.ensureEqual(msg, "Intentional error: the client disconnected.", "");
+        Test.ensureEqual(partial.size(), 10000, "");
+        Test.ensureEqual(new String(partial.toByteArray(), 0, 3, "ISO-8859-1"), "CDF", "");
+
+        File2.delete(dir + ncName);
+        File2.delete(dir + streamName);
+    }
+
+    /** This tests some EDDGrid-specific things. */
+    public static void test() throws Throwable {
+        testNormalizeDapQuery();
+        testSaveAsNcStream();
+    }
+
     /**
      * Test the WCS server using erdBAssta5day.
      */
@@ -329,7 +329,7 @@ public class EDDGridCopy extends EDDGrid {
                         taskOA[3] = copyDatasetDir;
                         taskOA[4] = fileName;
                         taskOA[5] = ".nc";
-                        int tTaskNumber = EDStatic.addTask(taskOA);
+                        int tTaskNumber = EDStatic.addTask(datasetID, taskOA);
                         if (tTaskNumber >= 0) {
                             taskNumber = tTaskNumber;
                             if (reallyVerbose)
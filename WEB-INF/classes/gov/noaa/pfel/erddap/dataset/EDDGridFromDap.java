@@ -39,6 +39,7 @@ import gov.noaa.pfel.coastwatch.util.SSR;
 import gov.noaa.pfel.erddap.Erddap;
 import gov.noaa.pfel.erddap.GenerateDatasetsXml;
 import gov.noaa.pfel.erddap.util.EDStatic;
+import gov.noaa.pfel.erddap.util.ThreadedWorkManager;
 import gov.noaa.pfel.erddap.variable.*;
 
 import java.io.ByteArrayInputStream;
@@ -96,6 +97,23 @@ public class EDDGridFromDap extends EDDGrid {
      * It is unlikely anyone would want to change this. */
     public static boolean acceptDeflate = true;
 
+    /** The local cache of chunks of the source's data, or null if not used
+     * (see &lt;chunkCacheMB&gt;). */
+    protected GridChunkCache chunkCache = null;
+
+    /** If the source's recent speed suggests that a getSourceData request 
+     * will take longer than this (in ms), the request is split into up to 
+     * DConnect.getMaxConnectionsPerHost() sub-requests along the leftmost axis,
+     * which are gotten concurrently. */
+    public static int slowSourceRequestMillis = 5000;
+
+    /** Sub-requests (see slowSourceRequestMillis) get at least this many values. */
+    public final static int MIN_SUBREQUEST_VALUES = 10000;
+
+    /** The recent speed of one request to the source (values per ms), 
+     * or NaN if not yet known. */
+    protected volatile double sourceValuesPerMilli = Double.NaN;
+
 
     /**
      * This constructs an EDDGridFromDap based on the information in an .xml file.
@@ -126,6 +144,7 @@ public class EDDGridFromDap extends EDDGrid {
         String tLocalSourceUrl = null;
         String tDefaultDataQuery = null;
         String tDefaultGraphQuery = null;
+        int tChunkCacheMB = 0;
 
         //process the tags
         String startOfTags = xmlReader.allTags();
@@ -165,6 +184,8 @@ public class EDDGridFromDap extends EDDGrid {
             else if (localTags.equals("</sourceUrl>")) tLocalSourceUrl = content; 
             else if (localTags.equals( "<onChange>")) {}
             else if (localTags.equals("</onChange>")) tOnChange.add(content); 
+            else if (localTags.equals( "<chunkCacheMB>")) {}
+            else if (localTags.equals("</chunkCacheMB>")) tChunkCacheMB = String2.parseInt(content); 
             else if (localTags.equals( "<fgdcFile>")) {}
             else if (localTags.equals("</fgdcFile>"))     tFgdcFile = content; 
             else if (localTags.equals( "<iso19115File>")) {}
@@ -186,13 +207,15 @@ public class EDDGridFromDap extends EDDGrid {
         for (int i = 0; i < tDataVariables.size(); i++)
             ttDataVariables[i] = (Object[])tDataVariables.get(i);
 
-        return new EDDGridFromDap(tDatasetID, 
+        EDDGridFromDap tEDDGrid = new EDDGridFromDap(tDatasetID, 
             tAccessibleTo, tGraphsAccessibleTo, tAccessibleViaWMS,
             tOnChange, tFgdcFile, tIso19115File,
             tDefaultDataQuery, tDefaultGraphQuery, tGlobalAttributes,
             ttAxisVariables,
             ttDataVariables,
             tReloadEveryNMinutes, tUpdateEveryNMillis, tLocalSourceUrl);
+        tEDDGrid.setChunkCacheMB(tChunkCacheMB);
+        return tEDDGrid;
     }
 
     /**
@@ -691,6 +714,11 @@ public class EDDGridFromDap extends EDDGrid {
                     edvga.combinedAttributes().getString(EDV.TIME_PRECISION), newMax, ""));
         edvga.clearSliderCsvValues();  //do last, to force recreation next time needed
 
+        //the data for the last old leftmost value may have been incomplete
+        GridChunkCache tChunkCache = chunkCache;
+        if (tChunkCache != null)
+            tChunkCache.invalidateFrom(oldSize - 1);
+
         updateCount++;
         long thisTime = System.currentTimeMillis() - startUpdateMillis;
         cumulativeUpdateTime += thisTime;
@@ -798,6 +826,27 @@ public class EDDGridFromDap extends EDDGrid {
         return newEDDGrid;
     }
 
+    /**
+     * This returns true since lowUpdate just appends values to the leftmost axis.
+     */
+    protected boolean lowUpdateJustAppends() {
+        return true;
+    }
+
+    /**
+     * This turns on (or off) the local cache of chunks of the source's data
+     * (see GridChunkCache). Any old cached chunks are deleted.
+     *
+     * @param tChunkCacheMB the maximum size of the cache, in MB.
+     *    If &lt;= 0 (or Integer.MAX_VALUE, i.e., not specified), the cache isn't used.
+     */
+    public void setChunkCacheMB(int tChunkCacheMB) {
+        chunkCache = tChunkCacheMB > 0 && tChunkCacheMB < Integer.MAX_VALUE?
+            new GridChunkCache(datasetID, cacheDirectory() + "chunks/", 
+                tChunkCacheMB, axisVariables) :
+            null;
+    }
+
     /** 
      * This gets source data (not yet converted to destination data) from the data 
      * source for this EDDGrid.     
@@ -819,6 +868,94 @@ public class EDDGridFromDap extends EDDGrid {
     public PrimitiveArray[] getSourceData(EDV tDataVariables[], IntArray tConstraints) 
         throws Throwable {
 
+        GridChunkCache tChunkCache = chunkCache;
+        if (tChunkCache != null)
+            return tChunkCache.getSourceData(tDataVariables, tConstraints, 
+                this::getSourceDataFromSource);
+        return getSourceDataFromSource(tDataVariables, tConstraints);
+    }
+
+    /** 
+     * This gets source data from the remote source (not from the chunkCache).
+     * See getSourceData.
+     * This is thread-safe.
+     */
+    protected PrimitiveArray[] getSourceDataFromSource(EDV tDataVariables[], IntArray tConstraints) 
+        throws Throwable {
+
+        //how many values are requested?
+        long nValues = tDataVariables.length;
+        for (int av3 = 0; av3 < tConstraints.size(); av3 += 3) 
+            nValues *= OpendapHelper.calculateNValues(tConstraints.get(av3), 
+                tConstraints.get(av3 + 1), tConstraints.get(av3 + 2));
+
+        //if the source is slow, split a big request into concurrent sub-requests
+        //along the leftmost axis (DConnect reuses the connections to the source).
+        //Other threads (e.g., GridDataAccessor's read-ahead threads) may be using
+        //some of the connections, so use at most the ones available now.
+        int start0  = tConstraints.get(0);
+        int stride0 = tConstraints.get(1);
+        int nLeft = OpendapHelper.calculateNValues(start0, stride0, tConstraints.get(2));
+        int nParts = nSubrequests(nValues, nLeft, sourceValuesPerMilli, 
+            Math.min(DConnect.getMaxConnectionsPerHost(),
+                     DConnect.availableConnections(localSourceUrl)));
+        if (nParts < 2) 
+            return getSourceDataPart(tDataVariables, tConstraints);
+
+        if (verbose) String2.log("  EDDGridFromDap.getSourceData " + datasetID + 
+            ": the source is slow, so the request for " + nValues + 
+            " values is split into " + nParts + " concurrent sub-requests.");
+        ThreadedWorkManager<PrimitiveArray[]> workManager = 
+            new ThreadedWorkManager(datasetID, nParts);
+        try {
+            int first = 0; //index (in the request) along the leftmost axis
+            for (int part = 0; part < nParts; part++) {
+                int last = (int)((nLeft * (part + 1L)) / nParts) - 1;
+                final IntArray partConstraints = new IntArray(tConstraints.toArray());
+                partConstraints.set(0, start0 + first * stride0);
+                partConstraints.set(2, start0 + last  * stride0);
+                workManager.addTask(() -> {
+                    try {
+                        return getSourceDataPart(tDataVariables, partConstraints);
+                    } catch (Throwable t) {
+                        throw ThreadedWorkManager.rethrow(t);
+                    }
+                });
+                first = last + 1;
+            }
+
+            //the leftmost axis values and the data values are concatenated
+            //(in order, since the leftmost axis varies slowest);
+            //the other axes' values are the same for all parts
+            PrimitiveArray results[] = workManager.next();
+            while (workManager.hasNext()) {
+                PrimitiveArray partResults[] = workManager.next();
+                results[0].append(partResults[0]);
+                for (int i = axisVariables.length; i < results.length; i++) 
+                    results[i].append(partResults[i]);
+            }
+            return results;
+        } finally {
+            workManager.forceShutdown();
+        }
+    }
+
+    /** 
+     * This gets source data for one request (or sub-request) to the source 
+     * (see getSourceData).
+     * This is thread-safe.
+     * 
+     * @param tDataVariables EDV[] with just the requested data variables
+     * @param tConstraints  int[nAxisVariables*3] 
+     * @return a PrimitiveArray[] (see getSourceData)
+     * @throws Throwable if trouble (notably, WaitThenTryAgainException)
+     */
+    protected PrimitiveArray[] getSourceDataPart(EDV tDataVariables[], IntArray tConstraints) 
+        throws Throwable {
+
+        long time = System.currentTimeMillis();
+        long nValues = 0;
+
         //build String form of the constraint
         //String errorInMethod = "Error in EDDGridFromDap.getSourceData for " + datasetID + ": "; 
         String constraint = buildDapArrayQuery(tConstraints);
@@ -890,10 +1027,58 @@ public class EDDGridFromDap extends EDDGrid {
 
             //store the grid data 
             results[axisVariables.length + dv] = pa[0];
+            nValues += pa[0].size();
         }
+
+        //remember the source's speed 
+        sourceValuesPerMilli = updateValuesPerMilli(sourceValuesPerMilli, nValues,
+            System.currentTimeMillis() - time);
         return results;
     }
 
+    /**
+     * This determines how many concurrent sub-requests a getSourceData request
+     * should be split into (see slowSourceRequestMillis).
+     *
+     * @param nValues the number of values requested
+     * @param nLeft the number of values requested along the leftmost axis
+     * @param valuesPerMilli the source's recent speed (see updateValuesPerMilli)
+     *    or NaN if not yet known
+     * @param maxConnections the maximum number of connections which may be used
+     *    (e.g., the number available now)
+     * @return the number of sub-requests (1 if the request shouldn't be split)
+     */
+    public static int nSubrequests(long nValues, int nLeft, double valuesPerMilli,
+        int maxConnections) {
+
+        if (nLeft < 2 || !(valuesPerMilli > 0) || 
+            nValues / valuesPerMilli <= slowSourceRequestMillis) 
+            return 1;
+        return (int)Math.max(1, Math.min(Math.min(nLeft, maxConnections), 
+            nValues / MIN_SUBREQUEST_VALUES));
+    }
+
+    /**
+     * This returns the new moving average of the source's speed 
+     * after a request to the source. 
+     * Small requests (&lt; MIN_SUBREQUEST_VALUES) are ignored
+     * since their time is mostly latency.
+     *
+     * @param oldValuesPerMilli the previous value (or NaN if not yet known)
+     * @param nValues the number of values gotten by the request
+     * @param millis the time the request took
+     * @return the new value (values per ms)
+     */
+    public static double updateValuesPerMilli(double oldValuesPerMilli, long nValues,
+        long millis) {
+
+        if (nValues < MIN_SUBREQUEST_VALUES) 
+            return oldValuesPerMilli;
+        double tValuesPerMilli = nValues / (double)Math.max(1, millis);
+        return Double.isNaN(oldValuesPerMilli)? tValuesPerMilli :
+            (oldValuesPerMilli + tValuesPerMilli) / 2; //exponential moving average
+    }
+
     /** 
      * This does its best to generate a clean, ready-to-use datasets.xml entry 
      * for an EDDGridFromDap.
@@ -8364,6 +8549,58 @@ EDStatic.startBodyHtml(null) + "&nbsp;<br>\n" +
         Test.ensureTrue(!eddGrid.isAccessibleTo(roleBMT), "");
     }
 
+    /**
+     * This tests splitting slow requests into concurrent sub-requests
+     * (nSubrequests), the moving average of the source's speed 
+     * (updateValuesPerMilli), and that the results of a split request 
+     * are the same as the results of one request.
+     *
+     * @throws Throwable if trouble
+     */
+    public static void testSubrequests() throws Throwable {
+        String2.log("\n*** EDDGridFromDap.testSubrequests()");
+        int oSlowSourceRequestMillis = slowSourceRequestMillis;
+        try {
+            slowSourceRequestMillis = 5000;
+
+            //nSubrequests(nValues, nLeft, valuesPerMilli, maxConnections)
+            Test.ensureEqual(nSubrequests(1000000, 10, Double.NaN, 4), 1, "speed unknown");
+            Test.ensureEqual(nSubrequests(1000000, 10, 1000,       4), 1, "fast: 1000ms");
+            Test.ensureEqual(nSubrequests(1000000, 10, 100,        4), 4, "slow: 10000ms");
+            Test.ensureEqual(nSubrequests(1000000, 10, 100,        2), 2, "only 2 connections");
+            Test.ensureEqual(nSubrequests(1000000, 10, 100,        0), 1, "no connections");
+            Test.ensureEqual(nSubrequests(1000000,  3, 100,        4), 3, "nLeft=3");
+            Test.ensureEqual(nSubrequests(1000000,  1, 100,        4), 1, "nLeft=1");
+            Test.ensureEqual(nSubrequests(  25000, 10, 1,          4), 2, "MIN_SUBREQUEST_VALUES");
+
+            //updateValuesPerMilli(old, nValues, millis)
+            Test.ensureEqual(updateValuesPerMilli(Double.NaN, 100000, 100), 1000, "");
+            Test.ensureEqual(updateValuesPerMilli(1000, 100000, 1000), 550, "");
+            Test.ensureEqual(updateValuesPerMilli(1000, 100000, 0), 50500, "millis=0");
+            Test.ensureEqual(updateValuesPerMilli(1000, 100, 1000), 1000, "too small, ignored");
+            Test.ensureEqual(updateValuesPerMilli(Double.NaN, 100, 1000), Double.NaN, "");
+
+            //a split request gets the same values as one request
+            testVerboseOn();
+            EDDGridFromDap eddGrid = (EDDGridFromDap)oneFromDatasetsXml(null, "erdBAssta5day"); 
+            EDV dataVars[] = {eddGrid.dataVariables()[0]};
+            IntArray constraints = new IntArray(new int[]{
+                0, 1, 3,   0, 1, 0,   600, 2, 699,   600, 2, 799}); //4*1*50*100 = 20000 values
+            eddGrid.sourceValuesPerMilli = Double.NaN; //so it isn't split
+            PrimitiveArray expected[] = eddGrid.getSourceDataFromSource(dataVars, constraints);
+            slowSourceRequestMillis = 0;
+            eddGrid.sourceValuesPerMilli = 1; //so it is split into 2 sub-requests
+            Test.ensureEqual(nSubrequests(20000, 4, eddGrid.sourceValuesPerMilli, 4), 2, "");
+            PrimitiveArray results[] = eddGrid.getSourceDataFromSource(dataVars, constraints);
+            Test.ensureEqual(results.length, expected.length, "");
+            for (int i = 0; i < expected.length; i++) 
+                Test.ensureEqual(results[i].toString(), expected[i].toString(), "i=" + i);
+            Test.ensureEqual(results[4].size(), 20000, "");
+        } finally {
+            slowSourceRequestMillis = oSlowSourceRequestMillis;
+        }
+    }
+
     /** 
      * The request size will be ~22MB/timePoint.
      * If partialRequestMaxBytes=100000000  (10^8),
@@ -11867,6 +12104,7 @@ directionsForGenerateDatasetsXml() +
         //testGridWithDepth(); //test dataset no longer available
         testGridWithDepth2(); 
         testGridWithDepth2_LonPM180(); 
+        testSubrequests();
         testBigRequest(2); //if partialRequestMaxBytes is 10^8, this will be handled in 1 partial request
         testBigRequest(4); //if partialRequestMaxBytes is 10^8, this will be handled in 1 partial request
         testBigRequest(6); //use 6 partial requests  (time axis is now driver for multiple requests)
@@ -68,6 +68,10 @@ public class EDDGridFromErddap extends EDDGrid implements FromErddap {
      * It is unlikely anyone would want to change this. */
     public static boolean acceptDeflate = true;
 
+    /** The local cache of chunks of the source's data, or null if not used
+     * (see &lt;chunkCacheMB&gt;). */
+    protected GridChunkCache chunkCache = null;
+
     protected String publicSourceErddapUrl;
     protected boolean subscribeToRemoteErddapDataset;
     private boolean redirect = true;
@@ -100,6 +104,7 @@ public class EDDGridFromErddap extends EDDGrid implements FromErddap {
         String tLocalSourceUrl = null;
         String tDefaultDataQuery = null;
         String tDefaultGraphQuery = null;
+        int tChunkCacheMB = 0;
 
         //process the tags
         String startOfTags = xmlReader.allTags();
@@ -138,6 +143,8 @@ public class EDDGridFromErddap extends EDDGrid implements FromErddap {
             else if (localTags.equals("</sourceUrl>")) tLocalSourceUrl = content; 
             else if (localTags.equals( "<onChange>")) {}
             else if (localTags.equals("</onChange>")) tOnChange.add(content); 
+            else if (localTags.equals( "<chunkCacheMB>")) {}
+            else if (localTags.equals("</chunkCacheMB>")) tChunkCacheMB = String2.parseInt(content); 
             else if (localTags.equals( "<fgdcFile>")) {}
             else if (localTags.equals("</fgdcFile>"))     tFgdcFile = content; 
             else if (localTags.equals( "<iso19115File>")) {}
@@ -152,11 +159,13 @@ public class EDDGridFromErddap extends EDDGrid implements FromErddap {
 
             else xmlReader.unexpectedTagException();
         }
-        return new EDDGridFromErddap(tDatasetID, 
+        EDDGridFromErddap tEDDGrid = new EDDGridFromErddap(tDatasetID, 
             tAccessibleTo, tGraphsAccessibleTo, tAccessibleViaWMS,
             tOnChange, tFgdcFile, tIso19115File,
             tDefaultDataQuery, tDefaultGraphQuery, tReloadEveryNMinutes, tUpdateEveryNMillis,
             tLocalSourceUrl, tSubscribeToRemoteErddapDataset, tRedirect);
+        tEDDGrid.setChunkCacheMB(tChunkCacheMB);
+        return tEDDGrid;
     }
 
     /**
@@ -600,6 +609,11 @@ public class EDDGridFromErddap extends EDDGrid implements FromErddap {
                     edvga.combinedAttributes().getString(EDV.TIME_PRECISION), newMax, ""));
         edvga.clearSliderCsvValues();  //do last, to force recreation next time needed
 
+        //the data for the last old leftmost value may have been incomplete
+        GridChunkCache tChunkCache = chunkCache;
+        if (tChunkCache != null)
+            tChunkCache.invalidateFrom(oldSize - 1);
+
         updateCount++;
         long thisTime = System.currentTimeMillis() - startUpdateMillis;
         cumulativeUpdateTime += thisTime;
@@ -715,6 +729,27 @@ public class EDDGridFromErddap extends EDDGrid implements FromErddap {
         return newEDDGrid;
     }
 
+    /**
+     * This returns true since lowUpdate just appends values to the leftmost axis.
+     */
+    protected boolean lowUpdateJustAppends() {
+        return true;
+    }
+
+    /**
+     * This turns on (or off) the local cache of chunks of the source's data
+     * (see GridChunkCache). Any old cached chunks are deleted.
+     *
+     * @param tChunkCacheMB the maximum size of the cache, in MB.
+     *    If &lt;= 0 (or Integer.MAX_VALUE, i.e., not specified), the cache isn't used.
+     */
+    public void setChunkCacheMB(int tChunkCacheMB) {
+        chunkCache = tChunkCacheMB > 0 && tChunkCacheMB < Integer.MAX_VALUE?
+            new GridChunkCache(datasetID, cacheDirectory() + "chunks/", 
+                tChunkCacheMB, axisVariables) :
+            null;
+    }
+
     /** 
      * This gets data (not yet standardized) from the data 
      * source for this EDDGrid.     
@@ -736,6 +771,21 @@ public class EDDGridFromErddap extends EDDGrid implements FromErddap {
     public PrimitiveArray[] getSourceData(EDV tDataVariables[], IntArray tConstraints) 
         throws Throwable {
 
+        GridChunkCache tChunkCache = chunkCache;
+        if (tChunkCache != null)
+            return tChunkCache.getSourceData(tDataVariables, tConstraints, 
+                this::getSourceDataFromSource);
+        return getSourceDataFromSource(tDataVariables, tConstraints);
+    }
+
+    /** 
+     * This gets source data from the remote source (not from the chunkCache).
+     * See getSourceData.
+     * This is thread-safe.
+     */
+    protected PrimitiveArray[] getSourceDataFromSource(EDV tDataVariables[], IntArray tConstraints) 
+        throws Throwable {
+
         //build String form of the constraint
         //String errorInMethod = "Error in EDDGridFromErddap.getSourceData for " + datasetID + ": "; 
         String constraint = buildDapArrayQuery(tConstraints);
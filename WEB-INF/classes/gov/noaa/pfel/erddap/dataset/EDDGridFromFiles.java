@@ -20,6 +20,7 @@ import com.cohort.util.SimpleException;
 import com.cohort.util.String2;
 import com.cohort.util.Test;
 
+import gov.noaa.pfel.coastwatch.griddata.NcHelper;
 import gov.noaa.pfel.coastwatch.pointdata.Table;
 import gov.noaa.pfel.coastwatch.util.FileVisitorDNLS;
 import gov.noaa.pfel.coastwatch.util.RegexFilenameFilter;
@@ -592,6 +593,7 @@ public abstract class EDDGridFromFiles extends EDDGrid{
 
         //load badFileMap
         ConcurrentHashMap badFileMap = readBadFileMap();  
+        HashSet originalBadFiles = badFileMapKeys(badFileMap);
 
         //if trouble reading any, recreate all
         if (dirTable == null || fileTable == null || badFileMap == null) {
@@ -897,6 +899,7 @@ public abstract class EDDGridFromFiles extends EDDGrid{
                     (dirI == tDirI && fileS.compareTo(tFileS) < 0)) {
                     if (verbose) String2.log("#" + tFileListPo + " file no longer exists: remove from cache: " +
                         dirList.get(dirI) + fileS);
+                    NcHelper.ncFilePool.invalidate(dirList.get(dirI) + fileS);
                     nRemoved++;
                     removeCumTime -= System.currentTimeMillis();
                     fileTable.removeRow(fileListPo);
@@ -964,6 +967,7 @@ public abstract class EDDGridFromFiles extends EDDGrid{
                         MustBe.throwableToString(t);
                     String2.log(msg);
                     msg = "";
+                    NcHelper.ncFilePool.invalidate(fullName);
                     nRemoved++;
                     removeCumTime -= System.currentTimeMillis();
                     fileTable.removeRow(fileListPo);
@@ -1010,7 +1014,7 @@ public abstract class EDDGridFromFiles extends EDDGrid{
             ftMin, ftMax, ftStartIndex, ftNValues, ftCsvValues, 
             sourceAxisValues0);
         if (!doQuickRestart) 
-            saveDirTableFileTableBadFiles(dirTable, fileTable, badFileMap); //throws Throwable
+            saveDirTableFileTableBadFiles(dirTable, fileTable, badFileMap, originalBadFiles); //throws Throwable
 
         //set creationTimeMillis to fileTable lastModified 
         //(either very recent or (if quickRestart) from previous full restart)
@@ -1395,6 +1399,7 @@ public abstract class EDDGridFromFiles extends EDDGrid{
 
         //get BadFile and FileTable info and make local copies
         ConcurrentHashMap badFileMap = readBadFileMap(); //already a copy of what's in file
+        HashSet originalBadFiles = badFileMapKeys(badFileMap);
         Table tDirTable; 
         Table tFileTable;
         if (fileTableInMemory) {
@@ -1436,6 +1441,9 @@ public abstract class EDDGridFromFiles extends EDDGrid{
             String dirName = File2.getDirectory(fullName);
             String fileName = File2.getNameAndExtension(fullName);  //matched to fileNameRegex above
 
+            //the file was created, changed, or deleted, so an open ncFile is out-of-date
+            NcHelper.ncFilePool.invalidate(fullName);
+
             //dirIndex   (dirName may not be in dirList!)
             int dirIndex = dirList.indexOf(dirName); //linear search, but should be short list
 
@@ -1606,7 +1614,7 @@ public abstract class EDDGridFromFiles extends EDDGrid{
 
             //finally: make the important instance changes that use the changes above 
             //(eg fileTable leads to seeing changed axisVariables[0])
-            saveDirTableFileTableBadFiles(tDirTable, tFileTable, badFileMap); //throws Throwable
+            saveDirTableFileTableBadFiles(tDirTable, tFileTable, badFileMap, originalBadFiles); //throws Throwable
             if (fileTableInMemory) {
                 //quickly swap into place
                 dirTable  = tDirTable;
@@ -2020,6 +2028,7 @@ public abstract class EDDGridFromFiles extends EDDGrid{
                     EDStatic.rethrowClientAbortException(t2);  //first thing in catch{}
 
                     //mark the file as bad   and reload the dataset
+                    NcHelper.ncFilePool.invalidate(tFileDir + tFileName);
                     addBadFileToTableOnDisk(ftDirIndex.get(ftRow), tFileName, 
                         ftLastMod.get(ftRow), MustBe.throwableToShortString(t)); 
                     //an exception here will cause data request to fail (as it should)
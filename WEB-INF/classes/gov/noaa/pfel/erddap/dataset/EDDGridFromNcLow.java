@@ -277,7 +277,8 @@ public abstract class EDDGridFromNcLow extends EDDGridFromFiles {
         }
         String selection = selectionSB.toString();
 
-        NetcdfFile ncFile = NcHelper.openFile(fileDir + fileName); //may throw exception
+        //get the ncFile from the pool, since popular files are read over and over
+        NetcdfFile ncFile = NcHelper.ncFilePool.acquire(fileDir + fileName); //may throw exception
         int nValues = -1; //not yet calculated
         EDV edv = null;
         try {
@@ -325,13 +326,13 @@ public abstract class EDDGridFromNcLow extends EDDGridFromFiles {
             }
 
             //I care about this exception
-            ncFile.close();
+            NcHelper.ncFilePool.release(ncFile, true);
             return paa;
 
         } catch (Throwable t) {
-            //make sure it is explicitly closed
+            //make sure it is explicitly closed (not returned to the pool)
             try {   
-                ncFile.close();    
+                NcHelper.ncFilePool.release(ncFile, false);    
             } catch (Throwable t2) {
                 String2.log("Error while trying to close " + fileDir + fileName +
                     "\n" + MustBe.throwableToShortString(t2));
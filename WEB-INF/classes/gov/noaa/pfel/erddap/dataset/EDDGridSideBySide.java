@@ -24,6 +24,7 @@ import gov.noaa.pfel.coastwatch.util.SimpleXMLReader;
 import gov.noaa.pfel.coastwatch.util.SSR;
 import gov.noaa.pfel.erddap.Erddap;
 import gov.noaa.pfel.erddap.util.EDStatic;
+import gov.noaa.pfel.erddap.util.ThreadedWorkManager;
 import gov.noaa.pfel.erddap.variable.*;
 
 import java.text.MessageFormat;
@@ -60,6 +61,10 @@ public class EDDGridSideBySide extends EDDGrid {
      */
     protected int matchAxisNDigits = DEFAULT_MATCH_AXIS_N_DIGITS;
 
+    /** The maximum number of children which are asked for data at once 
+     * (-1 means use EDStatic.nChildThreads). */
+    protected int nThreads = -1;
+
 
     /**
      * This constructs an EDDGridSideBySide based on the information in an .xml file.
@@ -90,6 +95,7 @@ public class EDDGridSideBySide extends EDDGrid {
         String tIso19115File = null;
         String tDefaultDataQuery = null;
         String tDefaultGraphQuery = null;
+        int tNThreads = -1; //use EDStatic.nChildThreads
 
         //process the tags
         String startOfTags = xmlReader.allTags();
@@ -166,6 +172,8 @@ public class EDDGridSideBySide extends EDDGrid {
             else if (localTags.equals("</defaultDataQuery>")) tDefaultDataQuery = content; 
             else if (localTags.equals( "<defaultGraphQuery>")) {}
             else if (localTags.equals("</defaultGraphQuery>")) tDefaultGraphQuery = content; 
+            else if (localTags.equals( "<nThreads>")) {}
+            else if (localTags.equals("</nThreads>")) tNThreads = String2.parseInt(content); 
 
             else xmlReader.unexpectedTagException();
         }
@@ -183,7 +191,7 @@ public class EDDGridSideBySide extends EDDGrid {
         return new EDDGridSideBySide(tDatasetID, 
             tAccessibleTo, tGraphsAccessibleTo, tAccessibleViaWMS, 
             tMatchAxisNDigits, tOnChange, tFgdcFile, tIso19115File,
-            tDefaultDataQuery, tDefaultGraphQuery, tcds);
+            tDefaultDataQuery, tDefaultGraphQuery, tNThreads, tcds);
 
     }
 
@@ -204,6 +212,10 @@ public class EDDGridSideBySide extends EDDGrid {
      *    to try to generate FGDC metadata for this dataset), or null (to allow
      *    ERDDAP to try to generate FGDC metadata for this dataset).
      * @param tIso19115 This is like tFgdcFile, but for the ISO 19119-2/19139 metadata.
+     * @param tNThreads the maximum number of children which are asked
+     *    for data at once (for each data request).
+     *    Use -1 (or any value &lt;1) to use EDStatic.nChildThreads.
+     *    Use 1 to ask the children one at a time in the request's thread.
      * @param tChildDatasets
      * @throws Throwable if trouble
      */
@@ -211,7 +223,7 @@ public class EDDGridSideBySide extends EDDGrid {
         String tAccessibleTo, String tGraphsAccessibleTo, boolean tAccessibleViaWMS,
         int tMatchAxisNDigits, 
         StringArray tOnChange, String tFgdcFile, String tIso19115File, 
-        String tDefaultDataQuery, String tDefaultGraphQuery, 
+        String tDefaultDataQuery, String tDefaultGraphQuery, int tNThreads,
         EDDGrid tChildDatasets[]) throws Throwable {
 
         if (verbose) String2.log("\n*** constructing EDDGridSideBySide " + tDatasetID); 
@@ -236,6 +248,7 @@ public class EDDGridSideBySide extends EDDGrid {
         int nChildren = tChildDatasets.length;
         childStopsAt = new int[nChildren];
         matchAxisNDigits = tMatchAxisNDigits;
+        nThreads = tNThreads == Integer.MAX_VALUE? -1 : tNThreads; //MAX_VALUE is parseInt's missing value
 
         //check the siblings and create childStopsAt
         EDDGrid firstChild = childDatasets[0];
@@ -466,11 +479,12 @@ public class EDDGridSideBySide extends EDDGrid {
     public PrimitiveArray[] getSourceData(EDV tDataVariables[], IntArray tConstraints) 
         throws Throwable {
 
-        //simple approach (not most efficient for tiny request, but fine for big requests):
-        //  get results for each tDataVariable, one-by-one
-        //future: more efficient to gang together all dataVariables from a given child
+        //The requested dataVariables are grouped by child, so each child 
+        //  gets the data for all of its requested dataVariables at once.
+        //If more than 1 child is involved, the children are asked concurrently
+        //  (up to nThreads at once), so the time is ~ the slowest child's time,
+        //  not the sum of the children's times.
         int nAv = axisVariables.length;
-        int nDv = dataVariables.length;
         int tnDv = tDataVariables.length;
         PrimitiveArray[] cumResults = new PrimitiveArray[nAv + tnDv];
 
@@ -486,15 +500,11 @@ public class EDDGridSideBySide extends EDDGrid {
                 nValues1 *= cumResults[av].size();
         }
 
-        //get the data results
+        //which childDataset is each tDataVariable in?
+        //childOrder has the children in the order they are first needed
+        int tdvChild[] = new int[tnDv];
+        IntArray childOrder = new IntArray();
         for (int tdv = 0; tdv < tnDv; tdv++) {
-
-            //make a PrimitiveArray to hold the results for this dv
-            PrimitiveArray dvResults = PrimitiveArray.factory(
-                tDataVariables[tdv].sourceDataTypeClass(), nValues, false);
-            cumResults[nAv + tdv] = dvResults;
-            double tdvSourceMissingValue = tDataVariables[tdv].sourceMissingValue();
-
             //what is its dataVariable number in this aggregate dataset?
             //future: faster search with hash, but this is fast unless huge number of dataVars
             int dvn = 0;
@@ -505,69 +515,158 @@ public class EDDGridSideBySide extends EDDGrid {
             int cn = 0;
             while (dvn > childStopsAt[cn])
                 cn++;
-            IntArray atIA = indexOfAxis0Value[cn];
-
-            //step through constraints for combined axis0,
-            //  finding sections in child of constant step size
-            //!!!this is tricky code; think about it!!!
-            IntArray ttConstraints = (IntArray)tConstraints.clone();
-            int start = tConstraints.get(0);
-            int stride = tConstraints.get(1);
-            int stop = tConstraints.get(2);
-            //String2.log("\n***sequence start=" + start + " stride=" + stride + " stop=" + stop);
-            while (start <= stop) {
-                //find first non-NaN
-                while (start <= stop && atIA.array[start] == Integer.MAX_VALUE) {
-                    dvResults.addNDoubles(nValues1, tdvSourceMissingValue);
-                    start += stride;
-                }
-                if (start > stop)
-                    break;
+            tdvChild[tdv] = cn;
+            if (childOrder.indexOf(cn) < 0)
+                childOrder.add(cn);
+        }
+        int nc = childOrder.size();
+
+        //the tDataVariables for each child (in childOrder)
+        EDV childDataVariables[][] = new EDV[nc][];
+        for (int c = 0; c < nc; c++) {
+            ArrayList al = new ArrayList();
+            for (int tdv = 0; tdv < tnDv; tdv++) 
+                if (tdvChild[tdv] == childOrder.get(c))
+                    al.add(tDataVariables[tdv]);
+            childDataVariables[c] = (EDV[])al.toArray(new EDV[al.size()]);
+        }
 
-                //start value is valid
-                //find as many more valid values as possible with constant stride for the child
-                int cStart = atIA.array[start];
-                int cStride = -1;
-                int po = start + stride;
-                while (po <= stop) { //go until value at po is trouble
-                    int at = atIA.array[po];
-                    if (at == Integer.MAX_VALUE) {
-                        //String2.log("***sequence stopped because no corresponding av0 value for this child");
-                        break;
-                    }
-                    if (cStride == -1) {
-                        cStride = at - atIA.array[po - stride];
-                    } else if (at - atIA.array[po - stride] != cStride) {
-                        //String2.log("***sequence stopped because stride changed");
-                        break;
-                    }
-                    po += stride;
+        //get the data results from each child
+        PrimitiveArray childResults[][] = new PrimitiveArray[nc][];
+        int tNThreads = Math.min(nc, nThreads >= 1? nThreads : EDStatic.nChildThreads);
+        if (tNThreads <= 1) {
+            for (int c = 0; c < nc; c++) 
+                childResults[c] = getChildSourceData(childOrder.get(c), 
+                    childDataVariables[c], tConstraints, nValues, nValues1);
+
+        } else {
+            if (reallyVerbose) String2.log("  EDDGridSideBySide.getSourceData " + datasetID + 
+                " is asking " + nc + " children for data with nThreads=" + tNThreads);
+            final int fnValues = nValues;
+            final int fnValues1 = nValues1;
+            ThreadedWorkManager<PrimitiveArray[]> workManager = 
+                new ThreadedWorkManager(datasetID, tNThreads);
+            try {
+                for (int c = 0; c < nc; c++) {
+                    final int cn = childOrder.get(c);
+                    final EDV cDataVariables[] = childDataVariables[c];
+                    workManager.addTask(() -> {
+                        try {
+                            return getChildSourceData(cn, cDataVariables, 
+                                tConstraints, fnValues, fnValues1);
+                        } catch (Throwable t) {
+                            throw ThreadedWorkManager.rethrow(t);
+                        }
+                    });
                 }
 
-                //get the data
-                if (cStride == -1)
-                    cStride = 1;
-                int cStop = atIA.array[po - stride]; //last valid value
-                //String2.log("***sequence subsequence: cStart=" + cStart + " cStride=" + cStride + " cStop=" + cStop);
-                ttConstraints.set(0, cStart);
-                ttConstraints.set(1, cStride);
-                ttConstraints.set(2, cStop);
-                PrimitiveArray[] tResults = childDatasets[cn].getSourceData(
-                    new EDV[]{tDataVariables[tdv]}, ttConstraints);
-                dvResults.append(tResults[nAv]); //append the first (and only) data variable's results
-
-                //increment start
-                start = po;
+                //get the results in order (so the first child's error, if any, is thrown)
+                for (int c = 0; c < nc; c++) 
+                    childResults[c] = workManager.next();
+            } finally {
+                workManager.forceShutdown();
             }
-
-            //dvResults should be properly filled
-            Test.ensureEqual(dvResults.size(), nValues, "Data source error in EDDGridSideBySide.getSourceData: " +
-                "dvResults.size != nValues .");
         }
 
+        //put the results in the requested order
+        int childPo[] = new int[nc];
+        for (int tdv = 0; tdv < tnDv; tdv++) {
+            int c = childOrder.indexOf(tdvChild[tdv]);
+            cumResults[nAv + tdv] = childResults[c][childPo[c]++];
+        }
         return cumResults;
     }
 
+    /**
+     * This gets the data for some dataVariables which are all in one child.
+     * This is thread-safe.
+     *
+     * @param cn the child's number
+     * @param cDataVariables the requested dataVariables which are all in child cn
+     * @param tConstraints the constraints for this (the aggregate) dataset
+     * @param nValues the number of values requested for each dataVariable
+     * @param nValues1 the number of values for one value of axis0
+     * @return a PrimitiveArray with the results for each of the cDataVariables
+     * @throws Throwable if trouble
+     */
+    protected PrimitiveArray[] getChildSourceData(int cn, EDV cDataVariables[],
+        IntArray tConstraints, int nValues, int nValues1) throws Throwable {
+
+        int nAv = axisVariables.length;
+        int cnDv = cDataVariables.length;
+        IntArray atIA = indexOfAxis0Value[cn];
+
+        //make a PrimitiveArray to hold the results for each dv
+        PrimitiveArray dvResults[] = new PrimitiveArray[cnDv];
+        double sourceMissingValue[] = new double[cnDv];
+        for (int cdv = 0; cdv < cnDv; cdv++) {
+            dvResults[cdv] = PrimitiveArray.factory(
+                cDataVariables[cdv].sourceDataTypeClass(), nValues, false);
+            sourceMissingValue[cdv] = cDataVariables[cdv].sourceMissingValue();
+        }
+
+        //step through constraints for combined axis0,
+        //  finding sections in child of constant step size
+        //!!!this is tricky code; think about it!!!
+        IntArray ttConstraints = (IntArray)tConstraints.clone();
+        int start = tConstraints.get(0);
+        int stride = tConstraints.get(1);
+        int stop = tConstraints.get(2);
+        //String2.log("\n***sequence start=" + start + " stride=" + stride + " stop=" + stop);
+        while (start <= stop) {
+            //find first non-NaN
+            while (start <= stop && atIA.array[start] == Integer.MAX_VALUE) {
+                for (int cdv = 0; cdv < cnDv; cdv++) 
+                    dvResults[cdv].addNDoubles(nValues1, sourceMissingValue[cdv]);
+                start += stride;
+            }
+            if (start > stop)
+                break;
+
+            //start value is valid
+            //find as many more valid values as possible with constant stride for the child
+            int cStart = atIA.array[start];
+            int cStride = -1;
+            int po = start + stride;
+            while (po <= stop) { //go until value at po is trouble
+                int at = atIA.array[po];
+                if (at == Integer.MAX_VALUE) {
+                    //String2.log("***sequence stopped because no corresponding av0 value for this child");
+                    break;
+                }
+                if (cStride == -1) {
+                    cStride = at - atIA.array[po - stride];
+                } else if (at - atIA.array[po - stride] != cStride) {
+                    //String2.log("***sequence stopped because stride changed");
+                    break;
+                }
+                po += stride;
+            }
+
+            //get the data
+            if (cStride == -1)
+                cStride = 1;
+            int cStop = atIA.array[po - stride]; //last valid value
+            //String2.log("***sequence subsequence: cStart=" + cStart + " cStride=" + cStride + " cStop=" + cStop);
+            ttConstraints.set(0, cStart);
+            ttConstraints.set(1, cStride);
+            ttConstraints.set(2, cStop);
+            PrimitiveArray[] tResults = childDatasets[cn].getSourceData(
+                cDataVariables, ttConstraints);
+            for (int cdv = 0; cdv < cnDv; cdv++) 
+                dvResults[cdv].append(tResults[nAv + cdv]); 
+
+            //increment start
+            start = po;
+        }
+
+        //dvResults should be properly filled
+        for (int cdv = 0; cdv < cnDv; cdv++) 
+            Test.ensureEqual(dvResults[cdv].size(), nValues, "Data source error in EDDGridSideBySide.getSourceData: " +
+                "dvResults.size != nValues .");
+        return dvResults;
+    }
+
 
 
     /**
@@ -1807,6 +1807,78 @@ public abstract class EDDTable extends EDD {
      */
     public int defaultFileTypeOption() {return defaultFileTypeOption; }
 
+    /**
+     * This returns a canonical form of a userDapQuery (see EDD.normalizeDapQuery).
+     * Here, the constraints are resolved by parseUserDapQuery 
+     * (so, e.g., time&gt;=2018-04-01 and time&gt;=2018-04-01T00:00:00Z are the same)
+     * and sorted. The values of time constraints which use "now" 
+     * (e.g., time&gt;=now-1day) are rounded down to a multiple of 
+     * EDStatic.responseCacheNowSeconds, so repeated requests
+     * (e.g., from a dashboard) share a name for that long.
+     * The order of the results variables isn't changed, since it is the order of the 
+     * variables in the response.
+     * The server-side functions and &amp;.commands (if any) are kept 
+     * (in their original order).
+     *
+     * @param userDapQuery the part of the user's request after the '?', still percentEncoded.
+     * @return the normalized query (decoded)
+     * @throws Throwable if trouble (e.g., an invalid query)
+     */
+    public String normalizeDapQuery(String userDapQuery) throws Throwable {
+        StringArray resultsVariables    = new StringArray();
+        StringArray constraintVariables = new StringArray();
+        StringArray constraintOps       = new StringArray();
+        StringArray constraintValues    = new StringArray();
+        parseUserDapQuery(userDapQuery, resultsVariables,
+            constraintVariables, constraintOps, constraintValues, false); //don't repair
+
+        //each part which isn't a server-side function or .command became one constraint
+        String parts[] = Table.getDapQueryParts(userDapQuery); //decoded
+        StringArray constraints = new StringArray();
+        StringBuilder others = new StringBuilder();
+        int c = 0;
+        for (int p = 1; p < parts.length; p++) {
+            String part = parts[p];
+            if (isServerSideFunction(part)) {
+                others.append("&" + part.trim());
+                continue;
+            }
+            if (c >= constraintVariables.size())
+                throw new SimpleException("Unexpected constraint: " + part);
+            String tName = constraintVariables.get(c);
+            String tOp   = constraintOps.get(c);
+            String tValue = constraintValues.get(c);
+            c++;
+            EDV edv = findDataVariableByDestinationName(tName);
+            if (tOp.equals(PrimitiveArray.REGEX_OP) ||
+                edv.destinationDataTypeClass() == char.class ||
+                edv.destinationDataTypeClass() == String.class) {
+                tValue = String2.toJson(tValue);
+            } else if (edv instanceof EDVTimeStamp) {
+                double d = String2.parseDouble(tValue); //time values are already epochSeconds
+                int po = part.indexOf(tOp);
+                if (po >= 0 &&
+                    part.substring(po + tOp.length()).trim().toLowerCase().startsWith("now")) 
+                    d = Math.floor(d / EDStatic.responseCacheNowSeconds) * 
+                        EDStatic.responseCacheNowSeconds;
+                tValue = "" + d;
+            } else {
+                //keep the text, since "" + double would lose the precision of big longs
+                tValue = tValue.trim();
+            }
+            constraints.add(tName + tOp + tValue);
+        }
+        if (c != constraintVariables.size())
+            throw new SimpleException("Unexpected number of constraints.");
+        constraints.sort();
+
+        StringBuilder sb = new StringBuilder(
+            String2.toSVString(resultsVariables.toArray(), ",", false));
+        for (int i = 0; i < constraints.size(); i++)
+            sb.append("&" + constraints.get(i));
+        sb.append(others);
+        return sb.toString();
+    }
 
     /**
      * This parses a PERCENT ENCODED OPeNDAP DAP-style query.
@@ -3192,7 +3264,7 @@ public abstract class EDDTable extends EDD {
                     tableWriter = twobm;
             } else if (p.startsWith("orderByCount(\"") && p.endsWith("\")")) {
                 TableWriterOrderByCount twobc = new TableWriterOrderByCount(this, tNewHistory, 
-                    dir, fileName, tableWriter, p.substring(14, p.length() - 2));
+                    tableWriter, p.substring(14, p.length() - 2));
                 tableWriter = twobc;
                 //minimal test: ensure orderBy columns are valid column names
                 for (int ob = 0; ob < twobc.orderBy.length; ob++) {
@@ -3203,7 +3275,7 @@ public abstract class EDDTable extends EDD {
             } else if (p.startsWith("orderByLimit(\"") && p.endsWith("\")")) {
                 TableWriterOrderByLimit twobl = 
                     new TableWriterOrderByLimit(this, tNewHistory, 
-                        dir, fileName, tableWriter, p.substring(14, p.length() - 2));
+                        tableWriter, p.substring(14, p.length() - 2));
                 tableWriter = twobl;
                 //minimal test: ensure orderBy columns (except last) are valid column names
                 for (int ob = 0; ob < twobl.orderBy.length; ob++) {
@@ -3214,7 +3286,7 @@ public abstract class EDDTable extends EDD {
                 }
             } else if (p.startsWith("orderByMax(\"") && p.endsWith("\")")) {
                 TableWriterOrderByMax twobm = new TableWriterOrderByMax(this, tNewHistory, 
-                    dir, fileName, tableWriter, p.substring(12, p.length() - 2));
+                    tableWriter, p.substring(12, p.length() - 2));
                 tableWriter = twobm;
                 //minimal test: ensure orderBy columns are valid column names
                 for (int ob = 0; ob < twobm.orderBy.length; ob++) {
@@ -3224,7 +3296,7 @@ public abstract class EDDTable extends EDD {
                 }
             } else if (p.startsWith("orderByMin(\"") && p.endsWith("\")")) {
                 TableWriterOrderByMin twobm = new TableWriterOrderByMin(this, tNewHistory, 
-                    dir, fileName, tableWriter, p.substring(12, p.length() - 2));
+                    tableWriter, p.substring(12, p.length() - 2));
                 tableWriter = twobm;
                 //minimal test: ensure orderBy columns are valid column names
                 for (int ob = 0; ob < twobm.orderBy.length; ob++) {
@@ -3234,7 +3306,7 @@ public abstract class EDDTable extends EDD {
                 }
             } else if (p.startsWith("orderByMinMax(\"") && p.endsWith("\")")) {
                 TableWriterOrderByMinMax twobm = new TableWriterOrderByMinMax(
-                    this, tNewHistory, dir, fileName, tableWriter, 
+                    this, tNewHistory, tableWriter, 
                     p.substring(15, p.length() - 2));
                 tableWriter = twobm;
                 //minimal test: ensure orderBy columns are valid column names
@@ -11479,14 +11551,9 @@ public abstract class EDDTable extends EDD {
 
                 //convert EDVTimeStamp ISO Strings to epochSeconds
                 EDV edv = findDataVariableByDestinationName(tSubsetVars[col]);
-                if (edv instanceof EDVTimeStamp) {
-                    PrimitiveArray oldPa = table.getColumn(col);
-                    int nRows = oldPa.size();
-                    DoubleArray newPa = new DoubleArray(nRows, false);
-                    for (int row = 0; row < nRows; row++)
-                        newPa.add(Calendar2.safeIsoStringToEpochSeconds(oldPa.getString(row)));
-                    table.setColumn(col, newPa);
-                }
+                if (edv instanceof EDVTimeStamp) 
+                    table.setColumn(col, 
+                        Calendar2.safeIsoStringsToEpochSeconds(table.getColumn(col), null));
             }
             //remove excess columns
             table.removeColumns(tSubsetVars.length, table.nColumns());
@@ -11507,12 +11574,8 @@ public abstract class EDDTable extends EDD {
                 EDV edv = findDataVariableByDestinationName(tSubsetVars[col]);
                 Class destClass = edv.destinationDataTypeClass();
                 if (edv instanceof EDVTimeStamp) {
-                    PrimitiveArray oldPa = table.getColumn(col);
-                    int nRows = oldPa.size();
-                    DoubleArray newPa = new DoubleArray(nRows, false);
-                    for (int row = 0; row < nRows; row++)
-                        newPa.add(Calendar2.safeIsoStringToEpochSeconds(oldPa.getString(row)));
-                    table.setColumn(col, newPa);
+                    table.setColumn(col, 
+                        Calendar2.safeIsoStringsToEpochSeconds(table.getColumn(col), null));
                 } else if (destClass != String.class) {
                     PrimitiveArray newPa = PrimitiveArray.factory(destClass, 1, false);
                     newPa.append(table.getColumn(col));
@@ -20777,9 +20840,97 @@ writer.write(
     }
 
 
+    /**
+     * This tests normalizeDapQuery and canonicalDapQuery
+     * (which determine the names of cached responses).
+     */
+    public static void testNormalizeDapQuery() throws Throwable {
+        String2.log("\n*** EDDTable.testNormalizeDapQuery()");
+        EDDTable tedd = (EDDTable)oneFromDatasetsXml(null, "erdGlobecBottle"); 
+        String results, expected;
+
+        //the order of the constraints doesn't matter
+        expected = "longitude,latitude,time&latitude<44&time>=1.029744E9";
+        Test.ensureEqual(tedd.normalizeDapQuery(
+            "longitude,latitude,time&time>=2002-08-19T08:00:00Z&latitude<44"), expected, "");
+        Test.ensureEqual(tedd.normalizeDapQuery(
+            "longitude,latitude,time&latitude<44&time>=2002-08-19T08:00:00Z"), expected, "");
+
+        //nor does percent encoding, whitespace, or the format of the time
+        Test.ensureEqual(tedd.normalizeDapQuery(
+            "longitude,latitude,time&latitude%3C44%20&time%3E=2002-08-19T08:00:00"), expected, "");
+        Test.ensureEqual(tedd.normalizeDapQuery(
+            "longitude,latitude,time&time>=1029744000&latitude<44"), expected, "");
+
+        //but the order of the results variables does
+        Test.ensureEqual(tedd.normalizeDapQuery(
+            "time,latitude,longitude&time>=2002-08-19T08:00:00Z&latitude<44"), 
+            "time,latitude,longitude&latitude<44&time>=1.029744E9", "");
+
+        //numeric values are kept as text (so the precision of big longs isn't lost)
+        Test.ensureEqual(tedd.normalizeDapQuery(
+            "longitude&latitude>=33.12345678901234567&cast=9007199254740993"), 
+            "longitude&cast=9007199254740993&latitude>=33.12345678901234567", "");
+
+        //String values are written as JSON strings
+        Test.ensureEqual(tedd.normalizeDapQuery(
+            "ship,cast&ship=\"New_Horizon\"&cast>=2"), 
+            "ship,cast&cast>=2&ship=\"New_Horizon\"", "");
+
+        //server-side functions and .commands are put at the end, in their original order
+        Test.ensureEqual(tedd.normalizeDapQuery(
+            "longitude,latitude,time&orderBy(\"time\")&latitude<44&distinct()" +
+            "&.draw=markers&time>=2002-08-19T08:00:00Z&.marker=1|5"), 
+            expected + "&orderBy(\"time\")&distinct()&.draw=markers&.marker=1|5", "");
+        Test.ensureEqual(tedd.normalizeDapQuery(
+            "longitude,latitude,time&distinct()&latitude<44&orderBy(\"time\")" +
+            "&.marker=1|5&time>=2002-08-19T08:00:00Z&.draw=markers"), 
+            expected + "&distinct()&orderBy(\"time\")&.marker=1|5&.draw=markers", "");
+
+        //now is rounded down to a multiple of responseCacheNowSeconds
+        double nowSec = EDStatic.responseCacheNowSeconds;
+        double before = System.currentTimeMillis() / 1000.0 - Calendar2.SECONDS_PER_DAY;
+        results = tedd.normalizeDapQuery("time&time>=now-1day");
+        double after = System.currentTimeMillis() / 1000.0 - Calendar2.SECONDS_PER_DAY;
+        Test.ensureTrue(results.startsWith("time&time>="), "results=" + results);
+        double d = String2.parseDouble(results.substring(11));
+        Test.ensureEqual(d % nowSec, 0, "results=" + results);
+        Test.ensureTrue(d > before - nowSec - 1 && d <= after, 
+            "results=" + results + " before=" + before + " after=" + after);
+
+        //invalid queries throw exceptions
+        try {
+            results = tedd.normalizeDapQuery("longitude&zztop>3");
+            throw new SimpleException("Shouldn't get here.");
+        } catch (Throwable t) {
+            Test.ensureTrue(t.toString().indexOf("zztop") >= 0, "t=" + t.toString()); 
+        }
+
+        //canonicalDapQuery only normalizes if the responseCache is active
+        ResponseCache oResponseCache = EDStatic.responseCache;
+        try {
+            EDStatic.responseCache = null;
+            Test.ensureEqual(tedd.canonicalDapQuery(
+                "longitude,latitude,time&time>=2002-08-19T08:00:00Z&latitude%3C44"), 
+                "longitude,latitude,time&time>=2002-08-19T08:00:00Z&latitude<44", "");
+
+            EDStatic.responseCache = new ResponseCache(1, 60000);
+            Test.ensureEqual(tedd.canonicalDapQuery(
+                "longitude,latitude,time&time>=2002-08-19T08:00:00Z&latitude%3C44"), 
+                expected, "");
+            //if invalid, the decoded query
+            Test.ensureEqual(tedd.canonicalDapQuery("longitude&zztop%3E3"), 
+                "longitude&zztop>3", "");
+        } finally {
+            EDStatic.responseCache = oResponseCache;
+        }
+    }
+
     /** This tests some EDDTable-specific things. */
     public static void test() throws Throwable {
 
+        testNormalizeDapQuery();
+
         //tests of ERDDAP's SOS server are disabled
         //testSosGomoos();
         //testSosNdbcMet();
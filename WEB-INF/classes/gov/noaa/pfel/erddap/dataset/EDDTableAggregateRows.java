@@ -20,11 +20,13 @@ import com.cohort.util.Test;
 
 import gov.noaa.pfel.coastwatch.griddata.NcHelper;
 import gov.noaa.pfel.coastwatch.pointdata.Table;
+import gov.noaa.pfel.coastwatch.util.RegexFilenameFilter;
 import gov.noaa.pfel.coastwatch.util.SimpleXMLReader;
 
 import gov.noaa.pfel.erddap.DasDds;
 import gov.noaa.pfel.erddap.Erddap;
 import gov.noaa.pfel.erddap.util.EDStatic;
+import gov.noaa.pfel.erddap.util.ThreadedWorkManager;
 import gov.noaa.pfel.erddap.variable.*;
 
 import java.io.ByteArrayInputStream;
@@ -52,6 +54,10 @@ public class EDDTableAggregateRows extends EDDTable{
     private Erddap erddap; 
     private String localChildrenID[]; //[c] is null if NOT local fromErddap
 
+    /** The maximum number of children which are asked for data at once 
+     * (1, the default, means ask them one at a time). */
+    protected int nThreads = 1;
+
     /**
      * This constructs an EDDTableAggregateRows based on the information in an .xml file.
      * 
@@ -80,6 +86,7 @@ public class EDDTableAggregateRows extends EDDTable{
         int tUpdateEveryNMillis = 0;
         String tDefaultDataQuery = null;
         String tDefaultGraphQuery = null;
+        int tNThreads = 1; //ask the children one at a time
 
         //process the tags
         String startOfTags = xmlReader.allTags();
@@ -136,6 +143,8 @@ public class EDDTableAggregateRows extends EDDTable{
             else if (localTags.equals("</defaultDataQuery>")) tDefaultDataQuery = content; 
             else if (localTags.equals( "<defaultGraphQuery>")) {}
             else if (localTags.equals("</defaultGraphQuery>")) tDefaultGraphQuery = content; 
+            else if (localTags.equals( "<nThreads>")) {}
+            else if (localTags.equals("</nThreads>")) tNThreads = String2.parseInt(content); 
             else if (localTags.equals("<addAttributes>")) {
                 tAddGlobalAttributes = getAttributesFromXml(xmlReader);
             } else {
@@ -152,13 +161,17 @@ public class EDDTableAggregateRows extends EDDTable{
             tAccessibleTo, tGraphsAccessibleTo,
             tOnChange, tFgdcFile, tIso19115File, tSosOfferingPrefix,
             tDefaultDataQuery, tDefaultGraphQuery, tAddGlobalAttributes,
-            tReloadEveryNMinutes, tUpdateEveryNMillis, 
+            tReloadEveryNMinutes, tUpdateEveryNMillis, tNThreads,
             ttChildren);
     }
 
     /**
      * The constructor.
      *
+     * @param tNThreads the maximum number of children which are asked
+     *    for data at once (for each data request).
+     *    Use 1 (or any value &lt;1) to ask the children one at a time 
+     *    in the request's thread.
      * @throws Throwable if trouble
      */
     public EDDTableAggregateRows(Erddap tErddap, String tDatasetID, 
@@ -167,7 +180,7 @@ public class EDDTableAggregateRows extends EDDTable{
         String tSosOfferingPrefix,
         String tDefaultDataQuery, String tDefaultGraphQuery,
         Attributes tAddGlobalAttributes,
-        int tReloadEveryNMinutes, int tUpdateEveryNMillis, 
+        int tReloadEveryNMinutes, int tUpdateEveryNMillis, int tNThreads,
         EDDTable oChildren[]) throws Throwable {
 
         if (verbose) String2.log(
@@ -245,6 +258,7 @@ public class EDDTableAggregateRows extends EDDTable{
         defaultGraphQuery = tDefaultGraphQuery;
         setReloadEveryNMinutes(tReloadEveryNMinutes);
         setUpdateEveryNMillis(tUpdateEveryNMillis); 
+        nThreads = tNThreads == Integer.MAX_VALUE? 1 : Math.max(1, tNThreads); //MAX_VALUE is parseInt's missing value
 
         //get most info from child0
         EDDTable child0 = tChildren[0];
@@ -468,6 +482,53 @@ public class EDDTableAggregateRows extends EDDTable{
     }
 
 
+    /**
+     * This gets the data from child c in a TableWriterAll
+     * (for a workManager task in getDataForDapQuery).
+     *
+     * @param c the child's number
+     * @param requestUrl see getDataForDapQuery
+     * @param userDapQuery see getDataForDapQuery
+     * @param running the TableWriterAll's which children are writing to. 
+     *    Synchronize on this.
+     * @param finished the TableWriterAll's which haven't been used yet.
+     * @param stopped stopped[0] is true if the request doesn't need more data
+     * @return the TableWriterAll (which is also added to finished),
+     *    or null if the request was stopped.
+     * @throws Exception if trouble (notably, MustBe.THERE_IS_NO_DATA)
+     */
+    private TableWriterAll getChildDataInTwa(int c, String requestUrl, String userDapQuery,
+        ArrayList<TableWriterAll> running, ArrayList<TableWriterAll> finished, 
+        boolean stopped[]) throws Exception {
+
+        TableWriterAll twa = new TableWriterAll(null, null, cacheDirectory(), 
+            "aggregateRows" + c);
+        synchronized (running) {
+            if (stopped[0])
+                return null;
+            running.add(twa);
+        }
+        Throwable caught = null;
+        try {
+            getChild(c).getDataForDapQuery(EDStatic.loggedInAsSuperuser, 
+                requestUrl, userDapQuery, twa); 
+        } catch (Throwable t) {
+            caught = t;
+        }
+        synchronized (running) {
+            running.remove(twa);
+            if (caught == null && !stopped[0]) {
+                finished.add(twa);
+                return twa;
+            }
+        }
+        twa.releaseResources();
+        if (caught != null)
+            throw ThreadedWorkManager.rethrow(caught);
+        return null;
+    }
+
+
    /** 
      * This gets the data (chunk by chunk) from this EDDTable for the 
      * OPeNDAP DAP-style query and writes it to the TableWriter. 
@@ -485,30 +546,88 @@ public class EDDTableAggregateRows extends EDDTable{
         //tableWriter
         tableWriter.ignoreFinish = true;
 
-        //pass the request to each child, and accumulate the results
-        for (int c = 0; c < nChildren; c++) {
-            try {
-                //get data from this child. It's nice that:
-                //* each child can parse and handle parts its own way
-                //  e.g., sourceCanConstrainStringData
-                //* each child handles standardizeResultsTable and applies constraints.
-                //* each child has the same destination names and units for the same vars.
-                //* this will call tableWriter.finish(), but it will be ignored
-                getChild(c).getDataForDapQuery(EDStatic.loggedInAsSuperuser, 
-                    requestUrl, userDapQuery, tableWriter); 
-
-                //no more data?
-                if (tableWriter.noMoreDataPlease)
-                    break;
-
-            } catch (Throwable t) {
-                //no results is okay
-                String msg = t.toString();
-                if (msg.indexOf(MustBe.THERE_IS_NO_DATA) >= 0)
-                    continue;
-
-                //rethrow, including WaitThenTryAgainException
-                throw t;
+        //If nThreads > 1, while child 0's data is being written to tableWriter,
+        //  the next children (up to nThreads-1 at once) write their data to 
+        //  TableWriterAll's, which are then written to tableWriter in order
+        //  (in chunks, see TableWriterAll.writeSomeTo). 
+        //  So the time is ~ the slowest child's time, not the sum of the children's times.
+        int tNThreads = Math.min(nChildren - 1, nThreads - 1);
+        ThreadedWorkManager<TableWriterAll> workManager = null;
+        if (tNThreads >= 1) {
+            if (reallyVerbose) String2.log("  EDDTableAggregateRows.getDataForDapQuery " + 
+                datasetID + " is asking " + nChildren + " children for data with nThreads=" + 
+                (tNThreads + 1));
+            workManager = new ThreadedWorkManager(datasetID, tNThreads);
+        }
+        //the TableWriterAll's which children are writing to (running) and the 
+        //ones which haven't been written to tableWriter yet (finished).
+        //Synchronize on running.
+        final ArrayList<TableWriterAll> running = new ArrayList();
+        final ArrayList<TableWriterAll> finished = new ArrayList();
+        final boolean stopped[] = {false};
+        try {
+            //pass the request to each child, and accumulate the results
+            int nAdded = 1; //the next child to be given to the workManager
+            for (int c = 0; c < nChildren; c++) {
+                //keep the next tNThreads children working 
+                //(not all of them, in case of noMoreDataPlease)
+                while (workManager != null && nAdded < nChildren && nAdded <= c + tNThreads) {
+                    final int fc = nAdded++;
+                    workManager.addTask(() -> getChildDataInTwa(fc, requestUrl, 
+                        userDapQuery, running, finished, stopped));
+                }
+
+                try {
+                    //get data from this child. It's nice that:
+                    //* each child can parse and handle parts its own way
+                    //  e.g., sourceCanConstrainStringData
+                    //* each child handles standardizeResultsTable and applies constraints.
+                    //* each child has the same destination names and units for the same vars.
+                    //* this will call tableWriter.finish(), but it will be ignored
+                    if (c == 0 || workManager == null) {
+                        getChild(c).getDataForDapQuery(EDStatic.loggedInAsSuperuser, 
+                            requestUrl, userDapQuery, tableWriter); 
+                    } else {
+                        //the results from a workManager task (in order)
+                        TableWriterAll twa = workManager.next();
+                        synchronized (running) {
+                            finished.remove(twa);
+                        }
+                        try {
+                            twa.writeSomeTo(tableWriter);
+                        } finally {
+                            twa.releaseResources();
+                        }
+                    }
+
+                    //no more data?
+                    if (tableWriter.noMoreDataPlease)
+                        break;
+
+                } catch (Throwable t) {
+                    //no results is okay
+                    String msg = t.toString();
+                    if (msg.indexOf(MustBe.THERE_IS_NO_DATA) >= 0)
+                        continue;
+
+                    //rethrow, including WaitThenTryAgainException
+                    throw t;
+                }
+            }
+        } finally {
+            if (workManager != null) {
+                //e.g., after noMoreDataPlease or an exception:
+                //tell the children which are still working to stop,
+                //and release the results which won't be used
+                synchronized (running) {
+                    stopped[0] = true;
+                    for (TableWriterAll twa : running)
+                        twa.noMoreDataPlease = true;
+                    for (TableWriterAll twa : finished)
+                        twa.releaseResources();
+                    finished.clear();
+                }
+                workManager.forceShutdown();
             }
         }
 
@@ -890,6 +1009,49 @@ expected =
 
 
      
+    /**
+     * This tests that asking the children concurrently (nThreads &gt; 1) 
+     * gets the same results as asking them one at a time, with the children's
+     * data in memory or in TableWriterAll's temporary files,
+     * and that no temporary files are left behind.
+     */
+    public static void testThreads() throws Throwable {
+        String2.log("\nEDDTableAggregateRows.testThreads()");
+        testVerboseOn();
+        String id = "miniNdbc410";
+        EDDTableAggregateRows tedd = (EDDTableAggregateRows)oneFromDatasetsXml(null, id);
+        String dir = EDStatic.fullTestCacheDirectory;
+        String query = "&time>=2014-01-01&time<=2014-01-02";
+        long oMaxMemoryBytes = TableWriterAll.maxMemoryBytes;
+        int oNThreads = tedd.nThreads;
+        try {
+            String expected = null;
+            for (int nThreads = 1; nThreads <= 3; nThreads += 2) {
+                for (int spill = 0; spill < 2; spill++) {
+                    String msg = "nThreads=" + nThreads + " spill=" + spill;
+                    tedd.nThreads = nThreads;
+                    TableWriterAll.maxMemoryBytes = spill == 1? 0 : oMaxMemoryBytes;
+                    String tName = tedd.makeNewFileForDapQuery(null, null, query, dir, 
+                        tedd.className() + "threads" + nThreads + "_" + spill, ".csv"); 
+                    String results = String2.directReadFrom88591File(dir + tName);
+                    if (expected == null) {
+                        expected = results;
+                        Test.ensureTrue(results.indexOf("41033,4103.0") > 0, 
+                            msg + "\nresults=\n" + results);
+                    } else {
+                        Test.ensureEqual(results, expected, msg);
+                    }
+                    Test.ensureEqual(RegexFilenameFilter.list(tedd.cacheDirectory(), 
+                        "aggregateRows.*").length, 0, msg);
+                }
+            }
+        } finally {
+            TableWriterAll.maxMemoryBytes = oMaxMemoryBytes;
+            tedd.nThreads = oNThreads;
+        }
+        String2.log("\n*** EDDTableAggregateRows.testThreads finished successfully.");
+    }
+
     /**
      * This tests the methods in this class.
      *
@@ -902,6 +1064,7 @@ expected =
 /* for releases, this line should have open/close comment */
         //always done        
         testBasic();
+        testThreads();
     }
 
 }
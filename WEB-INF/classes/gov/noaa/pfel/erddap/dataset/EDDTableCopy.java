@@ -344,7 +344,7 @@ public class EDDTableCopy extends EDDTable{
                         taskOA[3] = fileDir.toString(); //string, not StringBuilder
                         taskOA[4] = fileName;
                         taskOA[5] = ".nc";
-                        int tTaskNumber = EDStatic.addTask(taskOA);
+                        int tTaskNumber = EDStatic.addTask(datasetID, taskOA);
                         if (tTaskNumber >= 0) {
                             taskNumber = tTaskNumber;
                             if (reallyVerbose)
@@ -532,7 +532,8 @@ public class EDDTableCopy extends EDDTable{
             tSortedColumnSourceName, tSortFilesBySourceNames,
             tSourceNeedsExpandedFP_EQ, tFileTableInMemory, 
             false, //accessibleViaFiles is always false. parent may or may not be.  
-            false); //removeMVrows is irrelevant for EDDTableFromNcFiles
+            false, //removeMVrows is irrelevant for EDDTableFromNcFiles
+            -1); //nThreads: use EDStatic.nTableThreads
     }
 
 
@@ -215,7 +215,8 @@ public class EDDTableCopyPost extends EDDTableCopy {
             tSortedColumnSourceName, tSortFilesBySourceNames, tSourceNeedsExpandedFP_EQ,
             tFileTableInMemory, 
             false, //accessibleViaFiles is always false. parent may or may not be.  
-            tRemoveMVRows);
+            tRemoveMVRows,
+            -1); //nThreads: use EDStatic.nTableThreads
     }
 
     /**
@@ -232,12 +233,8 @@ public class EDDTableCopyPost extends EDDTableCopy {
      */
     public String suggestFileName(String loggedInAs, String userDapQuery, String fileTypeName) {
 
-        //decode userDapQuery to a canonical form to avoid slight differences in percent-encoding 
-        try {
-            userDapQuery = SSR.percentDecode(userDapQuery);
-        } catch (Exception e) {
-            //shouldn't happen
-        }
+        //convert userDapQuery to a canonical form so equivalent queries get the same name
+        userDapQuery = canonicalDapQuery(userDapQuery);
 
         //include fileTypeName in hash so, e.g., different sized .png 
         //  have different file names
@@ -83,7 +83,7 @@ public class EDDTableFromAsciiFiles extends EDDTableFromFiles {
         String tSortedColumnSourceName, String tSortFilesBySourceNames,
         boolean tSourceNeedsExpandedFP_EQ, 
         boolean tFileTableInMemory, boolean tAccessibleViaFiles,
-        boolean tRemoveMVRows) 
+        boolean tRemoveMVRows, int tNThreads) 
         throws Throwable {
 
         super("EDDTableFromAsciiFiles", tDatasetID, 
@@ -97,7 +97,7 @@ public class EDDTableFromAsciiFiles extends EDDTableFromFiles {
             tPreExtractRegex, tPostExtractRegex, tExtractRegex, tColumnNameForExtract,
             tSortedColumnSourceName, tSortFilesBySourceNames,
             tSourceNeedsExpandedFP_EQ, 
-            tFileTableInMemory, tAccessibleViaFiles, tRemoveMVRows);
+            tFileTableInMemory, tAccessibleViaFiles, tRemoveMVRows, tNThreads);
     }
 
     /** The constructor for subclasses. */
@@ -116,7 +116,7 @@ public class EDDTableFromAsciiFiles extends EDDTableFromFiles {
         String tSortedColumnSourceName, String tSortFilesBySourceNames,
         boolean tSourceNeedsExpandedFP_EQ, 
         boolean tFileTableInMemory, boolean tAccessibleViaFiles,
-        boolean tRemoveMVRows) 
+        boolean tRemoveMVRows, int tNThreads) 
         throws Throwable {
 
         super(tClassName, tDatasetID, tAccessibleTo, tGraphsAccessibleTo, 
@@ -131,7 +131,7 @@ public class EDDTableFromAsciiFiles extends EDDTableFromFiles {
             tSortedColumnSourceName, tSortFilesBySourceNames,
             tSourceNeedsExpandedFP_EQ, 
             tFileTableInMemory, tAccessibleViaFiles,
-            tRemoveMVRows);
+            tRemoveMVRows, tNThreads);
 
     }
 
@@ -153,13 +153,35 @@ public class EDDTableFromAsciiFiles extends EDDTableFromFiles {
             //Just return an empty table. There is never any metadata.
             return Table.makeEmptyTable(sourceDataNames.toArray(), sourceDataTypes);
 
+        //numeric columns are parsed directly into columns of the desired type.
+        //boolean and char columns are read as Strings, then converted below.
+        int nLoad = sourceDataNames.size();
+        Class loadClasses[] = new Class[nLoad];
+        for (int sd = 0; sd < nLoad; sd++) {
+            String tType = sourceDataTypes[sd];
+            loadClasses[sd] = tType.equals("boolean") || tType.equals("char")? String.class :
+                PrimitiveArray.elementStringToClass(tType);
+        }
+
+        //if possible, just keep the rows with the desired sorted values (source values)
+        String testColumns[] = null;
+        double testMin[] = null, testMax[] = null;
+        int sortedSD = sourceDataNames.indexOf(sortedColumnSourceName);
+        if (sortedSpacing >= 0 && !Double.isNaN(minSorted) && sortedSD >= 0 &&
+            loadClasses[sortedSD] != String.class) {
+            testColumns = new String[]{sortedColumnSourceName};
+            testMin     = new double[]{minSorted};
+            testMax     = new double[]{maxSorted};
+        }
+
         Table table = new Table();
         table.allowRaggedRightInReadASCII = true;
         table.readASCII(fileDir + fileName, 
             charset, columnNamesRow - 1, firstDataRow - 1, columnSeparator, 
-            null, null, null, //testColumns, testMin, testMax,
+            testColumns, testMin, testMax, 
             sourceDataNames.toArray(), //loadColumns, 
-            false); //don't simplify; just get the strings
+            loadClasses, 
+            false); //don't simplify
 
         //convert to desired sourceDataTypes
         int nCols = table.nColumns();
@@ -168,7 +190,8 @@ public class EDDTableFromAsciiFiles extends EDDTableFromFiles {
             if (sd >= 0) {
                 PrimitiveArray pa = table.getColumn(tc);
                 String tType = sourceDataTypes[sd];
-                if (tType.equals("String")) { //do nothing
+                if (tType.equals("String") || loadClasses[sd] != String.class) { 
+                    //do nothing (it is already the right type)
                 } else if (tType.equals("boolean")) {
                     table.setColumn(tc, ByteArray.toBooleanToByte(pa));
                 } else { 
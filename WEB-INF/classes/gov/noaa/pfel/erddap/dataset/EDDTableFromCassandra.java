@@ -223,6 +223,7 @@ import gov.noaa.pfel.erddap.variable.*;
 //  https://github.com/datastax/java-driver/tree/3.0/upgrade_guide
 import com.datastax.driver.core.*;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.concurrent.ConcurrentHashMap;
@@ -230,6 +231,13 @@ import java.util.Date;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
 //import java.util.Properties;
 
 /** 
@@ -262,6 +270,7 @@ public class EDDTableFromCassandra extends EDDTable{
     protected HashSet clusterColumnSourceNames;
     protected HashSet indexColumnSourceNames;
     protected double maxRequestFraction = 1; //>0..1; 1 until subsetVarTable has been made
+    protected int partitionQueriesInFlight = 1; //1=one query at a time, >1=pipelined async queries
     protected String partitionKeyRelatedVariables; //CSSV for error message
     protected EDV rvToResultsEDV[]; //needed in expandPartitionKeyCSV
     protected String partitionKeyCSV; //null or csv before expansion
@@ -318,6 +327,7 @@ public class EDDTableFromCassandra extends EDDTable{
         String tClusterColumnSourceNames = null;
         String tIndexColumnSourceNames = null;
         double tMaxRequestFraction = 1;
+        int tPartitionQueriesInFlight = 1;
         String tColumnNameQuotes = ""; //default
         StringArray tConnectionProperties = new StringArray();
         boolean tSourceNeedsExpandedFP_EQ = true;
@@ -365,6 +375,8 @@ public class EDDTableFromCassandra extends EDDTable{
             else if (localTags.equals("</indexColumnSourceNames>")) tIndexColumnSourceNames = content; 
             else if (localTags.equals( "<maxRequestFraction>")) {}
             else if (localTags.equals("</maxRequestFraction>")) tMaxRequestFraction = String2.parseDouble(content); 
+            else if (localTags.equals( "<partitionQueriesInFlight>")) {}
+            else if (localTags.equals("</partitionQueriesInFlight>")) tPartitionQueriesInFlight = String2.parseInt(content); 
             else if (localTags.equals( "<columnNameQuotes>")) {}
             else if (localTags.equals("</columnNameQuotes>")) tColumnNameQuotes = content; 
             else if (localTags.equals( "<partitionKeyCSV>")) {}
@@ -405,7 +417,7 @@ public class EDDTableFromCassandra extends EDDTable{
                 tIndexColumnSourceNames,
                 tPartitionKeyCSV,
                 tMaxRequestFraction, tColumnNameQuotes,
-                tSourceNeedsExpandedFP_EQ);
+                tSourceNeedsExpandedFP_EQ, tPartitionQueriesInFlight);
     }
 
 
@@ -414,6 +426,9 @@ public class EDDTableFromCassandra extends EDDTable{
      * The constructor. See general documentation in EDDTable.java and 
      * specific documentation in setupDatasetsXml.html.
      * 
+     * @param tPartitionQueriesInFlight the maximum number of partition queries
+     *   which are sent to Cassandra at once (1..100, invalid values are changed to 1).
+     *   1 (the default) sends one query at a time. 
      * @throws Throwable if trouble
      */
     public EDDTableFromCassandra(String tDatasetID, 
@@ -430,7 +445,7 @@ public class EDDTableFromCassandra extends EDDTable{
         String tIndexColumnSourceNames,
         String tPartitionKeyCSV,
         double tMaxRequestFraction, String tColumnNameQuotes,
-        boolean tSourceNeedsExpandedFP_EQ
+        boolean tSourceNeedsExpandedFP_EQ, int tPartitionQueriesInFlight
         ) throws Throwable {
 
         if (verbose) String2.log(
@@ -523,6 +538,9 @@ public class EDDTableFromCassandra extends EDDTable{
         Test.ensureBetween(tMaxRequestFraction, 
             1e-10, 1, "Invalid maxRequestFraction");
 
+        partitionQueriesInFlight = tPartitionQueriesInFlight == Integer.MAX_VALUE? 1 :
+            Math2.minMax(1, 100, tPartitionQueriesInFlight);
+
         columnNameQuotes = tColumnNameQuotes;
         Test.ensureTrue(
             "\"".equals(columnNameQuotes) ||
@@ -1261,85 +1279,37 @@ public class EDDTableFromCassandra extends EDDTable{
         //make a call to Cassandra for each row in pkdTable 
         //(each relevant distinct combination of partitionKey values)
         int stats[] = new int[4]; //all 0's
-        for (int pkdRow = 0; pkdRow < pkdTableNRows; pkdRow++) { //chunks will be in sorted order, yea!
-
-            if (Thread.currentThread().isInterrupted())
-                throw new SimpleException("EDDTableFromCassandra.getDataForDapQuery" + 
-                    EDStatic.caughtInterrupted);
-        
-            //Make the BoundStatement
-            //***!!! This method avoids CQL/SQL Injection Vulnerability !!!***
-            //(see https://en.wikipedia.org/wiki/SQL_injection) by using
-            //preparedStatements (so String values are properly escaped and
-            //numbers are assured to be numbers).
-            //*** Plus, the statement is reused many times (so Prepared is recommended).
-            BoundStatement boundStatement = new BoundStatement(preparedStatement);
-
-            //assign values to nPartitionKeys constraints then nCon constraints
-            StringBuilder requestSB = reallyVerbose? 
-                new StringBuilder(">> statement: pkdRow=" + pkdRow + ", ") : 
-                null;
-            for (int i = 0; i < nPartitionKeys + nCon; i++) { 
-                boolean usePK = i < nPartitionKeys;
-                int coni = i - nPartitionKeys; //which con to use: only used if not !usePK
-
-                EDV edv = usePK? partitionKeyEDV[i] : conEDV[coni];
-                PrimitiveArray pa = usePK? pkdPA[i] : null;
-                Class tClass = edv.sourceDataTypeClass();
-                String conVal = usePK? null : constraintValues.get(coni);
-                if (requestSB != null)
-                    requestSB.append(edv.sourceName() + " is " + 
-                        (usePK? pa.getDouble(pkdRow) : conVal) + ", ");
-
-                //handle special cases first
-                if (edv instanceof EDVTimeStamp) {
-                    boundStatement.setTimestamp(i, //partition key value won't be nan/null                
-                        new Date(Math.round(
-                            (usePK? pa.getDouble(pkdRow) : String2.parseDouble(conVal)) 
-                            * 1000))); //round to nearest milli
-
-                } else if (edv.isBoolean()) {
-                    boundStatement.setBool(i, 
-                        (usePK? pa.getInt(pkdRow) == 1 : String2.parseBoolean(conVal)));
-                } else if (tClass == double.class) {
-                    boundStatement.setDouble(i, 
-                        (usePK? pa.getDouble(pkdRow) : String2.parseDouble(conVal)));
-                } else if (tClass == float.class) {
-                    boundStatement.setFloat(i, 
-                        (usePK? pa.getFloat(pkdRow) : String2.parseFloat(conVal)));
-                } else if (tClass == int.class ||    
-                         tClass == short.class || 
-                         tClass == byte.class) {
-                    boundStatement.setInt(i, 
-                        (usePK? pa.getInt(pkdRow) : String2.parseInt(conVal))); 
-                } else {
-                    String val = usePK? pa.getString(pkdRow) : conVal;
-                    if (tClass == String.class)   
-                        boundStatement.setString(i, val);
-                    else if (tClass == long.class)
-                        boundStatement.setLong(  i, String2.parseLong(val));
-                    else if (tClass == char.class)
-                        boundStatement.setString(i, 
-                            val.length() == 0? "\u0000" : val.substring(0, 1)); //FFFF??? 
-                    else throw new RuntimeException(
-                        "Unexpected dataType=" + edv.sourceDataType() + 
-                        "for var=" + edv.destinationName() + ".");            
-                }
+        if (partitionQueriesInFlight <= 1) {
+            for (int pkdRow = 0; pkdRow < pkdTableNRows; pkdRow++) { //chunks will be in sorted order, yea!
+
+                if (Thread.currentThread().isInterrupted())
+                    throw new SimpleException("EDDTableFromCassandra.getDataForDapQuery" + 
+                        EDStatic.caughtInterrupted);
+
+                //get the data
+                table = getDataForCassandraQuery(loggedInAs, requestUrl, userDapQuery,
+                    resultsDVI, rvToResultsEDV, session, 
+                    makeBoundStatement(preparedStatement, pkdRow, pkdPA, 
+                        conEDV, constraintValues), 
+                    table, tableWriter, stats);
+                if (tableWriter.noMoreDataPlease) 
+                    break;
             }
-            //boundStatement.toString() is useless
-            if (requestSB != null)
-                String2.log(requestSB.toString());
-
-            //get the data
-            //FUTURE: I think this could be parallelized.
-            //It is likely "easy" with a CompletableFuture option. See
-            //http://www.nurkiewicz.com/2013/05/java-8-definitive-guide-to.html
-            //http://www.vogella.com/tutorials/JavaConcurrency/article.html#threads-pools-with-the-executor-framework
-            table = getDataForCassandraQuery(loggedInAs, requestUrl, userDapQuery,
-                resultsDVI, rvToResultsEDV, session, boundStatement, 
-                table, tableWriter, stats);
-            if (tableWriter.noMoreDataPlease) 
-                break;
+        } else {
+            //up to partitionQueriesInFlight queries are sent asynchronously 
+            //(they are executed at the same time), but the results
+            //are still processed in pkdRow order (so chunks are in sorted order).
+            final PreparedStatement tPreparedStatement = preparedStatement;
+            final Table tTable[] = {table};
+            pipelineQueries(pkdTableNRows, partitionQueriesInFlight,
+                pkdRow -> session.executeAsync(makeBoundStatement(tPreparedStatement, 
+                    pkdRow, pkdPA, conEDV, constraintValues)),
+                rs -> {
+                    tTable[0] = getDataFromResultSet(loggedInAs, requestUrl, userDapQuery,
+                        resultsDVI, rvToResultsEDV, rs, tTable[0], tableWriter, stats);
+                    return !tableWriter.noMoreDataPlease;
+                });
+            table = tTable[0];
         }
 
         //write any data remaining in table
@@ -1363,6 +1333,156 @@ public class EDDTableFromCassandra extends EDDTable{
     }
 
 
+    /** 
+     * This processes the result of one of the queries sent by pipelineQueries.
+     */
+    protected interface QueryResultProcessor<R> {
+        /**
+         * @param result the result of a query
+         * @return true if more results are wanted
+         * @throws Throwable if trouble
+         */
+        boolean process(R result) throws Throwable;
+    }
+
+    /** 
+     * This sends nQueries queries, keeping up to nInFlight of them in flight 
+     * (executing at the same time), and gives their results to the processor
+     * in query order (not the order they finish).
+     * If there is trouble (in a query or in the processor) 
+     * or if the processor doesn't want more results, the queries which are 
+     * still in flight are cancelled.
+     *
+     * @param nQueries the number of queries
+     * @param nInFlight the maximum number of queries in flight (&gt;=1)
+     * @param sendQuery sends query #i (0..nQueries-1), e.g., via session.executeAsync
+     * @param processor processes the results (in query order)
+     * @throws Throwable if trouble (e.g., a query's exception, unwrapped)
+     */
+    protected static <R> void pipelineQueries(int nQueries, int nInFlight,
+        IntFunction<? extends Future<R>> sendQuery, 
+        QueryResultProcessor<R> processor) throws Throwable {
+
+        ArrayDeque<Future<R>> inFlight = new ArrayDeque(); //in query order
+        int nextQuery = 0; //the next query to be sent
+        try {
+            for (int query = 0; query < nQueries; query++) {
+
+                if (Thread.currentThread().isInterrupted())
+                    throw new SimpleException("EDDTableFromCassandra.getDataForDapQuery" + 
+                        EDStatic.caughtInterrupted);
+
+                //keep the window of queries full
+                while (nextQuery < nQueries && inFlight.size() < nInFlight) {
+                    inFlight.add(sendQuery.apply(nextQuery));
+                    nextQuery++;
+                }
+
+                //wait for this query (the oldest one)
+                R result;
+                try {
+                    result = inFlight.remove().get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SimpleException("EDDTableFromCassandra.getDataForDapQuery" + 
+                        EDStatic.caughtInterrupted);
+                } catch (ExecutionException e) {
+                    throw e.getCause() == null? e : e.getCause(); 
+                }
+                if (!processor.process(result))
+                    break;
+            }
+        } finally {
+            //cancel the queries that are still in flight 
+            //(e.g., because noMoreDataPlease or trouble)
+            if (inFlight.size() > 0) {
+                if (verbose) String2.log("Cassandra: cancelling " + inFlight.size() + 
+                    " queries that are still in flight.");
+                for (Future<R> future : inFlight)
+                    future.cancel(true);
+            }
+        }
+    }
+
+    /** 
+     * This makes the BoundStatement for one row of the partitionKeyDistinctTable.
+     *
+     * @param preparedStatement the preparedStatement for the query
+     * @param pkdRow the row in the pkdTable
+     * @param pkdPA the partitionKey columns from the pkdTable
+     * @param conEDV the EDV for each of the other constraints
+     * @param constraintValues the values of the other constraints
+     * @return the BoundStatement
+     */
+    protected BoundStatement makeBoundStatement(PreparedStatement preparedStatement,
+        int pkdRow, PrimitiveArray pkdPA[], EDV conEDV[], StringArray constraintValues) {
+
+        //Make the BoundStatement
+        //***!!! This method avoids CQL/SQL Injection Vulnerability !!!***
+        //(see https://en.wikipedia.org/wiki/SQL_injection) by using
+        //preparedStatements (so String values are properly escaped and
+        //numbers are assured to be numbers).
+        //*** Plus, the statement is reused many times (so Prepared is recommended).
+        BoundStatement boundStatement = new BoundStatement(preparedStatement);
+        int nCon = conEDV.length;
+
+        //assign values to nPartitionKeys constraints then nCon constraints
+        StringBuilder requestSB = reallyVerbose? 
+            new StringBuilder(">> statement: pkdRow=" + pkdRow + ", ") : 
+            null;
+        for (int i = 0; i < nPartitionKeys + nCon; i++) { 
+            boolean usePK = i < nPartitionKeys;
+            int coni = i - nPartitionKeys; //which con to use: only used if not !usePK
+
+            EDV edv = usePK? partitionKeyEDV[i] : conEDV[coni];
+            PrimitiveArray pa = usePK? pkdPA[i] : null;
+            Class tClass = edv.sourceDataTypeClass();
+            String conVal = usePK? null : constraintValues.get(coni);
+            if (requestSB != null)
+                requestSB.append(edv.sourceName() + " is " + 
+                    (usePK? pa.getDouble(pkdRow) : conVal) + ", ");
+
+            //handle special cases first
+            if (edv instanceof EDVTimeStamp) {
+                boundStatement.setTimestamp(i, //partition key value won't be nan/null                
+                    new Date(Math.round(
+                        (usePK? pa.getDouble(pkdRow) : String2.parseDouble(conVal)) 
+                        * 1000))); //round to nearest milli
+
+            } else if (edv.isBoolean()) {
+                boundStatement.setBool(i, 
+                    (usePK? pa.getInt(pkdRow) == 1 : String2.parseBoolean(conVal)));
+            } else if (tClass == double.class) {
+                boundStatement.setDouble(i, 
+                    (usePK? pa.getDouble(pkdRow) : String2.parseDouble(conVal)));
+            } else if (tClass == float.class) {
+                boundStatement.setFloat(i, 
+                    (usePK? pa.getFloat(pkdRow) : String2.parseFloat(conVal)));
+            } else if (tClass == int.class ||    
+                     tClass == short.class || 
+                     tClass == byte.class) {
+                boundStatement.setInt(i, 
+                    (usePK? pa.getInt(pkdRow) : String2.parseInt(conVal))); 
+            } else {
+                String val = usePK? pa.getString(pkdRow) : conVal;
+                if (tClass == String.class)   
+                    boundStatement.setString(i, val);
+                else if (tClass == long.class)
+                    boundStatement.setLong(  i, String2.parseLong(val));
+                else if (tClass == char.class)
+                    boundStatement.setString(i, 
+                        val.length() == 0? "\u0000" : val.substring(0, 1)); //FFFF??? 
+                else throw new RuntimeException(
+                    "Unexpected dataType=" + edv.sourceDataType() + 
+                    "for var=" + edv.destinationName() + ".");            
+            }
+        }
+        //boundStatement.toString() is useless
+        if (requestSB != null)
+            String2.log(requestSB.toString());
+        return boundStatement;
+    }
+
     /** 
      * This executes the query statement and may write some data to the tablewriter. 
      * This doesn't call tableWriter.finish();
@@ -1384,6 +1504,27 @@ public class EDDTableFromCassandra extends EDDTable{
 
         //execute the statement
         ResultSet rs = session.execute(statement);
+        return getDataFromResultSet(loggedInAs, requestUrl, userDapQuery, 
+            resultsDVI, rvToResultsEDV, rs, table, tableWriter, stats);
+    }
+
+    /** 
+     * This processes the resultSet from a query and may write some data to the tablewriter. 
+     * This doesn't call tableWriter.finish();
+     *
+     * @param resultsDVI dataVariables[i] (DVI) for each resultsVariable
+     * @param rs the resultSet from session.execute() or session.executeAsync()
+     * @param table May have some not-yet-tableWritten data when coming in.
+     *   May have some not-yet-tableWritten data when returning.
+     * @param stats is int[4]. stats[0]++; stats[1]+=nRows; stats[2]+=nExpandedRows; 
+     *    stats[3]+=nRowsAfterStandardize
+     * @return the same or a different table (usually with some results rows)
+     */
+    public Table getDataFromResultSet(
+        String loggedInAs, String requestUrl, String userDapQuery, 
+        int resultsDVI[], EDV rvToResultsEDV[], ResultSet rs, 
+        Table table, TableWriter tableWriter, int[] stats) throws Throwable {
+
         ColumnDefinitions columnDef = rs.getColumnDefinitions();
         int nColumnDef = columnDef.size();
         stats[0]++;
@@ -3775,6 +3916,100 @@ expected =
         debugMode = oDebugMode;
     }
 
+    /**
+     * This tests pipelineQueries (which doesn't need a Cassandra server)
+     * with fake queries which finish in random order.
+     *
+     * @throws Throwable if trouble
+     */
+    public static void testPipelineQueries() throws Throwable {
+        String2.log("\n*** EDDTableFromCassandra.testPipelineQueries");
+        final int nQueries = 50, nInFlight = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(nInFlight);
+        try {
+            //the results are processed in query order,
+            //and no more than nInFlight queries are in flight at once
+            final AtomicInteger nSent = new AtomicInteger(), maxInFlight = new AtomicInteger();
+            final IntArray results = new IntArray();
+            pipelineQueries(nQueries, nInFlight,
+                i -> {
+                    Test.ensureEqual(i, nSent.get(), "queries must be sent in order");
+                    int tInFlight = nSent.incrementAndGet() - results.size();
+                    if (tInFlight > maxInFlight.get())
+                        maxInFlight.set(tInFlight);
+                    return executor.submit(() -> {
+                        Math2.sleep(Math2.random(5)); //so they finish in random order
+                        return new Integer(i);
+                    });
+                },
+                result -> {
+                    results.add(result.intValue());
+                    return true;
+                });
+            Test.ensureEqual(nSent.get(), nQueries, "");
+            Test.ensureEqual(results.size(), nQueries, "");
+            for (int i = 0; i < nQueries; i++)
+                Test.ensureEqual(results.get(i), i, "");
+            Test.ensureEqual(maxInFlight.get(), nInFlight, "");
+
+            //if a query fails, its exception is thrown and the queries in flight are cancelled
+            //(The later queries wait for a latch which isn't released, so they can't finish.)
+            final CountDownLatch never = new CountDownLatch(1);
+            final ArrayList<Future<Integer>> futures = new ArrayList();
+            results.clear();
+            String msg = "shouldn't get here";
+            try {
+                pipelineQueries(nQueries, nInFlight,
+                    i -> {
+                        Future<Integer> future = executor.submit(() -> {
+                            if (i == 5)
+                                throw new RuntimeException("Intentional error in query #5.");
+                            if (i > 5)
+                                never.await();
+                            return new Integer(i);
+                        });
+                        futures.add(future);
+                        return future;
+                    },
+                    result -> {
+                        results.add(result.intValue());
+                        return true;
+                    });
+            } catch (RuntimeException e) {
+                msg = e.getMessage();
+            }
+            Test.ensureEqual(msg, "Intentional error in query #5.", "");
+            Test.ensureEqual(results.toString(), "0, 1, 2, 3, 4", "");
+            Test.ensureEqual(futures.size(), 5 + nInFlight, ""); //no more were sent
+            for (int i = 6; i < futures.size(); i++)
+                Test.ensureTrue(futures.get(i).isCancelled(), "i=" + i);
+
+            //if the processor doesn't want more results, the queries in flight are cancelled
+            futures.clear();
+            results.clear();
+            pipelineQueries(nQueries, nInFlight,
+                i -> {
+                    Future<Integer> future = executor.submit(() -> {
+                        if (i > 2)
+                            never.await();
+                        return new Integer(i);
+                    });
+                    futures.add(future);
+                    return future;
+                },
+                result -> {
+                    results.add(result.intValue());
+                    return result.intValue() < 2; //e.g., tableWriter.noMoreDataPlease
+                });
+            Test.ensureEqual(results.toString(), "0, 1, 2", "");
+            Test.ensureEqual(futures.size(), 2 + nInFlight, "");
+            for (int i = 3; i < futures.size(); i++)
+                Test.ensureTrue(futures.get(i).isCancelled(), "i=" + i);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     /**
      * This tests the methods in this class.
      *
@@ -3782,6 +4017,7 @@ expected =
      */
     public static void test() throws Throwable {
         String2.log("\n****************** EDDTableFromCassandra.test() *****************\n");
+        testPipelineQueries();
 
         //tests usually run       
 /* for releases, this line should have open/close comment */
@@ -75,7 +75,7 @@ public class EDDTableFromColumnarAsciiFiles extends EDDTableFromFiles {
         String tSortedColumnSourceName, String tSortFilesBySourceNames,
         boolean tSourceNeedsExpandedFP_EQ, 
         boolean tFileTableInMemory, boolean tAccessibleViaFiles,
-        boolean tRemoveMVRows) 
+        boolean tRemoveMVRows, int tNThreads) 
         throws Throwable {
 
         super("EDDTableFromColumnarAsciiFiles", tDatasetID, 
@@ -89,7 +89,7 @@ public class EDDTableFromColumnarAsciiFiles extends EDDTableFromFiles {
             tPreExtractRegex, tPostExtractRegex, tExtractRegex, tColumnNameForExtract,
             tSortedColumnSourceName, tSortFilesBySourceNames,
             tSourceNeedsExpandedFP_EQ, tFileTableInMemory, tAccessibleViaFiles,
-            tRemoveMVRows);
+            tRemoveMVRows, tNThreads);
     }
 
     /**
@@ -457,42 +457,46 @@ public class EDDTableFromEDDGrid extends EDDTable{
                 paAr[col] = tTable.getColumn(col);
 
             //walk through it, periodically saving to tableWriter
-            int cumNRows = 0;
-            while (gda.increment()) {
-                for (int av = 0; av < eddGridNAV; av++) 
-                    //FUTURE: switch to pa.addFromPA(otherPA, otherIndex, nValues);
-                    paAr[av].addDouble(gda.getAxisValueAsDouble(av));  
-                for (int dv = 0; dv < nQueryDV; dv++) 
-                    //FUTURE: switch to pa.addFromPA(otherPA, otherIndex, nValues);
-                    paAr[eddGridNAV + dv].addDouble(gda.getDataValueAsDouble(dv));  
-                if (++cumNRows >= chunkNRows) {
-                    if (debugMode) String2.log(tTable.dataToString(5));
-                    if (Thread.currentThread().isInterrupted())
-                        throw new SimpleException("EDDTableFromEDDGrid.getDataForDapQuery" + 
-                            EDStatic.caughtInterrupted);      
+            try {
+                int cumNRows = 0;
+                while (gda.increment()) {
+                    for (int av = 0; av < eddGridNAV; av++) 
+                        //FUTURE: switch to pa.addFromPA(otherPA, otherIndex, nValues);
+                        paAr[av].addDouble(gda.getAxisValueAsDouble(av));  
+                    for (int dv = 0; dv < nQueryDV; dv++) 
+                        //FUTURE: switch to pa.addFromPA(otherPA, otherIndex, nValues);
+                        paAr[eddGridNAV + dv].addDouble(gda.getDataValueAsDouble(dv));  
+                    if (++cumNRows >= chunkNRows) {
+                        if (debugMode) String2.log(tTable.dataToString(5));
+                        if (Thread.currentThread().isInterrupted())
+                            throw new SimpleException("EDDTableFromEDDGrid.getDataForDapQuery" + 
+                                EDStatic.caughtInterrupted);      
+
+                        standardizeResultsTable(requestUrl, //applies all constraints
+                            userDapQuery, tTable); 
+                        tableWriter.writeSome(tTable);
+                        tTable = makeEmptySourceTable(sourceTableVars, chunkNRows); 
+                        for (int col = 0; col < tTable.nColumns(); col++)
+                            paAr[col] = tTable.getColumn(col);
+                        cumNRows = 0;
+                        if (tableWriter.noMoreDataPlease) {
+                            tableWriter.logCaughtNoMoreDataPlease(datasetID);
+                            break;
+                        }
+                    }
+                }
 
-                    standardizeResultsTable(requestUrl, //applies all constraints
+                //finish
+                if (tTable.nRows() > 0) {
+                    standardizeResultsTable(requestUrl,  //applies all constraints
                         userDapQuery, tTable); 
                     tableWriter.writeSome(tTable);
-                    tTable = makeEmptySourceTable(sourceTableVars, chunkNRows); 
-                    for (int col = 0; col < tTable.nColumns(); col++)
-                        paAr[col] = tTable.getColumn(col);
-                    cumNRows = 0;
-                    if (tableWriter.noMoreDataPlease) {
-                        tableWriter.logCaughtNoMoreDataPlease(datasetID);
-                        break;
-                    }
                 }
+                tableWriter.finish();
+            } finally {
+                gda.releaseResources(); //e.g., after noMoreDataPlease or an exception
             }
 
-            //finish
-            if (tTable.nRows() > 0) {
-                standardizeResultsTable(requestUrl,  //applies all constraints
-                    userDapQuery, tTable); 
-                tableWriter.writeSome(tTable);
-            }
-            tableWriter.finish();
-
         } else if (resultsAvNames.size() >= 1) {
             //handle a request for multiple axis variables (no data variables anywhere)
             //gather the active edvga 
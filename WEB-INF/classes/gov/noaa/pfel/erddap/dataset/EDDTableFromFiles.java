@@ -31,6 +31,7 @@ import gov.noaa.pfel.coastwatch.util.WatchDirectory;
 import gov.noaa.pfel.erddap.Erddap;
 import gov.noaa.pfel.erddap.util.EDStatic;
 import gov.noaa.pfel.erddap.util.EDUnits;
+import gov.noaa.pfel.erddap.util.ThreadedWorkManager;
 import gov.noaa.pfel.erddap.variable.*;
 
 import java.io.FileWriter;
@@ -93,6 +94,9 @@ public abstract class EDDTableFromFiles extends EDDTable{
     protected int startColumn[], stopColumn[]; 
     protected boolean removeMVRows = true; //just used by EDDTableFromMultidimNcFiles
 
+    //the number of threads used to read data files for a request; <=0 = use EDStatic.nTableThreads
+    protected int nThreads = -1;
+
     //source info
     protected StringArray sourceDataNames;
     protected StringArray safeSourceDataNames;
@@ -121,6 +125,9 @@ public abstract class EDDTableFromFiles extends EDDTable{
         FT_SORTED_SPACING_COL=4;
     //then 3 cols for each dataVariable: sourceName + _min_|_max_|_hasNaN starting at dv0
     protected final static int dv0 = 5;
+
+    /** getDataForDapQuery's pass 1 marks each file with one of these. */
+    protected final static byte FILE_REJECTED = 0, FILE_DISTINCT = 1, FILE_READ = 2;
     int     fileTableSortColumns[];   //null if not active
     boolean fileTableSortAscending[]; //size matches fileTableSortcolumns, all true
 
@@ -142,6 +149,9 @@ public abstract class EDDTableFromFiles extends EDDTable{
     protected boolean fileTableInMemory = false;
     protected Table dirTable; //one column with dir names
     protected Table fileTable;
+    /** An index of fileTable's lon, lat, alt, depth, and time min,max values 
+        (or null if !fileTableInMemory). */
+    protected FileTableIndex fileTableIndex;
 
     /**
      * This constructs an EDDTableFromFiles based on the information in an .xml file.
@@ -183,6 +193,7 @@ public abstract class EDDTableFromFiles extends EDDTable{
         String tSortedColumnSourceName = "";
         String tSortFilesBySourceNames = "";
         boolean tRemoveMVRows = true; //used by EDDTableFromMultidimNcFiles
+        int tNThreads = -1; //use EDStatic.nTableThreads
         String tSpecialMode = "";
         String tCharset = null;
         int tColumnNamesRow = 1, tFirstDataRow = 2; //relevant for ASCII files only
@@ -274,6 +285,8 @@ public abstract class EDDTableFromFiles extends EDDTable{
             else if (localTags.equals("</isLocal>")) tIsLocal = String2.parseBoolean(content); 
             else if (localTags.equals( "<removeMVRows>")) {}
             else if (localTags.equals("</removeMVRows>")) tRemoveMVRows = String2.parseBoolean(content); 
+            else if (localTags.equals( "<nThreads>")) {}
+            else if (localTags.equals("</nThreads>")) tNThreads = String2.parseInt(content); 
 
             else xmlReader.unexpectedTagException();
         }
@@ -297,7 +310,7 @@ public abstract class EDDTableFromFiles extends EDDTable{
                 tPreExtractRegex, tPostExtractRegex, tExtractRegex, tColumnNameForExtract,
                 tSortedColumnSourceName, tSortFilesBySourceNames, 
                 tSourceNeedsExpandedFP_EQ, tFileTableInMemory, 
-                tAccessibleViaFiles, tRemoveMVRows);
+                tAccessibleViaFiles, tRemoveMVRows, tNThreads);
 
         } else if (tType.equals("EDDTableFromAudioFiles")) { 
             return new EDDTableFromAudioFiles(tDatasetID, 
@@ -312,7 +325,7 @@ public abstract class EDDTableFromFiles extends EDDTable{
                 tPreExtractRegex, tPostExtractRegex, tExtractRegex, tColumnNameForExtract,
                 tSortedColumnSourceName, tSortFilesBySourceNames, 
                 tSourceNeedsExpandedFP_EQ, tFileTableInMemory, 
-                tAccessibleViaFiles, tRemoveMVRows);
+                tAccessibleViaFiles, tRemoveMVRows, tNThreads);
 
         } else if (tType.equals("EDDTableFromAwsXmlFiles")) {
             return new EDDTableFromAwsXmlFiles(tDatasetID, 
@@ -327,7 +340,7 @@ public abstract class EDDTableFromFiles extends EDDTable{
                 tPreExtractRegex, tPostExtractRegex, tExtractRegex, tColumnNameForExtract,
                 tSortedColumnSourceName, tSortFilesBySourceNames,
                 tSourceNeedsExpandedFP_EQ, tFileTableInMemory, 
-                tAccessibleViaFiles, tRemoveMVRows);
+                tAccessibleViaFiles, tRemoveMVRows, tNThreads);
 
         } else if (tType.equals("EDDTableFromColumnarAsciiFiles")) {
             return new EDDTableFromColumnarAsciiFiles(tDatasetID, 
@@ -342,7 +355,7 @@ public abstract class EDDTableFromFiles extends EDDTable{
                 tPreExtractRegex, tPostExtractRegex, tExtractRegex, tColumnNameForExtract,
                 tSortedColumnSourceName, tSortFilesBySourceNames, 
                 tSourceNeedsExpandedFP_EQ, tFileTableInMemory, 
-                tAccessibleViaFiles, tRemoveMVRows);
+                tAccessibleViaFiles, tRemoveMVRows, tNThreads);
 
         /*} else if (tType.equals("EDDTableFromHttpGet")) { 
             return new EDDTableFromHttpGet(tDatasetID, 
@@ -357,7 +370,7 @@ public abstract class EDDTableFromFiles extends EDDTable{
                 tPreExtractRegex, tPostExtractRegex, tExtractRegex, tColumnNameForExtract,
                 tSortedColumnSourceName, tSortFilesBySourceNames, 
                 tSourceNeedsExpandedFP_EQ, tFileTableInMemory, 
-                tAccessibleViaFiles, tRemoveMVRows);
+                tAccessibleViaFiles, tRemoveMVRows, tNThreads);
         */
         } else if (tType.equals("EDDTableFromMultidimNcFiles")) { 
             return new EDDTableFromMultidimNcFiles(tDatasetID, 
@@ -372,7 +385,7 @@ public abstract class EDDTableFromFiles extends EDDTable{
                 tPreExtractRegex, tPostExtractRegex, tExtractRegex, tColumnNameForExtract,
                 tSortedColumnSourceName, tSortFilesBySourceNames, 
                 tSourceNeedsExpandedFP_EQ, tFileTableInMemory, 
-                tAccessibleViaFiles, tRemoveMVRows);
+                tAccessibleViaFiles, tRemoveMVRows, tNThreads);
 
         } else if (tType.equals("EDDTableFromNcFiles")) { 
             return new EDDTableFromNcFiles(tDatasetID, 
@@ -387,7 +400,7 @@ public abstract class EDDTableFromFiles extends EDDTable{
                 tPreExtractRegex, tPostExtractRegex, tExtractRegex, tColumnNameForExtract,
                 tSortedColumnSourceName, tSortFilesBySourceNames, 
                 tSourceNeedsExpandedFP_EQ, tFileTableInMemory, 
-                tAccessibleViaFiles, tRemoveMVRows);
+                tAccessibleViaFiles, tRemoveMVRows, tNThreads);
 
         } else if (tType.equals("EDDTableFromNcCFFiles")) {
             return new EDDTableFromNcCFFiles(tDatasetID, 
@@ -402,7 +415,7 @@ public abstract class EDDTableFromFiles extends EDDTable{
                 tPreExtractRegex, tPostExtractRegex, tExtractRegex, tColumnNameForExtract,
                 tSortedColumnSourceName, tSortFilesBySourceNames, 
                 tSourceNeedsExpandedFP_EQ, tFileTableInMemory, 
-                tAccessibleViaFiles, tRemoveMVRows); 
+                tAccessibleViaFiles, tRemoveMVRows, tNThreads); 
 
         /*} else if (tType.equals("EDDTableFromPostNcFiles")) {
             return new EDDTableFromNcFiles(tDatasetID, 
@@ -417,7 +430,7 @@ public abstract class EDDTableFromFiles extends EDDTable{
                 tPreExtractRegex, tPostExtractRegex, tExtractRegex, tColumnNameForExtract,
                 tSortedColumnSourceName, tSortFilesBySourceNames, 
                 tSourceNeedsExpandedFP_EQ, tFileTableInMemory, 
-                tAccessibleViaFiles, tRemoveMVRows);
+                tAccessibleViaFiles, tRemoveMVRows, tNThreads);
         */
 
         } else if (tType.equals("EDDTableFromNccsvFiles")) { 
@@ -433,7 +446,7 @@ public abstract class EDDTableFromFiles extends EDDTable{
                 tPreExtractRegex, tPostExtractRegex, tExtractRegex, tColumnNameForExtract,
                 tSortedColumnSourceName, tSortFilesBySourceNames, 
                 tSourceNeedsExpandedFP_EQ, tFileTableInMemory, 
-                tAccessibleViaFiles, tRemoveMVRows);
+                tAccessibleViaFiles, tRemoveMVRows, tNThreads);
 
         } else if (tType.equals("EDDTableFromHyraxFiles")) {
 
@@ -476,7 +489,7 @@ public abstract class EDDTableFromFiles extends EDDTable{
                 tPreExtractRegex, tPostExtractRegex, tExtractRegex, tColumnNameForExtract,
                 tSortedColumnSourceName, tSortFilesBySourceNames, 
                 tSourceNeedsExpandedFP_EQ, tFileTableInMemory, 
-                tAccessibleViaFiles, tRemoveMVRows);
+                tAccessibleViaFiles, tRemoveMVRows, tNThreads);
 
             tEDDTable.creationTimeMillis = tCreationTime;
             return tEDDTable;
@@ -522,7 +535,7 @@ public abstract class EDDTableFromFiles extends EDDTable{
                 tPreExtractRegex, tPostExtractRegex, tExtractRegex, tColumnNameForExtract,
                 tSortedColumnSourceName, tSortFilesBySourceNames, 
                 tSourceNeedsExpandedFP_EQ, tFileTableInMemory, 
-                tAccessibleViaFiles, tRemoveMVRows);
+                tAccessibleViaFiles, tRemoveMVRows, tNThreads);
 
             tEDDTable.creationTimeMillis = tCreationTime;
             return tEDDTable;
@@ -573,7 +586,7 @@ public abstract class EDDTableFromFiles extends EDDTable{
                 "","","","",  //force tPreExtractRegex, tPostExtractRegex, tExtractRegex, tColumnNameForExtract,
                 tSortedColumnSourceName, tSortFilesBySourceNames, 
                 tSourceNeedsExpandedFP_EQ, tFileTableInMemory, 
-                tAccessibleViaFiles, tRemoveMVRows);
+                tAccessibleViaFiles, tRemoveMVRows, tNThreads);
 
         //} else if (tType.equals("EDDTableFrom???Files")) {
         //    return new EDDTableFromFiles(tDatasetID, 
@@ -588,7 +601,7 @@ public abstract class EDDTableFromFiles extends EDDTable{
         //        tPreExtractRegex, tPostExtractRegex, tExtractRegex, tColumnNameForExtract,
         //        tSortedColumnSourceName, tSortFilesBySourceNames,
         //        tSourceNeedsExpandedFP_EQ, tFileTableInMemory, 
-        //        tAccessibleViaFiles, tRemoveMVRows);
+        //        tAccessibleViaFiles, tRemoveMVRows, tNThreads);
         } else {
             throw new Exception("type=\"" + tType + 
                 "\" needs to be added to EDDTableFromFiles.fromXml at end.");
@@ -706,6 +719,11 @@ public abstract class EDDTableFromFiles extends EDDTable{
      *    <br>It is optional (the default is fileDir+fileName order).
      * @param tSourceNeedsExpandedFP_EQ
      * @param tRemoveMVRows
+     * @param tNThreads the number of threads used to read data files 
+     *    for each data request (so the next files are read while 
+     *    the current file's data is being written).
+     *    Use -1 (or any value &lt;1) to use EDStatic.nTableThreads.
+     *    Use 1 to read the files one at a time in the request's thread.
      * @throws Throwable if trouble
      */
     public EDDTableFromFiles(String tClassName, String tDatasetID, 
@@ -723,7 +741,7 @@ public abstract class EDDTableFromFiles extends EDDTable{
         String tColumnNameForExtract,
         String tSortedColumnSourceName, String tSortFilesBySourceNames,
         boolean tSourceNeedsExpandedFP_EQ, boolean tFileTableInMemory, 
-        boolean tAccessibleViaFiles, boolean tRemoveMVRows) 
+        boolean tAccessibleViaFiles, boolean tRemoveMVRows, int tNThreads) 
         throws Throwable {
 
         if (verbose) String2.log(
@@ -767,6 +785,7 @@ public abstract class EDDTableFromFiles extends EDDTable{
         columnNamesRow = tColumnNamesRow;
         firstDataRow = tFirstDataRow;
         columnSeparator = tColumnSeparator;
+        nThreads = tNThreads == Integer.MAX_VALUE? -1 : tNThreads; //MAX_VALUE is parseInt's missing value
 
         preExtractRegex = tPreExtractRegex;
         postExtractRegex = tPostExtractRegex;
@@ -979,6 +998,7 @@ public abstract class EDDTableFromFiles extends EDDTable{
 
         //load badFileMap
         ConcurrentHashMap badFileMap = readBadFileMap();
+        HashSet originalBadFiles = badFileMapKeys(badFileMap);
         
         //if trouble reading any, recreate all
         if (dirTable == null || fileTable == null || badFileMap == null) {
@@ -1272,6 +1292,7 @@ public abstract class EDDTableFromFiles extends EDDTable{
                     if (logThis)
                         String2.log(tFileListPo + " file no longer exists: remove from fileList: " +
                             dirList.get(dirI) + fileS);
+                    NcHelper.ncFilePool.invalidate(dirList.get(dirI) + fileS);
                     nRemoved++;
                     removeCumTime -= System.currentTimeMillis();
                     fileTable.removeRow(fileListPo);  //may be slow
@@ -1318,6 +1339,7 @@ public abstract class EDDTableFromFiles extends EDDTable{
                         MustBe.throwableToString(t);
                     String2.log(msg); 
                     msg = "";
+                    NcHelper.ncFilePool.invalidate(fullName);
                     nRemoved++;
                     removeCumTime -= System.currentTimeMillis();
                     fileTable.removeRow(fileListPo);
@@ -1397,7 +1419,7 @@ public abstract class EDDTableFromFiles extends EDDTable{
 
         //if !quickRestart, save dirTable, fileTable, badFileMap
         if (!doQuickRestart) 
-            saveDirTableFileTableBadFiles(dirTable, fileTable, badFileMap); //throws Throwable
+            saveDirTableFileTableBadFiles(dirTable, fileTable, badFileMap, originalBadFiles); //throws Throwable
         //then make related changes as quickly/atomically as possible
         minMaxTable = tMinMaxTable; //swap into place quickly
 
@@ -1670,7 +1692,9 @@ public abstract class EDDTableFromFiles extends EDDTable{
         //    " type=" + edv.sourceDataType() + " min=" + edv.destinationMin());
 
         //dirTable and fileTable InMemory?
-        if (!fileTableInMemory) {
+        if (fileTableInMemory) {
+            fileTableIndex = makeFileTableIndex(fileTable);
+        } else {
             dirTable = null;
             fileTable = null;
         }
@@ -1966,6 +1990,66 @@ public abstract class EDDTableFromFiles extends EDDTable{
         }
     }
 
+    /**
+     * This makes an index of a fileTable's min,max values for the 
+     * longitude, latitude, altitude, depth, and time variables (if any),
+     * so getDataForDapQuery can quickly find the files which may have matching data.
+     * String variables and String times which don't start with yyyy aren't indexed.
+     *
+     * @param tFileTable a fileTable
+     * @return a FileTableIndex (or null if there are no indexable variables)
+     */
+    protected FileTableIndex makeFileTableIndex(Table tFileTable) {
+        IntArray tDvs = new IntArray();
+        ArrayList<double[]> tMin = new ArrayList(), tMax = new ArrayList();
+        ArrayList<Boolean> tIsTime = new ArrayList();
+        int nFiles = tFileTable.nRows();
+        int candidates[] = {lonIndex, latIndex, altIndex, depthIndex, timeIndex};
+        for (int c = 0; c < candidates.length; c++) {
+            int dv = candidates[c];
+            if (dv < 0 || tDvs.indexOf(dv) >= 0)
+                continue;
+            EDV edv = dataVariables[dv];
+            Class tClass = edv.sourceDataTypeClass();
+            PrimitiveArray minPa = tFileTable.getColumn(dv0 + dv*3 + 0);
+            PrimitiveArray maxPa = tFileTable.getColumn(dv0 + dv*3 + 1);
+            double mins[] = new double[nFiles];
+            double maxs[] = new double[nFiles];
+            if (edv instanceof EDVTimeStamp) {
+                //same as the tests in getDataForDapQuery
+                EDVTimeStamp tdv = (EDVTimeStamp)edv;
+                if (tClass == char.class ||
+                    (tClass == String.class && 
+                     !tdv.sourceTimeFormat().toLowerCase().startsWith("yyyy")))
+                    continue;
+                for (int f = 0; f < nFiles; f++) {
+                    mins[f] = tdv.sourceTimeToEpochSeconds(minPa.getString(f));
+                    maxs[f] = tdv.sourceTimeToEpochSeconds(maxPa.getString(f));
+                    if (Double.isNaN(mins[f])) mins[f] = FileTableIndex.TIME_NAN_MIN;
+                    if (Double.isNaN(maxs[f])) maxs[f] = FileTableIndex.TIME_NAN_MAX;
+                }
+            } else {
+                if (tClass == char.class || tClass == String.class) 
+                    continue;
+                for (int f = 0; f < nFiles; f++) {
+                    mins[f] = minPa.getDouble(f);
+                    maxs[f] = maxPa.getDouble(f);
+                }
+            }
+            tDvs.add(dv);
+            tMin.add(mins);
+            tMax.add(maxs);
+            tIsTime.add(Boolean.valueOf(edv instanceof EDVTimeStamp));
+        }
+        if (tDvs.size() == 0)
+            return null;
+        boolean isTime[] = new boolean[tIsTime.size()];
+        for (int i = 0; i < isTime.length; i++)
+            isTime[i] = tIsTime.get(i).booleanValue();
+        return new FileTableIndex(tFileTable, tDvs.toArray(), 
+            tMin.toArray(new double[0][]), tMax.toArray(new double[0][]), isTime);
+    }
+
     /** 
      * This is used to make a new minMaxTable just before saving a changed fileTable.
      *
@@ -2116,6 +2200,7 @@ public abstract class EDDTableFromFiles extends EDDTable{
 
         //get BadFile and FileTable info and make local copies
         ConcurrentHashMap badFileMap = readBadFileMap(); //already a copy of what's in file
+        HashSet originalBadFiles = badFileMapKeys(badFileMap);
         Table tDirTable; 
         Table tFileTable;
         if (fileTableInMemory) {
@@ -2151,6 +2236,9 @@ public abstract class EDDTableFromFiles extends EDDTable{
             String dirName = File2.getDirectory(fullName);
             String fileName = File2.getNameAndExtension(fullName);  //matched to fileNameRegex above
 
+            //the file was created, changed, or deleted, so an open ncFile is out-of-date
+            NcHelper.ncFilePool.invalidate(fullName);
+
             //dirIndex   (dirName may not be in dirList!)
             int dirIndex = dirList.indexOf(dirName); //linear search, but should be short list
 
@@ -2350,14 +2438,18 @@ public abstract class EDDTableFromFiles extends EDDTable{
                 }
             }
 
+            FileTableIndex tFileTableIndex = fileTableInMemory?
+                makeFileTableIndex(tFileTable) : null;
+
             //finally: make the important instance changes that use the changes above 
             //as quickly/atomically as possible
-            saveDirTableFileTableBadFiles(tDirTable, tFileTable, badFileMap); //throws Throwable
+            saveDirTableFileTableBadFiles(tDirTable, tFileTable, badFileMap, originalBadFiles); //throws Throwable
             minMaxTable = tMinMaxTable;
             if (fileTableInMemory) {
                 //quickly swap into place
                 dirTable  = tDirTable;
                 fileTable = tFileTable; 
+                fileTableIndex = tFileTableIndex;
             }
 
             //after changes all in place
@@ -2955,8 +3047,25 @@ public abstract class EDDTableFromFiles extends EDDTable{
         Table distinctTable = null;
         long nNotRead = 0;  //either don't have matching data or do ('distinct' and 1 value matches)
         long nReadHaveMatch = 0, nReadNoMatch = 0; //read the data file to look for matching data
-        FILE_LOOP:
-        for (int f = 0; f < nFiles; f++) {
+
+        //If the fileTable is indexed, just test the files which may match
+        //the lon, lat, alt, depth, and time constraints.
+        FileTableIndex tFileTableIndex = fileTableIndex;
+        int candidateFiles[] = tFileTableIndex == null || tFileTableIndex.fileTable() != tFileTable? 
+            null : tFileTableIndex.candidateRows(cdvi, conOps, conValuesD);
+        int nCandidateFiles = candidateFiles == null? nFiles : candidateFiles.length;
+        nNotRead += nFiles - nCandidateFiles;
+        if (reallyVerbose && candidateFiles != null) 
+            String2.log("  fileTableIndex found " + nCandidateFiles + " candidate files of " + nFiles);
+
+        //Pass 1: just using tFileTable, decide which files can be rejected, 
+        //which just add a row to distinctTable, and which must be read.
+        //Knowing the files to be read in advance lets other threads read them 
+        //(see nThreads) while the data from earlier files is being written.
+        byte fileAction[] = new byte[nFiles]; //initially all FILE_REJECTED
+        IntArray readFiles = new IntArray();  //the f's of the FILE_READ files, in order
+        for (int cf = 0; cf < nCandidateFiles; cf++) {
+            int f = candidateFiles == null? cf : candidateFiles[cf];
             //can file be rejected based on constraints?
             boolean ok = true;
             for (int con = 0; con < nCon; con++) {
@@ -3101,9 +3210,42 @@ public abstract class EDDTableFromFiles extends EDDTable{
                     }
                 }
                 
-                //if all requested columns are distinct, add a row to distinctTable
                 if (allDistinct) {
                     //if (reallyVerbose) String2.log("file " + f + " is allDistinct");
+                    fileAction[f] = FILE_DISTINCT;
+                    nNotRead++;
+                    continue; //to next file;
+                }
+            }
+
+            fileAction[f] = FILE_READ;
+            readFiles.add(f);
+        }
+
+        //Pass 2: in file order, add the FILE_DISTINCT rows to distinctTable 
+        //and get and write the data from the FILE_READ files.
+        //If nThreads > 1, a workManager reads the next files while this thread 
+        //writes the current file's data. Results are still written in file order.
+        //The files are read by EDStatic.tableReadExecutor's threads, which are shared 
+        //by all requests, so the total number of files being read at once is limited.
+        int tNThreads = nThreads >= 1? nThreads : EDStatic.nTableThreads;
+        ThreadedWorkManager<Table> workManager = null;
+        if (tNThreads > 1 && readFiles.size() > 1) {
+            workManager = new ThreadedWorkManager(datasetID, Math.min(tNThreads, readFiles.size()),
+                EDStatic.tableReadExecutor);
+            if (reallyVerbose) String2.log("  reading " + readFiles.size() + 
+                " files with nThreads=" + workManager.nThreads());
+        }
+        int nReadFilesSubmitted = 0; //index in readFiles of the next file to be given to workManager
+        final double fMinSorted = minSorted, fMaxSorted = maxSorted; //final so usable in tasks
+        try {
+            FILE_LOOP:
+            for (int f = 0; f < nFiles; f++) {
+                if (fileAction[f] == FILE_REJECTED) 
+                    continue;
+
+                //if all requested columns are distinct, add a row to distinctTable
+                if (fileAction[f] == FILE_DISTINCT) {
                     boolean newDistinctTable = distinctTable == null;
                     if (newDistinctTable)
                         distinctTable = new Table();
@@ -3132,116 +3274,97 @@ public abstract class EDDTableFromFiles extends EDDTable{
                             distinctTable.getColumn(dvi.length).addString(tVal);
                         } 
                     }
-
-                    nNotRead++;
                     continue; //to next file;
                 }
-            }
 
-            //end of run for files which added info to distinctTable
-            //so empty out distinctTable
-            if (distinctTable != null) {
-                //standardizeResultsTable applies all constraints
-                preStandardizeResultsTable(loggedInAs, distinctTable); 
-                if (distinctTable.nRows() > 0) {
-                    standardizeResultsTable(requestUrl, userDapQuery, distinctTable);
-                    tableWriter.writeSome(distinctTable);
-                    if (tableWriter.noMoreDataPlease) {
-                        tableWriter.logCaughtNoMoreDataPlease(datasetID);
-                        break FILE_LOOP;
+                //end of run for files which added info to distinctTable
+                //so empty out distinctTable
+                if (distinctTable != null) {
+                    //standardizeResultsTable applies all constraints
+                    preStandardizeResultsTable(loggedInAs, distinctTable); 
+                    if (distinctTable.nRows() > 0) {
+                        standardizeResultsTable(requestUrl, userDapQuery, distinctTable);
+                        tableWriter.writeSome(distinctTable);
+                        if (tableWriter.noMoreDataPlease) {
+                            tableWriter.logCaughtNoMoreDataPlease(datasetID);
+                            break FILE_LOOP;
+                        }
                     }
+                    distinctTable = null;
                 }
-                distinctTable = null;
-            }
-
-            //Read all data from file within minSorted to maxSorted.
-            //This throws Throwable if trouble. I think that's appropriate.
-            Table table;
-            String tDir = dirList.get(ftDirIndex.get(f));
-            String tName = ftFileList.get(f);
-            if (Thread.currentThread().isInterrupted())
-                throw new SimpleException("EDDTableFromFiles.getDataForDapQuery" + 
-                    EDStatic.caughtInterrupted);
-        
-            if (reallyVerbose) String2.log("#" + f + " get data from " + tDir + tName);
-
-            //FUTURE: I think file access could be parallelized for use on parallel file systems.
-            //It is likely "easy" with a CompletableFuture option. See
-            //http://www.nurkiewicz.com/2013/05/java-8-definitive-guide-to.html
-            //http://www.vogella.com/tutorials/JavaConcurrency/article.html#threads-pools-with-the-executor-framework
-            try {
-                //file may be unavailable while being updated
-                table = getSourceDataFromFile(tDir, tName,
-                    resultsVariablesNEC, resultsTypes, 
-                    ftSortedSpacing.get(f), minSorted, maxSorted, 
-                    sourceConVars, sourceConOps, sourceConValues,
-                    false, true); 
-
-            } catch (WaitThenTryAgainException twwae) {
-                throw twwae;
 
-            } catch (Throwable t) {
-                EDStatic.rethrowClientAbortException(t);  //first thing in catch{}
-
-                //if too much data, rethrow t
-                String tToString = t.toString();
-                if (tToString.indexOf(Math2.memoryTooMuchData) >= 0)
-                    throw t;
-
-                //sleep and give it one more try
-                try {
-                    Thread.sleep(1000);
-                    table = getSourceDataFromFile(tDir, tName,
-                        resultsVariablesNEC, resultsTypes, 
+                //Read all data from file within minSorted to maxSorted.
+                //This throws Throwable if trouble. I think that's appropriate.
+                Table table;
+                String tDir = dirList.get(ftDirIndex.get(f));
+                String tName = ftFileList.get(f);
+                if (Thread.currentThread().isInterrupted())
+                    throw new SimpleException("EDDTableFromFiles.getDataForDapQuery" + 
+                        EDStatic.caughtInterrupted);
+            
+                if (workManager == null) {
+                    if (reallyVerbose) String2.log("#" + f + " get data from " + tDir + tName);
+                    table = getSourceDataFromFileForQuery(ftDirIndex.get(f), tDir, tName, 
+                        ftLastMod.get(f), resultsVariablesNEC, resultsTypes, 
                         ftSortedSpacing.get(f), minSorted, maxSorted, 
-                        sourceConVars, sourceConOps, sourceConValues,
-                        false, true); 
-
-                } catch (WaitThenTryAgainException twwae) {
-                    throw twwae;
-
-                } catch (Throwable t2) {
-                    EDStatic.rethrowClientAbortException(t2);  //first thing in catch{}
-
-                    if (filesAreLocal) {
-                        //mark the file as bad   and reload the dataset
-                        addBadFileToTableOnDisk(ftDirIndex.get(f), tName, ftLastMod.get(f), 
-                            MustBe.throwableToShortString(t));
+                        sourceConVars, sourceConOps, sourceConValues);
+                } else {
+                    //keep this file and up to nThreads following files in the works
+                    while (nReadFilesSubmitted < readFiles.size() &&
+                           workManager.nPending() <= workManager.nThreads()) {
+                        final int rf = readFiles.get(nReadFilesSubmitted++);
+                        final int    rfDirIndex = ftDirIndex.get(rf);
+                        final String rfDir      = dirList.get(rfDirIndex);
+                        final String rfName     = ftFileList.get(rf);
+                        final long   rfLastMod  = ftLastMod.get(rf);
+                        final double rfSortedSpacing = ftSortedSpacing.get(rf);
+                        workManager.addTask(() -> {
+                            try {
+                                if (reallyVerbose) String2.log("#" + rf + " get data from " + rfDir + rfName);
+                                return getSourceDataFromFileForQuery(rfDirIndex, rfDir, rfName, 
+                                    rfLastMod, resultsVariablesNEC, resultsTypes, 
+                                    rfSortedSpacing, fMinSorted, fMaxSorted, 
+                                    sourceConVars, sourceConOps, sourceConValues);
+                            } catch (Throwable t) {
+                                throw ThreadedWorkManager.rethrow(t);
+                            }
+                        });
                     }
-                    //an exception here will cause data request to fail (as it should)
-                    String2.log(MustBe.throwableToString(t));
-                    throw new WaitThenTryAgainException(t); //refer to the original exception
+                    table = workManager.next(); //the oldest task is for this file
                 }
-            }
-            if (reallyVerbose) String2.log("  table.nRows=" + table.nRows());
+                if (reallyVerbose) String2.log("  table.nRows=" + table.nRows());
 
-            if (table.nRows() > 0) {
+                if (table.nRows() > 0) {
 
-                //add extractColumn
-                if (tExtractIndex >= 0) {
-                    PrimitiveArray pa = PrimitiveArray.factory(
-                        dataVariables[extractedColNameIndex].sourceDataTypeClass(), //always String(?)
-                        table.nRows(), 
-                        tFileTable.getStringData(dv0 + extractedColNameIndex*3 + 0, f));
-                    table.addColumn(dataVariables[extractedColNameIndex].destinationName(), pa);
-                }
+                    //add extractColumn
+                    if (tExtractIndex >= 0) {
+                        PrimitiveArray pa = PrimitiveArray.factory(
+                            dataVariables[extractedColNameIndex].sourceDataTypeClass(), //always String(?)
+                            table.nRows(), 
+                            tFileTable.getStringData(dv0 + extractedColNameIndex*3 + 0, f));
+                        table.addColumn(dataVariables[extractedColNameIndex].destinationName(), pa);
+                    }
 
-                //standardizeResultsTable applies all constraints
-                preStandardizeResultsTable(loggedInAs, table); 
-                if (table.nRows() > 0) { //preStandardize may have altered it
-                    standardizeResultsTable(requestUrl, userDapQuery, table);
-                    tableWriter.writeSome(table);
-                    nReadHaveMatch++;
-                    if (tableWriter.noMoreDataPlease) {
-                        tableWriter.logCaughtNoMoreDataPlease(datasetID);
-                        break FILE_LOOP;
+                    //standardizeResultsTable applies all constraints
+                    preStandardizeResultsTable(loggedInAs, table); 
+                    if (table.nRows() > 0) { //preStandardize may have altered it
+                        standardizeResultsTable(requestUrl, userDapQuery, table);
+                        tableWriter.writeSome(table);
+                        nReadHaveMatch++;
+                        if (tableWriter.noMoreDataPlease) {
+                            tableWriter.logCaughtNoMoreDataPlease(datasetID);
+                            break FILE_LOOP;
+                        }
+                    } else {
+                        nReadNoMatch++;
                     }
                 } else {
                     nReadNoMatch++;
                 }
-            } else {
-                nReadNoMatch++;
             }
+        } finally {
+            if (workManager != null) 
+                workManager.forceShutdown(); //cancels any files still being read
         }
 
         //flush distinctTable
@@ -3275,6 +3398,81 @@ public abstract class EDDTableFromFiles extends EDDTable{
 
     }
 
+    /**
+     * For getDataForDapQuery, this gets the requested data from one file.
+     * If the first attempt fails, this waits 1 second and tries again.
+     * If that fails too, this marks the file as bad (if filesAreLocal)
+     * and throws a WaitThenTryAgainException.
+     * This is thread-safe, so it may be called by a ThreadedWorkManager's threads.
+     * See getSourceDataFromFile for the other parameters.
+     *
+     * @param tDirIndex the file's dirIndex in the fileTable (needed to mark the file as bad)
+     * @param tLastMod the file's lastMod in the fileTable (needed to mark the file as bad)
+     * @return the table of results (may have 0 rows)
+     * @throws Throwable if trouble (notably, WaitThenTryAgainException)
+     */
+    protected Table getSourceDataFromFileForQuery(int tDirIndex, String tDir, String tName, 
+        long tLastMod, StringArray resultsVariablesNEC, String resultsTypes[],
+        double sortedSpacing, double minSorted, double maxSorted, 
+        StringArray sourceConVars, StringArray sourceConOps, StringArray sourceConValues) 
+        throws Throwable {
+
+        try {
+            //file may be unavailable while being updated
+            return getSourceDataFromFile(tDir, tName,
+                resultsVariablesNEC, resultsTypes, 
+                sortedSpacing, minSorted, maxSorted, 
+                sourceConVars, sourceConOps, sourceConValues,
+                false, true); 
+
+        } catch (WaitThenTryAgainException twwae) {
+            throw twwae;
+
+        } catch (Throwable t) {
+            EDStatic.rethrowClientAbortException(t);  //first thing in catch{}
+
+            //if interrupted (e.g., the request was cancelled), don't retry or mark the file as bad
+            if (t instanceof InterruptedException || Thread.currentThread().isInterrupted())
+                throw new SimpleException("EDDTableFromFiles.getDataForDapQuery" + 
+                    EDStatic.caughtInterrupted);
+
+            //if too much data, rethrow t
+            String tToString = t.toString();
+            if (tToString.indexOf(Math2.memoryTooMuchData) >= 0)
+                throw t;
+
+            //sleep and give it one more try
+            try {
+                Thread.sleep(1000);
+                return getSourceDataFromFile(tDir, tName,
+                    resultsVariablesNEC, resultsTypes, 
+                    sortedSpacing, minSorted, maxSorted, 
+                    sourceConVars, sourceConOps, sourceConValues,
+                    false, true); 
+
+            } catch (WaitThenTryAgainException twwae) {
+                throw twwae;
+
+            } catch (Throwable t2) {
+                EDStatic.rethrowClientAbortException(t2);  //first thing in catch{}
+
+                if (t2 instanceof InterruptedException || Thread.currentThread().isInterrupted())
+                    throw new SimpleException("EDDTableFromFiles.getDataForDapQuery" + 
+                        EDStatic.caughtInterrupted);
+
+                if (filesAreLocal) {
+                    //mark the file as bad   and reload the dataset
+                    NcHelper.ncFilePool.invalidate(tDir + tName);
+                    addBadFileToTableOnDisk(tDirIndex, tName, tLastMod, 
+                        MustBe.throwableToShortString(t));
+                }
+                //an exception here will cause data request to fail (as it should)
+                String2.log(MustBe.throwableToString(t));
+                throw new WaitThenTryAgainException(t); //refer to the original exception
+            }
+        }
+    }
+
     /**
      * getDataForDapQuery always calls this right before standardizeResultsTable.
      * EDDTableFromPostNcFiles uses this to remove data not accessible to this user.
@@ -90,7 +90,7 @@ public class EDDTableFromHyraxFiles extends EDDTableFromFiles {
         String tColumnNameForExtract,
         String tSortedColumnSourceName, String tSortFilesBySourceNames,
         boolean tSourceNeedsExpandedFP_EQ, boolean tFileTableInMemory, 
-        boolean tAccessibleViaFiles, boolean tRemoveMVRows) 
+        boolean tAccessibleViaFiles, boolean tRemoveMVRows, int tNThreads) 
         throws Throwable {
 
         super("EDDTableFromHyraxFiles", tDatasetID, 
@@ -105,7 +105,7 @@ public class EDDTableFromHyraxFiles extends EDDTableFromFiles {
             tPreExtractRegex, tPostExtractRegex, tExtractRegex, tColumnNameForExtract,
             tSortedColumnSourceName, tSortFilesBySourceNames,
             tSourceNeedsExpandedFP_EQ, tFileTableInMemory, tAccessibleViaFiles,
-            tRemoveMVRows);
+            tRemoveMVRows, tNThreads);
 
     }
 
@@ -271,7 +271,7 @@ public class EDDTableFromHyraxFiles extends EDDTableFromFiles {
                 taskOA[1] = sourceName;
                 taskOA[2] = localFile;
                 taskOA[3] = new Long(Math2.roundToLong(sourceFileLastMod.get(f) * 1000));
-                int tTaskNumber = EDStatic.addTask(taskOA);
+                int tTaskNumber = EDStatic.addTask(tDatasetID, taskOA);
                 if (tTaskNumber >= 0) {
                     nTasksCreated++;
                     taskNumber = tTaskNumber;
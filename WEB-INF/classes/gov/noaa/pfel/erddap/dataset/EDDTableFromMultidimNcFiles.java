@@ -66,7 +66,7 @@ public class EDDTableFromMultidimNcFiles extends EDDTableFromFiles {
         String tSortedColumnSourceName, 
         String tSortFilesBySourceNames,
         boolean tSourceNeedsExpandedFP_EQ, boolean tFileTableInMemory, 
-        boolean tAccessibleViaFiles, boolean tRemoveMVRows) 
+        boolean tAccessibleViaFiles, boolean tRemoveMVRows, int tNThreads) 
         throws Throwable {
 
         super("EDDTableFromMultidimNcFiles", tDatasetID, 
@@ -80,7 +80,7 @@ public class EDDTableFromMultidimNcFiles extends EDDTableFromFiles {
             tPreExtractRegex, tPostExtractRegex, tExtractRegex, tColumnNameForExtract,
             tSortedColumnSourceName, tSortFilesBySourceNames,
             tSourceNeedsExpandedFP_EQ, tFileTableInMemory, tAccessibleViaFiles,
-            tRemoveMVRows);
+            tRemoveMVRows, tNThreads);
 
     }
 
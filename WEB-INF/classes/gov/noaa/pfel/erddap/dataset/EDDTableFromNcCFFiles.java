@@ -78,7 +78,7 @@ public class EDDTableFromNcCFFiles extends EDDTableFromFiles {
         String tSortedColumnSourceName, String tSortFilesBySourceNames,
         boolean tSourceNeedsExpandedFP_EQ, 
         boolean tFileTableInMemory, boolean tAccessibleViaFiles,
-        boolean tRemoveMVRows) 
+        boolean tRemoveMVRows, int tNThreads) 
         throws Throwable {
 
         super("EDDTableFromNcCFFiles",  
@@ -94,7 +94,7 @@ public class EDDTableFromNcCFFiles extends EDDTableFromFiles {
             tSortedColumnSourceName, //irrelevant
             tSortFilesBySourceNames,
             tSourceNeedsExpandedFP_EQ, tFileTableInMemory, tAccessibleViaFiles,
-            tRemoveMVRows);
+            tRemoveMVRows, tNThreads);
     }
 
     /**
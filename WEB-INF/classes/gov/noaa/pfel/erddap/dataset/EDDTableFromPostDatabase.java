@@ -309,12 +309,8 @@ boolean addTestPostUser = false;
      */
     public String suggestFileName(String loggedInAs, String userDapQuery, String fileTypeName) {
 
-        //decode userDapQuery to a canonical form to avoid slight differences in percent-encoding 
-        try {
-            userDapQuery = SSR.percentDecode(userDapQuery);
-        } catch (Exception e) {
-            //shouldn't happen
-        }
+        //convert userDapQuery to a canonical form so equivalent queries get the same name
+        userDapQuery = canonicalDapQuery(userDapQuery);
 
         //include fileTypeName in hash so, e.g., different sized .png 
         //  have different file names
@@ -82,7 +82,7 @@ public class EDDTableFromPostNcFiles extends EDDTableFromNcFiles {
         String tColumnNameForExtract,
         String tSortedColumnSourceName, String tSortFilesBySourceNames,
         boolean tSourceNeedsExpandedFP_EQ, boolean tFileTableInMemory, 
-        boolean tAccessibleViaFiles, boolean tRemoveMVRows) 
+        boolean tAccessibleViaFiles, boolean tRemoveMVRows, int tNThreads) 
         throws Throwable {
 
         super(tDatasetID, tAccessibleTo, tGraphsAccessibleTo, 
@@ -96,7 +96,7 @@ public class EDDTableFromPostNcFiles extends EDDTableFromNcFiles {
             tPreExtractRegex, tPostExtractRegex, tExtractRegex, tColumnNameForExtract,
             tSortedColumnSourceName, tSortFilesBySourceNames,
             tSourceNeedsExpandedFP_EQ, tFileTableInMemory, tAccessibleViaFiles,
-            tRemoveMVRows);
+            tRemoveMVRows, tNThreads);
         className = "EDDTableFromPostNcFiles";
 
     }
@@ -115,12 +115,8 @@ public class EDDTableFromPostNcFiles extends EDDTableFromNcFiles {
      */
     public String suggestFileName(String loggedInAs, String userDapQuery, String fileTypeName) {
 
-        //decode userDapQuery to a canonical form to avoid slight differences in percent-encoding 
-        try {
-            userDapQuery = SSR.percentDecode(userDapQuery);
-        } catch (Exception e) {
-            //shouldn't happen
-        }
+        //convert userDapQuery to a canonical form so equivalent queries get the same name
+        userDapQuery = canonicalDapQuery(userDapQuery);
 
         //include fileTypeName in hash so, e.g., different sized .png 
         //  have different file names
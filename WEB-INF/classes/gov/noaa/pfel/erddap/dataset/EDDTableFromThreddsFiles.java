@@ -100,7 +100,7 @@ public class EDDTableFromThreddsFiles extends EDDTableFromFiles {
         String tColumnNameForExtract,
         String tSortedColumnSourceName, String tSortFilesBySourceNames,
         boolean tSourceNeedsExpandedFP_EQ, boolean tFileTableInMemory, 
-        boolean tAccessibleViaFiles, boolean tRemoveMVRows) throws Throwable {
+        boolean tAccessibleViaFiles, boolean tRemoveMVRows, int tNThreads) throws Throwable {
 
         super("EDDTableFromThreddsFiles", tDatasetID, 
             tAccessibleTo, tGraphsAccessibleTo, 
@@ -114,7 +114,7 @@ public class EDDTableFromThreddsFiles extends EDDTableFromFiles {
             tPreExtractRegex, tPostExtractRegex, tExtractRegex, tColumnNameForExtract,
             tSortedColumnSourceName, tSortFilesBySourceNames,
             tSourceNeedsExpandedFP_EQ, tFileTableInMemory, tAccessibleViaFiles,
-            tRemoveMVRows);
+            tRemoveMVRows, tNThreads);
     }
 
     /**
@@ -337,7 +337,7 @@ public class EDDTableFromThreddsFiles extends EDDTableFromFiles {
                 taskOA[1] = sourceDir + sourceName;
                 taskOA[2] = localFile;
                 taskOA[3] = new Long(sourceFileLastMod.get(f));
-                int tTaskNumber = EDStatic.addTask(taskOA);
+                int tTaskNumber = EDStatic.addTask(tDatasetID, taskOA);
                 if (tTaskNumber >= 0) {
                     nTasksCreated++;
                     taskNumber = tTaskNumber;
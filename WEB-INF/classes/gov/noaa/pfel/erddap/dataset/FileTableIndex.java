@@ -0,0 +1,409 @@
+/*
+ * FileTableIndex Copyright 2026, agent (agent@local).
+ * See the LICENSE.txt file in this file's directory.
+ */
+package gov.noaa.pfel.erddap.dataset;
+
+import com.cohort.array.DoubleArray;
+import com.cohort.array.IntArray;
+import com.cohort.array.PrimitiveArray;
+import com.cohort.array.StringArray;
+import com.cohort.util.Calendar2;
+import com.cohort.util.String2;
+import com.cohort.util.Test;
+
+import gov.noaa.pfel.coastwatch.pointdata.Table;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * This is an in-memory index of the per-file min and max values of a few
+ * variables (e.g., longitude, latitude, altitude/depth, and time)
+ * in an EDDTableFromFiles' fileTable, so that getDataForDapQuery can
+ * quickly find the few files which may have data matching a constraint
+ * (e.g., time&gt;=2018-03-01) without testing every row of the fileTable.
+ *
+ * <p>For each indexed variable, this keeps the files' min values (sorted) and
+ * the files' max values (sorted), so a binary search finds the files which
+ * may match a &lt;, &lt;=, &gt;, &gt;=, or = constraint.
+ * The smallest of those sets of files is then checked against the other
+ * indexed constraints (e.g., a lon,lat bounding box and a time range).
+ * The results are conservative: candidateRows() may return a few files which don't
+ * match (the caller must still test each candidate file with EDDTableFromFiles.isOK),
+ * but it never omits a file which may match.
+ *
+ * <p>An index is immutable, so it is thread-safe.
+ * It describes one version of the fileTable (see fileTable()), so
+ * a new index is made whenever a changed fileTable is swapped into place
+ * (e.g., by lowUpdate).
+ *
+ * @author agent (agent@local) 2026-10-18
+ */
+public class FileTableIndex {
+
+    /**
+     * Set this to true (by calling verbose=true in your program, not by changing the code here)
+     * if you want lots of diagnostic messages sent to String2.log.
+     */
+    public static boolean verbose = false;
+
+    /** Time values which are NaN are stored as these (as in EDDTableFromFiles.getDataForDapQuery). */
+    public final static double TIME_NAN_MIN = -1e100, TIME_NAN_MAX = 1e100;
+
+    private final Table fileTable;  //the fileTable this describes
+    private final int nFiles;
+    private final int dvs[];        //the indexed dataVariable numbers
+    private final boolean isTime[]; //if true, the values are epochSeconds
+    private final double min[][], max[][]; //[i][fileTable row] 
+    private final double sortedMin[][]; //[i][] the valid min values, sorted
+    private final int rowOfMin[][];     //[i][] the fileTable row of each sortedMin value
+    private final double sortedMax[][];
+    private final int rowOfMax[][];
+    private final int otherRows[][];    //[i][] the rows with a NaN min or max (always candidates)
+
+    /**
+     * The constructor.
+     *
+     * @param tFileTable the fileTable this describes (for fileTable())
+     * @param tDvs the indexed dataVariable numbers
+     * @param tMin [i][fileTable row] the files' min values for dataVariable tDvs[i]
+     *    (numeric source values, or epochSeconds if tIsTime[i]).
+     *    For time variables, NaN mins should already have been changed to TIME_NAN_MIN.
+     * @param tMax [i][fileTable row] the files' max values for dataVariable tDvs[i].
+     *    For time variables, NaN maxes should already have been changed to TIME_NAN_MAX.
+     * @param tIsTime [i] indicates if dataVariable tDvs[i] is an EDVTimeStamp.
+     */
+    public FileTableIndex(Table tFileTable, int tDvs[], double tMin[][], double tMax[][],
+        boolean tIsTime[]) {
+
+        long time = System.currentTimeMillis();
+        fileTable = tFileTable;
+        nFiles = tFileTable.nRows();
+        dvs = tDvs;
+        isTime = tIsTime;
+        min = tMin;
+        max = tMax;
+        int nDvs = dvs.length;
+        sortedMin = new double[nDvs][];
+        rowOfMin  = new int[nDvs][];
+        sortedMax = new double[nDvs][];
+        rowOfMax  = new int[nDvs][];
+        otherRows = new int[nDvs][];
+        for (int i = 0; i < nDvs; i++) {
+            //gather the valid rows
+            IntArray validRows = new IntArray(nFiles, false);
+            IntArray other = new IntArray();
+            for (int row = 0; row < nFiles; row++) {
+                if (Double.isNaN(tMin[i][row]) || Double.isNaN(tMax[i][row]))
+                     other.add(row);
+                else validRows.add(row);
+            }
+            otherRows[i] = other.toArray();
+
+            int valid[] = validRows.toArray();
+            rowOfMin[i] = (int[])valid.clone();
+            sortedMin[i] = sort(tMin[i], rowOfMin[i]);
+            rowOfMax[i] = valid;
+            sortedMax[i] = sort(tMax[i], rowOfMax[i]);
+        }
+        if (verbose) String2.log("FileTableIndex nFiles=" + nFiles + " nVars=" + nDvs +
+            " TIME=" + (System.currentTimeMillis() - time) + "ms");
+    }
+
+    /**
+     * This sorts rows by their values.
+     *
+     * @param values [fileTable row] the values
+     * @param rows the rows to be sorted. This is sorted in place.
+     * @return the values of the sorted rows (in sorted order)
+     */
+    private static double[] sort(double values[], int rows[]) {
+        int n = rows.length;
+        double tValues[] = new double[n];
+        for (int j = 0; j < n; j++)
+            tValues[j] = values[rows[j]];
+        ArrayList table = new ArrayList();
+        table.add(new DoubleArray(tValues));
+        int rank[] = PrimitiveArray.rank(table, new int[]{0}, new boolean[]{true});
+        int tRows[] = new int[n];
+        double sorted[] = new double[n];
+        for (int j = 0; j < n; j++) {
+            tRows[j]  = rows[rank[j]];
+            sorted[j] = tValues[rank[j]];
+        }
+        System.arraycopy(tRows, 0, rows, 0, n);
+        return sorted;
+    }
+
+    /** The fileTable this index describes. */
+    public Table fileTable() {
+        return fileTable;
+    }
+
+    /** The number of rows (files) in the fileTable. */
+    public int nFiles() {
+        return nFiles;
+    }
+
+    /**
+     * This returns the slop to be used for a constraint value,
+     * so candidateRows() is at least as generous as
+     * EDDTableFromFiles.isOK's almostEqual tests (which use at most 5 significant digits).
+     */
+    private static double slop(double conValue) {
+        return Math.abs(conValue) * 2e-5 + 1e-4;
+    }
+
+    /**
+     * This returns the largest min value that a file may have and still
+     * match a &lt;, &lt;=, or = constraint.
+     */
+    private static double highestMin(double conValue) {
+        return conValue + slop(conValue);
+    }
+
+    /**
+     * This returns the smallest max value that a file may have and still
+     * match a &gt;, &gt;=, or = constraint.
+     *
+     * @param secondsNowP4 now + 4 hours, in epochSeconds
+     */
+    private double lowestMax(int i, double conValue, double secondsNowP4) {
+        double tValue = conValue - slop(conValue);
+        //getDataForDapQuery pretends that a file's max time which is
+        //within the last 24 hours is now+4hours
+        return isTime[i]? 
+            Math.min(tValue, secondsNowP4 - Calendar2.SECONDS_PER_DAY) : 
+            tValue;
+    }
+
+    /**
+     * This returns the position of the first value in sorted which is &gt; value.
+     */
+    private static int firstGreater(double sorted[], double value) {
+        int lo = 0, hi = sorted.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sorted[mid] <= value) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * This returns the position of the first value in sorted which is &gt;= value.
+     */
+    private static int firstGreaterOrEqual(double sorted[], double value) {
+        int lo = 0, hi = sorted.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sorted[mid] < value) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * This returns the rows of the files which may have data matching
+     * the constraints (in ascending order).
+     * This uses the most selective of the constraints which are on indexed variables.
+     * The caller must still test each candidate file with all of the constraints.
+     *
+     * @param cdvi [con] the dataVariable number of each constraint variable
+     * @param conOps [con] the constraint operators
+     * @param conValuesD [con] the constraint values (source values,
+     *     but epochSeconds for time variables)
+     * @return the (sorted) rows of the candidate files,
+     *    or null if none of the constraints can be tested with this index
+     *    (so all files are candidates).
+     */
+    public int[] candidateRows(int cdvi[], StringArray conOps, double conValuesD[]) {
+        //find the constraints which can be tested
+        //and the most selective side (min or max) of any of them
+        int nCon = cdvi.length;
+        int conI[] = new int[nCon];
+        boolean conTestMin[] = new boolean[nCon];
+        boolean conTestMax[] = new boolean[nCon];
+        int bestI = -1, bestFrom = 0, bestTo = 0;
+        boolean bestUsesMin = false;
+        int bestN = Integer.MAX_VALUE;
+        double secondsNowP4 = System.currentTimeMillis() / 1000 + 4 * Calendar2.SECONDS_PER_HOUR;
+        for (int con = 0; con < nCon; con++) {
+            int i = String2.indexOf(dvs, cdvi[con]);
+            conI[con] = i;
+            double conValue = conValuesD[con];
+            if (i < 0 || Double.isNaN(conValue))
+                continue;
+            String op = conOps.get(con);
+            //0"!=", 1REGEX_OP, 2"<=", 3">=", 4"=", 5"<", 6">"};
+            conTestMin[con] = op.equals("<") || op.equals("<=") || op.equals("=");
+            conTestMax[con] = op.equals(">") || op.equals(">=") || op.equals("=");
+
+            if (conTestMin[con]) {
+                //candidates: min <= conValue
+                int to = firstGreater(sortedMin[i], highestMin(conValue));
+                int n = to + otherRows[i].length;
+                if (n < bestN) {
+                    bestI = i; bestFrom = 0; bestTo = to; bestUsesMin = true; bestN = n;
+                }
+            }
+            if (conTestMax[con]) {
+                //candidates: max >= conValue
+                int from = firstGreaterOrEqual(sortedMax[i], lowestMax(i, conValue, secondsNowP4));
+                int n = sortedMax[i].length - from + otherRows[i].length;
+                if (n < bestN) {
+                    bestI = i; bestFrom = from; bestTo = sortedMax[i].length; bestUsesMin = false; bestN = n;
+                }
+            }
+        }
+        if (bestI < 0)
+            return null;
+
+        //gather the candidates from the most selective side
+        int rows[] = new int[bestN];
+        int n = bestTo - bestFrom;
+        System.arraycopy(bestUsesMin? rowOfMin[bestI] : rowOfMax[bestI], bestFrom, rows, 0, n);
+        System.arraycopy(otherRows[bestI], 0, rows, n, otherRows[bestI].length);
+
+        //remove the candidates which fail the other testable constraints
+        int nKeep = 0;
+        for (int j = 0; j < bestN; j++) {
+            int row = rows[j];
+            boolean ok = true;
+            for (int con = 0; con < nCon; con++) {
+                int i = conI[con];
+                if (i < 0) 
+                    continue;
+                double tMin = min[i][row];
+                double tMax = max[i][row];
+                if (Double.isNaN(tMin) || Double.isNaN(tMax)) //always a candidate
+                    continue;
+                if ((conTestMin[con] && tMin > highestMin(conValuesD[con])) ||
+                    (conTestMax[con] && tMax < lowestMax(i, conValuesD[con], secondsNowP4))) {
+                    ok = false;
+                    break;
+                }
+            }
+            if (ok) 
+                rows[nKeep++] = row;
+        }
+        if (nKeep < bestN)
+            rows = Arrays.copyOf(rows, nKeep);
+        Arrays.sort(rows); //so files are processed in fileTable order
+        if (verbose) String2.log("FileTableIndex.candidateRows nCandidates=" + nKeep +
+            " of nFiles=" + nFiles);
+        return rows;
+    }
+
+    /**
+     * This tests this class.
+     *
+     * @throws Throwable if trouble
+     */
+    public static void test() throws Throwable {
+        String2.log("\n*** FileTableIndex.test()");
+        verbose = false;
+        Random random = new Random(17);
+
+        //make a fileTable-like set of files with random lon and time ranges
+        int nFiles = 2000;
+        Table table = new Table();
+        table.addColumn("fileName", new StringArray(nFiles, true));
+        double lonMin[]  = new double[nFiles], lonMax[]  = new double[nFiles];
+        double timeMin[] = new double[nFiles], timeMax[] = new double[nFiles];
+        double nowSeconds = System.currentTimeMillis() / 1000;
+        for (int f = 0; f < nFiles; f++) {
+            lonMin[f] = Math.rint(random.nextDouble() * 36000 - 18000) / 100;
+            lonMax[f] = lonMin[f] + random.nextInt(5);
+            timeMin[f] = nowSeconds - random.nextInt(1000) * Calendar2.SECONDS_PER_DAY;
+            timeMax[f] = timeMin[f] + random.nextInt(10) * Calendar2.SECONDS_PER_HOUR;
+        }
+        lonMin[3] = Double.NaN;  lonMax[3] = Double.NaN;  //all NaN
+        lonMin[4] = Double.NaN;  //just min is NaN
+        timeMin[5] = TIME_NAN_MIN;
+        timeMax[6] = TIME_NAN_MAX;
+        timeMax[7] = nowSeconds - 10 * Calendar2.SECONDS_PER_HOUR; //recent
+        FileTableIndex index = new FileTableIndex(table, new int[]{2, 5},
+            new double[][]{lonMin, timeMin}, new double[][]{lonMax, timeMax},
+            new boolean[]{false, true});
+        Test.ensureTrue(index.fileTable() == table, "");
+        Test.ensureEqual(index.nFiles(), nFiles, "");
+
+        //no usable constraints
+        Test.ensureTrue(index.candidateRows(new int[]{1}, new StringArray(new String[]{"="}),
+            new double[]{5}) == null, "");
+        Test.ensureTrue(index.candidateRows(new int[]{2, 2},
+            new StringArray(new String[]{"!=", PrimitiveArray.REGEX_OP}),
+            new double[]{5, Double.NaN}) == null, "");
+        Test.ensureTrue(index.candidateRows(new int[]{2}, new StringArray(new String[]{"="}),
+            new double[]{Double.NaN}) == null, "");
+
+        //the candidates must include every file which passes isOK
+        String ops[] = {"<", "<=", "=", ">=", ">"};
+        for (int trial = 0; trial < 1000; trial++) {
+            boolean testTime = trial % 2 == 1;
+            String op = ops[trial % ops.length];
+            double conValue = testTime?
+                nowSeconds - random.nextInt(1002) * Calendar2.SECONDS_PER_DAY + random.nextInt(5) :
+                trial % 7 == 0? lonMin[random.nextInt(nFiles)] : //exact edges
+                Math.rint(random.nextDouble() * 37000 - 18500) / 100;
+            int rows[] = index.candidateRows(new int[]{testTime? 5 : 2},
+                new StringArray(new String[]{op}), new double[]{conValue});
+            for (int j = 1; j < rows.length; j++)
+                Test.ensureTrue(rows[j - 1] < rows[j], "rows aren't sorted");
+            double secondsNowP4 = System.currentTimeMillis() / 1000 + 4 * Calendar2.SECONDS_PER_HOUR;
+            int nOK = 0;
+            for (int f = 0; f < nFiles; f++) {
+                boolean ok;
+                if (testTime) {
+                    double fMax = timeMax[f];
+                    if (secondsNowP4 - fMax > 0 && secondsNowP4 - fMax < Calendar2.SECONDS_PER_DAY)
+                        fMax = secondsNowP4;
+                    ok = EDDTableFromFiles.isOK(String.class, timeMin[f], fMax, 0, op, conValue);
+                } else {
+                    ok = EDDTableFromFiles.isOK(float.class, lonMin[f], lonMax[f], 0, op, conValue);
+                }
+                if (ok) {
+                    nOK++;
+                    Test.ensureTrue(Arrays.binarySearch(rows, f) >= 0,
+                        "trial=" + trial + " file=" + f + " op=" + op + " conValue=" + conValue);
+                }
+            }
+            //and shouldn't include many extra files
+            Test.ensureTrue(rows.length <= nOK + 10,
+                "trial=" + trial + " nCandidates=" + rows.length + " nOK=" + nOK);
+        }
+
+        //the most selective constraint is used
+        int rows1[] = index.candidateRows(new int[]{2}, new StringArray(new String[]{">="}),
+            new double[]{170});
+        int rows2[] = index.candidateRows(new int[]{2, 5}, new StringArray(new String[]{">=", ">"}),
+            new double[]{170, nowSeconds - 2000 * Calendar2.SECONDS_PER_DAY});
+        Test.ensureTrue(rows1.length > 0, "");
+        Test.ensureEqual(String2.toCSSVString(rows1), String2.toCSSVString(rows2), "");
+
+        //multiple constraints (a lon range and a time range) are all applied
+        double minTime = nowSeconds - 500 * Calendar2.SECONDS_PER_DAY;
+        rows1 = index.candidateRows(new int[]{2, 2, 5, 5},
+            new StringArray(new String[]{">=", "<=", ">=", "<"}),
+            new double[]{-10, 10, minTime, minTime + 100 * Calendar2.SECONDS_PER_DAY});
+        int nOK = 0;
+        for (int f = 0; f < nFiles; f++) {
+            if (EDDTableFromFiles.isOK(float.class, lonMin[f], lonMax[f], 0, ">=", -10) &&
+                EDDTableFromFiles.isOK(float.class, lonMin[f], lonMax[f], 0, "<=", 10) &&
+                EDDTableFromFiles.isOK(String.class, timeMin[f], timeMax[f], 0, ">=", minTime) &&
+                EDDTableFromFiles.isOK(String.class, timeMin[f], timeMax[f], 0, "<", 
+                    minTime + 100 * Calendar2.SECONDS_PER_DAY)) {
+                nOK++;
+                Test.ensureTrue(Arrays.binarySearch(rows1, f) >= 0, "file=" + f);
+            }
+        }
+        Test.ensureTrue(nOK > 0, "");
+        Test.ensureTrue(rows1.length <= nOK + 10, "nCandidates=" + rows1.length + " nOK=" + nOK);
+
+        String2.log("\n*** FileTableIndex.test() finished successfully.");
+    }
+
+}
@@ -0,0 +1,737 @@
+/*
+ * GridChunkCache Copyright 2026, agent (agent@local).
+ * See the LICENSE.txt file in this file's directory.
+ */
+package gov.noaa.pfel.erddap.dataset;
+
+import com.cohort.array.Attributes;
+import com.cohort.array.DoubleArray;
+import com.cohort.array.IntArray;
+import com.cohort.array.PrimitiveArray;
+import com.cohort.util.File2;
+import com.cohort.util.Math2;
+import com.cohort.util.MustBe;
+import com.cohort.util.String2;
+import com.cohort.util.Test;
+
+import dods.dap.DConnect;
+
+import gov.noaa.pfel.erddap.util.EDStatic;
+import gov.noaa.pfel.erddap.util.ThreadedWorkManager;
+import gov.noaa.pfel.erddap.variable.EDV;
+import gov.noaa.pfel.erddap.variable.EDVGridAxis;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * This is a local disk cache of chunks of a remote grid dataset's source data
+ * (for EDDGridFromDap and EDDGridFromErddap, see their &lt;chunkCacheMB&gt;),
+ * so that requests for popular data (e.g., the most recent time step)
+ * don't all have to go back to the remote server.
+ *
+ * <p>The source's index space is split into fixed chunks: 1 index along the
+ * leftmost axis (usually time), and the other axes are split
+ * so that each chunk has at most MAX_CHUNK_VALUES values (per data variable).
+ * Each chunk of each data variable is stored in a gzipped file.
+ * getSourceData answers a request from the cached chunks, and fetches
+ * (and caches) the chunks which aren't in the cache yet.
+ * When the total size of the files is more than maxBytes,
+ * the least recently used chunks are deleted.
+ * Like other cached files, the chunk files are also deleted by the cache cleaner
+ * when they are older than EDStatic.cacheMillis (then they are fetched again).
+ *
+ * <p>Because the leftmost axis is the only axis which can change
+ * (via lowUpdate, which just adds values), the chunks stay valid
+ * until invalidateFrom is called (e.g., for the last old time step,
+ * which may have been incomplete) or the dataset is reloaded.
+ *
+ * <p>This is thread-safe.
+ *
+ * @author agent (agent@local) 2026-10-18
+ */
+public class GridChunkCache {
+
+    /**
+     * Set this to true (by calling verbose=true in your program,
+     * not by changing the code here)
+     * if you want lots of diagnostic messages sent to String2.log.
+     */
+    public static boolean verbose = false;
+
+    /** The maximum number of values (per data variable) in a chunk. */
+    public final static int MAX_CHUNK_VALUES = 262144;
+
+    /** If a request needs less than this fraction of the values in the chunks
+     * it touches (e.g., a time series at one point) and some of the chunks aren't 
+     * in the cache, the request is passed to the Fetcher instead. */
+    public final static double MIN_CHUNK_FRACTION = 0.1;
+
+    /**
+     * This gets data from the source (not from the cache),
+     * e.g., the dataset's getSourceDataFromSource method.
+     */
+    public interface Fetcher {
+        /** See EDDGrid.getSourceData. */
+        PrimitiveArray[] getSourceData(EDV tDataVariables[], IntArray tConstraints)
+            throws Throwable;
+    }
+
+    private final String datasetID;
+    private final String dir;
+    private final long maxBytes;
+    private final EDVGridAxis axisVariables[];
+    private final int chunkSize[];
+
+    /** fileName -&gt; nBytes, in least-recently-used order. Synchronize on this. */
+    private final LinkedHashMap<String, Long> lru = new LinkedHashMap(16, 0.75f, true);
+    private long totalBytes = 0;
+    /** This is incremented by invalidateFrom, so that chunks which were being
+     * fetched at the time aren't stored. */
+    private int generation = 0;
+
+    /** Statistics (for diagnostics). */
+    private int nHits = 0, nMisses = 0, nBypassed = 0;
+
+    /**
+     * The constructor. This deletes any old files in the directory.
+     *
+     * @param tDatasetID the datasetID
+     * @param tDir the directory (with slash at end) for the chunk files, e.g.,
+     *    the dataset's cacheDirectory() + "chunks/". It will be created if needed.
+     * @param tMaxMB the maximum size of the cache's files (in MB)
+     * @param tAxisVariables the dataset's axisVariables
+     */
+    public GridChunkCache(String tDatasetID, String tDir, int tMaxMB,
+        EDVGridAxis tAxisVariables[]) {
+        this(tDatasetID, tDir, tMaxMB, tAxisVariables, MAX_CHUNK_VALUES);
+    }
+
+    /**
+     * A constructor which allows a different maximum number of values per chunk
+     * (e.g., for testing).
+     *
+     * @param tMaxChunkValues the maximum number of values (per data variable) in a chunk
+     */
+    public GridChunkCache(String tDatasetID, String tDir, int tMaxMB,
+        EDVGridAxis tAxisVariables[], int tMaxChunkValues) {
+
+        datasetID = tDatasetID;
+        dir = tDir;
+        maxBytes = Math.max(1, tMaxMB) * (long)Math2.BytesPerMB;
+        axisVariables = tAxisVariables;
+        File2.makeDirectory(dir);
+        File2.deleteAllFiles(dir);
+
+        //chunkSize: 1 for the leftmost axis;
+        //repeatedly halve the largest of the other axes' sizes until the chunk is small enough
+        int nAv = axisVariables.length;
+        chunkSize = new int[nAv];
+        chunkSize[0] = 1;
+        long nValues = 1;
+        for (int av = 1; av < nAv; av++) {
+            chunkSize[av] = Math.max(1, axisVariables[av].sourceValues().size());
+            nValues *= chunkSize[av];
+        }
+        while (nValues > tMaxChunkValues) {
+            int biggest = 0;
+            for (int av = 1; av < nAv; av++)
+                if (chunkSize[av] > chunkSize[biggest])
+                    biggest = av;
+            if (chunkSize[biggest] == 1)
+                break;
+            nValues /= chunkSize[biggest];
+            chunkSize[biggest] = (chunkSize[biggest] + 1) / 2;
+            nValues *= chunkSize[biggest];
+        }
+        if (verbose) String2.log("GridChunkCache(" + datasetID + ") maxMB=" + tMaxMB +
+            " chunkSize=" + String2.toCSSVString(chunkSize));
+    }
+
+    /** The size of the chunks along each axis. */
+    public int[] chunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * This gets source data for a request from the cache
+     * (and from the fetcher for the chunks which aren't in the cache yet).
+     * A request with stride &gt; 1 for any axis but the leftmost,
+     * or which needs just a small part of the chunks it touches
+     * (see MIN_CHUNK_FRACTION) when some of them aren't in the cache,
+     * is just passed to the fetcher, since it would need far more values than requested.
+     * If several chunks aren't in the cache, they are fetched concurrently.
+     *
+     * @param tDataVariables EDV[] with just the requested data variables
+     * @param tConstraints  int[nAxisVariables*3]
+     *   where av*3+0=startIndex, av*3+1=stride, av*3+2=stopIndex.
+     * @param fetcher which gets data from the source
+     * @return a PrimitiveArray[] where the first axisVariables.length elements
+     *   are the axisValues and the next tDataVariables.length elements
+     *   are the dataValues (see EDDGrid.getSourceData).
+     * @throws Throwable if trouble
+     */
+    public PrimitiveArray[] getSourceData(EDV tDataVariables[], IntArray tConstraints,
+        Fetcher fetcher) throws Throwable {
+
+        int nAv = axisVariables.length;
+        int nDv = tDataVariables.length;
+        int start[]  = new int[nAv];
+        int stride[] = new int[nAv];
+        int stop[]   = new int[nAv];
+        int nReq[]   = new int[nAv];
+        for (int av = 0; av < nAv; av++) {
+            start[av]  = tConstraints.get(av * 3);
+            stride[av] = tConstraints.get(av * 3 + 1);
+            stop[av]   = tConstraints.get(av * 3 + 2);
+            nReq[av] = 1 + (stop[av] - start[av]) / stride[av];
+            if (av > 0 && stride[av] > 1) {
+                synchronized (lru) {nBypassed++;}
+                return fetcher.getSourceData(tDataVariables, tConstraints);
+            }
+        }
+
+        //the results' axis values
+        PrimitiveArray results[] = new PrimitiveArray[nAv + nDv];
+        long nValues = 1;
+        for (int av = 0; av < nAv; av++) {
+            results[av] = axisVariables[av].sourceValues().subset(start[av], stride[av], stop[av]);
+            nValues *= nReq[av];
+        }
+        Math2.ensureArraySizeOkay(nValues, "GridChunkCache");
+
+        //the chunks (along each axis) which have requested values
+        IntArray chunks[] = new IntArray[nAv];
+        long nChunkValues = 1; //the number of values in all of those chunks
+        for (int av = 0; av < nAv; av++) {
+            chunks[av] = new IntArray();
+            int nAxisValues = axisVariables[av].sourceValues().size();
+            long nAxisChunkValues = 0;
+            for (int i = start[av]; i <= stop[av]; i += stride[av]) {
+                int c = i / chunkSize[av];
+                if (chunks[av].size() == 0 || chunks[av].get(chunks[av].size() - 1) != c) {
+                    chunks[av].add(c);
+                    nAxisChunkValues += Math.min(chunkSize[av], nAxisValues - c * chunkSize[av]);
+                }
+            }
+            nChunkValues *= nAxisChunkValues;
+        }
+
+        //each chunk's first and last index (like an odometer over chunks[])
+        final ArrayList<int[]> cStarts = new ArrayList();
+        final ArrayList<int[]> cStops  = new ArrayList();
+        int chunkPo[] = new int[nAv];
+        while (true) {
+            int cStart[] = new int[nAv];
+            int cStop[] = new int[nAv];
+            for (int av = 0; av < nAv; av++) {
+                cStart[av] = chunks[av].get(chunkPo[av]) * chunkSize[av];
+                cStop[av] = Math.min(cStart[av] + chunkSize[av],
+                    axisVariables[av].sourceValues().size()) - 1;
+            }
+            cStarts.add(cStart);
+            cStops.add(cStop);
+
+            //next chunk
+            int av = nAv - 1;
+            while (av >= 0 && ++chunkPo[av] == chunks[av].size()) {
+                chunkPo[av] = 0;
+                av--;
+            }
+            if (av < 0)
+                break;
+        }
+        int nChunks = cStarts.size();
+
+        //If the request needs just a small part of the chunks' values 
+        //(e.g., a time series at one point) and some of the chunks aren't in the cache,
+        //it is much faster to just get the requested values from the source.
+        int nMissingChunks = nMissingChunks(tDataVariables, cStarts);
+        if (nMissingChunks > 0 && nValues < nChunkValues * MIN_CHUNK_FRACTION) {
+            if (verbose) String2.log("GridChunkCache(" + datasetID + ") bypassed: the request needs " +
+                nValues + " of the " + nChunkValues + " values in " + nChunks + " chunks.");
+            synchronized (lru) {nBypassed++;}
+            return fetcher.getSourceData(tDataVariables, tConstraints);
+        }
+
+        //if several chunks must be fetched, fetch them concurrently
+        //(but no more at once than DConnect allows for one host)
+        int nThreads = Math.min(nMissingChunks, DConnect.getMaxConnectionsPerHost());
+        if (nThreads < 2) {
+            for (int c = 0; c < nChunks; c++)
+                addChunk(getChunk(tDataVariables, cStarts.get(c), cStops.get(c), fetcher),
+                    cStarts.get(c), cStops.get(c), results, start, stride, stop, nReq, nValues);
+            return results;
+        }
+        ThreadedWorkManager<PrimitiveArray[]> workManager = 
+            new ThreadedWorkManager(datasetID, nThreads);
+        try {
+            int nAdded = 0;
+            for (int c = 0; c < nChunks; c++) {
+                //keep nThreads chunks pending, so few chunks are in memory at once
+                while (nAdded < nChunks && nAdded < c + nThreads) {
+                    final int tc = nAdded++;
+                    workManager.addTask(() -> {
+                        try {
+                            return getChunk(tDataVariables, cStarts.get(tc), cStops.get(tc), fetcher);
+                        } catch (Throwable t) {
+                            throw ThreadedWorkManager.rethrow(t);
+                        }
+                    });
+                }
+                addChunk(workManager.next(), 
+                    cStarts.get(c), cStops.get(c), results, start, stride, stop, nReq, nValues);
+            }
+        } finally {
+            workManager.forceShutdown();
+        }
+        return results;
+    }
+
+    /**
+     * This returns the number of chunks which aren't in the cache 
+     * (for at least one of the data variables).
+     *
+     * @param tDataVariables the requested data variables
+     * @param cStarts the first index of each chunk (along each axis)
+     * @return the number of chunks which aren't in the cache
+     */
+    private int nMissingChunks(EDV tDataVariables[], ArrayList<int[]> cStarts) {
+        int nMissing = 0;
+        synchronized (lru) {
+            for (int c = 0; c < cStarts.size(); c++) {
+                for (int dv = 0; dv < tDataVariables.length; dv++) {
+                    //containsKey doesn't change the lru order
+                    if (!lru.containsKey(fileName(tDataVariables[dv], cStarts.get(c)))) {
+                        nMissing++;
+                        break;
+                    }
+                }
+            }
+        }
+        return nMissing;
+    }
+
+    /**
+     * This copies the requested values which are in a chunk 
+     * (of each data variable) to the results.
+     *
+     * @param chunkData the chunk's values for each data variable
+     * @param cStart the first index of the chunk (along each axis)
+     * @param cStop the last index of the chunk (along each axis)
+     * @param results the results (see getSourceData). 
+     *   The data variables' PrimitiveArrays are created if needed.
+     * @param start the request's start index (along each axis)
+     * @param stride the request's stride (along each axis)
+     * @param stop the request's stop index (along each axis)
+     * @param nReq the number of values requested (along each axis)
+     * @param nValues the total number of values requested (per data variable)
+     */
+    private static void addChunk(PrimitiveArray chunkData[], int cStart[], int cStop[],
+        PrimitiveArray results[], int start[], int stride[], int stop[], int nReq[], 
+        long nValues) {
+
+        int nAv = cStart.length;
+        for (int dv = 0; dv < chunkData.length; dv++) {
+            if (results[nAv + dv] == null)
+                results[nAv + dv] = PrimitiveArray.factory(
+                    chunkData[dv].elementClass(), (int)nValues, true);
+            copy(chunkData[dv], cStart, cStop,
+                results[nAv + dv], start, stride, stop, nReq);
+        }
+    }
+
+    /**
+     * This copies the requested values which are in a chunk to the results.
+     *
+     * @param chunk the chunk's values
+     * @param cStart the first index of the chunk (along each axis)
+     * @param cStop the last index of the chunk (along each axis)
+     * @param result the results' values
+     * @param start the request's start index (along each axis)
+     * @param stride the request's stride (along each axis)
+     * @param stop the request's stop index (along each axis)
+     * @param nReq the number of values requested (along each axis)
+     */
+    private static void copy(PrimitiveArray chunk, int cStart[], int cStop[],
+        PrimitiveArray result, int start[], int stride[], int stop[], int nReq[]) {
+
+        int nAv = cStart.length;
+
+        //the requested indices in the chunk: first[av] to last[av] by stride[av]
+        int first[] = new int[nAv];
+        int last[]  = new int[nAv];
+        for (int av = 0; av < nAv; av++) {
+            first[av] = cStart[av] <= start[av]? start[av] :
+                start[av] + ((cStart[av] - start[av] + stride[av] - 1) / stride[av]) * stride[av];
+            last[av] = Math.min(stop[av], cStop[av]);
+            if (first[av] > last[av])
+                return; //no requested values in this chunk
+        }
+
+        //the multipliers for the index of each axis (row-major)
+        long cMult[] = new long[nAv];
+        long rMult[] = new long[nAv];
+        long cm = 1, rm = 1;
+        for (int av = nAv - 1; av >= 0; av--) {
+            cMult[av] = cm;
+            rMult[av] = rm;
+            cm *= cStop[av] - cStart[av] + 1;
+            rm *= nReq[av];
+        }
+
+        //like an odometer over the requested indices in the chunk
+        int current[] = new int[nAv];
+        System.arraycopy(first, 0, current, 0, nAv);
+        while (true) {
+            long cIndex = 0, rIndex = 0;
+            for (int av = 0; av < nAv; av++) {
+                cIndex += (current[av] - cStart[av]) * cMult[av];
+                rIndex += ((current[av] - start[av]) / stride[av]) * rMult[av];
+            }
+            result.setFromPA((int)rIndex, chunk, (int)cIndex);
+
+            int av = nAv - 1;
+            while (av >= 0) {
+                current[av] += stride[av];
+                if (current[av] <= last[av])
+                    break;
+                current[av] = first[av];
+                av--;
+            }
+            if (av < 0)
+                return;
+        }
+    }
+
+    /**
+     * This gets one chunk of each of the data variables from the cache
+     * or (for the ones which aren't in the cache) from the fetcher.
+     *
+     * @return the chunk's values for each data variable
+     * @throws Throwable if trouble
+     */
+    private PrimitiveArray[] getChunk(EDV tDataVariables[], int cStart[], int cStop[],
+        Fetcher fetcher) throws Throwable {
+
+        int nAv = cStart.length;
+        int nDv = tDataVariables.length;
+        PrimitiveArray chunkData[] = new PrimitiveArray[nDv];
+        String fileNames[] = new String[nDv];
+        ArrayList<EDV> missing = new ArrayList();
+        for (int dv = 0; dv < nDv; dv++) {
+            fileNames[dv] = fileName(tDataVariables[dv], cStart);
+            chunkData[dv] = read(fileNames[dv]);
+            if (chunkData[dv] == null)
+                missing.add(tDataVariables[dv]);
+        }
+        synchronized (lru) {
+            nHits   += nDv - missing.size();
+            nMisses += missing.size();
+        }
+        if (missing.size() == 0)
+            return chunkData;
+
+        //get the missing data variables from the source
+        int tGeneration;
+        synchronized (lru) {tGeneration = generation;}
+        IntArray constraints = new IntArray();
+        long nValues = 1;
+        for (int av = 0; av < nAv; av++) {
+            constraints.add(cStart[av]);
+            constraints.add(1);
+            constraints.add(cStop[av]);
+            nValues *= cStop[av] - cStart[av] + 1;
+        }
+        PrimitiveArray fetched[] = fetcher.getSourceData(
+            missing.toArray(new EDV[missing.size()]), constraints);
+        int mi = 0;
+        for (int dv = 0; dv < nDv; dv++) {
+            if (chunkData[dv] != null)
+                continue;
+            PrimitiveArray pa = fetched[nAv + mi++];
+            if (pa.size() != nValues)
+                throw new WaitThenTryAgainException(EDStatic.waitThenTryAgain +
+                    "\n(Details: GridChunkCache(" + datasetID + ") expected " + nValues +
+                    " values from the source, but got " + pa.size() + ".)");
+            chunkData[dv] = pa;
+            write(fileNames[dv], pa, tGeneration);
+        }
+        return chunkData;
+    }
+
+    /** The name of the file for a chunk of a data variable. */
+    private String fileName(EDV edv, int cStart[]) {
+        StringBuilder sb = new StringBuilder(String2.encodeFileNameSafe(edv.sourceName()));
+        for (int av = 0; av < cStart.length; av++)
+            sb.append('_').append(cStart[av]);
+        sb.append(".gz");
+        return sb.toString();
+    }
+
+    /**
+     * This reads a chunk from the cache.
+     *
+     * @param fileName
+     * @return the chunk's values or null if it isn't in the cache (or trouble)
+     */
+    private PrimitiveArray read(String fileName) {
+        Long entry;
+        synchronized (lru) {
+            entry = lru.get(fileName); //this makes it the most recently used
+            if (entry == null)
+                return null;
+        }
+        DataInputStream dis = null;
+        try {
+            dis = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(new FileInputStream(dir + fileName))));
+            Class elementClass = PrimitiveArray.elementStringToClass(dis.readUTF());
+            int n = dis.readInt();
+            PrimitiveArray pa = PrimitiveArray.factory(elementClass, n, false);
+            pa.readDis(dis, n);
+            dis.close();
+            dis = null;
+            return pa;
+        } catch (Throwable t) {
+            //e.g., the file was deleted by the cache cleaner
+            if (verbose) String2.log("GridChunkCache(" + datasetID + ") couldn't read " +
+                fileName + ": " + t.toString());
+            if (dis != null)
+                try {dis.close();} catch (Throwable t2) {}
+            //another thread may have rewritten the chunk since lru.get, so
+            //just remove the entry (and its file) if it is the one that failed
+            remove(fileName, entry);
+            return null;
+        }
+    }
+
+    /**
+     * This writes a chunk to the cache, then removes the least recently used
+     * chunks if the cache is too big. Trouble is logged, not thrown.
+     *
+     * @param fileName
+     * @param pa the chunk's values
+     * @param tGeneration the generation when the chunk was requested from the source
+     */
+    private void write(String fileName, PrimitiveArray pa, int tGeneration) {
+        //write to a temp file, so other threads never see an incomplete file
+        String tempName = fileName + Math2.random(Integer.MAX_VALUE);
+        try {
+            DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(new FileOutputStream(dir + tempName))));
+            try {
+                dos.writeUTF(pa.elementClassString());
+                dos.writeInt(pa.size());
+                pa.writeDos(dos);
+            } finally {
+                dos.close();
+            }
+            long nBytes = File2.length(dir + tempName);
+            synchronized (lru) {
+                if (tGeneration != generation) { //it was invalidated while being fetched
+                    File2.delete(dir + tempName);
+                    return;
+                }
+                File2.rename(dir + tempName, dir + fileName);
+                Long oldBytes = lru.put(fileName, new Long(nBytes));
+                if (oldBytes != null)
+                    totalBytes -= oldBytes.longValue();
+                totalBytes += nBytes;
+
+                //remove the least recently used chunks
+                Iterator<Map.Entry<String, Long>> it = lru.entrySet().iterator();
+                while (totalBytes > maxBytes && it.hasNext()) {
+                    Map.Entry<String, Long> entry = it.next();
+                    if (entry.getKey().equals(fileName))
+                        continue;
+                    File2.delete(dir + entry.getKey());
+                    totalBytes -= entry.getValue().longValue();
+                    it.remove();
+                }
+            }
+        } catch (Throwable t) {
+            String2.log("GridChunkCache(" + datasetID + ") caught while writing " +
+                fileName + ":\n" + MustBe.throwableToString(t));
+            File2.delete(dir + tempName);
+        }
+    }
+
+    /**
+     * This removes a chunk from the cache, 
+     * but only if its entry is still the specified entry.
+     *
+     * @param fileName
+     * @param entry the lru value when the chunk was looked up.
+     *   write() always puts a new Long, so == identifies the entry.
+     */
+    private void remove(String fileName, Long entry) {
+        synchronized (lru) {
+            if (lru.get(fileName) != entry)
+                return;
+            lru.remove(fileName);
+            totalBytes -= entry.longValue();
+            File2.delete(dir + fileName);
+        }
+    }
+
+    /**
+     * This removes the chunks with data for leftmost axis index &gt;= leftmostIndex,
+     * e.g., after lowUpdate has added new values to the leftmost axis,
+     * for the last old value (whose data may have been incomplete).
+     *
+     * @param leftmostIndex
+     */
+    public void invalidateFrom(int leftmostIndex) {
+        int nRemoved = 0;
+        synchronized (lru) {
+            generation++;
+            Iterator<Map.Entry<String, Long>> it = lru.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, Long> entry = it.next();
+                //fileName is sourceName_cStart0_cStart1....gz
+                String fileName = entry.getKey();
+                String parts[] = String2.split(fileName.substring(0, fileName.length() - 3), '_');
+                int cStart0 = String2.parseInt(parts[parts.length - axisVariables.length]);
+                if (cStart0 >= leftmostIndex) {
+                    File2.delete(dir + fileName);
+                    totalBytes -= entry.getValue().longValue();
+                    it.remove();
+                    nRemoved++;
+                }
+            }
+        }
+        if (verbose) String2.log("GridChunkCache(" + datasetID + ").invalidateFrom(" +
+            leftmostIndex + ") removed " + nRemoved + " chunks.");
+    }
+
+    /** This returns a short summary of the cache's statistics. */
+    public String statistics() {
+        synchronized (lru) {
+            return "GridChunkCache(" + datasetID + ") nChunks=" + lru.size() +
+                " MB=" + (totalBytes / Math2.BytesPerMB) +
+                " nHits=" + nHits + " nMisses=" + nMisses + " nBypassed=" + nBypassed;
+        }
+    }
+
+
+    /**
+     * This tests this class with a stand-in for the remote source.
+     *
+     * @throws Throwable if trouble
+     */
+    public static void test() throws Throwable {
+        String2.log("\n*** GridChunkCache.test()");
+        verbose = true;
+
+        //axes: time[6], lat[7], lon[9]; value = time*10000 + lat*100 + lon
+        EDVGridAxis axes[] = {
+            new EDVGridAxis("time", "time", new Attributes(), new Attributes(), new IntArray(0, 5)),
+            new EDVGridAxis("lat",  "lat",  new Attributes(), new Attributes(), new IntArray(0, 6)),
+            new EDVGridAxis("lon",  "lon",  new Attributes(), new Attributes(), new IntArray(0, 8))};
+        EDV dvs[] = {new EDV("sst", "sst", new Attributes(), new Attributes(), "double")};
+        final AtomicInteger nFetched = new AtomicInteger();
+        Fetcher fetcher = (tDataVariables, tConstraints) -> {
+            PrimitiveArray results[] = new PrimitiveArray[3 + tDataVariables.length];
+            DoubleArray da = new DoubleArray();
+            for (int t = tConstraints.get(0); t <= tConstraints.get(2); t += tConstraints.get(1))
+                for (int y = tConstraints.get(3); y <= tConstraints.get(5); y += tConstraints.get(4))
+                    for (int x = tConstraints.get(6); x <= tConstraints.get(8); x += tConstraints.get(7))
+                        da.add(t * 10000 + y * 100 + x);
+            for (int av = 0; av < 3; av++)
+                results[av] = axes[av].sourceValues().subset(
+                    tConstraints.get(av * 3), tConstraints.get(av * 3 + 1), tConstraints.get(av * 3 + 2));
+            for (int dv = 0; dv < tDataVariables.length; dv++)
+                results[3 + dv] = da;
+            nFetched.incrementAndGet();
+            return results;
+        };
+
+        //chunks are 1 x 4 x 5 (so 2 x 2 chunks per time step)
+        GridChunkCache cache = new GridChunkCache("testGridChunkCache",
+            EDStatic.fullTestCacheDirectory + "gridChunkCache/", 1, axes, 20);
+        Test.ensureEqual(String2.toCSSVString(cache.chunkSize()), "1, 4, 5", "");
+
+        int requests[][] = {
+            {0,1,0, 0,1,6, 0,1,8},   //all of time step 0
+            {1,2,5, 2,1,5, 3,1,7},   //strides along time, spans all 4 chunks
+            {5,1,5, 4,1,4, 5,1,5},   //1 value
+            {1,2,5, 2,1,5, 3,1,7}};  //repeat (all in cache)
+        int expectedNFetched[] = {4, 16, 16, 16};
+        for (int r = 0; r < requests.length; r++) {
+            IntArray constraints = new IntArray(requests[r]);
+            PrimitiveArray results[] = cache.getSourceData(dvs, constraints, fetcher);
+            int before = nFetched.get();
+            PrimitiveArray expected[] = fetcher.getSourceData(dvs, constraints);
+            nFetched.set(before);
+            for (int i = 0; i < results.length; i++)
+                Test.ensureEqual(results[i].toString(), expected[i].toString(), "r=" + r + " i=" + i);
+            Test.ensureEqual(nFetched.get(), expectedNFetched[r], "r=" + r);
+        }
+
+        //strides along other axes bypass the cache
+        IntArray constraints = new IntArray(new int[]{0,1,0, 0,2,6, 0,1,8});
+        Test.ensureEqual(cache.getSourceData(dvs, constraints, fetcher)[3].toString(),
+            fetcher.getSourceData(dvs, constraints)[3].toString(), "");
+        Test.ensureEqual(nFetched.get(), 18, "");
+
+        //invalidateFrom removes time steps 5+, so they are fetched again
+        //(the 4 chunks are fetched concurrently)
+        cache.invalidateFrom(5);
+        cache.getSourceData(dvs, new IntArray(requests[1]), fetcher);
+        Test.ensureEqual(nFetched.get(), 22, "");
+
+        //a time series at 1 point needs a small part of each chunk: 
+        //the cache is bypassed since time steps 2 and 4 aren't in the cache
+        constraints = new IntArray(new int[]{0,1,4, 6,1,6, 8,1,8});
+        Test.ensureEqual(cache.getSourceData(dvs, constraints, fetcher)[3].toString(),
+            "608.0, 10608.0, 20608.0, 30608.0, 40608.0", "");
+        Test.ensureEqual(nFetched.get(), 23, "");
+        //but not if all of the chunks are in the cache
+        constraints = new IntArray(new int[]{1,2,5, 6,1,6, 8,1,8});
+        Test.ensureEqual(cache.getSourceData(dvs, constraints, fetcher)[3].toString(),
+            "10608.0, 30608.0, 50608.0", "");
+        Test.ensureEqual(nFetched.get(), 23, "");
+
+        //a failed read only removes the entry if it is still the one that failed
+        //(e.g., not if another thread has just rewritten the chunk)
+        String fileName = cache.fileName(dvs[0], new int[]{0, 0, 0});
+        Long entry;
+        synchronized (cache.lru) {entry = cache.lru.get(fileName);}
+        Test.ensureTrue(entry != null, "");
+        cache.remove(fileName, new Long(entry.longValue())); //a stale entry
+        synchronized (cache.lru) {Test.ensureTrue(cache.lru.get(fileName) == entry, "");}
+        Test.ensureTrue(File2.isFile(cache.dir + fileName), "");
+
+        //a chunk whose file is damaged is removed, then fetched and cached again
+        Test.ensureEqual(String2.writeToFile(cache.dir + fileName, "not a gzip file"), "", "");
+        constraints = new IntArray(new int[]{0,1,0, 0,1,3, 0,1,4});
+        PrimitiveArray expected[] = fetcher.getSourceData(dvs, constraints);
+        nFetched.set(23);
+        for (int rep = 0; rep < 2; rep++) {
+            Test.ensureEqual(cache.getSourceData(dvs, constraints, fetcher)[3].toString(),
+                expected[3].toString(), "rep=" + rep);
+            Test.ensureEqual(nFetched.get(), 24, "rep=" + rep);
+        }
+        synchronized (cache.lru) {
+            Long newEntry = cache.lru.get(fileName);
+            Test.ensureTrue(newEntry != null && newEntry != entry, "");
+        }
+        String2.log(cache.statistics());
+
+        verbose = false;
+        String2.log("\n*** GridChunkCache.test() finished successfully.");
+    }
+
+}
@@ -18,6 +18,7 @@ import com.cohort.util.MustBe;
 import com.cohort.util.String2;
 
 import gov.noaa.pfel.erddap.util.EDStatic;
+import gov.noaa.pfel.erddap.util.ThreadedWorkManager;
 import gov.noaa.pfel.erddap.variable.EDV;
 import gov.noaa.pfel.erddap.variable.EDVGridAxis;
 
@@ -39,6 +40,12 @@ import java.util.Arrays;
  * <p>The constructor does not get any data from the source. 
  * The first call to increment() causes the first partial response to be obtained 
  * from the source.
+ *
+ * <p>If EDStatic.nGridThreads &gt; 1 and the request needs more than 1 chunk,
+ * the next chunks are obtained (by other threads) while the caller is 
+ * processing the current chunk. This is invisible to the caller, 
+ * but call releaseResources() (in a finally clause) when you are done,
+ * so the other threads stop if you stop early (e.g., after an exception).
  * 
  * @author Bob Simons (bob.simons@noaa.gov) 2007-07-06
  */
@@ -81,6 +88,11 @@ public class GridDataAccessor {
     protected PrimitiveArray partialDataValues[]; //[dv in the query]
     protected long totalNBytes;
 
+    //for getting the next chunks while the current chunk is being processed
+    protected int nReadAhead = 0; //the number of chunks to get ahead of the current chunk
+    protected NDimensionalIndex readAheadIndex; //the driverIndex of the last chunk requested
+    protected ThreadedWorkManager<PrimitiveArray[]> workManager;
+
     /**
      * This is the constructor.
      * This constructor sets everything up, but doesn't get any grid data.
@@ -314,8 +326,17 @@ public class GridDataAccessor {
                 av++;
             }
         }
-        EDStatic.ensureMemoryAvailable(nBytesPerPartialRequest, "GridDataAccessor");
         driverIndex = new NDimensionalIndex(driverShape);
+
+        //read ahead?  Each chunk being read ahead needs its own memory.
+        if (EDStatic.nGridThreads > 1 && driverIndex.size() > 1) {
+            nReadAhead = (int)Math.min(EDStatic.nGridThreads - 1, driverIndex.size() - 1);
+            //don't let all of the chunks of one request use more than half of the safe memory
+            long maxNChunks = (Math2.maxSafeMemory / 2) / Math.max(1, nBytesPerPartialRequest);
+            nReadAhead = (int)Math.max(0, Math.min(nReadAhead, maxNChunks - 1));
+        }
+        EDStatic.ensureMemoryAvailable(nBytesPerPartialRequest * (1 + nReadAhead), 
+            "GridDataAccessor");
         partialIndex = new NDimensionalIndex(partialShape);
         EDStatic.ensureArraySizeOkay(driverIndex.size(), "GridDataAccessor");  //ensure not >Integer.MAX_VALUE chunks (will never finish!)
         EDStatic.ensureArraySizeOkay(partialIndex.size(), "GridDataAccessor"); //ensure each chunk size() is ok
@@ -326,7 +347,8 @@ public class GridDataAccessor {
             //partialShape e.g., [1][1][43][45],  note 1's on left if row-major
             "\n      partialShape=" + String2.toCSSVString(partialShape) +  
             "\n      nBytesPerPartialRequest=" + nBytesPerPartialRequest +
-            "\n      totalNBytes=" + totalNBytes);
+            "\n      totalNBytes=" + totalNBytes +
+            "\n      nReadAhead=" + nReadAhead);
     }
 
     /**
@@ -533,9 +555,58 @@ public class GridDataAccessor {
         if (reallyVerbose) String2.log("      GridDataAccessor.increment getting partial data; driverIndex=[" + 
             String2.toCSSVString(driverIndex.getCurrent()) + "]");
 
+        PrimitiveArray chunk[];
+        if (nReadAhead == 0) {
+            chunk = getChunk(driverIndex.getCurrent());
+
+        } else {
+            if (workManager == null) {
+                workManager = new ThreadedWorkManager(eddGrid.datasetID(), 1 + nReadAhead);
+                readAheadIndex = (NDimensionalIndex)driverIndex.clone(); //clone() doesn't copy current
+            }
+
+            //request this chunk (if not already requested) and the next nReadAhead chunks
+            while (workManager.nPending() <= nReadAhead && 
+                   (rowMajor? readAheadIndex.increment() : readAheadIndex.incrementCM())) {
+                final int tDriverCurrent[] = (int[])readAheadIndex.getCurrent().clone();
+                workManager.addTask(() -> {
+                    try {
+                        return getChunk(tDriverCurrent);
+                    } catch (Throwable t) {
+                        throw ThreadedWorkManager.rethrow(t);
+                    }
+                });
+            }
+
+            //get this chunk (the oldest pending chunk)
+            try {
+                chunk = workManager.next();
+            } catch (Throwable t) {
+                releaseResources();
+                throw t;
+            }
+            if (!workManager.hasNext()) //that was the last chunk
+                releaseResources();
+        }
+
+        //store the results in partialDataValues (same array, so callers can hold a reference to it)
+        System.arraycopy(chunk, 0, partialDataValues, 0, dataVariables.length);
+    }
+
+    /**
+     * This gets one chunk of data from the source, checks the axis values, 
+     * and converts the data values to destination values.
+     * This doesn't change the state of this GridDataAccessor, so it is thread-safe
+     * (it may be called by the workManager's threads).
+     *
+     * @param driverCurrent the driverIndex.getCurrent() value for the desired chunk
+     * @return the destination data values for the chunk [dv in the query]
+     * @throws Throwable if unable to get the data.
+     */
+    protected PrimitiveArray[] getChunk(int driverCurrent[]) throws Throwable {
+
         //generate the partial constraint
         IntArray partialConstraints = new IntArray(constraints);
-        int driverCurrent[] = driverIndex.getCurrent();
         int pcPo = 0;
         double avInDriverExpectedValues[] = new double[nAxisVariables]; //source value
         for (int av = 0; av < nAxisVariables; av++) {
@@ -627,22 +698,40 @@ public class GridDataAccessor {
         }
             
         //process the results
+        PrimitiveArray chunk[] = new PrimitiveArray[dataVariables.length];
         for (int dv = 0; dv < dataVariables.length; dv++) { //dv in the query
             //convert source values to destination values and store
             //String2.log("!source  dv=" + dataVariables[dv].destinationName() + " " + partialResults[nAxisVariables + dv]);
-            partialDataValues[dv] = dataVariables[dv].toDestination(partialResults[nAxisVariables + dv]);
-            //String2.log("!dest    dv=" + dataVariables[dv].destinationName() + " " + partialDataValues[dv]);
+            chunk[dv] = dataVariables[dv].toDestination(partialResults[nAxisVariables + dv]);
+            //String2.log("!dest    dv=" + dataVariables[dv].destinationName() + " " + chunk[dv]);
 
             //convert missing_value to NaN
             if (convertToNaN) {
                 double mv = dataVariables[dv].destinationMissingValue();
                 double fv = dataVariables[dv].destinationFillValue();
                 if (!Double.isNaN(mv))
-                    partialDataValues[dv].switchFromTo("" + mv, ""); //for e.g., byte mv=127, ByteArray will detect 127=127 and do nothing
+                    chunk[dv].switchFromTo("" + mv, ""); //for e.g., byte mv=127, ByteArray will detect 127=127 and do nothing
                 if (!Double.isNaN(fv) && fv != mv)   //if mv is NaN, fv!=mv will be true
-                    partialDataValues[dv].switchFromTo("" + fv, "");
+                    chunk[dv].switchFromTo("" + fv, "");
             }
         }
+        return chunk;
+    }
+
+    /**
+     * If the next chunks are being read ahead (see EDStatic.nGridThreads), 
+     * this stops that and releases the threads.
+     * This is called automatically after the last chunk has been gotten,
+     * so it only needs to be called if the caller stops early.
+     * It is always safe to call this (even repeatedly).
+     */
+    public void releaseResources() {
+        if (workManager != null) {
+            workManager.forceShutdown();
+            workManager = null;
+            readAheadIndex = null;
+            nReadAhead = 0; //after this, any further chunks are gotten the normal way
+        }
     }
 
     /** 
@@ -79,13 +79,17 @@ public class GridDataAllAccessor {
         }
 
         //get all the data
-        while (gridDataAccessor.incrementChunk()) {
-            for (int dv = 0; dv < nDv; dv++) {
-                gridDataAccessor.getPartialDataValues(dv).writeDos(dos[dv]);
+        try {
+            while (gridDataAccessor.incrementChunk()) {
+                for (int dv = 0; dv < nDv; dv++) {
+                    gridDataAccessor.getPartialDataValues(dv).writeDos(dos[dv]);
+                }
             }
+            for (int dv = 0; dv < nDv; dv++) 
+                dos[dv].close();
+        } finally {
+            gridDataAccessor.releaseResources();
         }
-        for (int dv = 0; dv < nDv; dv++) 
-            dos[dv].close();
     }
 
 
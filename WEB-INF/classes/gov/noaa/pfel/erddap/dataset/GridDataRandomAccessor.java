@@ -84,10 +84,14 @@ public class GridDataRandomAccessor {
         }
 
         //get all the data
-        while (gridDataAccessor.increment()) {
-            for (int dv = 0; dv < nDv; dv++)
-               PrimitiveArray.rafWriteDouble( //this doesn't work for Strings
-                   dataRaf[dv], dataClass[dv], gridDataAccessor.getDataValueAsDouble(dv));
+        try {
+            while (gridDataAccessor.increment()) {
+                for (int dv = 0; dv < nDv; dv++)
+                   PrimitiveArray.rafWriteDouble( //this doesn't work for Strings
+                       dataRaf[dv], dataClass[dv], gridDataAccessor.getDataValueAsDouble(dv));
+            }
+        } finally {
+            gridDataAccessor.releaseResources();
         }
         gdaTotalIndex = gridDataAccessor.totalIndex();
 
@@ -8,6 +8,7 @@ import com.cohort.array.Attributes;
 import com.cohort.array.DoubleArray;
 import com.cohort.array.FloatArray;
 import com.cohort.array.IntArray;
+import com.cohort.array.LongArray;
 import com.cohort.array.PrimitiveArray;
 import com.cohort.array.ShortArray;
 import com.cohort.array.StringArray;
@@ -17,6 +18,7 @@ import com.cohort.util.Math2;
 import com.cohort.util.MustBe;
 import com.cohort.util.SimpleException;
 import com.cohort.util.String2;
+import com.cohort.util.Test;
 import com.cohort.util.XML;
 
 import gov.noaa.pfel.coastwatch.pointdata.Table;
@@ -25,19 +27,31 @@ import gov.noaa.pfel.erddap.variable.EDV;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.util.Arrays;
 
 /**
- * TableWriterAll provides a way to write a table to a series of 
- * DataOutputStreams (one per column) 
+ * TableWriterAll provides a way to write a table
  * in chunks so that the whole table is available but doesn't have to be in memory 
  * at one time.
  * This is used by EDDTable.
  *
+ * <p>The data is kept in memory (one PrimitiveArray per column) until it
+ * exceeds maxMemoryBytes. Then the data is written to one temporary file
+ * (a series of segments, each with part of one column's data),
+ * and subsequent data is added to the file whenever the in-memory
+ * data again exceeds maxMemoryBytes.
+ * So small responses never touch the file system.
+ *
  * <p>This is different from most TableWriters in that finish() doesn't 
  * write the data anywhere (to an outputStream or to another tableWriter), 
  * it just makes all of the data available.
@@ -48,6 +62,14 @@ public class TableWriterAll extends TableWriter {
 
     public static String attributeTo = "gathering data in TableWriterAll";
 
+    /** 
+     * The data is kept in memory until it exceeds this number of bytes
+     * (estimated, see Table.estimatedBytesPerRow), then it is written to a temporary file.
+     * EDStatic sets this from setup.xml's &lt;tableWriterAllMemoryMB&gt;.
+     * 0 means always use the temporary file.
+     */
+    public static long maxMemoryBytes = 10L * Math2.BytesPerMB;
+
     //set by constructor
     protected String dir;
     protected String fileNameNoExt;
@@ -56,9 +78,16 @@ public class TableWriterAll extends TableWriter {
     //POLICY: because this class may be used in more than one thread,
     //each instance makes unique temp files names by adding randomInt to name.
     protected int randomInt = Math2.random(Integer.MAX_VALUE);
-    protected DataOutputStream[] columnStreams;
     protected long totalNRows = 0; 
 
+    //the data which hasn't been written to the file (or all of the data if !spilled)
+    protected PrimitiveArray[] memoryColumns;
+    protected long memoryBytes = 0;
+
+    //the file (if the data exceeded maxMemoryBytes)
+    protected CountingOutputStream fileStream;    //null if not spilled or after finish()
+    protected LongArray[] segmentStart, segmentNBytes; //[col], null if not spilled
+
     protected Table cumulativeTable; //set by writeAllAndFinish, if used
 
     /**
@@ -83,10 +112,10 @@ public class TableWriterAll extends TableWriter {
 
 
     /**
-     * This adds the current contents of table (a chunk of data) to the columnStreams.
+     * This adds the current contents of table (a chunk of data) to the cumulative data.
      * This calls ensureCompatible each time it is called.
      * If this is the first time this is called, this does first time things
-     *   (e.g., open the columnStreams).
+     *   (e.g., make the memoryColumns).
      * The number of columns, the column names, and the types of columns 
      *   must be the same each time this is called.
      *
@@ -108,15 +137,9 @@ public class TableWriterAll extends TableWriter {
         //do firstTime stuff
         int nColumns = table.nColumns();
         if (firstTime) {
-            columnStreams = new DataOutputStream[nColumns];
-            for (int col = 0; col < nColumns; col++) {
-                columnStreams[col] = new DataOutputStream(new BufferedOutputStream(
-                    new FileOutputStream(
-                    dir + fileNameNoExt + "." + randomInt + "." + columnNames[col])));
-            }
-            if (reallyVerbose) 
-                String2.log("TableWriterAll col0 file=" + 
-                    dir + fileNameNoExt + "." + randomInt + "." + columnNames[0]);
+            memoryColumns = new PrimitiveArray[nColumns];
+            for (int col = 0; col < nColumns; col++) 
+                memoryColumns[col] = temporaryPA(columnTypes[col], table.nRows());
         }
 
         //avoid gathering more data than can be processed
@@ -126,10 +149,59 @@ public class TableWriterAll extends TableWriter {
         EDStatic.ensureMemoryAvailable(newTotalNRows * 8, attributeTo); //to process one PA
 
         //do everyTime stuff
-        //write the data
+        //add the data to memoryColumns (this copies the data, since caller may reuse table)
         for (int col = 0; col < nColumns; col++) 
-            table.getColumn(col).writeDos(columnStreams[col]);
+            memoryColumns[col].append(table.getColumn(col));
         totalNRows = newTotalNRows;
+        memoryBytes += table.nRows() * (long)table.estimatedBytesPerRow();
+
+        //too much data in memory? write it to the file
+        if (memoryBytes > maxMemoryBytes)
+            spill();
+    }
+
+    /**
+     * This appends the data in memoryColumns to the file (one segment per column)
+     * and empties memoryColumns.
+     *
+     * @throws Throwable if trouble
+     */
+    protected void spill() throws Throwable {
+        int nColumns = memoryColumns.length;
+        if (fileStream == null) {
+            String fileName = fileName();
+            if (reallyVerbose) 
+                String2.log("TableWriterAll file=" + fileName);
+            fileStream = new CountingOutputStream(new BufferedOutputStream(
+                new FileOutputStream(fileName)));
+            segmentStart  = new LongArray[nColumns];
+            segmentNBytes = new LongArray[nColumns];
+            for (int col = 0; col < nColumns; col++) {
+                segmentStart[col]  = new LongArray();
+                segmentNBytes[col] = new LongArray();
+            }
+        }
+        if (memoryColumns[0].size() == 0)
+            return;
+        DataOutputStream dos = new DataOutputStream(fileStream); //it doesn't buffer
+        for (int col = 0; col < nColumns; col++) {
+            long start = fileStream.count();
+            memoryColumns[col].writeDos(dos);
+            segmentStart[col].add(start);
+            segmentNBytes[col].add(fileStream.count() - start);
+            memoryColumns[col].clear();
+        }
+        memoryBytes = 0;
+    }
+
+    /** The name of the temporary file. */
+    protected String fileName() {
+        return dir + fileNameNoExt + "." + randomInt + ".columns";
+    }
+
+    /** This returns true if some data was written to the temporary file. */
+    public boolean spilled() {
+        return segmentStart != null;
     }
 
     
@@ -144,20 +216,21 @@ public class TableWriterAll extends TableWriter {
             return;
 
         //check for MustBe.THERE_IS_NO_DATA
-        if (columnStreams == null)
+        if (memoryColumns == null)
             throw new SimpleException(MustBe.THERE_IS_NO_DATA + " (nRows = 0)");
-        //String2.log("TableWriterAll.finish  n columnStreams=" + columnStreams.length);
-        for (int col = 0; col < columnStreams.length; col++) {
-            //close the stream
-            columnStreams[col].close();
+
+        //if the file is in use, write the remaining data to it and close it
+        if (fileStream != null) {
+            spill();
+            fileStream.close();
             //an attempt to solve File2.delete problem on these files: it couldn't hurt
-            columnStreams[col] = null;  
+            fileStream = null;
         }
-        columnStreams = null;
 
         //diagnostic
         if (verbose)
-            String2.log("TableWriterAll done. TIME=" + 
+            String2.log("TableWriterAll done. nRows=" + totalNRows + 
+                " inMemory=" + !spilled() + " TIME=" + 
                 (System.currentTimeMillis() - time) + "ms\n");
     }
 
@@ -179,13 +252,36 @@ public class TableWriterAll extends TableWriter {
         if (cumulativeTable != null)
             return cumulativeTable.getColumn(col);
 
-        //get it from DOSFile
+        //get a copy from memory
+        if (!spilled())
+            return (PrimitiveArray)memoryColumns[col].clone();
+
+        //get it from the file
         EDStatic.ensureArraySizeOkay(totalNRows, "TableWriterAll");
-        PrimitiveArray pa = PrimitiveArray.factory(columnType(col), 
-            (int)totalNRows, false);  //safe since checked above
+        PrimitiveArray pa = temporaryPA(columnType(col), 
+            (int)totalNRows);  //safe since checked above
         DataInputStream dis = dataInputStream(col);
-        pa.readDis(dis, (int)totalNRows); //safe since checked above
-        dis.close();
+        try {
+            pa.readDis(dis, (int)totalNRows); //safe since checked above
+        } finally {
+            dis.close();
+        }
+        return pa;
+    }
+
+    /**
+     * This makes a PrimitiveArray for this TableWriterAll's temporary data.
+     * For StringArrays, the Strings aren't made canonical
+     * (it is faster and the data is only kept for one request).
+     *
+     * @param type the elementClass, e.g., String.class
+     * @param capacity the initial capacity
+     * @return a PrimitiveArray with size=0
+     */
+    protected static PrimitiveArray temporaryPA(Class type, int capacity) {
+        PrimitiveArray pa = PrimitiveArray.factory(type, capacity, false);
+        if (pa instanceof StringArray)
+            ((StringArray)pa).setUseCanonical(false);
         return pa;
     }
 
@@ -211,13 +307,22 @@ public class TableWriterAll extends TableWriter {
         if (cumulativeTable != null)
             return cumulativeTable.getColumn(col);
 
-        //get it from DOSFile
+        //get a copy from memory
+        if (!spilled()) {
+            PrimitiveArray pa = memoryColumns[col];
+            return pa.subset(0, 1, Math.min(firstNRows, pa.size()) - 1);
+        }
+
+        //get it from the file
         EDStatic.ensureArraySizeOkay(totalNRows, "TableWriterAll");
-        PrimitiveArray pa = PrimitiveArray.factory(columnType(col), 
-            (int)totalNRows, false);  //safe since checked above
+        PrimitiveArray pa = temporaryPA(columnType(col), 
+            (int)totalNRows);  //safe since checked above
         DataInputStream dis = dataInputStream(col);
-        pa.readDis(dis, Math.min(firstNRows, Math2.narrowToInt(totalNRows)));
-        dis.close();
+        try {
+            pa.readDis(dis, Math.min(firstNRows, Math2.narrowToInt(totalNRows)));
+        } finally {
+            dis.close();
+        }
         return pa;
     }
 
@@ -225,7 +330,8 @@ public class TableWriterAll extends TableWriter {
      * Call this after finish() to get the data from a DataInputStream 
      * with all of the data for one of the columns.
      * IT IS UP TO THE CALLER TO CLOSE THE DataInputStream.
-     * THIS USES ALMOST NO MEMORY.
+     * If the data was written to a file, THIS USES ALMOST NO MEMORY.
+     * If the data is in memory, this uses a copy of the column's data (as bytes).
      * 
      * <p>Missing values are still represented as destinationMissingValue or
      * destinationFillValue.
@@ -236,9 +342,18 @@ public class TableWriterAll extends TableWriter {
      * @throws Throwable if trouble  (e.g., totalNRows > Integer.MAX_VALUE)
      */
     public DataInputStream dataInputStream(int col) throws Throwable {
-        DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(
-            dir + fileNameNoExt + "." + randomInt + "." + columnNames[col])));
-        return dis;
+        if (!spilled()) {
+            PrimitiveArray pa = cumulativeTable == null? memoryColumns[col] : 
+                cumulativeTable.getColumn(col);
+            ByteArrayOutputStream baos = new ByteArrayOutputStream(
+                Math2.narrowToInt(Math.max(32, (long)pa.size() * pa.elementSize())));
+            DataOutputStream dos = new DataOutputStream(baos);
+            pa.writeDos(dos);
+            dos.close();
+            return new DataInputStream(new ByteArrayInputStream(baos.toByteArray()));
+        }
+        return new DataInputStream(new BufferedInputStream(new SegmentInputStream(
+            fileName(), segmentStart[col].toArray(), segmentNBytes[col].toArray())));
     }
 
     /**
@@ -254,30 +369,92 @@ public class TableWriterAll extends TableWriter {
      * SINCE ENTIRE TABLE IS IN MEMORY, THIS MAY TAKE TONS OF MEMORY.
      * This checks ensureMemoryAvailable.
      * THE CUMULATIVETABLE IS HELD IN MEMORY BY THIS TABLEWRITERALL AFTER THIS METHOD RETURNS!
+     * So calling this again returns the same table, and column() returns 
+     * the table's columns (so changes that the caller makes to the table, 
+     * e.g., sorting it, are visible there, too).
+     *
+     * <p>If the data is in memory, the table gets the in-memory columns 
+     * (they aren't copied).
      *
      * <p>For the TableWriterAllWithMetadata, this has the updated metadata.
      */
     public Table cumulativeTable() throws Throwable {
-        //is it available from writeAllAndFinish
+        //is it available from writeAllAndFinish or a previous call
         if (cumulativeTable != null)
             return cumulativeTable;
 
         //make cumulativeTable
         Table table = makeEmptyTable();
+        int nColumns = nColumns();
+
+        //if the data is in memory, give it to the table (don't make a copy)
+        if (!spilled()) {
+            for (int col = 0; col < nColumns; col++) 
+                table.setColumn(col, memoryColumns[col]);
+            //from now on, column() and dataInputStream() get the data from cumulativeTable
+            memoryColumns = null;
+            memoryBytes = 0;
+            cumulativeTable = table;
+            return table;
+        }
 
         //ensure memory available    too bad this is after all data is gathered
-        int nColumns = nColumns();
         EDStatic.ensureMemoryAvailable(nColumns * nRows() * table.estimatedBytesPerRow(), //nRows() is a long
             "TableWriterAll.cumulativeTable");
 
         //actually get the data
         for (int col = 0; col < nColumns; col++) 
             table.setColumn(col, column(col));
+        cumulativeTable = table;
         return table;
     }
 
     /**
-     * This deletes the columnStreams files and cumulativeTable (if any).
+     * Call this after finish() to write all of the data to another TableWriter
+     * (via writeSome(), so otherTableWriter.finish() isn't called).
+     * If the data was written to the temporary file, it is written in chunks
+     * of up to EDStatic.partialRequestMaxCells values, so the data is never
+     * all in memory at once.
+     * If the data is in memory, this uses cumulativeTable().
+     * This stops early if otherTableWriter.noMoreDataPlease.
+     *
+     * @param otherTableWriter
+     * @throws Throwable if trouble
+     */
+    public void writeSomeTo(TableWriter otherTableWriter) throws Throwable {
+        if (!spilled()) {
+            otherTableWriter.writeSome(cumulativeTable());
+            return;
+        }
+
+        int nColumns = nColumns();
+        int chunkNRows = Math.max(1, EDStatic.partialRequestMaxCells / Math.max(1, nColumns));
+        DataInputStream dis[] = new DataInputStream[nColumns];
+        try {
+            for (int col = 0; col < nColumns; col++) 
+                dis[col] = dataInputStream(col);
+            long nRowsLeft = totalNRows;
+            while (nRowsLeft > 0 && !otherTableWriter.noMoreDataPlease) {
+                int n = (int)Math.min(chunkNRows, nRowsLeft);
+                Table table = makeEmptyTable();
+                for (int col = 0; col < nColumns; col++) {
+                    PrimitiveArray pa = temporaryPA(columnType(col), n);
+                    pa.readDis(dis[col], n);
+                    table.setColumn(col, pa);
+                }
+                otherTableWriter.writeSome(table);
+                nRowsLeft -= n;
+            }
+        } finally {
+            for (int col = 0; col < nColumns; col++) {
+                if (dis[col] != null)
+                    try {dis[col].close();} catch (Throwable t) {}
+            }
+        }
+    }
+
+    /**
+     * This deletes the file and cumulativeTable (if any).
      * This won't throw an exception.
      *
      * <p>It isn't essential that the user call this.
@@ -288,15 +465,17 @@ public class TableWriterAll extends TableWriter {
     public void releaseResources() {
         try {
             cumulativeTable = null;
+            memoryColumns = null;
 
-            if (columnNames == null)
+            if (segmentStart == null)
                 return;
-            int nColumns = nColumns();
-            for (int col = 0; col < nColumns; col++) {
-                //deletion isn't essential or urgent.  
-                //We don't want to tie up the garbage collector thread.
-                File2.simpleDelete(dir + fileNameNoExt + "." + randomInt + "." + columnNames[col]);
+            if (fileStream != null) {
+                fileStream.close();
+                fileStream = null;
             }
+            //deletion isn't essential or urgent.  
+            //We don't want to tie up the garbage collector thread.
+            File2.simpleDelete(fileName());
         } catch (Throwable t) {
             String2.log(MustBe.throwableToString(t));
         }
@@ -312,8 +491,138 @@ public class TableWriterAll extends TableWriter {
         super.finalize();
     }
 
+    /** An OutputStream which counts the bytes written to it. */
+    protected static class CountingOutputStream extends FilterOutputStream {
+        private long count = 0;
 
-}
+        public CountingOutputStream(OutputStream out) {
+            super(out);
+        }
 
+        /** The number of bytes written so far. */
+        public long count() {
+            return count;
+        }
+
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
 
+        public void write(byte b[], int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
 
+    /** An InputStream which reads a series of segments of a file. */
+    protected static class SegmentInputStream extends InputStream {
+        private RandomAccessFile raf;
+        private long start[], nBytes[];
+        private int segment = -1;
+        private long remaining = 0; //in the current segment
+
+        /**
+         * The constructor.
+         *
+         * @param fileName the file's name
+         * @param tStart the start of each segment
+         * @param tNBytes the number of bytes in each segment
+         * @throws IOException if trouble
+         */
+        public SegmentInputStream(String fileName, long tStart[], long tNBytes[]) 
+            throws IOException {
+            raf = new RandomAccessFile(fileName, "r");
+            start = tStart;
+            nBytes = tNBytes;
+        }
+
+        /** This moves to the next segment with some bytes. Returns false at the end. */
+        private boolean nextSegment() throws IOException {
+            while (remaining == 0) {
+                if (segment + 1 >= start.length)
+                    return false;
+                segment++;
+                raf.seek(start[segment]);
+                remaining = nBytes[segment];
+            }
+            return true;
+        }
+
+        public int read() throws IOException {
+            if (!nextSegment())
+                return -1;
+            int b = raf.read();
+            if (b >= 0)
+                remaining--;
+            return b;
+        }
+
+        public int read(byte b[], int off, int len) throws IOException {
+            if (len == 0)
+                return 0;
+            if (!nextSegment())
+                return -1;
+            int n = raf.read(b, off, (int)Math.min(len, remaining));
+            if (n > 0)
+                remaining -= n;
+            return n;
+        }
+
+        public void close() throws IOException {
+            raf.close();
+        }
+    }
+
+    /**
+     * This tests that cumulativeTable() can be called more than once and
+     * that column() still works after it, with the data in memory 
+     * and in the temporary file.
+     *
+     * @throws Throwable if trouble
+     */
+    public static void test() throws Throwable {
+        String2.log("\n*** TableWriterAll.test()");
+        long oMaxMemoryBytes = maxMemoryBytes;
+        try {
+            for (int spill = 0; spill < 2; spill++) {
+                String msg = "spill=" + spill;
+                maxMemoryBytes = spill == 1? 0 : 10L * Math2.BytesPerMB;
+                TableWriterAll twa = new TableWriterAll(null, "", 
+                    EDStatic.fullTestCacheDirectory, "testTableWriterAll");
+                try {
+                    for (int chunk = 0; chunk < 2; chunk++) {
+                        Table table = new Table();
+                        table.addColumn("i", new IntArray(new int[]{3 + chunk, 1 + chunk}));
+                        table.addColumn("s", new StringArray(new String[]{"c" + chunk, "a" + chunk}));
+                        twa.writeSome(table);
+                    }
+                    twa.finish();
+                    Test.ensureEqual(twa.spilled(), spill == 1, msg);
+                    Test.ensureEqual(twa.nRows(), 4, msg);
+
+                    Table table = twa.cumulativeTable();
+                    Test.ensureEqual(table.getColumn(0).toString(), "3, 1, 4, 2", msg);
+                    Test.ensureTrue(twa.cumulativeTable() == table, msg);
+                    Test.ensureEqual(twa.column(0).toString(), "3, 1, 4, 2", msg);
+                    Test.ensureEqual(twa.column(1).toString(), "c0, a0, c1, a1", msg);
+
+                    DataInputStream dis = twa.dataInputStream(1);
+                    try {
+                        StringArray sa = new StringArray();
+                        sa.readDis(dis, 4);
+                        Test.ensureEqual(sa.toString(), "c0, a0, c1, a1", msg);
+                    } finally {
+                        dis.close();
+                    }
+                } finally {
+                    twa.releaseResources();
+                }
+            }
+        } finally {
+            maxMemoryBytes = oMaxMemoryBytes;
+        }
+        String2.log("\n*** TableWriterAll.test() finished successfully.");
+    }
+
+}
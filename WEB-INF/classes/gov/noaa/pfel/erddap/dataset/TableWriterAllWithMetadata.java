@@ -63,10 +63,10 @@ public class TableWriterAllWithMetadata extends TableWriterAll {
 
 
     /**
-     * This adds the current contents of table (a chunk of data) to the columnStreams.
+     * This adds the current contents of table (a chunk of data) to the cumulative data.
      * This calls ensureCompatible each time it is called.
      * If this is the first time this is called, this does first time things
-     *   (e.g., open the columnStreams).
+     *   (e.g., make the memoryColumns).
      * The number of columns, the column names, and the types of columns 
      *   must be the same each time this is called.
      *
@@ -86,7 +86,7 @@ public class TableWriterAllWithMetadata extends TableWriterAll {
 
     
     /**
-     * This is called to close the column streams and clean up the metadata.
+     * This is called to close the temporary file (if any) and clean up the metadata.
      * If ignoreFinish=true, nothing will be done.
      *
      * @throws Throwable if trouble (e.g., MustBe.THERE_IS_NO_DATA if there is no data)
@@ -95,7 +95,7 @@ public class TableWriterAllWithMetadata extends TableWriterAll {
         if (ignoreFinish) 
             return;
 
-        //close the column streams
+        //close the temporary file (if any)
         super.finish();
         finishMetadata();
     }
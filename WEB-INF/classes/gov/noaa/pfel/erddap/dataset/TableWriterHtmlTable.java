@@ -8,7 +8,6 @@ import com.cohort.array.Attributes;
 import com.cohort.array.CharArray;
 import com.cohort.array.PrimitiveArray;
 import com.cohort.array.StringArray;
-import com.cohort.util.Calendar2;
 import com.cohort.util.File2;
 import com.cohort.util.Math2;
 import com.cohort.util.MustBe;
@@ -65,6 +64,7 @@ public class TableWriterHtmlTable extends TableWriter {
     protected String fileAccessBaseUrl[];
     protected String fileAccessSuffix[];
     protected BufferedWriter writer;
+    protected CellEncoder cell;
 
     //set later
     public boolean isMBLimited = false; //ie, did htmlTableMaxMB reduce showFirstNRows?
@@ -229,6 +229,7 @@ public class TableWriterHtmlTable extends TableWriter {
             //write the header
             writer = new BufferedWriter(new OutputStreamWriter(
                 outputStreamSource.outputStream(String2.UTF_8), String2.UTF_8)); 
+            cell = new CellEncoder(writer);
             if (writeHeadAndBodyTags) {
                 if (xhtmlMode)
                     writer.write(
@@ -321,21 +322,29 @@ public class TableWriterHtmlTable extends TableWriter {
             writer.write("<tr>\n");
             somethingWritten = false;
             for (int col = 0; col < nColumns; col++) {
-                String s;
+                boolean hasValue; //true if something other than whitespace was written
                 if (isTimeStamp[col]) {
                     double d = colPA[col].getDouble(row);
-                    writer.write("<td>");
-                    if (Double.isNaN(d)) 
-                         s = ""; 
-                    else s = Calendar2.epochSecondsToLimitedIsoStringT(
-                        time_precision[col], d, "");
-                    writer.write(s);
+                    cell.append("<td>");
+                    hasValue = !Double.isNaN(d) && 
+                        cell.appendTime(time_precision[col], d, "");
+                    cell.write();
+                } else if (!isCharOrString[col]) {
+                    //numbers are formatted by cell, without making Strings
+                    if (Double.isFinite(colPA[col].getDouble(row))) {
+                        cell.append("<td class=\"R\">"); //a non-MV number
+                        hasValue = cell.appendNumber(colPA[col], row, "");
+                    } else {
+                        cell.append("<td>");
+                        hasValue = false;
+                    }
+                    cell.write();
                 } else {
-                    s = colPA[col].getString(row);
+                    String s = colPA[col].getString(row);
                     if (s.length() == 0) {
                         writer.write("<td>");
 
-                    } else if (isCharOrString[col]) {
+                    } else {
                         if (encode) {
                             if (xhtmlMode) {
                                 s = encode(s);
@@ -401,13 +410,12 @@ public class TableWriterHtmlTable extends TableWriter {
                             }
                         }
                         writer.write("<td>" + s); 
-                    } else { //a non-MV number
-                        writer.write("<td class=\"R\">" + s); 
                     }
+                    hasValue = s.trim().length() > 0;
                 }
                 //ensure something written on each row (else row is very narrow)
                 if (somethingWritten) {
-                } else if (s.trim().length() > 0) {
+                } else if (hasValue) {
                     somethingWritten = true;
                 } else if (col == nColumns - 1) {
                     writer.write(xhtmlMode? "&#160;" : "&nbsp;");
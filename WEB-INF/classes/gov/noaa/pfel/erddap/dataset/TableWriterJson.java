@@ -7,7 +7,6 @@ package gov.noaa.pfel.erddap.dataset;
 import com.cohort.array.Attributes;
 import com.cohort.array.CharArray;
 import com.cohort.array.PrimitiveArray;
-import com.cohort.util.Calendar2;
 import com.cohort.util.MustBe;
 import com.cohort.util.SimpleException;
 import com.cohort.util.String2;
@@ -40,6 +39,7 @@ public class TableWriterJson extends TableWriter {
     protected boolean isTimeStamp[];
     protected String time_precision[];
     protected BufferedWriter writer;
+    protected CellEncoder cell;
 
     //other
     protected boolean rowsWritten = false;
@@ -119,6 +119,7 @@ public class TableWriterJson extends TableWriter {
             //write the header
             writer = new BufferedWriter(new OutputStreamWriter(
                 outputStreamSource.outputStream(String2.UTF_8), String2.UTF_8));
+            cell = new CellEncoder(writer);
             if (jsonp != null) 
                 writer.write(jsonp + "(");
 
@@ -170,26 +171,31 @@ public class TableWriterJson extends TableWriter {
 
         //write the data
         if (rowsWritten) writer.write(",\n"); //end previous row
+        //numbers and times are formatted by cell, without making Strings
         for (int row = 0; row < nRows; row++) {
-            writer.write("      ["); //beginRow
+            cell.append("      ["); //beginRow
             for (int col = 0; col < nColumns; col++) {
-                if (col > 0) writer.write(", "); 
+                if (col > 0) cell.append(", "); 
                 if (isTimeStamp[col]) {
                     double d = pas[col].getDouble(row);
-                    writer.write(Double.isNaN(d)? "null" : 
-                        "\"" + Calendar2.epochSecondsToLimitedIsoStringT(
-                        time_precision[col], d, "") + "\"");
+                    if (Double.isNaN(d)) {
+                        cell.append("null");
+                    } else {
+                        cell.append('"');
+                        cell.appendTime(time_precision[col], d, "");
+                        cell.append('"');
+                    }
                 } else if (isCharOrString[col]) {
-                    writer.write(String2.toJson(pas[col].getString(row)));
+                    cell.append(String2.toJson(pas[col].getString(row)));
                 } else {
-                    String s = pas[col].getString(row);
                     //represent NaN as null? yes, that is what json library does
                     //If I go to https://jsonlint.com/ and enter [1, 2.0, 1e30], it says it is valid.
                     //If I enter [1, 2.0, NaN, 1e30], it says NaN is not valid.
-                    writer.write(s.length() == 0? "null" : s); 
+                    cell.appendNumber(pas[col], row, "null"); 
                 }
             }
-            writer.write(row < nRows - 1? "],\n" : "]"); //endRow
+            cell.append(row < nRows - 1? "],\n" : "]"); //endRow
+            cell.write();
         }       
         if (nRows > 0) rowsWritten = true;
 
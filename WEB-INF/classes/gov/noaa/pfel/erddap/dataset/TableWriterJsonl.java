@@ -7,7 +7,6 @@ package gov.noaa.pfel.erddap.dataset;
 import com.cohort.array.Attributes;
 import com.cohort.array.CharArray;
 import com.cohort.array.PrimitiveArray;
-import com.cohort.util.Calendar2;
 import com.cohort.util.MustBe;
 import com.cohort.util.SimpleException;
 import com.cohort.util.String2;
@@ -40,7 +39,9 @@ public class TableWriterJsonl extends TableWriter {
     protected boolean isCharOrString[];
     protected boolean isTimeStamp[];
     protected String time_precision[];
+    protected String jsonColumnNames[]; //for writeKVP
     protected BufferedWriter writer;
+    protected CellEncoder cell;
 
     //other
     public long totalNRows = 0;
@@ -120,14 +121,17 @@ public class TableWriterJsonl extends TableWriter {
             //write the header
             writer = new BufferedWriter(new OutputStreamWriter(
                 outputStreamSource.outputStream(String2.UTF_8), String2.UTF_8));  //a requirement
+            cell = new CellEncoder(writer);
             if (jsonp != null) 
                 writer.write(jsonp + "(\n");
 
             //detect isString columns   
             isCharOrString = new boolean[nColumns];
+            jsonColumnNames = new String[nColumns];
             for (int col = 0; col < nColumns; col++) {
                 isCharOrString[col] = pas[col].elementClass() == char.class ||
                                       pas[col].elementClass() == String.class;
+                jsonColumnNames[col] = String2.toJson(table.getColumnName(col));
             }
         }
 
@@ -140,30 +144,35 @@ public class TableWriterJsonl extends TableWriter {
         EDStatic.ensureArraySizeOkay(totalNRows, "jsonl"); 
 
         //write the data
+        //numbers and times are formatted by cell, without making Strings
         for (int row = 0; row < nRows; row++) {
-            writer.write(writeKVP? '{' : '['); //beginRow
+            cell.append(writeKVP? '{' : '['); //beginRow
             for (int col = 0; col < nColumns; col++) {
-                if (col > 0) writer.write(", "); 
+                if (col > 0) cell.append(", "); 
                 if (writeKVP) {
-                    writer.write(String2.toJson(table.getColumnName(col)));
-                    writer.write(':');
+                    cell.append(jsonColumnNames[col]);
+                    cell.append(':');
                 }
                 if (isTimeStamp[col]) {
                     double d = pas[col].getDouble(row);
-                    writer.write(Double.isNaN(d)? "null" : 
-                        "\"" + Calendar2.epochSecondsToLimitedIsoStringT(
-                        time_precision[col], d, "") + "\"");
+                    if (Double.isNaN(d)) {
+                        cell.append("null");
+                    } else {
+                        cell.append('"');
+                        cell.appendTime(time_precision[col], d, "");
+                        cell.append('"');
+                    }
                 } else if (isCharOrString[col]) {
-                    writer.write(String2.toJson(pas[col].getString(row)));
+                    cell.append(String2.toJson(pas[col].getString(row)));
                 } else {
-                    String s = pas[col].getString(row);
                     //represent NaN as null? yes, that is what json library does
                     //If I go to https://jsonlint.com/ and enter [1, 2.0, 1e30], it says it is valid.
                     //If I enter [1, 2.0, NaN, 1e30], it says NaN is not valid.
-                    writer.write(s.length() == 0? "null" : s); 
+                    cell.appendNumber(pas[col], row, "null"); 
                 }
             }
-            writer.write(writeKVP? "}\n" : "]\n"); //endRow    //recommended: always just \n
+            cell.append(writeKVP? "}\n" : "]\n"); //endRow    //recommended: always just \n
+            cell.write();
         }       
 
         //ensure it gets to user right away
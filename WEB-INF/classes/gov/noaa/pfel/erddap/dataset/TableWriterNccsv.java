@@ -36,9 +36,11 @@ public class TableWriterNccsv extends TableWriter {
 
     //set by firstTime
     protected boolean isLong[];
+    protected boolean isStringOrChar[];
     protected boolean isTimeStamp[];
     protected String time_precision[];
     protected BufferedWriter writer;
+    protected CellEncoder cell;
 
     public long totalNRows = 0;
 
@@ -85,18 +87,21 @@ public class TableWriterNccsv extends TableWriter {
             //write the header
             writer = new BufferedWriter(new OutputStreamWriter(
                 outputStreamSource.outputStream(String2.ISO_8859_1), String2.ISO_8859_1));
+            cell = new CellEncoder(writer);
 
             //write the global attributes   (ensureCompatibly added newHistory)
             writer.write(globalAttributes.toNccsvString(String2.NCCSV_GLOBAL));
 
             //write the column attributes   
             isLong      = new boolean[nColumns];
+            isStringOrChar = new boolean[nColumns];
             isTimeStamp = new boolean[nColumns];
             time_precision = new String[nColumns];
             for (int col = 0; col < nColumns; col++) {
 
                 String tClass = table.getColumn(col).elementClassString();
                 isLong[col] = tClass.equals("long");
+                isStringOrChar[col] = tClass.equals("String") || tClass.equals("char");
                 Attributes catts = table.columnAttributes(col);
                 String u = catts.getString("units");
                 isTimeStamp[col] = u != null && 
@@ -149,19 +154,21 @@ public class TableWriterNccsv extends TableWriter {
         for (int col = 0; col < nColumns; col++) 
             pas[col] = table.getColumn(col);
 
+        //numbers and times are formatted by cell, without making Strings
         for (int row = 0; row < nRows; row++) {
             for (int col = 0; col < nColumns; col++) {
                 if (isTimeStamp[col]) {
-                    writer.write(Calendar2.epochSecondsToLimitedIsoStringT(
-                        time_precision[col], pas[col].getDouble(row), ""));
+                    cell.appendTime(time_precision[col], pas[col].getDouble(row), "");
+                } else if (isStringOrChar[col]) {
+                    cell.append(pas[col].getNccsvDataString(row));
                 } else {
-                    String ts = pas[col].getNccsvDataString(row);
-                    writer.write(ts);
-                    if (isLong[col] && ts.length() > 0)
-                        writer.write('L'); //special case not handled by getNccsvDataString
+                    //for numbers, getNccsvDataString is getString
+                    if (cell.appendNumber(pas[col], row, "") && isLong[col])
+                        cell.append('L'); //special case not handled by getNccsvDataString
                 }
-                writer.write(col == nColumns -1? "\n" : ",");
+                cell.append(col == nColumns -1? '\n' : ',');
             }
+            cell.write();
         }       
 
         //ensure it gets to user right away
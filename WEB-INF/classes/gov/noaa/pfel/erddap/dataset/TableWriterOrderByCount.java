@@ -24,34 +24,26 @@ import java.util.BitSet;
  * <p>This doesn't do anything to missing values and doesn't assume they are
  * stored as NaN or fake missing values.
  *
- * <p>Unlike TableWriterAllWithMetadata, this doesn't keep track of min,max for actual_range
- * or update metadata at end. It is assumed that this is like a filter,
- * and that a subsequent TableWriter will handle that if needed.
+ * <p>This keeps just the reduced rows (the counts) in memory (see TableWriterReduce).
  *
  * @author Bob Simons (bob.simons@noaa.gov) 2017-07-12
  */
-public class TableWriterOrderByCount extends TableWriterAll {
+public class TableWriterOrderByCount extends TableWriterReduce {
 
     //set by constructor
-    protected TableWriter otherTableWriter;
     public String orderBy[];
 
     /**
      * The constructor.
      *
-     * @param tDir a private cache directory for storing the intermediate files,
-     *    usually cacheDirectory(datasetID)
-     * @param tFileNameNoExt is the fileName without dir or extension (used as basis for temp files).
-     *     A random number will be added to it for safety.
      * @param tOtherTableWriter the tableWriter that will receive the unique rows
      *   found by this tableWriter.
      * @param tOrderByCountCsv the names of the columns to sort by (most to least important)
      */
-    public TableWriterOrderByCount(EDD tEdd, String tNewHistory, String tDir, 
-        String tFileNameNoExt, TableWriter tOtherTableWriter, String tOrderByCsv) {
+    public TableWriterOrderByCount(EDD tEdd, String tNewHistory, 
+        TableWriter tOtherTableWriter, String tOrderByCsv) {
 
-        super(tEdd, tNewHistory, tDir, tFileNameNoExt); 
-        otherTableWriter = tOtherTableWriter;
+        super(tEdd, tNewHistory, tOtherTableWriter); 
         orderBy = String2.isSomething(tOrderByCsv)?
             String2.split(tOrderByCsv, ','):
             new String[0]; //size==0 is okay
@@ -59,45 +51,23 @@ public class TableWriterOrderByCount extends TableWriterAll {
 
 
     /**
-     * This adds the current contents of table (a chunk of data) to the OutputStream.
-     * This calls ensureCompatible each time it is called.
-     * If this is the first time this is called, this does first time things
-     *   (e.g., call OutputStreamSource.outputStream() and write file header).
-     * The number of columns, the column names, and the types of columns 
-     *   must be the same each time this is called.
+     * This replaces the rows of the table with one row per group
+     * with the count of the non-missing values of each non-key column.
      *
-     * @param table with destinationValues
+     * @param table 
      * @throws Throwable if trouble
      */
-    public void writeSome(Table table) throws Throwable {
-        if (table.nRows() == 0) 
-            return;
-
-        //to save time and disk space, this just does a partial job 
-        //  (remove non-max rows from this partial table)
-        //  and leaves perfect job to finish()
+    protected void reduce(Table table) throws Throwable {
         table.orderByCount(orderBy);
-
-        //ensure the table's structure is the same as before
-        //and write to dataOutputStreams
-        super.writeSome(table);
     }
 
-
     /**
-     * This processes the cumulativeTable, then writes it to otherTableWriter
-     * If ignoreFinish=true, nothing will be done.
+     * This combines the counts of rows (from reduce()) which are in the same group.
      *
-     * @throws Throwable if trouble (e.g., MustBe.THERE_IS_NO_DATA if there is no data)
+     * @param cumTable a table with counts from reduce()
+     * @throws Throwable if trouble
      */
-    public void finish() throws Throwable {
-        if (ignoreFinish) 
-            return;
-
-        super.finish();
-
-        Table cumTable = cumulativeTable();
-        releaseResources();
+    protected void combine(Table cumTable) throws Throwable {
 
         //combine results
         int nRows = cumTable.nRows();
@@ -161,13 +131,24 @@ public class TableWriterOrderByCount extends TableWriterAll {
 
         //just keep new group 
         cumTable.justKeep(keep);
-
-        //send results to otherTableWriter;
-        otherTableWriter.writeAllAndFinish(cumTable);
-        otherTableWriter = null;
     }
 
-    //This uses super.writeAllAndFinish() because writeSome stores processed info
+    /**
+     * If caller has the entire table, use this instead of repeated writeSome() + finish().
+     * This overwrites the superclass method.
+     * Like TableWriter.writeAllAndFinish, this just calls writeSome() and finish(),
+     * so 0 rows leads to MustBe.THERE_IS_NO_DATA.
+     *
+     * @throws Throwable if trouble (e.g., MustBe.THERE_IS_NO_DATA if there is no data)
+     */
+    public void writeAllAndFinish(Table table) throws Throwable {
+        writeSome(table);
+        if (ignoreFinish) {
+            table.removeAllRows();
+            return;
+        }
+        finish();
+    }
 
 }
 
@@ -12,8 +12,6 @@ import com.cohort.util.String2;
 import gov.noaa.pfel.coastwatch.pointdata.Table;
 import gov.noaa.pfel.erddap.util.EDStatic;
 
-import java.util.BitSet;
-
 /**
  * TableWriterOrderByLimit provides a way to sort the response table's rows
  * and just keep the rows where values of the last sort column (often a time variable)
@@ -26,37 +24,29 @@ import java.util.BitSet;
  * But if missing values are stored as NaNs, those rows are removed.
  * And if missing values are stored as values, then this will keep the Limit row.
  *
- * <p>Unlike TableWriterAllWithMetadata, this doesn't keep track of min,max for actual_range
- * or update metadata at end. It is assumed that this is like a filter,
- * and that a subsequent TableWriter will handle that if needed.
+ * <p>This keeps just the reduced rows in memory (see TableWriterReduce).
  *
  * @author Bob Simons (bob.simons@noaa.gov) 2017-02-21
  */
-public class TableWriterOrderByLimit extends TableWriterAll {
+public class TableWriterOrderByLimit extends TableWriterReduce {
 
 
     //set by constructor
-    protected TableWriter otherTableWriter;
     public String orderBy[]; //the orderBy var names. The last one will be a numeric column.
     protected int limitN;    //eg 1000 rows
 
     /**
      * The constructor.
      *
-     * @param tDir a private cache directory for storing the intermediate files,
-     *    usually cacheDirectory(datasetID)
-     * @param tFileNameNoExt is the fileName without dir or extension (used as basis for temp files).
-     *     A random number will be added to it for safety.
      * @param tOtherTableWriter the tableWriter that will receive the unique rows
      *   found by this tableWriter.
      * @param tOrderByCsv the names of the columns to sort by (most to least important),
      *   with the time Interval as the last item.
      */
-    public TableWriterOrderByLimit(EDD tEdd, String tNewHistory, String tDir, 
-        String tFileNameNoExt, TableWriter tOtherTableWriter, String tOrderByCsv) {
+    public TableWriterOrderByLimit(EDD tEdd, String tNewHistory, 
+        TableWriter tOtherTableWriter, String tOrderByCsv) {
 
-        super(tEdd, tNewHistory, tDir, tFileNameNoExt); 
-        otherTableWriter = tOtherTableWriter;
+        super(tEdd, tNewHistory, tOtherTableWriter); 
         if (tOrderByCsv == null || tOrderByCsv.trim().length() == 0)
             throw new SimpleException(EDStatic.queryError + Table.ORDER_BY_LIMIT_ERROR + 
                 " (no CSV)");
@@ -77,74 +67,14 @@ public class TableWriterOrderByLimit extends TableWriterAll {
                 " (limit=" + csv[csv.length - 1] + " must be a positive integer)"); 
     }
 
-
     /**
-     * This adds the current contents of table (a chunk of data) to the OutputStream.
-     * This calls ensureCompatible each time it is called.
-     * If this is the first time this is called, this does first time things
-     *   (e.g., call OutputStreamSource.outputStream() and write file header).
-     * The number of columns, the column names, and the types of columns 
-     *   must be the same each time this is called.
+     * This removes the beyond limitN rows (for each group) from the table.
      *
-     * @param table with destinationValues
+     * @param table 
      * @throws Throwable if trouble
      */
-    public void writeSome(Table table) throws Throwable {
-        if (table.nRows() == 0) 
-            return;
-
-        //to save time and disk space, this just does a partial job 
-        //  (remove the beyond limitN rows from this partial table)
-        //  and leaves perfect job to finish()
+    protected void reduce(Table table) throws Throwable {
         table.orderByLimit(orderBy, limitN);
-
-        //ensure the table's structure is the same as before
-        //and write to dataOutputStreams
-        super.writeSome(table);
-    }
-
-    
-    /**
-     * This finishes orderByMax and writes results to otherTableWriter
-     * If ignoreFinish=true, nothing will be done.
-     *
-     * @throws Throwable if trouble (e.g., EDStatic.THERE_IS_NO_DATA if there is no data)
-     */
-    public void finish() throws Throwable {
-        if (ignoreFinish) 
-            return;
-
-        super.finish();
-
-        Table cumulativeTable = cumulativeTable();
-        releaseResources();
-        cumulativeTable.orderByLimit(orderBy, limitN);
-        otherTableWriter.writeAllAndFinish(cumulativeTable);
-
-        //clean up
-        otherTableWriter = null;
-    }
-
-    /**
-     * If caller has the entire table, use this instead of repeated writeSome() + finish().
-     * This overwrites the superclass method.
-     *
-     * @throws Throwable if trouble (e.g., EDStatic.THERE_IS_NO_DATA if there is no data)
-     */
-    public void writeAllAndFinish(Table tCumulativeTable) throws Throwable {
-        if (ignoreFinish) {
-            writeSome(tCumulativeTable);
-            tCumulativeTable.removeAllRows();
-            return;
-        }
-        tCumulativeTable.orderByLimit(orderBy, limitN);
-        otherTableWriter.writeAllAndFinish(tCumulativeTable);
-        otherTableWriter = null;
     }
 
-
-
 }
-
-
-
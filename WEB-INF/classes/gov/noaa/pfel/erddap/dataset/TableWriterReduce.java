@@ -0,0 +1,159 @@
+/*
+ * TableWriterReduce Copyright 2026, agent (agent@local).
+ * See the LICENSE.txt file in this file's directory.
+ */
+package gov.noaa.pfel.erddap.dataset;
+
+import com.cohort.util.Math2;
+import com.cohort.util.MustBe;
+import com.cohort.util.SimpleException;
+import com.cohort.util.String2;
+
+import gov.noaa.pfel.coastwatch.pointdata.Table;
+import gov.noaa.pfel.erddap.util.EDStatic;
+
+/**
+ * TableWriterReduce is the superclass of the TableWriters
+ * (e.g., TableWriterOrderByMax) which reduce the response table to
+ * a few rows per group (e.g., per stationID), then write the results
+ * to some other TableWriter.
+ *
+ * <p>Unlike TableWriterAll, this doesn't store all of the rows.
+ * It reduces each chunk, keeps the reduced rows in memory,
+ * and combines (reduces again) the cumulative rows whenever their number has doubled.
+ * So the memory needed is proportional to the number of groups,
+ * not to the number of rows in the response.
+ * This works because combine(reduce(a) + reduce(b)) is the same as reduce(a + b)
+ * (the sorts are stable, so ties are resolved the same way).
+ *
+ * <p>Unlike TableWriterAllWithMetadata, this doesn't keep track of min,max for actual_range
+ * or update metadata at end. It is assumed that this is like a filter,
+ * and that a subsequent TableWriter will handle that if needed.
+ *
+ * @author agent (agent@local) 2026-10-18
+ */
+public abstract class TableWriterReduce extends TableWriter {
+
+    /** The cumulative rows are combined when there are at least this many. */
+    public static int minRowsToCombine = 10000;
+
+    public static String attributeTo = "gathering data in TableWriterReduce";
+
+    //set by constructor
+    protected TableWriter otherTableWriter;
+
+    //set by writeSome
+    protected Table reducedTable; //the cumulative, reduced rows
+    protected int nRowsToCombine = minRowsToCombine;
+
+    /**
+     * The constructor.
+     *
+     * @param tOtherTableWriter the tableWriter that will receive the rows
+     *   found by this tableWriter.
+     */
+    public TableWriterReduce(EDD tEdd, String tNewHistory, TableWriter tOtherTableWriter) {
+        super(tEdd, tNewHistory, null);
+        otherTableWriter = tOtherTableWriter;
+    }
+
+    /**
+     * This reduces the rows of a chunk of data (in place).
+     *
+     * @param table a chunk of data
+     * @throws Throwable if trouble
+     */
+    protected abstract void reduce(Table table) throws Throwable;
+
+    /**
+     * This reduces (in place) a table whose rows have already been reduced
+     * (e.g., the cumulative rows from several chunks).
+     * This default implementation calls reduce(table).
+     *
+     * @param table with already reduced rows
+     * @throws Throwable if trouble
+     */
+    protected void combine(Table table) throws Throwable {
+        reduce(table);
+    }
+
+    /**
+     * This reduces the current contents of table (a chunk of data)
+     * and adds the reduced rows to the cumulative rows.
+     * This calls ensureCompatible each time it is called.
+     * The number of columns, the column names, and the types of columns
+     *   must be the same each time this is called.
+     *
+     * @param table with destinationValues
+     * @throws Throwable if trouble
+     */
+    public void writeSome(Table table) throws Throwable {
+        if (table.nRows() == 0)
+            return;
+
+        reduce(table);
+
+        //ensure the table's structure is the same as before
+        ensureCompatible(table);
+
+        if (reducedTable == null)
+            reducedTable = makeEmptyTable();
+        reducedTable.append(table);
+        int nRows = reducedTable.nRows();
+        if (nRows >= nRowsToCombine) {
+            combine(reducedTable);
+            nRows = reducedTable.nRows();
+            //so the work done here is proportional to the number of rows
+            nRowsToCombine = Math.max(minRowsToCombine, Math2.narrowToInt(2L * nRows));
+            if (reallyVerbose) String2.log("TableWriterReduce.writeSome combined. nRows=" + nRows);
+        }
+
+        //avoid gathering more data than can be processed
+        EDStatic.ensureArraySizeOkay(nRows, attributeTo);
+        EDStatic.ensureMemoryAvailable(nRows * 8L, attributeTo); //to process one PA
+    }
+
+    /**
+     * This combines the cumulative rows and writes them to otherTableWriter.
+     * If ignoreFinish=true, nothing will be done.
+     *
+     * @throws Throwable if trouble (e.g., MustBe.THERE_IS_NO_DATA if there is no data)
+     */
+    public void finish() throws Throwable {
+        if (ignoreFinish)
+            return;
+
+        //check for MustBe.THERE_IS_NO_DATA
+        if (reducedTable == null)
+            throw new SimpleException(MustBe.THERE_IS_NO_DATA + " (nRows = 0)");
+
+        Table table = reducedTable;
+        reducedTable = null;
+        combine(table);
+        if (verbose)
+            String2.log("TableWriterReduce done. nRows=" + table.nRows() + " TIME=" +
+                (System.currentTimeMillis() - time) + "ms\n");
+        otherTableWriter.writeAllAndFinish(table);
+
+        //clean up
+        otherTableWriter = null;
+    }
+
+    /**
+     * If caller has the entire table, use this instead of repeated writeSome() + finish().
+     * This overwrites the superclass method.
+     *
+     * @throws Throwable if trouble (e.g., MustBe.THERE_IS_NO_DATA if there is no data)
+     */
+    public void writeAllAndFinish(Table tCumulativeTable) throws Throwable {
+        if (ignoreFinish) {
+            writeSome(tCumulativeTable);
+            tCumulativeTable.removeAllRows();
+            return;
+        }
+        reduce(tCumulativeTable);
+        otherTableWriter.writeAllAndFinish(tCumulativeTable);
+        otherTableWriter = null;
+    }
+
+}
@@ -6,7 +6,6 @@ package gov.noaa.pfel.erddap.dataset;
 
 import com.cohort.array.Attributes;
 import com.cohort.array.PrimitiveArray;
-import com.cohort.util.Calendar2;
 import com.cohort.util.MustBe;
 import com.cohort.util.SimpleException;
 import com.cohort.util.String2;
@@ -41,6 +40,7 @@ public class TableWriterSeparatedValue extends TableWriter {
     protected boolean isTimeStamp[];
     protected String time_precision[];
     protected BufferedWriter writer;
+    protected CellEncoder cell;
 
     public long totalNRows = 0;
 
@@ -127,6 +127,7 @@ public class TableWriterSeparatedValue extends TableWriter {
             //write the header
             writer = new BufferedWriter(new OutputStreamWriter(
                 outputStreamSource.outputStream(String2.ISO_8859_1), String2.ISO_8859_1));
+            cell = new CellEncoder(writer);
 
             //write the column names   
             isStringOrChar = new boolean[nColumns];
@@ -180,21 +181,20 @@ public class TableWriterSeparatedValue extends TableWriter {
         totalNRows += nRows;
         EDStatic.ensureArraySizeOkay(totalNRows, "Separated Value");
 
-        //write the data
+        //write the data  (numbers and times are formatted by cell, without making Strings)
         for (int row = 0; row < nRows; row++) {
             for (int col = 0; col < nColumns; col++) {
                 if (isTimeStamp[col]) {
-                    writer.write(Calendar2.epochSecondsToLimitedIsoStringT(
-                        time_precision[col], pas[col].getDouble(row), ""));
+                    cell.appendTime(time_precision[col], pas[col].getDouble(row), "");
                 } else if (isStringOrChar[col]) {
-                    writer.write(quoted? pas[col].getNccsvDataString(row) :
-                                         pas[col].getTsvString(row));
+                    cell.append(quoted? pas[col].getNccsvDataString(row) :
+                                        pas[col].getTsvString(row));
                 } else {
-                    String s = pas[col].getString(row);
-                    writer.write(s.length() == 0? nanString : s); 
+                    cell.appendNumber(pas[col], row, nanString); 
                 }
-                writer.write(col == nColumns -1? "\n" : separator);
+                cell.append(col == nColumns -1? "\n" : separator);
             }
+            cell.write();
         }       
 
         //ensure it gets to user right away
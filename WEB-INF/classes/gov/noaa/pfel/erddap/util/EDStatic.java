@@ -51,6 +51,7 @@ import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Collections;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -221,6 +222,9 @@ public static boolean developmentMode = false;
     public static int taskThreadFailedDistributionTotal[]    = new int[String2.DistributionSize];
     public static int taskThreadSucceededDistribution24[]    = new int[String2.DistributionSize];
     public static int taskThreadSucceededDistributionTotal[] = new int[String2.DistributionSize];
+    //[workerNumber][] since startup. Sized to nTaskThreads by EDStatic's static constructor
+    public static int taskThreadFailedDistributionPerWorker[][]    = new int[1][String2.DistributionSize];
+    public static int taskThreadSucceededDistributionPerWorker[][] = new int[1][String2.DistributionSize];
 
     public static String datasetsThatFailedToLoad = "";
     public static String errorsDuringMajorReload = "";
@@ -254,29 +258,29 @@ public static boolean developmentMode = false;
     public static ConcurrentHashMap runningThreads = new ConcurrentHashMap(16, 0.75f, 4); 
 
     //taskThread variables
-    //Funnelling all taskThread tasks through one taskThread ensures
+    //By default (nTaskThreads=1), funnelling all taskThread tasks through one taskThread ensures
     //  that the memory requirements, bandwidth usage, cpu usage,
     //  and stress on remote servers will be minimal 
     //  (although at the cost of not doing the tasks faster / in parallel).
-    //In a grid of erddaps, each will have its own taskThread, which is appropriate.
+    //If nTaskThreads > 1, tasks for different datasets are done in parallel,
+    //  but the tasks for each datasetID are still done in order (see TaskThread).
+    //In a grid of erddaps, each will have its own taskThreads, which is appropriate.
     public static ArrayList taskList = new ArrayList(); //keep here in case TaskThread needs to be restarted
-    private static TaskThread taskThread;
+    /** The datasetID (or "") of each task in taskList (see addTask). */
+    public static StringArray taskDatasetIDs = new StringArray(); 
+    private static TaskThread taskThreads[] = new TaskThread[1]; //[workerNumber], null if not running
     /** lastAssignedTask is used by EDDxxxCopy instances to keep track of 
-     * the number of the last task assigned to taskThread.
+     * the number of the last task assigned to the taskThreads.
      * key=datasetID value=Integer(task#)
      */
     public static ConcurrentHashMap lastAssignedTask = new ConcurrentHashMap(16, 0.75f, 4); 
     /** 
      * This returns the index number of the task in taskList (-1,0..) of the last completed task
-     * (successful or not).
-     * nFinishedTasks = lastFinishedTask + 1;
+     * (successful or not) such that all earlier tasks have also been completed.
+     * (With nTaskThreads &gt; 1, some later tasks may have been completed, too.)
+     * nFinishedTasks &gt;= lastFinishedTask + 1;
      */
     public static volatile int lastFinishedTask = -1;
-    /** 
-     * This returns the index number of the task in taskList (0..) that will be started
-     * when the current task is finished.
-     */
-    public static volatile int nextTask = 0;
 
 
     /** This recieves key=startOfLocalSourceUrl value=startOfPublicSourceUrl from LoadDatasets 
@@ -493,6 +497,7 @@ public static boolean developmentMode = false;
     private static String startBodyHtml,  endBodyHtml, startHeadHtml; //see xxx() methods
 
     public static boolean listPrivateDatasets, 
+        logAsyncDropIfFull = false, //String2.setupAsyncLog: true=drop log messages if the buffer is full, false=wait
         reallyVerbose,
         subscriptionSystemActive,  convertersActive, slideSorterActive,
         fgdcActive, iso19115Active, jsonldActive, geoServicesRestActive, 
@@ -510,6 +515,23 @@ public static boolean developmentMode = false;
     public static int variableNameCategoryAttributeIndex = -1;
     public static int 
         logMaxSizeMB,
+        logAsyncBufferSize = 0,   //String2.setupAsyncLog: max number of log messages waiting to be written (0 = log synchronously)
+        nGridThreads = 1,  //GridDataAccessor: 1=get 1 chunk at a time, >1=read ahead nGridThreads-1 chunks
+        nTableThreads = 1, //default for EDDTableFromFiles datasets without <nThreads>
+        nTableReadThreads = 8, //tableReadExecutor: max number of data files being read at once by all EDDTableFromFiles requests
+        nChildThreads = 4, //default for EDDGridSideBySide datasets without <nThreads>
+        nTaskThreads = 1,  //TaskThread: number of tasks (for different datasets) done at once
+        nLoadDatasetsThreads = 1, //LoadDatasets: number of datasets constructed at once
+        dapMaxConnectionsPerHost = 4, //DConnect: max simultaneous connections to one remote DAP server
+        dapConnectionWaitSeconds = 30, //DConnect: max time to wait for one of those connections (then connect anyway)
+        wmsTileCacheMB = 500,     //WmsTileCache: max total size of cached WMS tiles (0 = don't cache tiles)
+        wmsTileSeedMaxZoom = 1,   //Erddap.seedWmsTiles: max zoom level to seed after new data (-1 = don't seed)
+        wmsRenderThreads = 4,     //WmsRenderPool: number of WMS GetMap images made at once
+        wmsRenderQueueSize = 100, //WmsRenderPool: max number of WMS GetMap images waiting to be made
+        wmsRenderStripHeight = 0, //Erddap.makeWmsImage: make taller images in strips this tall, in parallel (0 = don't)
+        responseCacheMB = 0,      //ResponseCache: max total size of each dataset's cached responses (0 = don't cache responses)
+        responseCacheMaxSeconds = 300, //ResponseCache: max age of a cached response (it is then remade)
+        responseCacheNowSeconds = 60, //ResponseCache: "now" in time constraints is rounded down to a multiple of this (see EDDTable.normalizeDapQuery)
         unusualActivity = 10000,
         partialRequestMaxBytes = 490000000, //this is just below tds default <opendap><binLimit> of 500MB
         partialRequestMaxCells = 100000;
@@ -522,6 +544,13 @@ public static boolean developmentMode = false;
 
     //these are set as a consequence of setup.xml info
     public static SgtGraph sgtGraph;
+    public static WmsTileCache wmsTileCache; //null if wmsTileCacheMB is 0
+    public static WmsRenderPool wmsRenderPool;
+    /** The threads shared by all WMS GetMap requests which are made in strips (see wmsRenderStripHeight). */
+    public static ThreadPoolExecutor wmsStripExecutor;
+    /** The threads shared by all EDDTableFromFiles requests which read files with nThreads &gt; 1. */
+    public static ThreadPoolExecutor tableReadExecutor;
+    public static ResponseCache responseCache; //null if responseCacheMB is 0
     public static String 
         erddapUrl,  //without slash at end
         erddapHttpsUrl,  //without slash at end   (may be useless, but won't be null)
@@ -1709,7 +1738,52 @@ wcsActive = false; //setup.getBoolean(         "wcsActive",                  fal
         loadDatasetsMaxMillis      = setup.getInt(             "loadDatasetsMaxMinutes",     60) * 60000L;
         loadDatasetsMaxMillis      = Math.max(loadDatasetsMinMillis * 2, loadDatasetsMaxMillis);
         logMaxSizeMB               = Math2.minMax(1, 2000, setup.getInt("logMaxSizeMB", 20));  //2048MB=2GB
+        logAsyncBufferSize         = Math2.minMax(0, 10000000, setup.getInt("logAsyncBufferSize", logAsyncBufferSize));
+        logAsyncDropIfFull         = setup.getBoolean(         "logAsyncDropIfFull",         logAsyncDropIfFull);
         lowResLogoImageFile        = setup.getNotNothingString("lowResLogoImageFile",        errorInMethod);
+        nGridThreads               = Math2.minMax(1, 100, setup.getInt("nGridThreads",   nGridThreads));
+        nTableThreads              = Math2.minMax(1, 100, setup.getInt("nTableThreads",  nTableThreads));
+        nTableReadThreads          = Math2.minMax(1, 1000, setup.getInt("nTableReadThreads", nTableReadThreads));
+        tableReadExecutor = ThreadedWorkManager.newSharedExecutor("EDDTableFromFiles_read", nTableReadThreads);
+        nChildThreads              = Math2.minMax(1, 100, setup.getInt("nChildThreads",  nChildThreads));
+        nLoadDatasetsThreads       = Math2.minMax(1, 100, setup.getInt("nLoadDatasetsThreads", nLoadDatasetsThreads));
+        nTaskThreads               = Math2.minMax(1, 100, setup.getInt("nTaskThreads",   nTaskThreads));
+        dapMaxConnectionsPerHost   = Math2.minMax(1, 100, setup.getInt("dapMaxConnectionsPerHost", dapMaxConnectionsPerHost));
+        dapConnectionWaitSeconds   = Math2.minMax(0, 3600, setup.getInt("dapConnectionWaitSeconds", dapConnectionWaitSeconds));
+        dods.dap.DConnect.setMaxConnectionsPerHost(dapMaxConnectionsPerHost);
+        dods.dap.DConnect.setMaxConnectionWaitMillis(dapConnectionWaitSeconds * 1000L);
+        //requests to this ERDDAP (e.g., from EDDGridFromErddap) aren't limited
+        dods.dap.DConnect.addLocalHost(baseUrl);
+        dods.dap.DConnect.addLocalHost(baseHttpsUrl);
+        wmsTileCacheMB             = Math2.minMax(0, 1000000, setup.getInt("wmsTileCacheMB", wmsTileCacheMB));
+        wmsTileSeedMaxZoom         = Math2.minMax(-1, WmsTileCache.MAX_ZOOM, setup.getInt("wmsTileSeedMaxZoom", wmsTileSeedMaxZoom));
+        wmsTileCache = wmsTileCacheMB > 0? new WmsTileCache(wmsTileCacheMB) : null;
+        wmsRenderThreads           = Math2.minMax(1, 100, setup.getInt("wmsRenderThreads", wmsRenderThreads));
+        wmsRenderQueueSize         = Math2.minMax(1, 100000, setup.getInt("wmsRenderQueueSize", wmsRenderQueueSize));
+        wmsRenderStripHeight       = Math2.minMax(0, EDD.WMS_MAX_HEIGHT, setup.getInt("wmsRenderStripHeight", wmsRenderStripHeight));
+        wmsRenderPool = new WmsRenderPool(wmsRenderThreads, wmsRenderQueueSize);
+        wmsStripExecutor = ThreadedWorkManager.newSharedExecutor("wmsStrips", wmsRenderThreads);
+        responseCacheMB            = Math2.minMax(0, 1000000, setup.getInt("responseCacheMB", responseCacheMB));
+        responseCacheNowSeconds    = Math2.minMax(1, 86400, setup.getInt("responseCacheNowSeconds", responseCacheNowSeconds));
+        responseCacheMaxSeconds    = Math2.minMax(1, 86400, setup.getInt("responseCacheMaxSeconds", responseCacheMaxSeconds));
+        responseCache = responseCacheMB > 0? 
+            new ResponseCache(responseCacheMB, Math.min(responseCacheMaxSeconds * 1000L, cacheMillis / 2)) : null;
+        taskThreads = new TaskThread[nTaskThreads];
+        taskThreadFailedDistributionPerWorker    = new int[nTaskThreads][String2.DistributionSize];
+        taskThreadSucceededDistributionPerWorker = new int[nTaskThreads][String2.DistributionSize];
+        {   //e.g., <taskTypeMaxThreads>4,100,2,2</taskTypeMaxThreads>  parallels TaskThread.TASK_NAMES
+            String tsar[] = String2.split(setup.getString("taskTypeMaxThreads", ""), ',');
+            for (int i = 0; i < TaskThread.maxRunningOfType.length; i++) {
+                int ti = i < tsar.length? String2.parseInt(tsar[i]) : Integer.MAX_VALUE;
+                TaskThread.maxRunningOfType[i] = ti == Integer.MAX_VALUE? nTaskThreads : 
+                    Math2.minMax(1, nTaskThreads, ti);
+            }
+        }
+        NcHelper.ncFilePool.setLimits(
+            Math2.minMax(0, 10000, setup.getInt("ncFilePoolSize",        100)),
+            Math2.minMax(0, 86400, setup.getInt("ncFilePoolIdleSeconds", 300)));
+        TableWriterAll.maxMemoryBytes = Math2.BytesPerMB *
+            (long)Math2.minMax(0, 2000, setup.getInt("tableWriterAllMemoryMB", 10));
         partialRequestMaxBytes     = setup.getInt(             "partialRequestMaxBytes",     partialRequestMaxBytes);
         partialRequestMaxCells     = setup.getInt(             "partialRequestMaxCells",     partialRequestMaxCells);
         questionMarkImageFile      = setup.getNotNothingString("questionMarkImageFile",      errorInMethod);
@@ -3430,12 +3504,22 @@ accessibleViaNC4 = ".nc4 is not yet supported.";
 
         synchronized(taskList) { //all task-related things synch on taskList
             ensureTaskThreadIsRunningIfNeeded();  //clients (like this class) are responsible for checking on it
-            long tElapsedTime = taskThread == null? -1 : taskThread.elapsedTime();
+            int nRunning = 0;
+            long tElapsedTime = -1; //of the longest running task
+            for (int w = 0; w < taskThreads.length; w++) {
+                long eTime = taskThreads[w] == null? -1 : taskThreads[w].elapsedTime();
+                if (eTime >= 0) 
+                    nRunning++;
+                tElapsedTime = Math.max(tElapsedTime, eTime);
+            }
             sb.append("TaskThread has finished " + (lastFinishedTask + 1) + " out of " + 
                 taskList.size() + " tasks.  " +
                 (tElapsedTime < 0? 
                    "Currently, no task is running.\n" : 
-                   "The current task has been running for " + Calendar2.elapsedTimeString(tElapsedTime) + ".\n"));
+                 nRunning == 1? 
+                   "The current task has been running for " + Calendar2.elapsedTimeString(tElapsedTime) + ".\n" :
+                   "Currently, " + nRunning + " tasks are running. The oldest has been running for " + 
+                       Calendar2.elapsedTimeString(tElapsedTime) + ".\n"));
         }
         sb.append("TaskThread Failed    Time (since last Daily Report)     ");
         sb.append(String2.getBriefDistributionStatistics(taskThreadFailedDistribution24) + "\n");
@@ -3445,6 +3529,20 @@ accessibleViaNC4 = ".nc4 is not yet supported.";
         sb.append(String2.getBriefDistributionStatistics(taskThreadSucceededDistribution24) + "\n");
         sb.append("TaskThread Succeeded Time (since startup)               ");
         sb.append(String2.getBriefDistributionStatistics(taskThreadSucceededDistributionTotal) + "\n");
+        if (taskThreadSucceededDistributionPerWorker.length > 1) {
+            for (int w = 0; w < taskThreadSucceededDistributionPerWorker.length; w++) {
+                sb.append(String2.left("TaskThread #" + w + " Failed    Time (since startup)", 56));
+                sb.append(String2.getBriefDistributionStatistics(taskThreadFailedDistributionPerWorker[w]) + "\n");
+                sb.append(String2.left("TaskThread #" + w + " Succeeded Time (since startup)", 56));
+                sb.append(String2.getBriefDistributionStatistics(taskThreadSucceededDistributionPerWorker[w]) + "\n");
+            }
+        }
+        sb.append(NcHelper.ncFilePool.statistics());
+        sb.append(String2.asyncLogStatistics());
+        if (wmsRenderPool != null)
+            sb.append(wmsRenderPool.statistics());
+        if (responseCache != null)
+            sb.append(responseCache.statistics());
     }
 
     /**
@@ -3826,6 +3924,9 @@ accessibleViaNC4 = ".nc4 is not yet supported.";
             //shutdown Cassandra clusters/sessions
             EDDTableFromCassandra.shutdown();
 
+            //close the idle pooled ncFiles
+            NcHelper.ncFilePool.closeAll();
+
             //interrupt all of them
             for (int i = 0; i < names.length; i++) {
                 try {
@@ -3902,6 +4003,9 @@ accessibleViaNC4 = ".nc4 is not yet supported.";
             } catch (Throwable t) {}
             luceneIndexWriter = null;
 
+            //write the waiting log messages and stop the async log's writer thread
+            String2.setupAsyncLog(0, false);
+
         } catch (Throwable t) {
             String2.log(MustBe.throwableToString(t));
         }
@@ -3940,71 +4044,84 @@ accessibleViaNC4 = ".nc4 is not yet supported.";
     }
 
     /**
-     * This checks if the task thread is running and not stalled.
-     * If it is stalled, this will stop it.
+     * This checks if the task threads are running and not stalled.
+     * If one is stalled, this will stop it.
      *
-     * @return true if the task thread is running.
-     *    If false, taskThread will be null.
+     * @return true if at least one task thread is running.
+     *    Each task thread that isn't running will be set to null.
      */
     public static boolean isTaskThreadRunning() {
         synchronized(taskList) { //all task-related things synch on taskList
-            if (taskThread == null)
-                return false;
-
-            if (taskThread.isAlive()) {
-                //is it stalled?
-                long eTime = taskThread.elapsedTime();
-                long maxTime = 6 * Calendar2.MILLIS_PER_HOUR; //appropriate??? user settable???
-                if (eTime > maxTime) {  
-
-                    //taskThread is stalled; interrupt it
-                    String tError = "\n*** Error: EDStatic is interrupting a stalled taskThread (" +
-                        Calendar2.elapsedTimeString(eTime) + " > " + 
-                        Calendar2.elapsedTimeString(maxTime) + ") at " + 
-                        Calendar2.getCurrentISODateTimeStringLocalTZ();
-                    email(emailEverythingToCsv, "taskThread Stalled", tError);
-                    String2.log("\n*** " + tError);
-
-                    stopThread(taskThread, 10); //short time; it is already in trouble
-                    //runningThreads.remove   not necessary since new one is put() in below
-                    lastFinishedTask = nextTask - 1;
-                    taskThread = null;
-                    return false;
+            boolean anyRunning = false;
+            for (int w = 0; w < taskThreads.length; w++) {
+                TaskThread taskThread = taskThreads[w];
+                if (taskThread == null)
+                    continue;
+
+                if (taskThread.isAlive()) {
+                    //is it stalled?
+                    long eTime = taskThread.elapsedTime();
+                    long maxTime = 6 * Calendar2.MILLIS_PER_HOUR; //appropriate??? user settable???
+                    if (eTime > maxTime) {  
+
+                        //taskThread is stalled; interrupt it
+                        String tError = "\n*** Error: EDStatic is interrupting a stalled " + 
+                            taskThread.getName() + " (" +
+                            Calendar2.elapsedTimeString(eTime) + " > " + 
+                            Calendar2.elapsedTimeString(maxTime) + ") at " + 
+                            Calendar2.getCurrentISODateTimeStringLocalTZ();
+                        email(emailEverythingToCsv, "taskThread Stalled", tError);
+                        String2.log("\n*** " + tError);
+
+                        int tTask = taskThread.currentTask();
+                        stopThread(taskThread, 10); //short time; it is already in trouble
+                        //runningThreads.remove   not necessary since new one is put() in below
+                        if (tTask >= 0)
+                            TaskThread.finishTask(tTask); //give up on that task
+                        taskThreads[w] = null;
+                    } else {
+                        anyRunning = true;
+                    }
+                } else {
+                    //it isn't alive
+                    String2.log("\n*** EDStatic noticed that " + taskThread.getName() + 
+                        " is finished (" + 
+                        Calendar2.getCurrentISODateTimeStringLocalTZ() + ")\n");
+                    taskThreads[w] = null;
                 }
-                return true;
-            } else {
-                //it isn't alive
-                String2.log("\n*** EDStatic noticed that taskThread is finished (" + 
-                    Calendar2.getCurrentISODateTimeStringLocalTZ() + ")\n");
-                lastFinishedTask = nextTask - 1;
-                taskThread = null;
-                return false;
             }
+            return anyRunning;
         }
     }
 
     /** 
-     * This ensures the task thread is running if there are tasks to do
+     * This ensures the task threads are running if there are tasks to do
      */
     public static void ensureTaskThreadIsRunningIfNeeded() {
         synchronized(taskList) { //all task-related things synch on taskList
             try {
-                //this checks if it is running and not stalled
-                if (isTaskThreadRunning())
-                    return;
+                //this checks if they are running and not stalled
+                isTaskThreadRunning();
                 
-                //taskThread isn't running
                 //Are there no tasks to do? 
-                int nPending = taskList.size() - nextTask;
+                int nPending = nUnclaimedTasks();
                 if (nPending <= 0) 
-                    return; //no need to start it
-
-                //need to start a new taskThread
-                taskThread = new TaskThread(nextTask);
-                runningThreads.put(taskThread.getName(), taskThread); 
-                String2.log("\n*** new taskThread started at " + 
-                    Calendar2.getCurrentISODateTimeStringLocalTZ() + " nPendingTasks=" + nPending + "\n");
-                taskThread.start();
+                    return; //no need to start one
+
+                //start new taskThreads (up to 1 per pending task)
+                for (int w = 0; w < taskThreads.length && nPending > 0; w++) {
+                    if (taskThreads[w] != null) {
+                        nPending--; //it will do a pending task
+                        continue;
+                    }
+                    TaskThread taskThread = new TaskThread(w);
+                    taskThreads[w] = taskThread;
+                    runningThreads.put(taskThread.getName(), taskThread); 
+                    String2.log("\n*** new " + taskThread.getName() + " started at " + 
+                        Calendar2.getCurrentISODateTimeStringLocalTZ() + " nPendingTasks=" + nPending + "\n");
+                    taskThread.start();
+                    nPending--;
+                }
                 return;            
             } catch (Throwable t) {
             }
@@ -4018,12 +4135,49 @@ accessibleViaNC4 = ".nc4 is not yet supported.";
         return (taskList.size() - lastFinishedTask) - 1;
     }
 
+    /**
+     * This returns the number of tasks that haven't been finished or claimed by a TaskThread.
+     */
+    public static int nUnclaimedTasks() {
+        synchronized(taskList) { //all task-related things synch on taskList
+            int n = 0;
+            for (int task = lastFinishedTask + 1; task < taskList.size(); task++) {
+                if (taskList.get(task) != null)
+                    n++;
+            }
+            return n - TaskThread.nRunningTasks();
+        }
+    }
+
     /** This adds a task to the taskList if it (other than TASK_SET_FLAG)
      * isn't already on the taskList.
+     * The task's datasetID is taken from the task (for TASK_SET_FLAG and 
+     * TASK_MAKE_A_DATAFILE) or is "". 
+     * Tasks with the same datasetID are done in order.
+     *
      * @return the task number that was assigned to the task,
      *   or -1 if it was a duplicate task.
      */
     public static int addTask(Object taskOA[]) {
+        Object taskType = taskOA[0];
+        return addTask(
+            TaskThread.TASK_SET_FLAG.equals(taskType)?        (String)taskOA[1] :
+            TaskThread.TASK_MAKE_A_DATAFILE.equals(taskType)? ((EDD)taskOA[1]).datasetID() :
+            "", 
+            taskOA);
+    }
+
+    /** This adds a task to the taskList if it (other than TASK_SET_FLAG)
+     * isn't already on the taskList.
+     *
+     * @param datasetID the datasetID of the dataset that the task is for.
+     *   Tasks with the same datasetID are done in order 
+     *   (e.g., a dataset's TASK_SET_FLAG is done after its other tasks).
+     *   Tasks for different datasetIDs may be done concurrently.
+     * @return the task number that was assigned to the task,
+     *   or -1 if it was a duplicate task.
+     */
+    public static int addTask(String datasetID, Object taskOA[]) {
         synchronized(taskList) { //all task-related things synch on taskList
 
             //Note that all task creators check that
@@ -4033,6 +4187,8 @@ accessibleViaNC4 = ".nc4 is not yet supported.";
             
             //add the task to the list
             taskList.add(taskOA);
+            taskDatasetIDs.add(datasetID == null? "" : datasetID);
+            taskList.notifyAll(); //a waiting TaskThread may be able to do it
             return taskList.size() - 1;
         }
     }
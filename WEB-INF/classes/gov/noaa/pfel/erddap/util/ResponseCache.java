@@ -0,0 +1,614 @@
+/*
+ * ResponseCache Copyright 2026, agent (agent@local).
+ * See the LICENSE.txt file in this file's directory.
+ */
+package gov.noaa.pfel.erddap.util;
+
+import com.cohort.util.File2;
+import com.cohort.util.Math2;
+import com.cohort.util.String2;
+import com.cohort.util.Test;
+
+import gov.noaa.pfel.coastwatch.util.RegexFilenameFilter;
+import gov.noaa.pfel.erddap.dataset.EDD;
+import gov.noaa.pfel.erddap.dataset.OutputStreamSource;
+import gov.noaa.pfel.erddap.dataset.OutputStreamSourceSimple;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This keeps copies of the responses to griddap and tabledap requests
+ * for the file types which the datasets otherwise make from scratch for every
+ * request (e.g., .csv and .json, see FILE_TYPES), so that identical requests
+ * (e.g., from a dashboard which polls the same "last 24 hours" request
+ * every minute) can be answered by just copying the file.
+ *
+ * <p>The responses are identified by the name from EDD.suggestFileName
+ * (which uses EDD.normalizeDapQuery, so requests which differ only in
+ * the order of the constraints, in white space, or in the way that
+ * "last" or "now-" are expressed, share a response) plus the extension.
+ * The files are stored in the dataset's cache directory: responses/[name][extension] .
+ *
+ * <p>There is one ResponseCache for all datasets (see EDStatic.responseCache).
+ * It is off unless the admin sets &lt;responseCacheMB&gt; in setup.xml.
+ * When the total size of a dataset's cached responses is more than maxBytes,
+ * the dataset's least recently used responses are deleted.
+ * A response is only used for maxAgeMillis after it was made (regardless of
+ * how often it is used), since many datasets (e.g., EDDTableFromDatabase,
+ * EDDTableFromCassandra, EDDGridFromErddap, EDDTableFromSOS, and EDDGridFromDap 
+ * between reloads) get new data without update() knowing about it.
+ * invalidate removes a dataset's responses (e.g., after EDD.update() finds new data,
+ * or after an EDDTableFromHttpGet .insert or .delete)
+ * and removeDataset also deletes the dataset's responses directory
+ * (e.g., when the dataset is reloaded or unloaded).
+ *
+ * <p>This is thread-safe.
+ *
+ * @author agent (agent@local) 2026-10-18
+ */
+public class ResponseCache {
+
+    /**
+     * Set this to true (by calling verbose=true in your program,
+     * not by changing the code here)
+     * if you want lots of diagnostic messages sent to String2.log.
+     */
+    public static boolean verbose = false;
+
+    /** The name of the responses subdirectory in a dataset's cache directory. */
+    public final static String RESPONSES_DIR = "responses/";
+
+    /** The file types whose responses are cached.
+     * Other file types are either already cached as files by the datasets
+     * (e.g., .nc and .png), are cheap (e.g., .das), or depend on more than
+     * the query (e.g., .html). */
+    public final static String FILE_TYPES[] = {
+        ".asc", ".csv", ".csvp", ".csv0", ".dods", ".esriAscii", ".esriCsv",
+        ".geoJson", ".itx", ".json", ".jsonlCSV", ".jsonlKVP", ".mat",
+        ".nccsv", ".odvTxt", ".tsv", ".tsvp", ".tsv0"};
+
+    /** The information about one cached response. */
+    private static class Entry {
+        long nBytes;
+        String characterEncoding;
+        long createdMillis = System.currentTimeMillis();
+        Entry(long tNBytes, String tCharacterEncoding) {
+            nBytes = tNBytes;
+            characterEncoding = tCharacterEncoding;
+        }
+    }
+
+    /** The cached responses for one dataset. */
+    private static class DatasetResponses {
+        /** name -&gt; Entry, in least-recently-used order */
+        LinkedHashMap<String, Entry> lru = new LinkedHashMap(16, 0.75f, true);
+        long totalBytes = 0;
+        /** This is incremented by invalidate, so that responses
+         * which were being made at the time aren't kept. */
+        int generation = 0;
+    }
+
+    private final long maxBytes, maxAgeMillis;
+
+    /** datasetID -&gt; DatasetResponses. Synchronize on this. */
+    private final HashMap<String, DatasetResponses> datasets = new HashMap();
+
+    /** Statistics (for diagnostics). */
+    private int nHits = 0, nMisses = 0, nAdded = 0, nTooBig = 0, nExpired = 0;
+
+    /**
+     * The constructor.
+     *
+     * @param tMaxMB the maximum size of each dataset's cached responses (in MB)
+     * @param tMaxAgeMillis the maximum time a response is used after it was made
+     *   (in milliseconds). This should be less than EDStatic.cacheMillis,
+     *   since the cache cleaner deletes older files.
+     */
+    public ResponseCache(int tMaxMB, long tMaxAgeMillis) {
+        maxBytes = Math.max(1, tMaxMB) * (long)Math2.BytesPerMB;
+        maxAgeMillis = Math.max(1, tMaxAgeMillis);
+    }
+
+    /**
+     * This indicates if responses of this file type are cached.
+     *
+     * @param fileTypeName e.g., .csv
+     * @return true if responses of this file type are cached.
+     */
+    public static boolean isCacheable(String fileTypeName) {
+        return String2.indexOf(FILE_TYPES, fileTypeName) >= 0;
+    }
+
+    /**
+     * This returns the directory with a dataset's cached responses.
+     *
+     * @param datasetID
+     * @return the directory (with slash at end)
+     */
+    public static String responseDir(String datasetID) {
+        return EDD.cacheDirectory(datasetID) + RESPONSES_DIR;
+    }
+
+    /** This returns the DatasetResponses for a dataset, making it if needed.
+     * Only call this while synchronized on datasets. */
+    private DatasetResponses datasetResponses(String datasetID) {
+        DatasetResponses dr = datasets.get(datasetID);
+        if (dr == null) {
+            dr = new DatasetResponses();
+            datasets.put(datasetID, dr);
+        }
+        return dr;
+    }
+
+    /**
+     * If a response is in the cache and isn't too old, this sends it to the 
+     * outputStreamSource (and marks it as recently used).
+     * A response which is too old is removed.
+     *
+     * @param datasetID
+     * @param name the response's name, e.g., suggestFileName + extension
+     * @param outputStreamSource the destination for the response.
+     *    This isn't called if the response isn't in the cache.
+     * @return true if the response was sent,
+     *   or false if it isn't in the cache or is too old (nothing was sent).
+     * @throws Throwable if trouble while sending the response
+     */
+    public boolean sendCached(String datasetID, String name,
+        OutputStreamSource outputStreamSource) throws Throwable {
+
+        String fullName = responseDir(datasetID) + name;
+        Entry entry;
+        synchronized (datasets) {
+            DatasetResponses dr = datasets.get(datasetID);
+            entry = dr == null? null : dr.lru.get(name); //this makes it the most recently used
+            if (entry == null) {
+                nMisses++;
+                return false;
+            }
+            if (System.currentTimeMillis() - entry.createdMillis > maxAgeMillis) {
+                dr.lru.remove(name);
+                dr.totalBytes -= entry.nBytes;
+                nExpired++;
+                nMisses++;
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            File2.delete(fullName); //it may be in use by another request, but then delete just fails
+            return false;
+        }
+
+        //open the file before starting the response, in case it was just deleted
+        FileInputStream in;
+        try {
+            in = new FileInputStream(fullName);
+        } catch (FileNotFoundException e) {
+            //e.g., it was deleted by invalidate or by the cache cleaner
+            synchronized (datasets) {
+                DatasetResponses dr = datasets.get(datasetID);
+                if (dr != null && dr.lru.remove(name, entry))
+                    dr.totalBytes -= entry.nBytes;
+                nMisses++;
+            }
+            return false;
+        }
+        try {
+            synchronized (datasets) {
+                nHits++;
+            }
+            if (verbose) String2.log("ResponseCache is sending " + fullName);
+            OutputStream out = outputStreamSource.outputStream(entry.characterEncoding);
+            if (!File2.copy(in, out))
+                throw new IOException("Unable to send the cached response " + fullName);
+            return true;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * This returns a dataset's current generation. Call this before determining 
+     * a response's name (since the name may depend on the dataset's current 
+     * axis values) and pass the value to tee().
+     *
+     * @param datasetID
+     */
+    public int generation(String datasetID) {
+        synchronized (datasets) {
+            return datasetResponses(datasetID).generation;
+        }
+    }
+
+    /**
+     * This returns an OutputStreamSource which sends everything to outputStreamSource
+     * and also saves a copy, which Tee.finish() adds to the cache.
+     *
+     * @param datasetID
+     * @param name the response's name, e.g., suggestFileName + extension
+     * @param outputStreamSource the destination for the response
+     * @param tGeneration the generation() before the name was determined
+     * @return a Tee
+     */
+    public Tee tee(String datasetID, String name, OutputStreamSource outputStreamSource,
+        int tGeneration) {
+        return new Tee(datasetID, name, outputStreamSource, tGeneration);
+    }
+
+    /**
+     * This adds a finished response file to the cache,
+     * then the dataset's least recently used responses are removed if the
+     * dataset's responses are too big.
+     *
+     * @return true if it was added, or false if the dataset's responses were
+     *   invalidated while it was being made.
+     */
+    private boolean added(String datasetID, String name, Entry entry, int tGeneration) {
+        String dir = responseDir(datasetID);
+        int nRemoved = 0;
+        synchronized (datasets) {
+            DatasetResponses dr = datasetResponses(datasetID);
+            if (tGeneration != dr.generation)
+                return false;
+            Entry oldEntry = dr.lru.put(name, entry);
+            if (oldEntry != null)
+                dr.totalBytes -= oldEntry.nBytes;
+            dr.totalBytes += entry.nBytes;
+            nAdded++;
+
+            //remove the least recently used responses
+            Iterator<Map.Entry<String, Entry>> it = dr.lru.entrySet().iterator();
+            while (dr.totalBytes > maxBytes && it.hasNext()) {
+                Map.Entry<String, Entry> me = it.next();
+                if (me.getKey().equals(name))
+                    continue;
+                File2.delete(dir + me.getKey());
+                dr.totalBytes -= me.getValue().nBytes;
+                it.remove();
+                nRemoved++;
+            }
+        }
+        if (verbose && nRemoved > 0)
+            String2.log("ResponseCache removed " + nRemoved +
+                " least recently used responses for datasetID=" + datasetID);
+        return true;
+    }
+
+    /**
+     * This removes all of a dataset's cached responses,
+     * e.g., after EDD.update() has found new data.
+     *
+     * @param datasetID
+     */
+    public void invalidate(String datasetID) {
+        String dir = responseDir(datasetID);
+        int nRemoved = 0;
+        synchronized (datasets) {
+            DatasetResponses dr = datasets.get(datasetID);
+            if (dr == null)
+                return;
+            dr.generation++;
+            Iterator<String> it = dr.lru.keySet().iterator();
+            while (it.hasNext()) {
+                File2.delete(dir + it.next());
+                it.remove();
+                nRemoved++;
+            }
+            dr.totalBytes = 0;
+        }
+        if (verbose) String2.log("ResponseCache.invalidate(" + datasetID +
+            ") removed " + nRemoved + " responses.");
+    }
+
+    /**
+     * This removes all of a dataset's cached responses, including any files
+     * in the dataset's responses directory which aren't known to this ResponseCache
+     * (e.g., from before ERDDAP was restarted).
+     * This is called when a dataset is reloaded or unloaded.
+     *
+     * @param datasetID
+     */
+    public void removeDataset(String datasetID) {
+        invalidate(datasetID);
+        RegexFilenameFilter.recursiveDelete(responseDir(datasetID));
+    }
+
+    /** This returns a short summary of the cache's statistics (with a newline at the end). */
+    public String statistics() {
+        synchronized (datasets) {
+            int nResponses = 0;
+            long totalBytes = 0;
+            for (DatasetResponses dr : datasets.values()) {
+                nResponses += dr.lru.size();
+                totalBytes += dr.totalBytes;
+            }
+            return "ResponseCache nDatasets=" + datasets.size() +
+                " nResponses=" + nResponses +
+                " MB=" + (totalBytes / Math2.BytesPerMB) +
+                " nHits=" + nHits + " nMisses=" + nMisses +
+                " nAdded=" + nAdded + " nTooBig=" + nTooBig + 
+                " nExpired=" + nExpired + "\n";
+        }
+    }
+
+    /**
+     * A Tee is an OutputStreamSource which sends everything to another
+     * OutputStreamSource and also writes it to a temporary file.
+     * After the response has been sent (and the outputStream closed), call finish()
+     * to add the response to the cache. If there was trouble, call abandon().
+     * If the response gets bigger than the cache's maxBytes, the copy is
+     * abandoned automatically.
+     */
+    public class Tee implements OutputStreamSource {
+        private final String datasetID, name, tempName;
+        private final OutputStreamSource source;
+        private final int generation;
+        private String characterEncoding;
+        private OutputStream outputStream;
+        private FileOutputStream fileOut;
+        private long nBytes = 0;
+        private boolean done = false;
+
+        private Tee(String tDatasetID, String tName, OutputStreamSource tSource,
+            int tGeneration) {
+            datasetID = tDatasetID;
+            name = tName;
+            tempName = responseDir(datasetID) + name + Math2.random(Integer.MAX_VALUE) + ".tmp";
+            source = tSource;
+            generation = tGeneration;
+        }
+
+        /** A variant of outputStream() for when the contentLength isn't known. */
+        public OutputStream outputStream(String tCharacterEncoding) throws Throwable {
+            return outputStream(tCharacterEncoding, -1);
+        }
+
+        /** This returns the outputStream if it has already been created (else null). */
+        public OutputStream existingOutputStream() {
+            return outputStream;
+        }
+
+        /**
+         * This returns an OutputStream which writes to the source's outputStream
+         * and to the temporary file.
+         * If called repeatedly, this returns the same outputStream.
+         *
+         * @param tCharacterEncoding e.g., "" (for none specified), String2.UTF_8, or "" (for DAP).
+         * @param contentLength the number of bytes that will be sent (or -1 if not known).
+         */
+        public OutputStream outputStream(String tCharacterEncoding, long contentLength)
+            throws Throwable {
+            if (outputStream != null)
+                return outputStream;
+            characterEncoding = tCharacterEncoding;
+            final OutputStream out = source.outputStream(tCharacterEncoding, contentLength);
+            if (!done) { //if already abandoned (e.g., before a retry), just pass the bytes through
+                try {
+                    File2.makeDirectory(responseDir(datasetID));
+                    fileOut = new FileOutputStream(tempName);
+                } catch (Throwable t) {
+                    String2.log("ResponseCache.Tee unable to make " + tempName + ": " + t.toString());
+                    done = true;
+                }
+            }
+            outputStream = new OutputStream() {
+                public void write(int b) throws IOException {
+                    out.write(b);
+                    if (fileOut != null) {
+                        fileOut.write(b);
+                        checkSize(1);
+                    }
+                }
+                public void write(byte b[], int off, int len) throws IOException {
+                    out.write(b, off, len);
+                    if (fileOut != null) {
+                        fileOut.write(b, off, len);
+                        checkSize(len);
+                    }
+                }
+                public void flush() throws IOException {
+                    out.flush();
+                }
+                public void close() throws IOException {
+                    try {
+                        out.close();
+                    } finally {
+                        closeFile();
+                    }
+                }
+            };
+            return outputStream;
+        }
+
+        /** This abandons the copy if the response is too big to be cached. */
+        private void checkSize(int n) {
+            nBytes += n;
+            if (nBytes > maxBytes) {
+                synchronized (datasets) {
+                    nTooBig++;
+                }
+                abandon();
+            }
+        }
+
+        /** This closes the temporary file (if open). */
+        private void closeFile() {
+            if (fileOut != null) {
+                try {
+                    fileOut.close();
+                } catch (Throwable t) {
+                    done = true; //so it isn't added
+                }
+                fileOut = null;
+            }
+        }
+
+        /**
+         * After ouputStream() has been called, this indicates the encoding (compression)
+         * being used by the source.
+         */
+        public String usingCompression() {
+            return source.usingCompression();
+        }
+
+        /**
+         * Call this after the response has been sent and the outputStream closed
+         * to add the response to the cache.
+         */
+        public void finish() {
+            if (done)
+                return;
+            done = true;
+            closeFile();
+            String fullName = responseDir(datasetID) + name;
+            try {
+                if (nBytes == 0)
+                    File2.delete(tempName);
+                else {
+                    File2.rename(tempName, fullName);
+                    if (!added(datasetID, name, new Entry(nBytes, characterEncoding), generation))
+                        File2.delete(fullName);
+                }
+            } catch (Throwable t) {
+                String2.log("ResponseCache.Tee.finish() failed for " + fullName + ": " + t.toString());
+                File2.delete(tempName);
+            }
+        }
+
+        /**
+         * Call this if there was trouble while making the response
+         * so that it isn't added to the cache.
+         * This doesn't close the source's outputStream.
+         */
+        public void abandon() {
+            done = true;
+            closeFile();
+            File2.delete(tempName);
+        }
+    }
+
+
+    /**
+     * This tests this class.
+     *
+     * @throws Throwable if trouble
+     */
+    public static void test() throws Throwable {
+        String2.log("\n*** ResponseCache.test()");
+        verbose = true;
+
+        Test.ensureEqual(isCacheable(".csv"), true, "");
+        Test.ensureEqual(isCacheable(".html"), false, "");
+        Test.ensureEqual(isCacheable(".nc"), false, "");
+
+        //caching: 3 responses of 300000 bytes each fit in 1 MB
+        String id = "testResponseCache";
+        ResponseCache cache = new ResponseCache(1, 60000);
+        cache.removeDataset(id);
+        String content = String2.makeString('a', 300000);
+        for (int i = 0; i < 6; i++) {
+            String name = "r" + i + ".csv";
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            OutputStreamSource oss = new OutputStreamSourceSimple(baos);
+            Test.ensureEqual(cache.sendCached(id, name, oss), false, "i=" + i);
+            Tee tee = cache.tee(id, name, oss, cache.generation(id));
+            OutputStream out = tee.outputStream(String2.UTF_8);
+            out.write(String2.toByteArray(content + i));
+            out.close();
+            tee.finish();
+            Test.ensureEqual(baos.size(), 300001, "i=" + i);
+
+            baos = new ByteArrayOutputStream();
+            oss = new OutputStreamSourceSimple(baos);
+            Test.ensureEqual(cache.sendCached(id, name, oss), true, "i=" + i);
+            Test.ensureEqual(baos.toString(), content + i, "i=" + i);
+        }
+        //only the 3 most recently used responses fit in 1MB
+        for (int i = 0; i < 6; i++)
+            Test.ensureEqual(cache.sendCached(id, "r" + i + ".csv",
+                new OutputStreamSourceSimple(new ByteArrayOutputStream())), i >= 3, "i=" + i);
+        Test.ensureEqual(File2.isFile(responseDir(id) + "r0.csv"), false, "");
+
+        //a response which is too big isn't cached (but is still sent)
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        Tee tee = cache.tee(id, "big.csv", new OutputStreamSourceSimple(baos),
+            cache.generation(id));
+        OutputStream out = tee.outputStream(String2.UTF_8);
+        for (int i = 0; i < 4; i++)
+            out.write(String2.toByteArray(content));
+        out.close();
+        tee.finish();
+        Test.ensureEqual(baos.size(), 1200000, "");
+        Test.ensureEqual(cache.sendCached(id, "big.csv",
+            new OutputStreamSourceSimple(new ByteArrayOutputStream())), false, "");
+
+        //an abandoned response isn't cached
+        tee = cache.tee(id, "bad.csv", new OutputStreamSourceSimple(new ByteArrayOutputStream()),
+            cache.generation(id));
+        tee.outputStream(String2.UTF_8).write(String2.toByteArray("partial"));
+        tee.abandon();
+        Test.ensureEqual(cache.sendCached(id, "bad.csv",
+            new OutputStreamSourceSimple(new ByteArrayOutputStream())), false, "");
+
+        //a response written through an abandoned tee (e.g., a retry) is sent but not cached
+        baos = new ByteArrayOutputStream();
+        tee = cache.tee(id, "retry.csv", new OutputStreamSourceSimple(baos),
+            cache.generation(id));
+        tee.abandon();
+        out = tee.outputStream(String2.UTF_8);
+        out.write(String2.toByteArray("retry"));
+        out.close();
+        tee.finish();
+        Test.ensureEqual(baos.toString(), "retry", "");
+        Test.ensureEqual(cache.sendCached(id, "retry.csv",
+            new OutputStreamSourceSimple(new ByteArrayOutputStream())), false, "");
+        String tNames[] = new File(responseDir(id)).list();
+        for (int i = 0; i < tNames.length; i++)
+            Test.ensureTrue(!tNames[i].endsWith(".tmp"), "tNames[" + i + "]=" + tNames[i]);
+
+        //a response made before invalidate isn't added
+        tee = cache.tee(id, "old.csv", new OutputStreamSourceSimple(new ByteArrayOutputStream()),
+            cache.generation(id));
+        out = tee.outputStream(String2.UTF_8);
+        out.write(String2.toByteArray("old"));
+        out.close();
+        cache.invalidate(id);
+        tee.finish();
+        Test.ensureEqual(cache.sendCached(id, "old.csv",
+            new OutputStreamSourceSimple(new ByteArrayOutputStream())), false, "");
+        Test.ensureEqual(cache.sendCached(id, "r5.csv",
+            new OutputStreamSourceSimple(new ByteArrayOutputStream())), false, "");
+        Test.ensureEqual(File2.isFile(responseDir(id) + "r5.csv"), false, "");
+
+        //a response is only used for maxAgeMillis after it was made
+        cache = new ResponseCache(1, 500);
+        tee = cache.tee(id, "young.csv", new OutputStreamSourceSimple(new ByteArrayOutputStream()),
+            cache.generation(id));
+        out = tee.outputStream(String2.UTF_8);
+        out.write(String2.toByteArray("young"));
+        out.close();
+        tee.finish();
+        Test.ensureEqual(cache.sendCached(id, "young.csv",
+            new OutputStreamSourceSimple(new ByteArrayOutputStream())), true, "");
+        Math2.sleep(600);
+        Test.ensureEqual(cache.sendCached(id, "young.csv",
+            new OutputStreamSourceSimple(new ByteArrayOutputStream())), false, "");
+        Test.ensureEqual(File2.isFile(responseDir(id) + "young.csv"), false, "");
+
+        //removeDataset
+        cache.removeDataset(id);
+        Test.ensureEqual(File2.isDirectory(responseDir(id)), false, "");
+        String2.log(cache.statistics());
+        String2.log("\n*** ResponseCache.test() finished successfully.");
+    }
+
+}
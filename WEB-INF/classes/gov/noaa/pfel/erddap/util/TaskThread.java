@@ -11,17 +11,31 @@ import com.cohort.util.File2;
 import com.cohort.util.Math2;
 import com.cohort.util.MustBe;
 import com.cohort.util.String2;
+import com.cohort.util.Test;
 
 import gov.noaa.pfel.coastwatch.griddata.OpendapHelper;
+import gov.noaa.pfel.erddap.Erddap;
 import gov.noaa.pfel.erddap.dataset.EDD;
 import gov.noaa.pfel.erddap.util.EDStatic;
 import gov.noaa.pfel.erddap.variable.EDV;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 
 /**
  * This does a series of tasks.
  *
+ * <p>EDStatic runs up to nTaskThreads TaskThreads at once.
+ * Each TaskThread repeatedly claims the lowest-numbered runnable task in
+ * EDStatic.taskList, does it, then looks for another one.
+ * A task is runnable if no earlier task with the same datasetID 
+ * (see EDStatic.addTask) is unfinished and if fewer than maxRunningOfType[taskType]
+ * tasks of that type are running.
+ * So the tasks for a given dataset are done in order
+ * (e.g., TASK_SET_FLAG is done after that dataset's TASK_MAKE_A_DATAFILE tasks),
+ * but the tasks for different datasets may be done concurrently.
+ * When there are no more unclaimed tasks, the TaskThread exits.
+ *
  * @author Bob Simons (bob.simons@noaa.gov) 2009-05-20
  */
 public class TaskThread extends Thread {
@@ -51,6 +65,11 @@ public class TaskThread extends Thread {
      */
     public final static Integer TASK_ALL_DAP_TO_NC = new Integer(3);
 
+    /** If taskOA[0].equals(TASK_SEED_WMS_TILES), then make
+     * taskOA[1]=erddap, taskOA[2]=datasetID
+     */
+    public final static Integer TASK_SEED_WMS_TILES = new Integer(4);
+
     /**
      * TASK_NAMES parallels the TASK Integers.
      */
@@ -58,7 +77,8 @@ public class TaskThread extends Thread {
         "MAKE_A_DATAFILE",
         "SET_FLAG",
         "DAP_TO_NC",
-        "ALL_DAP_TO_NC"};
+        "ALL_DAP_TO_NC",
+        "SEED_WMS_TILES"};
 
     /**
      * Set this to true (by calling verbose=true in your program, 
@@ -68,56 +88,177 @@ public class TaskThread extends Thread {
     public static boolean verbose = false; 
     public static boolean reallyVerbose = false; 
 
+    /**
+     * The maximum number of tasks of each type (parallels TASK_NAMES) that 
+     * may be running at once (in different TaskThreads).
+     * EDStatic sets this from setup.xml's &lt;taskTypeMaxThreads&gt;.
+     */
+    public static int maxRunningOfType[] = {
+        Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE,
+        Integer.MAX_VALUE};
+
+    //the tasks which are running and the number of each type which are running
+    //all task-related things synch on EDStatic.taskList
+    private static HashSet<Integer> runningTasks = new HashSet();
+    private static int nRunningOfType[] = new int[TASK_NAMES.length];
+
+    //set by constructor
+    private int workerNumber;
+
     //set while running
-    private long lastStartTime;
+    private volatile long lastStartTime = -1; //-1 if no task is running
+    private volatile int currentTask = -1;    //-1 if no task is running
 
 
     /**
      * The constructor.
      * TaskThread uses task variables in EDStatic.
      *
+     * @param tWorkerNumber 0.. (less than EDStatic.nTaskThreads)
      */
-    public TaskThread(int tNextTask) {
-        EDStatic.nextTask = tNextTask;
-        EDStatic.lastFinishedTask = tNextTask - 1;
-        setName("TaskThread");
+    public TaskThread(int tWorkerNumber) {
+        workerNumber = tWorkerNumber;
+        setName("TaskThread" + (workerNumber == 0? "" : "_" + workerNumber));
+    }
+
+    /** This returns the worker number of this TaskThread. */
+    public int workerNumber() {
+        return workerNumber;
     }
 
     /** 
      * This returns elapsed time for the current task (or -1 if no task is running).
      */
     public long elapsedTime() {
-        return System.currentTimeMillis() - lastStartTime;
+        long tLastStartTime = lastStartTime;
+        return tLastStartTime < 0? -1 : System.currentTimeMillis() - tLastStartTime;
+    }
+
+    /** 
+     * This returns the number (in EDStatic.taskList) of the current task 
+     * (or -1 if no task is running).
+     */
+    public int currentTask() {
+        return currentTask;
+    }
+
+    /**
+     * This returns the type of the task (e.g., TASK_SET_FLAG) as an int.
+     *
+     * @param taskOA the task
+     * @return the type of the task, or -1 if not a known type.
+     */
+    private static int taskType(Object taskOA[]) {
+        int type = ((Integer)taskOA[0]).intValue();
+        return type >= 0 && type < TASK_NAMES.length? type : -1;
+    }
+
+    /**
+     * This returns the number of tasks which have been claimed by a TaskThread
+     * but aren't finished.
+     * The caller must be synchronized on EDStatic.taskList.
+     */
+    static int nRunningTasks() {
+        return runningTasks.size();
+    }
+
+    /**
+     * This finds and claims the lowest-numbered runnable task.
+     * The caller must be synchronized on EDStatic.taskList.
+     *
+     * @return the task number, or -1 if there is no runnable task 
+     *   (see also EDStatic.nUnclaimedTasks()).
+     */
+    private static int claimNextTask() {
+        HashSet<String> blockedIDs = new HashSet(); //datasetIDs with an earlier unfinished task
+        int n = EDStatic.taskList.size();
+        for (int task = EDStatic.lastFinishedTask + 1; task < n; task++) {
+            Object taskOA[] = (Object[])EDStatic.taskList.get(task);
+            if (taskOA == null) //finished
+                continue;
+            String datasetID = EDStatic.taskDatasetIDs.get(task);
+            if (!runningTasks.contains(new Integer(task)) &&
+                !blockedIDs.contains(datasetID)) {
+                int type = taskType(taskOA);
+                if (type < 0 || nRunningOfType[type] < maxRunningOfType[type]) {
+                    runningTasks.add(new Integer(task));
+                    if (type >= 0)
+                        nRunningOfType[type]++;
+                    return task;
+                }
+            }
+            blockedIDs.add(datasetID);
+        }
+        return -1;
+    }
+
+    /**
+     * This marks a task as finished (whether it succeeded or failed)
+     * and updates EDStatic.lastFinishedTask.
+     * The caller must be synchronized on EDStatic.taskList.
+     *
+     * @param task the task number
+     */
+    static void finishTask(int task) {
+        Object taskOA[] = (Object[])EDStatic.taskList.get(task);
+        if (runningTasks.remove(new Integer(task)) && taskOA != null) {
+            int type = taskType(taskOA);
+            if (type >= 0)
+                nRunningOfType[type]--;
+        }
+        EDStatic.taskList.set(task, null);  //throw away the task info (gc)
+
+        //lastFinishedTask is the last task such that it and all earlier tasks are finished
+        int n = EDStatic.taskList.size();
+        while (EDStatic.lastFinishedTask + 1 < n && 
+               EDStatic.taskList.get(EDStatic.lastFinishedTask + 1) == null)
+            EDStatic.lastFinishedTask++;
+        EDStatic.taskList.notifyAll(); //other tasks for this datasetID may be runnable now
     }
 
     /**
      * This does any pending tasks, then exits.
      */
     public void run() {
-        while (EDStatic.nextTask < EDStatic.taskList.size()) {
+        String name = getName();
+        while (true) {
             String taskSummary = null;
+            int task;
+            Object taskOA[];
             try {
                 //check isInterrupted
                 if (isInterrupted()) { 
-                    String2.log("%%% TaskThread was interrupted at " + 
+                    String2.log("%%% " + name + " was interrupted at " + 
                         Calendar2.getCurrentISODateTimeStringLocalTZ());
                     return;
                 }
 
-                //start to do the task
+                //claim a task
                 //do these things quickly to keep internal consistency
-                lastStartTime = System.currentTimeMillis();  
-                String2.log("\n%%% TaskThread started task #" + EDStatic.nextTask + 
+                synchronized(EDStatic.taskList) { //all task-related things synch on taskList
+                    task = claimNextTask();
+                    while (task < 0) {
+                        //all unclaimed tasks are waiting for another TaskThread's tasks to finish?
+                        if (EDStatic.nUnclaimedTasks() == 0)
+                            return;
+                        EDStatic.taskList.wait(Calendar2.MILLIS_PER_MINUTE);
+                        task = claimNextTask();
+                    }
+                    taskOA = (Object[])EDStatic.taskList.get(task);
+                    currentTask = task;
+                    lastStartTime = System.currentTimeMillis();  
+                }
+            } catch (InterruptedException e) {
+                String2.log("%%% " + name + " was interrupted at " + 
+                    Calendar2.getCurrentISODateTimeStringLocalTZ());
+                return;
+            }
+
+            try {
+                //start to do the task
+                String2.log("\n%%% " + name + " started task #" + task + 
                     " of " + (EDStatic.taskList.size() - 1) +
                     " at " + Calendar2.getCurrentISODateTimeStringLocalTZ());
-                EDStatic.nextTask++;
-
-                //get the task settings
-                Object taskOA[] = (Object[])EDStatic.taskList.get(EDStatic.nextTask - 1);
-                if (taskOA == null) {
-                    String2.log("task #" + (EDStatic.nextTask - 1) + " was null.");
-                    continue;
-                }
                 Integer taskType = (Integer)taskOA[0];
 
                 //TASK_MAKE_A_DATAFILE
@@ -186,25 +327,42 @@ public class TaskThread extends Thread {
                     OpendapHelper.allDapToNc(dapUrl, fullFileName);
                     File2.setLastModified(fullFileName, lastModified.longValue());
 
+                //TASK_SEED_WMS_TILES
+                } else if (taskType.equals(TASK_SEED_WMS_TILES)) {
+
+                    Erddap erddap    = (Erddap)taskOA[1];
+                    String datasetID = (String)taskOA[2];
+                    taskSummary = "  TASK_SEED_WMS_TILES datasetID=" + datasetID;
+                    String2.log(taskSummary);
+
+                    int nMade = erddap.seedWmsTiles(datasetID);
+                    String2.log("    nTilesMade=" + nMade);
+
                 //UNKNOWN taskType
                 } else {
-                    String2.log("TaskThread error: Unknown taskType=" + taskType + 
-                        " for task #" + (EDStatic.nextTask - 1) + ".");
+                    String2.log(name + " error: Unknown taskType=" + taskType + 
+                        " for task #" + task + ".");
                 }
 
                 //task finished successfully
                 long tElapsedTime = elapsedTime();
-                String2.log("%%% TaskThread task #" + (EDStatic.nextTask - 1) + 
+                String2.log("%%% " + name + " task #" + task + 
                     " of " + (EDStatic.taskList.size() - 1) +
                     " succeeded.  elapsedTime = " + Calendar2.elapsedTimeString(tElapsedTime));
-                String2.distribute(tElapsedTime, EDStatic.taskThreadSucceededDistribution24);
-                String2.distribute(tElapsedTime, EDStatic.taskThreadSucceededDistributionTotal);
+                synchronized(EDStatic.taskList) { 
+                    String2.distribute(tElapsedTime, EDStatic.taskThreadSucceededDistribution24);
+                    String2.distribute(tElapsedTime, EDStatic.taskThreadSucceededDistributionTotal);
+                    String2.distribute(tElapsedTime, EDStatic.taskThreadSucceededDistributionPerWorker[workerNumber]);
+                }
 
             } catch (Throwable t) {
                 long tElapsedTime = elapsedTime();
-                String2.distribute(tElapsedTime, EDStatic.taskThreadFailedDistribution24);
-                String2.distribute(tElapsedTime, EDStatic.taskThreadFailedDistributionTotal);
-                String subject = "TaskThread error: task #" + (EDStatic.nextTask - 1) + 
+                synchronized(EDStatic.taskList) { 
+                    String2.distribute(tElapsedTime, EDStatic.taskThreadFailedDistribution24);
+                    String2.distribute(tElapsedTime, EDStatic.taskThreadFailedDistributionTotal);
+                    String2.distribute(tElapsedTime, EDStatic.taskThreadFailedDistributionPerWorker[workerNumber]);
+                }
+                String subject = name + " error: task #" + task + 
                     " failed after " + Calendar2.elapsedTimeString(tElapsedTime);
                 String content = "" + taskSummary + "\n" +
                     MustBe.throwableToString(t);
@@ -214,10 +372,94 @@ public class TaskThread extends Thread {
 
             //whether succeeded or failed
             synchronized(EDStatic.taskList) { //all task-related things synch on taskList
-                EDStatic.lastFinishedTask = EDStatic.nextTask - 1;
-                EDStatic.taskList.set(EDStatic.nextTask - 1, null);  //throw away the task info (gc)
+                currentTask = -1;
+                lastStartTime = -1;
+                finishTask(task);
+            }
+        }
+    }
+
+    /** This adds a TASK_SET_FLAG or TASK_DAP_TO_NC task (which aren't done) for test(). */
+    private static int addTestTask(Integer taskType, String datasetID) {
+        return EDStatic.addTask(datasetID, new Object[]{taskType, datasetID});
+    }
+
+    /**
+     * This tests claimNextTask and finishTask.
+     * The tasks are just claimed and finished (not done).
+     * Since this synchronizes on EDStatic.taskList, no TaskThread can 
+     * claim the test tasks.
+     *
+     * @throws Throwable if trouble
+     */
+    public static void test() throws Throwable {
+        String2.log("\n*** TaskThread.test()");
+        int oMaxRunningOfType[] = (int[])maxRunningOfType.clone();
+        synchronized(EDStatic.taskList) { //all task-related things synch on taskList
+            Test.ensureEqual(EDStatic.nUnfinishedTasks(), 0, 
+                "TaskThread.test() must be run when there are no unfinished tasks.");
+            try {
+                for (int i = 0; i < maxRunningOfType.length; i++)
+                    maxRunningOfType[i] = Integer.MAX_VALUE;
+
+                //tasks of the same dataset are never running at once
+                int a1 = addTestTask(TASK_SET_FLAG, "a");
+                int a2 = addTestTask(TASK_SET_FLAG, "a");
+                int b1 = addTestTask(TASK_SET_FLAG, "b");
+                Test.ensureEqual(claimNextTask(), a1, "");
+                Test.ensureEqual(claimNextTask(), b1, ""); //a2 waits for a1
+                Test.ensureEqual(claimNextTask(), -1, "");
+                Test.ensureEqual(nRunningTasks(), 2, "");
+                Test.ensureEqual(EDStatic.nUnclaimedTasks(), 1, "");
+                finishTask(b1);
+                Test.ensureEqual(claimNextTask(), -1, "");  //a2 still waits for a1
+                finishTask(a1);
+                Test.ensureEqual(claimNextTask(), a2, "");
+                finishTask(a2);
+                Test.ensureEqual(EDStatic.nUnfinishedTasks(), 0, "");
+
+                //no more than maxRunningOfType tasks of a type are running at once
+                maxRunningOfType[TASK_DAP_TO_NC.intValue()] = 1;
+                int c1 = addTestTask(TASK_DAP_TO_NC, "c");
+                int d1 = addTestTask(TASK_DAP_TO_NC, "d");
+                int e1 = addTestTask(TASK_SET_FLAG,  "e");
+                Test.ensureEqual(claimNextTask(), c1, "");
+                Test.ensureEqual(claimNextTask(), e1, ""); //d1 waits because of its type
+                Test.ensureEqual(claimNextTask(), -1, "");
+                finishTask(e1);
+                Test.ensureEqual(claimNextTask(), -1, "");
+                finishTask(c1);
+                Test.ensureEqual(claimNextTask(), d1, "");
+                finishTask(d1);
+                Test.ensureEqual(EDStatic.nUnfinishedTasks(), 0, "");
+                maxRunningOfType[TASK_DAP_TO_NC.intValue()] = Integer.MAX_VALUE;
+
+                //lastFinishedTask only advances when all earlier tasks are finished
+                int f1 = addTestTask(TASK_SET_FLAG, "f");
+                int g1 = addTestTask(TASK_SET_FLAG, "g");
+                int h1 = addTestTask(TASK_SET_FLAG, "h");
+                Test.ensureEqual(claimNextTask(), f1, "");
+                Test.ensureEqual(claimNextTask(), g1, "");
+                Test.ensureEqual(claimNextTask(), h1, "");
+                finishTask(g1);
+                Test.ensureEqual(EDStatic.lastFinishedTask, f1 - 1, "");
+                finishTask(h1);
+                Test.ensureEqual(EDStatic.lastFinishedTask, f1 - 1, "");
+                Test.ensureEqual(EDStatic.nUnfinishedTasks(), 3, ""); //2 are finished, but not counted
+                Test.ensureEqual(EDStatic.nUnclaimedTasks(), 0, "");
+                finishTask(f1);
+                Test.ensureEqual(EDStatic.lastFinishedTask, h1, "");
+                Test.ensureEqual(EDStatic.nUnfinishedTasks(), 0, "");
+                Test.ensureEqual(nRunningTasks(), 0, "");
+
+            } finally {
+                //finish any test tasks (e.g., after a failed test)
+                for (int task = EDStatic.lastFinishedTask + 1; task < EDStatic.taskList.size(); task++)
+                    finishTask(task);
+                System.arraycopy(oMaxRunningOfType, 0, maxRunningOfType, 0, maxRunningOfType.length);
             }
         }
+        String2.log("\n*** TaskThread.test() finished successfully.");
     }
 
 }
@@ -0,0 +1,310 @@
+/*
+ * ThreadedWorkManager Copyright 2026, agent (agent@local).
+ * See the LICENSE.txt file in this file's directory.
+ */
+package gov.noaa.pfel.erddap.util;
+
+import com.cohort.util.String2;
+import com.cohort.util.Test;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This runs tasks (e.g., reading data files) on a small pool of worker threads
+ * and hands the results back in the order the tasks were added,
+ * so the caller can process (e.g., write) result n
+ * while the workers are already working on results n+1, n+2, ....
+ *
+ * <p>Typical use:
+ * <pre>
+ * ThreadedWorkManager&lt;Table&gt; twm = new ThreadedWorkManager("myDataset", 3);
+ * try {
+ *     ... twm.addTask(callable) for a few tasks (e.g., twm.nThreads())
+ *     while (twm.hasNext()) {
+ *         Table table = twm.next();  //in the order the tasks were added
+ *         ... optionally, add more tasks
+ *     }
+ * } finally {
+ *     twm.forceShutdown();  //always, to free the threads
+ * }
+ * </pre>
+ *
+ * <p>Normally, each ThreadedWorkManager has its own threads.
+ * If it is constructed with a shared executor (see newSharedExecutor),
+ * its tasks are run on the shared executor's threads instead, so the total
+ * number of tasks running at once (for all requests) is limited by the shared
+ * executor's nThreads, and nThreads here just limits how many tasks the
+ * caller should have pending.
+ *
+ * <p>This is not thread-safe: one thread (e.g., the request's thread)
+ * should add the tasks and get the results.
+ *
+ * @author agent (agent@local) 2026-10-18
+ */
+public class ThreadedWorkManager<T> {
+
+    /**
+     * Set this to true (by calling verbose=true in your program,
+     * not by changing the code here)
+     * if you want lots of diagnostic messages sent to String2.log.
+     */
+    public static boolean verbose = false;
+
+    /** Idle worker threads stop after this many seconds. */
+    public final static int IDLE_SECONDS = 60;
+
+    /** The total number of tasks run by all ThreadedWorkManagers (for diagnostics). */
+    public static AtomicInteger totalNTasks = new AtomicInteger();
+
+    private final String name;
+    private final int nThreads;
+    private final ThreadPoolExecutor executor;
+    private final boolean sharedExecutor; //if true, don't shut it down
+    private final ArrayDeque<Future<T>> futures = new ArrayDeque();
+    private int nTasks = 0;
+
+    /**
+     * The constructor.
+     *
+     * @param tName a name for the threads, e.g., the datasetID.
+     * @param tNThreads the number of worker threads (&gt;=1).
+     *    Values &lt;1 are treated as 1.
+     */
+    public ThreadedWorkManager(String tName, int tNThreads) {
+        this(tName, tNThreads, null);
+    }
+
+    /**
+     * A constructor for a ThreadedWorkManager which runs its tasks 
+     * on a shared executor.
+     *
+     * @param tName a name for the threads, e.g., the datasetID.
+     * @param tNThreads the number of tasks the caller should keep pending (&gt;=1).
+     *    Values &lt;1 are treated as 1.
+     * @param tSharedExecutor an executor from newSharedExecutor, or null
+     *    to give this ThreadedWorkManager its own tNThreads threads.
+     *    forceShutdown() doesn't shut down a shared executor.
+     */
+    public ThreadedWorkManager(String tName, int tNThreads, ThreadPoolExecutor tSharedExecutor) {
+        name = tName;
+        nThreads = Math.max(1, tNThreads);
+        sharedExecutor = tSharedExecutor != null;
+        executor = sharedExecutor? tSharedExecutor : 
+            newSharedExecutor("ThreadedWorkManager_" + name, nThreads);
+        if (verbose) String2.log("ThreadedWorkManager(" + name + ") nThreads=" + nThreads + 
+            (sharedExecutor? " (shared executor)" : ""));
+    }
+
+    /**
+     * This makes an executor with nThreads daemon threads and an unbounded queue,
+     * e.g., one which is shared by all of the ThreadedWorkManagers 
+     * of a given type (see EDStatic.tableReadExecutor).
+     *
+     * @param tName a name for the threads
+     * @param tNThreads the number of threads (&gt;=1). Values &lt;1 are treated as 1.
+     * @return the executor
+     */
+    public static ThreadPoolExecutor newSharedExecutor(final String tName, int tNThreads) {
+        tNThreads = Math.max(1, tNThreads);
+        final AtomicInteger threadNumber = new AtomicInteger();
+        ThreadPoolExecutor tExecutor = new ThreadPoolExecutor(tNThreads, tNThreads, 
+            IDLE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue(), 
+            new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, tName + "_" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true); //so they never prevent the JVM from exiting
+                    return thread;
+                }
+            });
+        //so the threads of an abandoned ThreadedWorkManager (e.g., after an 
+        //exception in the caller) or an idle shared executor go away by themselves
+        tExecutor.allowCoreThreadTimeOut(true);
+        return tExecutor;
+    }
+
+    /** The number of worker threads. */
+    public int nThreads() {
+        return nThreads;
+    }
+
+    /** The number of tasks which have been added but whose results haven't been gotten yet. */
+    public int nPending() {
+        return futures.size();
+    }
+
+    /** The number of tasks which have been added so far. */
+    public int nTasks() {
+        return nTasks;
+    }
+
+    /**
+     * This adds a task. It will be started as soon as a worker thread is free.
+     *
+     * @param task
+     */
+    public void addTask(Callable<T> task) {
+        futures.add(executor.submit(task));
+        nTasks++;
+        totalNTasks.incrementAndGet();
+    }
+
+    /** This returns true if there are tasks whose results haven't been gotten yet. */
+    public boolean hasNext() {
+        return !futures.isEmpty();
+    }
+
+    /**
+     * This waits for the oldest pending task to finish and returns its result.
+     * If the task threw an exception, this throws that exception
+     * (not wrapped in an ExecutionException).
+     *
+     * @return the result of the oldest pending task.
+     * @throws Throwable if trouble (e.g., the task failed or this thread was interrupted)
+     */
+    public T next() throws Throwable {
+        Future<T> future = futures.poll();
+        if (future == null)
+            throw new IllegalStateException(
+                "ThreadedWorkManager(" + name + ").next() was called when there are no pending tasks.");
+        try {
+            return future.get();
+        } catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            throw cause == null? ee : cause;
+        } catch (InterruptedException ie) {
+            future.cancel(true);
+            Thread.currentThread().interrupt(); //so caller's isInterrupted() tests see it
+            throw ie;
+        }
+    }
+
+    /**
+     * This cancels any pending tasks (interrupting any that are running)
+     * and shuts down the worker threads (unless the executor is shared).
+     * This is safe to call repeatedly. Always call this (e.g., in a finally clause)
+     * when you are done with this ThreadedWorkManager.
+     */
+    public void forceShutdown() {
+        int nCancelled = 0;
+        while (!futures.isEmpty()) {
+            if (futures.poll().cancel(true))
+                nCancelled++;
+        }
+        if (sharedExecutor)
+            executor.purge(); //remove the cancelled tasks from the shared queue
+        else executor.shutdownNow();
+        if (verbose && nCancelled > 0)
+            String2.log("ThreadedWorkManager(" + name + ").forceShutdown cancelled " +
+                nCancelled + " tasks.");
+    }
+
+    /**
+     * This is a convenience method which rethrows a Throwable caught in a
+     * Callable's call() method (which can only throw Exceptions) unchanged.
+     *
+     * @param t the Throwable
+     * @return never returns (it is declared this way so callers can write
+     *     <tt>throw ThreadedWorkManager.rethrow(t);</tt>)
+     * @throws Exception t if t is an Exception
+     * @throws Error t if t is an Error
+     */
+    public static Exception rethrow(Throwable t) throws Exception {
+        if (t instanceof Exception) throw (Exception)t;
+        if (t instanceof Error)     throw (Error)t;
+        throw new Exception(t); //a custom subclass of Throwable (rare)
+    }
+
+    /**
+     * This tests this class.
+     *
+     * @throws Throwable if trouble
+     */
+    public static void test() throws Throwable {
+        String2.log("\n*** ThreadedWorkManager.test()");
+        verbose = true;
+
+        //results are returned in the order the tasks were added, 
+        //  even though the later tasks finish first
+        ThreadedWorkManager<Integer> twm = new ThreadedWorkManager("test", 3);
+        try {
+            for (int i = 0; i < 6; i++) {
+                final int fi = i;
+                twm.addTask(() -> {
+                    Thread.sleep((6 - fi) * 20);
+                    return new Integer(fi);
+                });
+            }
+            Test.ensureEqual(twm.nTasks(), 6, "");
+            for (int i = 0; i < 6; i++) {
+                Test.ensureTrue(twm.hasNext(), "i=" + i);
+                Test.ensureEqual(twm.next().intValue(), i, "");
+            }
+            Test.ensureEqual(twm.hasNext(), false, "");
+        } finally {
+            twm.forceShutdown();
+        }
+
+        //a task's exception is rethrown (unwrapped) by next()
+        twm = new ThreadedWorkManager("test", 2);
+        try {
+            twm.addTask(() -> new Integer(0));
+            twm.addTask(() -> {throw new RuntimeException("Intentional error.");});
+            twm.addTask(() -> new Integer(2));
+            Test.ensureEqual(twm.next().intValue(), 0, "");
+            String msg = "shouldn't get here";
+            try {
+                twm.next();
+            } catch (RuntimeException e) {
+                msg = e.getMessage();
+            }
+            Test.ensureEqual(msg, "Intentional error.", "");
+            Test.ensureEqual(twm.nPending(), 1, "");
+        } finally {
+            twm.forceShutdown(); //cancels the pending task
+        }
+        Test.ensureEqual(twm.nPending(), 0, "");
+
+        //with a shared executor, the total number of tasks running at once is limited
+        ThreadPoolExecutor shared = newSharedExecutor("test", 2);
+        final AtomicInteger nRunning = new AtomicInteger(), maxRunning = new AtomicInteger();
+        ThreadedWorkManager<Integer> twms[] = new ThreadedWorkManager[3];
+        try {
+            for (int w = 0; w < twms.length; w++) {
+                twms[w] = new ThreadedWorkManager("test" + w, 2, shared);
+                for (int i = 0; i < 3; i++) {
+                    final int fi = i;
+                    twms[w].addTask(() -> {
+                        int tRunning = nRunning.incrementAndGet();
+                        synchronized (maxRunning) {
+                            maxRunning.set(Math.max(maxRunning.get(), tRunning));
+                        }
+                        Thread.sleep(30);
+                        nRunning.decrementAndGet();
+                        return new Integer(fi);
+                    });
+                }
+            }
+            for (int w = 0; w < twms.length; w++) 
+                for (int i = 0; i < 3; i++) 
+                    Test.ensureEqual(twms[w].next().intValue(), i, "w=" + w);
+        } finally {
+            for (int w = 0; w < twms.length; w++) 
+                if (twms[w] != null)
+                    twms[w].forceShutdown();
+        }
+        Test.ensureEqual(maxRunning.get(), 2, "");
+        Test.ensureTrue(!shared.isShutdown(), ""); //forceShutdown doesn't shut down a shared executor
+        shared.shutdownNow();
+
+        String2.log("\n*** ThreadedWorkManager.test() finished successfully.");
+    }
+
+}
@@ -0,0 +1,316 @@
+/*
+ * WmsRenderPool Copyright 2026, agent (agent@local).
+ * See the LICENSE.txt file in this file's directory.
+ */
+package gov.noaa.pfel.erddap.util;
+
+import com.cohort.util.SimpleException;
+import com.cohort.util.String2;
+import com.cohort.util.Test;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * This renders WMS GetMap images (see Erddap.doWmsGetMap) on a fixed number of
+ * worker threads with a bounded queue, so that a burst of requests
+ * (e.g., the 20 tiles needed after a user pans a map) can't make
+ * an unlimited number of renders at once.
+ * If the queue is full, render() throws a SimpleException right away
+ * (so the client can try again later) instead of waiting.
+ *
+ * <p>Identical requests which arrive while the image is being made
+ * (e.g., from several users looking at the same map) share one render:
+ * the later requests just wait for the first request's render to finish.
+ *
+ * <p>There is one WmsRenderPool (see EDStatic.wmsRenderPool).
+ * The statistics (queue depth, render time, and the time waiting in the queue)
+ * are shown on status.html.
+ *
+ * <p>This is thread-safe.
+ *
+ * @author agent (agent@local) 2026-10-18
+ */
+public class WmsRenderPool {
+
+    /**
+     * Set this to true (by calling verbose=true in your program,
+     * not by changing the code here)
+     * if you want lots of diagnostic messages sent to String2.log.
+     */
+    public static boolean verbose = false;
+
+    /** Idle worker threads stop after this many seconds. */
+    public final static int IDLE_SECONDS = 60;
+
+    private final int nThreads;
+    private final int queueSize;
+    private final ThreadPoolExecutor executor;
+
+    /** key -&gt; the Future of the render that is queued or running */
+    private final ConcurrentHashMap<String, Future<Boolean>> inFlight =
+        new ConcurrentHashMap(16, 0.75f, 4);
+
+    /** Statistics (for diagnostics). */
+    private final AtomicInteger nRendered = new AtomicInteger(),
+        nShared = new AtomicInteger(), nRejected = new AtomicInteger(),
+        queueHighWater = new AtomicInteger();
+    /** The distribution of render times and of the times the renders waited in the queue.
+     * Synchronize on each. */
+    private final int renderTimesDistribution[]    = new int[String2.DistributionSize];
+    private final int queueWaitTimesDistribution[] = new int[String2.DistributionSize];
+
+    /**
+     * The constructor.
+     *
+     * @param tNThreads the number of worker threads (&gt;=1).
+     *    Values &lt;1 are treated as 1.
+     * @param tQueueSize the maximum number of renders waiting for a worker thread (&gt;=1).
+     *    Values &lt;1 are treated as 1.
+     */
+    public WmsRenderPool(int tNThreads, int tQueueSize) {
+        nThreads = Math.max(1, tNThreads);
+        queueSize = Math.max(1, tQueueSize);
+        final AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(nThreads, nThreads,
+            IDLE_SECONDS, TimeUnit.SECONDS, new ArrayBlockingQueue(queueSize),
+            new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r,
+                        "WmsRenderPool_" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true); //so they never prevent the JVM from exiting
+                    return thread;
+                }
+            });  //the default RejectedExecutionHandler throws RejectedExecutionException
+        executor.allowCoreThreadTimeOut(true);
+        if (verbose) String2.log("WmsRenderPool nThreads=" + nThreads + " queueSize=" + queueSize);
+    }
+
+    /** The number of worker threads. */
+    public int nThreads() {
+        return nThreads;
+    }
+
+    /** The number of renders waiting for a worker thread. */
+    public int queueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /** The number of different renders which are queued or running. */
+    public int nInFlight() {
+        return inFlight.size();
+    }
+
+    /**
+     * This has a worker thread make an image and waits for it to finish.
+     * If a render with the same key is already queued or running,
+     * this just waits for that render to finish and returns its result
+     * (or throws its exception).
+     *
+     * @param key identifies the image, e.g., its fullFileName
+     * @param task makes the image (e.g., saves it in a file with the key's name)
+     * @return the task's result
+     * @throws SimpleException if the queue is full
+     * @throws Throwable if trouble (e.g., the task's exception, unwrapped)
+     */
+    public boolean render(String key, final Callable<Boolean> task) throws Throwable {
+        final long queuedAt = System.currentTimeMillis();
+        FutureTask<Boolean> newFuture = new FutureTask<Boolean>(() -> {
+                long startTime = System.currentTimeMillis();
+                synchronized (queueWaitTimesDistribution) {
+                    String2.distribute(startTime - queuedAt, queueWaitTimesDistribution);
+                }
+                try {
+                    return task.call();
+                } finally {
+                    long tTime = System.currentTimeMillis() - startTime;
+                    synchronized (renderTimesDistribution) {
+                        String2.distribute(tTime, renderTimesDistribution);
+                    }
+                    nRendered.incrementAndGet();
+                }
+            }) {
+            protected void done() {
+                inFlight.remove(key, this);
+            }
+        };
+
+        Future<Boolean> future = inFlight.putIfAbsent(key, newFuture);
+        while (future != null && future.isDone()) {
+            //it just finished (done() may not have removed it yet), so don't share it
+            inFlight.remove(key, future);
+            future = inFlight.putIfAbsent(key, newFuture);
+        }
+        if (future == null) {
+            future = newFuture;
+            try {
+                executor.execute(newFuture);
+            } catch (RejectedExecutionException ree) {
+                inFlight.remove(key, newFuture);
+                nRejected.incrementAndGet();
+                throw new SimpleException(
+                    "The WMS server is too busy (" + queueSize +
+                    " images are waiting to be made). Please try again later.");
+            }
+            int depth = queueDepth();
+            if (depth > queueHighWater.get()) //not perfect, but close enough
+                queueHighWater.set(depth);
+        } else {
+            nShared.incrementAndGet();
+            if (verbose) String2.log("WmsRenderPool is sharing the render of " + key);
+        }
+
+        try {
+            return future.get().booleanValue();
+        } catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            throw cause == null? ee : cause;
+        } catch (InterruptedException ie) {
+            //don't cancel the render: other requests may be waiting for it
+            Thread.currentThread().interrupt(); //so caller's isInterrupted() tests see it
+            throw ie;
+        }
+    }
+
+    /**
+     * This returns a few lines with the pool's statistics (for status.html).
+     *
+     * @return the pool's statistics (with a newline at the end).
+     */
+    public String statistics() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("WmsRenderPool: nThreads=" + nThreads +
+            " nActive=" + executor.getActiveCount() +
+            " queueDepth=" + queueDepth() + " (max=" + queueSize +
+            ", highWater=" + queueHighWater.get() +
+            ") nRendered=" + nRendered.get() + " nShared=" + nShared.get() +
+            " nRejected=" + nRejected.get() + "\n");
+        synchronized (renderTimesDistribution) {
+            sb.append("WmsRenderPool Render     Time (since startup)             " +
+                String2.getBriefDistributionStatistics(renderTimesDistribution) + "\n");
+        }
+        synchronized (queueWaitTimesDistribution) {
+            sb.append("WmsRenderPool Queue Wait Time (since startup)             " +
+                String2.getBriefDistributionStatistics(queueWaitTimesDistribution) + "\n");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * This waits (for up to 10 seconds) until the condition is true (for test()).
+     *
+     * @param condition the condition
+     * @throws RuntimeException if the condition still isn't true after 10 seconds
+     */
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long stopAt = System.currentTimeMillis() + 10000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > stopAt)
+                throw new RuntimeException("WmsRenderPool.waitFor timed out.");
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * This tests this class.
+     *
+     * @throws Throwable if trouble
+     */
+    public static void test() throws Throwable {
+        String2.log("\n*** WmsRenderPool.test()");
+        verbose = true;
+
+        //identical requests share one render
+        //(The renders wait for a latch, so the test doesn't depend on timing.)
+        final WmsRenderPool pool = new WmsRenderPool(2, 2);
+        final AtomicInteger nCalls = new AtomicInteger();
+        final CountDownLatch release1 = new CountDownLatch(1);
+        ThreadedWorkManager<Boolean> twm = new ThreadedWorkManager("test", 4);
+        try {
+            for (int i = 0; i < 4; i++)
+                twm.addTask(() -> {
+                    try {
+                        return new Boolean(pool.render("a", () -> {
+                            nCalls.incrementAndGet();
+                            release1.await();
+                            return Boolean.TRUE;
+                        }));
+                    } catch (Throwable t) {
+                        throw ThreadedWorkManager.rethrow(t);
+                    }
+                });
+            waitFor(() -> pool.nShared.get() == 3);
+            release1.countDown();
+            while (twm.hasNext())
+                Test.ensureEqual(twm.next(), Boolean.TRUE, "");
+        } finally {
+            release1.countDown();
+            twm.forceShutdown();
+        }
+        Test.ensureEqual(nCalls.get(), 1, "");
+        Test.ensureEqual(pool.nShared.get(), 3, "");
+        waitFor(() -> pool.nInFlight() == 0); //done() removes it right after the render finishes
+
+        //a task's exception is rethrown (unwrapped), and the key is then free again
+        String msg = "shouldn't get here";
+        try {
+            pool.render("b", () -> {throw new RuntimeException("Intentional error.");});
+        } catch (RuntimeException e) {
+            msg = e.getMessage();
+        }
+        Test.ensureEqual(msg, "Intentional error.", "");
+        Test.ensureEqual(pool.render("b", () -> Boolean.FALSE), false, "");
+
+        //if all threads are busy and the queue is full, render() fails fast
+        //(The renders are added one at a time, so 2 are running and 2 are queued.)
+        final CountDownLatch release2 = new CountDownLatch(1);
+        twm = new ThreadedWorkManager("test", 4);
+        try {
+            for (int i = 0; i < 4; i++) {
+                final String key = "c" + i;
+                final int nExpected = i + 1;
+                twm.addTask(() -> {
+                    try {
+                        return new Boolean(pool.render(key, () -> {
+                            release2.await();
+                            return Boolean.TRUE;
+                        }));
+                    } catch (Throwable t) {
+                        throw ThreadedWorkManager.rethrow(t);
+                    }
+                });
+                waitFor(() -> pool.executor.getActiveCount() + pool.queueDepth() == nExpected);
+            }
+            Test.ensureEqual(pool.queueDepth(), 2, "");
+            msg = "shouldn't get here";
+            try {
+                pool.render("d", () -> Boolean.TRUE);
+            } catch (SimpleException e) {
+                msg = e.getMessage();
+            }
+            Test.ensureTrue(msg.startsWith("The WMS server is too busy"), "msg=" + msg);
+            Test.ensureEqual(pool.nRejected.get(), 1, "");
+            release2.countDown();
+            while (twm.hasNext())
+                Test.ensureEqual(twm.next(), Boolean.TRUE, "");
+        } finally {
+            release2.countDown();
+            twm.forceShutdown();
+        }
+
+        String2.log(pool.statistics());
+        String2.log("\n*** WmsRenderPool.test() finished successfully.");
+    }
+
+}
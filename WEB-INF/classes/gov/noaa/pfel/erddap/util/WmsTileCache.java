@@ -0,0 +1,393 @@
+/*
+ * WmsTileCache Copyright 2026, agent (agent@local).
+ * See the LICENSE.txt file in this file's directory.
+ */
+package gov.noaa.pfel.erddap.util;
+
+import com.cohort.util.File2;
+import com.cohort.util.Math2;
+import com.cohort.util.String2;
+import com.cohort.util.Test;
+
+import gov.noaa.pfel.coastwatch.util.RegexFilenameFilter;
+import gov.noaa.pfel.erddap.dataset.EDD;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This keeps track of the WMS GetMap images (for the data layers of one
+ * EDDGrid dataset) which are tiles in the standard EPSG:4326 tile pyramid
+ * (e.g., as used by Leaflet's L.CRS.EPSG4326 and by ERDDAP's WMS web pages):
+ * At zoom level z, each TILE_SIZE x TILE_SIZE pixel tile covers 180/2^z degrees.
+ * x counts tiles east from longitude -180 (x may go up to 3*2^z - 1
+ * so that datasets with longitude 0 to 360 are supported).
+ * y counts tiles south from latitude 90.
+ *
+ * <p>The tiles are stored in the dataset's cache directory:
+ * tiles/[tileSetName]/[leftmostIndex]/[z]/[x]/[y].png ,
+ * where tileSetName identifies the other request parameters (layers,
+ * transparent, bgcolor, and the indexes of the other axes), and
+ * leftmostIndex is the index of the leftmost axis (usually time) that
+ * the request resolved to, so a request for the latest time (e.g., time=current)
+ * automatically uses new tiles after new data arrive.
+ *
+ * <p>There is one WmsTileCache for all datasets (see EDStatic.wmsTileCache).
+ * When the total size of the tiles is more than maxBytes,
+ * the least recently used tiles are deleted.
+ * invalidateFrom removes a dataset's tiles which may be stale
+ * (e.g., after EDDGrid.update() finds new data) and removeDataset removes all
+ * of a dataset's tiles (e.g., when it is reloaded or unloaded).
+ *
+ * Each dataset has its own generation number (which invalidateFrom increments),
+ * so a tile which was being made when the dataset's tiles were invalidated
+ * isn't added, but the tiles being made for other datasets are.
+ *
+ * <p>This is thread-safe. The lock is only held while the in-memory
+ * information is changed; files are checked, touched, and deleted outside of it.
+ *
+ * @author agent (agent@local) 2026-10-18
+ */
+public class WmsTileCache {
+
+    /**
+     * Set this to true (by calling verbose=true in your program,
+     * not by changing the code here)
+     * if you want lots of diagnostic messages sent to String2.log.
+     */
+    public static boolean verbose = false;
+
+    /** The width and height (in pixels) of a tile. */
+    public final static int TILE_SIZE = 256;
+
+    /** The maximum zoom level which is cached. */
+    public final static int MAX_ZOOM = 20;
+
+    /** The name of the tiles subdirectory in a dataset's cache directory. */
+    public final static String TILES_DIR = "tiles/";
+
+    private final long maxBytes;
+
+    /** fullFileName -&gt; nBytes, in least-recently-used order. Synchronize on this. */
+    private final LinkedHashMap<String, Long> lru = new LinkedHashMap(16, 0.75f, true);
+    private long totalBytes = 0;
+    /** datasetID -&gt; generation. A dataset's generation is incremented by 
+     * invalidateFrom and removeDataset, so that its tiles
+     * which were being made at the time aren't kept. Synchronize on lru. */
+    private final HashMap<String, Integer> generations = new HashMap();
+
+    /** Statistics (for diagnostics). */
+    private int nHits = 0, nMisses = 0;
+
+    /**
+     * The constructor.
+     *
+     * @param tMaxMB the maximum size of all of the tiles (in MB)
+     */
+    public WmsTileCache(int tMaxMB) {
+        maxBytes = Math.max(1, tMaxMB) * (long)Math2.BytesPerMB;
+    }
+
+    /**
+     * This determines if a GetMap request is for a tile in the EPSG:4326 tile pyramid.
+     *
+     * @param minx  the request's minimum longitude
+     * @param maxx  the request's maximum longitude
+     * @param miny  the request's minimum latitude
+     * @param maxy  the request's maximum latitude
+     * @param width the request's width (in pixels)
+     * @param height the request's height (in pixels)
+     * @return {z, x, y} or null if the request isn't for a tile.
+     */
+    public static int[] tileZXY(double minx, double maxx, double miny, double maxy,
+        int width, int height) {
+
+        if (width != TILE_SIZE || height != TILE_SIZE)
+            return null;
+        double size = maxx - minx;
+        if (!Math2.almostEqual(9, size, maxy - miny) || !(size > 0))
+            return null;
+        double dz = Math.log(180 / size) / Math.log(2);
+        int z = Math2.roundToInt(dz);
+        if (z < 0 || z > MAX_ZOOM || !Math2.almostEqual(9, dz, z))
+            return null;
+        size = 180.0 / (1 << z);
+        double dx = (minx + 180) / size;
+        double dy = (90 - maxy) / size;
+        int x = Math2.roundToInt(dx);
+        int y = Math2.roundToInt(dy);
+        if (Math.abs(dx - x) > 1e-6 || Math.abs(dy - y) > 1e-6 ||
+            x < 0 || x >= 3 * (1 << z) ||
+            y < 0 || y >= (1 << z))
+            return null;
+        return new int[]{z, x, y};
+    }
+
+    /**
+     * This returns the bounding box of a tile.
+     *
+     * @param z the zoom level
+     * @param x the tile's x
+     * @param y the tile's y
+     * @return {minx, maxx, miny, maxy}
+     */
+    public static double[] tileBBox(int z, int x, int y) {
+        double size = 180.0 / (1 << z);
+        return new double[]{-180 + x * size, -180 + (x + 1) * size,
+            90 - (y + 1) * size, 90 - y * size};
+    }
+
+    /**
+     * This returns the directory for a tile.
+     *
+     * @param datasetID
+     * @param tileSetName  e.g., from String2.md5Hex12(the other request parameters)
+     * @param leftmostIndex the index of the leftmost axis
+     * @param zxy from tileZXY
+     * @return the directory (with slash at end)
+     */
+    public static String tileDir(String datasetID, String tileSetName,
+        int leftmostIndex, int zxy[]) {
+        return EDD.cacheDirectory(datasetID) + TILES_DIR + tileSetName + "/" +
+            leftmostIndex + "/" + zxy[0] + "/" + zxy[1] + "/";
+    }
+
+    /**
+     * This returns a dataset's current generation. Call this before making a tile
+     * and pass the value to added().
+     *
+     * @param datasetID
+     */
+    public int generation(String datasetID) {
+        synchronized (lru) {
+            Integer gen = generations.get(datasetID);
+            return gen == null? 0 : gen.intValue();
+        }
+    }
+
+    /**
+     * This determines if a tile is in the cache (and if so, marks it as
+     * recently used).
+     *
+     * @param fullFileName the tile's tileDir + y + ".png"
+     * @return true if the tile's file exists
+     */
+    public boolean isCached(String fullFileName) {
+        Long nBytes;
+        synchronized (lru) {
+            nBytes = lru.get(fullFileName); //this makes it the most recently used
+            if (nBytes == null) {
+                nMisses++;
+                return false;
+            }
+        }
+        boolean isFile = File2.isFile(fullFileName);
+        if (isFile)
+            File2.touch(fullFileName); //so the cache cleaner doesn't delete it
+        synchronized (lru) {
+            if (isFile) {
+                nHits++;
+                return true;
+            }
+            //e.g., it was deleted by the cache cleaner
+            //(unless another thread has already removed or replaced the entry)
+            if (lru.remove(fullFileName, nBytes))
+                totalBytes -= nBytes.longValue();
+            nMisses++;
+            return false;
+        }
+    }
+
+    /**
+     * After a tile's file has been made, call this to add it to the cache,
+     * then the least recently used tiles are removed if the cache is too big.
+     *
+     * @param datasetID
+     * @param fullFileName the tile's tileDir + y + ".png"
+     * @param tGeneration the dataset's generation() before the tile was made
+     * @return true if the tile was added, or false if it wasn't added
+     *   because the dataset's tiles were invalidated while it was being made.
+     *   Either way, the file may be sent to the user (but a file which wasn't
+     *   added will never be a cache hit and will be overwritten or 
+     *   deleted by the cache cleaner).
+     */
+    public boolean added(String datasetID, String fullFileName, int tGeneration) {
+        long nBytes = File2.length(fullFileName);
+        if (nBytes < 0)
+            return false;
+        ArrayList<String> toDelete = new ArrayList();
+        synchronized (lru) {
+            if (tGeneration != generation(datasetID)) 
+                return false;
+            Long oldBytes = lru.put(fullFileName, new Long(nBytes));
+            if (oldBytes != null)
+                totalBytes -= oldBytes.longValue();
+            totalBytes += nBytes;
+
+            //remove the least recently used tiles
+            Iterator<Map.Entry<String, Long>> it = lru.entrySet().iterator();
+            while (totalBytes > maxBytes && it.hasNext()) {
+                Map.Entry<String, Long> entry = it.next();
+                if (entry.getKey().equals(fullFileName))
+                    continue;
+                toDelete.add(entry.getKey());
+                totalBytes -= entry.getValue().longValue();
+                it.remove();
+            }
+        }
+        int nRemoved = toDelete.size();
+        for (int i = 0; i < nRemoved; i++)
+            File2.delete(toDelete.get(i));
+        if (verbose && nRemoved > 0)
+            String2.log("WmsTileCache removed " + nRemoved + " least recently used tiles.");
+        return true;
+    }
+
+    /**
+     * This removes a dataset's tiles for leftmost axis index &gt;= leftmostIndex,
+     * e.g., after EDDGrid.update() has added new values to the leftmost axis,
+     * for the last old value (whose data may have been incomplete).
+     *
+     * @param datasetID
+     * @param leftmostIndex  Use 0 to remove all of the dataset's tiles
+     *   (but the tiles still in the directory are not deleted, see removeDataset).
+     */
+    public void invalidateFrom(String datasetID, int leftmostIndex) {
+        String tilesDir = EDD.cacheDirectory(datasetID) + TILES_DIR;
+        ArrayList<String> toDelete = new ArrayList();
+        synchronized (lru) {
+            generations.put(datasetID, new Integer(generation(datasetID) + 1));
+            Iterator<Map.Entry<String, Long>> it = lru.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, Long> entry = it.next();
+                //fullFileName is tilesDir + tileSetName/leftmostIndex/z/x/y.png
+                String fullFileName = entry.getKey();
+                if (!fullFileName.startsWith(tilesDir))
+                    continue;
+                String parts[] = String2.split(fullFileName.substring(tilesDir.length()), '/');
+                if (parts.length == 5 && String2.parseInt(parts[1]) < leftmostIndex)
+                    continue;
+                toDelete.add(fullFileName);
+                totalBytes -= entry.getValue().longValue();
+                it.remove();
+            }
+        }
+        int nRemoved = toDelete.size();
+        for (int i = 0; i < nRemoved; i++)
+            File2.delete(toDelete.get(i));
+        if (verbose) String2.log("WmsTileCache.invalidateFrom(" + datasetID + ", " +
+            leftmostIndex + ") removed " + nRemoved + " tiles.");
+    }
+
+    /**
+     * This removes all of a dataset's tiles, including any files in the dataset's
+     * tiles directory which aren't known to this WmsTileCache
+     * (e.g., from before ERDDAP was restarted).
+     * This is called when a dataset is reloaded or unloaded.
+     *
+     * @param datasetID
+     */
+    public void removeDataset(String datasetID) {
+        invalidateFrom(datasetID, 0);
+        RegexFilenameFilter.recursiveDelete(EDD.cacheDirectory(datasetID) + TILES_DIR);
+    }
+
+    /** This returns a short summary of the cache's statistics. */
+    public String statistics() {
+        synchronized (lru) {
+            return "WmsTileCache nTiles=" + lru.size() +
+                " MB=" + (totalBytes / Math2.BytesPerMB) +
+                " nHits=" + nHits + " nMisses=" + nMisses;
+        }
+    }
+
+
+    /**
+     * This tests this class.
+     *
+     * @throws Throwable if trouble
+     */
+    public static void test() throws Throwable {
+        String2.log("\n*** WmsTileCache.test()");
+        verbose = true;
+
+        //tileZXY and tileBBox
+        Test.ensureEqual(String2.toCSSVString(tileZXY(-180, 0, -90, 90, 256, 256)), "0, 0, 0", "");
+        Test.ensureEqual(String2.toCSSVString(tileZXY(0, 180, -90, 90, 256, 256)), "0, 1, 0", "");
+        Test.ensureEqual(String2.toCSSVString(tileZXY(180, 360, -90, 90, 256, 256)), "0, 2, 0", ""); //0 - 360 lon
+        Test.ensureEqual(String2.toCSSVString(tileZXY(-135, -112.5, 45, 67.5, 256, 256)), "3, 2, 1", "");
+        Test.ensureEqual(tileZXY(-135, -112.5, 45, 67.5, 512, 512), null, "not 256x256");
+        Test.ensureEqual(tileZXY(-135, -112.5, 45, 68, 256, 256), null, "not square");
+        Test.ensureEqual(tileZXY(-134, -111.5, 45, 67.5, 256, 256), null, "not aligned");
+        Test.ensureEqual(tileZXY(-180, 180, -90, 270, 256, 256), null, "zoom < 0");
+        Test.ensureEqual(String2.toCSSVString(tileBBox(3, 2, 1)), "-135.0, -112.5, 45.0, 67.5", "");
+        for (int z = 0; z <= 8; z++) {
+            int x = (3 << z) - 1;
+            int y = (1 << z) - 1;
+            double bb[] = tileBBox(z, x, y);
+            Test.ensureEqual(String2.toCSSVString(tileZXY(bb[0], bb[1], bb[2], bb[3], 256, 256)),
+                z + ", " + x + ", " + y, "z=" + z);
+        }
+
+        //caching: only 3 of these 300000-byte tiles fit in a 1 MB cache
+        String id = "testWmsTileCache";
+        WmsTileCache cache = new WmsTileCache(1);
+        cache.removeDataset(id);
+        String name[] = new String[6];
+        for (int i = 0; i < name.length; i++) {
+            String dir = tileDir(id, "abc", i / 2, new int[]{1, i, 0});
+            File2.makeDirectory(dir);
+            name[i] = dir + "0.png";
+            Test.ensureEqual(cache.isCached(name[i]), false, "i=" + i);
+            int gen = cache.generation(id);
+            String2.writeToFile(name[i], String2.makeString('a', 300000));
+            Test.ensureEqual(cache.added(id, name[i], gen), true, "i=" + i);
+            Test.ensureEqual(cache.isCached(name[i]), true, "i=" + i);
+        }
+        //only the 3 most recently used tiles fit in 1MB
+        for (int i = 0; i < name.length; i++)
+            Test.ensureEqual(cache.isCached(name[i]), i >= 3, "i=" + i);
+        Test.ensureEqual(File2.isFile(name[0]), false, "");
+
+        //invalidateFrom leftmostIndex=2 removes tiles 4 and 5, but not 3
+        cache.invalidateFrom(id, 2);
+        Test.ensureEqual(cache.isCached(name[3]), true, "");
+        Test.ensureEqual(cache.isCached(name[4]), false, "");
+        Test.ensureEqual(File2.isFile(name[5]), false, "");
+
+        //a tile made before invalidateFrom isn't added
+        int gen = cache.generation(id);
+        String id2 = id + "2";
+        cache.removeDataset(id2);
+        int gen2 = cache.generation(id2);
+        cache.invalidateFrom(id, 2);
+        String2.writeToFile(name[4], "test");
+        Test.ensureEqual(cache.added(id, name[4], gen), false, "");
+        Test.ensureEqual(cache.isCached(name[4]), false, "");
+
+        //but invalidating one dataset doesn't affect another dataset's tiles being made
+        String dir2 = tileDir(id2, "abc", 0, new int[]{0, 0, 0});
+        File2.makeDirectory(dir2);
+        String name2 = dir2 + "0.png";
+        String2.writeToFile(name2, "test");
+        Test.ensureEqual(cache.added(id2, name2, gen2), true, "");
+        Test.ensureEqual(cache.isCached(name2), true, "");
+
+        //a tile whose file was deleted (e.g., by the cache cleaner) isn't cached
+        File2.delete(name2);
+        Test.ensureEqual(cache.isCached(name2), false, "");
+        Test.ensureEqual(cache.isCached(name2), false, "");
+        cache.removeDataset(id2);
+
+        //removeDataset
+        cache.removeDataset(id);
+        Test.ensureEqual(cache.isCached(name[3]), false, "");
+        Test.ensureEqual(File2.isFile(name[3]), false, "");
+        String2.log(cache.statistics());
+        String2.log("\n*** WmsTileCache.test() finished successfully.");
+    }
+
+}
@@ -14,9 +14,11 @@ package  gov.noaa.pmel.sgt;
 
 import com.cohort.util.MustBe;
 import com.cohort.util.String2;
+import com.cohort.util.Test;
 
 import gov.noaa.pmel.sgt.dm.SGTGrid;
 import gov.noaa.pmel.sgt.dm.SGTData;
+import gov.noaa.pmel.sgt.dm.SimpleGrid;
 import gov.noaa.pmel.sgt.contour.Contour;
 import gov.noaa.pmel.sgt.contour.ContourLine;
 
@@ -24,14 +26,23 @@ import gov.noaa.pmel.util.GeoDate;
 import gov.noaa.pmel.util.Range2D;
 import gov.noaa.pmel.util.Point2D;
 import gov.noaa.pmel.util.Debug;
+import gov.noaa.pmel.util.Dimension2D;
 
 import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Dimension;
 import java.awt.Color;
 import java.awt.Rectangle;
 import java.awt.Font;
 import java.awt.Point;
 import java.awt.FontMetrics;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
 import java.util.Enumeration;
+import java.util.Random;
 import java.beans.PropertyChangeEvent;
 
 /**
@@ -60,6 +71,20 @@ public class GridCartesianRenderer extends CartesianRenderer {
    */
   private Contour con_ = null; 
 
+  /**
+   * If a Graphics2D's value for this rendering hint is Boolean.FALSE,
+   * drawRaster draws each cell with fillRect (so the cells stay vector 
+   * graphics, e.g., in .pdf files).
+   * Otherwise (the default), drawRaster draws all of the cells as 
+   * one image, which is much faster for large grids.
+   */
+  public static final RenderingHints.Key KEY_RASTER_AS_IMAGE = 
+    new RenderingHints.Key(0x5347) {
+      public boolean isCompatibleValue(Object val) {
+        return val instanceof Boolean;
+      }
+    };
+
     /** 
      * Bob Simons added this to avoid memory leak problems.
      */
@@ -233,6 +258,8 @@ String2.log(">>yp[0]=" + yp[0] + " yp[1]=" + yp[1]);
     if (JPane.debug) String2.log(">>xSize=" + xSize + " ySize=" + ySize + "\n" +
         ">>xp[]=" + String2.toCSSVString(xp) + "\n" +
         ">>yp[]=" + String2.toCSSVString(yp));
+    if (drawRasterImage(g, xp, yp, gValues))
+      return;
     for(i=0; i < xSize; i++) {
       for(j=0; j < ySize; j++) {
         val = gValues[count++];
@@ -244,6 +271,125 @@ String2.log(">>yp[0]=" + yp[0] + " yp[1]=" + yp[1]);
       }
     }
   }
+
+  /**
+   * This draws all of the cells as one BufferedImage (with one drawImage call)
+   * instead of with one fillRect call per cell.
+   * Each pixel gets the color of the cell which covers it
+   * (i.e., nearest neighbor resampling), so the result is the same as
+   * drawing each cell with fillRect.
+   *
+   * @param g the graphics context
+   * @param xp the device x of each cell's edges (nX + 1 values)
+   * @param yp the device y of each cell's edges (nY + 1 values)
+   * @param gValues the nX * nY data values (y varies fastest)
+   * @return true if the raster was drawn, or false if this can't be used
+   *   (e.g., g isn't a Graphics2D, KEY_RASTER_AS_IMAGE is FALSE, 
+   *   g is scaled or rotated, or xp or yp isn't monotonic),
+   *   so the caller should draw each cell.
+   */
+  private boolean drawRasterImage(Graphics g, int[] xp, int[] yp, double[] gValues) {
+    if (!(g instanceof Graphics2D))
+      return false;
+    Graphics2D g2 = (Graphics2D)g;
+    if (Boolean.FALSE.equals(g2.getRenderingHint(KEY_RASTER_AS_IMAGE)) ||
+        (g2.getTransform().getType() & ~AffineTransform.TYPE_TRANSLATION) != 0)
+      return false;
+    int nX = xp.length - 1;
+    int nY = yp.length - 1;
+    if (nX < 1 || nY < 1 || (long)nX * nY != gValues.length ||
+        !isMonotonic(xp) || !isMonotonic(yp))
+      return false;
+
+    //find the image's bounds (just the part within the clip)
+    int x0 = Math.min(xp[0], xp[nX]);
+    int x1 = Math.max(xp[0], xp[nX]);
+    int y0 = Math.min(yp[0], yp[nY]);
+    int y1 = Math.max(yp[0], yp[nY]);
+    Rectangle clip = g2.getClipBounds();
+    if (clip != null) {
+      x0 = Math.max(x0, clip.x);
+      x1 = Math.min(x1, clip.x + clip.width);
+      y0 = Math.max(y0, clip.y);
+      y1 = Math.min(y1, clip.y + clip.height);
+    }
+    int width  = x1 - x0;
+    int height = y1 - y0;
+    if (width <= 0 || height <= 0)
+      return true; //nothing is visible
+    if ((long)width * height >= Integer.MAX_VALUE)
+      return false;
+
+    //for each column and row of pixels, which cell covers it? (-1 if none)
+    int colCell[] = cellIndexes(xp, x0, width);
+    int rowCell[] = cellIndexes(yp, y0, height);
+
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    int pixels[] = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+    ColorMap colorMap = attr_.getColorMap();
+    for (int row = 0; row < height; row++) {
+      int j = rowCell[row];
+      int po = row * width;
+      if (j < 0) 
+        continue;  //leave the row transparent
+      if (row > 0 && j == rowCell[row - 1]) {
+        //same cells as previous row
+        System.arraycopy(pixels, po - width, pixels, po, width);
+        continue;
+      }
+      int lastCell = -1;
+      int argb = 0;
+      for (int col = 0; col < width; col++) {
+        int i = colCell[col];
+        if (i < 0)
+          continue;
+        int cell = i * nY + j;
+        if (cell != lastCell) {
+          lastCell = cell;
+          double val = gValues[cell];
+          Color color = Double.isNaN(val)? null : colorMap.getColor(val);
+          argb = color == null? 0 : color.getRGB(); //0 = transparent
+        }
+        pixels[po + col] = argb;
+      }
+    }
+    g2.drawImage(image, x0, y0, null);
+    return true;
+  }
+
+  /** This returns true if the values in ar are all ascending or all descending (ties are okay). */
+  private static boolean isMonotonic(int ar[]) {
+    int n = ar.length;
+    boolean ascending = ar[n - 1] >= ar[0];
+    for (int i = 1; i < n; i++) {
+      if (ascending? ar[i] < ar[i - 1] : ar[i] > ar[i - 1])
+        return false;
+    }
+    return true;
+  }
+
+  /**
+   * For each pixel from start to start+n-1, this finds the cell which covers it
+   * (as fillRect would draw it, a cell covers min(edge[i],edge[i+1]) 
+   * to max(edge[i],edge[i+1])-1).
+   *
+   * @param edges the monotonic device coordinates of the cell edges
+   * @param start the first pixel
+   * @param n the number of pixels
+   * @return the cell index for each pixel (or -1 if no cell covers it)
+   */
+  private static int[] cellIndexes(int edges[], int start, int n) {
+    int cells[] = new int[n];
+    Arrays.fill(cells, -1);
+    for (int i = 0; i < edges.length - 1; i++) {
+      int lo = Math.max(Math.min(edges[i], edges[i + 1]) - start, 0);
+      int hi = Math.min(Math.max(edges[i], edges[i + 1]) - start, n);
+      for (int po = lo; po < hi; po++)
+        cells[po] = i;
+    }
+    return cells;
+  }
+
   /**
    * Get the <code>Attribute</code> associated with
    * the <code>SGTGrid</code> data.
@@ -694,4 +840,94 @@ String2.log(">>yp[0]=" + yp[0] + " yp[1]=" + yp[1]);
   public SGTData getDataAt(Point pt) {
     return null;
   }
+
+  /**
+   * This draws a grid on an image with the default drawRasterImage path
+   * or with the per-cell fillRect path (for testDrawRasterImage).
+   *
+   * @param asImage if false, KEY_RASTER_AS_IMAGE is set to FALSE
+   * @param clip if true, the graph is clipped to part of the grid
+   */
+  private static BufferedImage drawTestGrid(boolean asImage, double x[], double y[],
+    double z[], int width, int height, boolean clip) {
+
+    BufferedImage bi = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    Graphics2D g2 = bi.createGraphics();
+    g2.setColor(Color.white);
+    g2.fillRect(0, 0, width, height);
+    if (!asImage)
+      g2.setRenderingHint(KEY_RASTER_AS_IMAGE, Boolean.FALSE);
+    JPane pane = new JPane("", new Dimension(width, height));
+    Layer layer = new Layer("", new Dimension2D(width / 100.0, height / 100.0));
+    pane.add(layer);
+    CartesianGraph graph = new CartesianGraph("");
+    graph.setXTransform(new LinearTransform(new Range2D(0, width / 100.0),
+      new Range2D(x[0] - 1.3, x[x.length - 1] + 0.7)));
+    graph.setYTransform(new LinearTransform(new Range2D(0, height / 100.0),
+      new Range2D(y[0] - 0.4, y[y.length - 1] + 1.1)));
+    if (clip)
+      graph.setClip(x[x.length / 4], x[x.length / 2], y[y.length / 3], y[y.length - 1]);
+    layer.setGraph(graph);
+
+    //a color map with a semi-transparent color (so alpha is tested, too)
+    ColorMap colorMap = new ColorMap() {
+      public ColorMap copy() { return this; }
+      public Range2D getRange() { return new Range2D(0, 1); }
+      public boolean equals(ColorMap cm) { return cm == this; }
+      public void propertyChange(PropertyChangeEvent evt) { }
+      public Color getColor(double val) {
+        return val > 1? new Color(255, 0, 0, 128) :
+          new Color((int)(val * 255), 100, 255 - (int)(val * 255));
+      }
+    };
+    graph.setData(new SimpleGrid(z, x, y, ""),
+      new GridAttribute(GridAttribute.RASTER, colorMap));
+    pane.setBounds(0, 0, width, height);
+    pane.layout();
+    pane.draw(g2);
+    g2.dispose();
+    return bi;
+  }
+
+  /**
+   * This tests that drawRasterImage makes exactly the same pixels as
+   * drawing each cell with fillRect.
+   */
+  public static void testDrawRasterImage() throws Exception {
+    String2.log("\n*** GridCartesianRenderer.testDrawRasterImage()");
+    Random random = new Random(1);
+    //nX, nY, width, height: cells bigger than pixels, cells smaller than pixels, ...
+    int cases[][] = {{30, 20, 400, 300}, {700, 500, 300, 250}, {3, 2, 500, 400},
+      {1, 1, 200, 100}, {250, 190, 250, 190}};
+    for (int c = 0; c < cases.length; c++) {
+      int nX = cases[c][0], nY = cases[c][1], width = cases[c][2], height = cases[c][3];
+      double x[] = new double[nX], y[] = new double[nY], z[] = new double[nX * nY];
+      for (int i = 0; i < nX; i++)
+        x[i] = i * 0.37;
+      for (int j = 0; j < nY; j++)
+        y[j] = j * 0.41;
+      for (int k = 0; k < z.length; k++)
+        z[k] = random.nextInt(20) == 0? Double.NaN : random.nextDouble() * 1.05;
+      for (int clip = 0; clip < 2; clip++) {
+        if (clip == 1 && (nX < 4 || nY < 3))
+          continue;
+        BufferedImage cells = drawTestGrid(false, x, y, z, width, height, clip == 1);
+        BufferedImage image = drawTestGrid(true,  x, y, z, width, height, clip == 1);
+        int nDiff = 0;
+        String firstDiff = "";
+        for (int px = 0; px < width; px++) {
+          for (int py = 0; py < height; py++) {
+            if (cells.getRGB(px, py) != image.getRGB(px, py)) {
+              if (nDiff++ == 0)
+                firstDiff = " first at x=" + px + " y=" + py +
+                  " cells=0x" + Integer.toHexString(cells.getRGB(px, py)) +
+                  " image=0x" + Integer.toHexString(image.getRGB(px, py));
+            }
+          }
+        }
+        Test.ensureEqual(nDiff, 0, "case=" + c + " clip=" + clip + firstDiff);
+      }
+    }
+    String2.log("\n*** GridCartesianRenderer.testDrawRasterImage() finished successfully.");
+  }
 }